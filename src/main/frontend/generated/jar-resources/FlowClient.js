@@ -0,0 +1,1073 @@
+export function init() {
+function client(){var Jb='',Kb=0,Lb='gwt.codesvr=',Mb='gwt.hosted=',Nb='gwt.hybrid',Ob='client',Pb='#',Qb='?',Rb='/',Sb=1,Tb='img',Ub='clear.cache.gif',Vb='baseUrl',Wb='script',Xb='client.nocache.js',Yb='base',Zb='//',$b='meta',_b='name',ac='gwt:property',bc='content',cc='=',dc='gwt:onPropertyErrorFn',ec='Bad handler "',fc='" for "gwt:onPropertyErrorFn"',gc='gwt:onLoadErrorFn',hc='" for "gwt:onLoadErrorFn"',ic='user.agent',jc='webkit',kc='safari',lc='msie',mc=10,nc=11,oc='ie10',pc=9,qc='ie9',rc=8,sc='ie8',tc='gecko',uc='gecko1_8',vc=2,wc=3,xc=4,yc='Single-script hosted mode not yet implemented. See issue ',zc='http://code.google.com/p/google-web-toolkit/issues/detail?id=2079',Ac='3A6FE3E6D0531AD8632C5B0659FAD550',Bc=':1',Cc=':',Dc='DOMContentLoaded',Ec=50;var l=Jb,m=Kb,n=Lb,o=Mb,p=Nb,q=Ob,r=Pb,s=Qb,t=Rb,u=Sb,v=Tb,w=Ub,A=Vb,B=Wb,C=Xb,D=Yb,F=Zb,G=$b,H=_b,I=ac,J=bc,K=cc,L=dc,M=ec,N=fc,O=gc,P=hc,Q=ic,R=jc,S=kc,T=lc,U=mc,V=nc,W=oc,X=pc,Y=qc,Z=rc,$=sc,_=tc,ab=uc,bb=vc,cb=wc,db=xc,eb=yc,fb=zc,gb=Ac,hb=Bc,ib=Cc,jb=Dc,kb=Ec;var lb=window,mb=document,nb,ob,pb=l,qb={},rb=[],sb=[],tb=[],ub=m,vb,wb;if(!lb.__gwt_stylesLoaded){lb.__gwt_stylesLoaded={}}if(!lb.__gwt_scriptsLoaded){lb.__gwt_scriptsLoaded={}}function xb(){var b=false;try{var c=lb.location.search;return (c.indexOf(n)!=-1||(c.indexOf(o)!=-1||lb.external&&lb.external.gwtOnLoad))&&c.indexOf(p)==-1}catch(a){}xb=function(){return b};return b}
+function yb(){if(nb&&ob){nb(vb,q,pb,ub)}}
+function zb(){function e(a){var b=a.lastIndexOf(r);if(b==-1){b=a.length}var c=a.indexOf(s);if(c==-1){c=a.length}var d=a.lastIndexOf(t,Math.min(c,b));return d>=m?a.substring(m,d+u):l}
+function f(a){if(a.match(/^\w+:\/\//)){}else{var b=mb.createElement(v);b.src=a+w;a=e(b.src)}return a}
+function g(){var a=Cb(A);if(a!=null){return a}return l}
+function h(){var a=mb.getElementsByTagName(B);for(var b=m;b<a.length;++b){if(a[b].src.indexOf(C)!=-1){return e(a[b].src)}}return l}
+function i(){var a=mb.getElementsByTagName(D);if(a.length>m){return a[a.length-u].href}return l}
+function j(){var a=mb.location;return a.href==a.protocol+F+a.host+a.pathname+a.search+a.hash}
+var k=g();if(k==l){k=h()}if(k==l){k=i()}if(k==l&&j()){k=e(mb.location.href)}k=f(k);return k}
+function Ab(){var b=document.getElementsByTagName(G);for(var c=m,d=b.length;c<d;++c){var e=b[c],f=e.getAttribute(H),g;if(f){if(f==I){g=e.getAttribute(J);if(g){var h,i=g.indexOf(K);if(i>=m){f=g.substring(m,i);h=g.substring(i+u)}else{f=g;h=l}qb[f]=h}}else if(f==L){g=e.getAttribute(J);if(g){try{wb=eval(g)}catch(a){alert(M+g+N)}}}else if(f==O){g=e.getAttribute(J);if(g){try{vb=eval(g)}catch(a){alert(M+g+P)}}}}}}
+var Bb=function(a,b){return b in rb[a]};var Cb=function(a){var b=qb[a];return b==null?null:b};function Db(a,b){var c=tb;for(var d=m,e=a.length-u;d<e;++d){c=c[a[d]]||(c[a[d]]=[])}c[a[e]]=b}
+function Eb(a){var b=sb[a](),c=rb[a];if(b in c){return b}var d=[];for(var e in c){d[c[e]]=e}if(wb){wb(a,d,b)}throw null}
+sb[Q]=function(){var a=navigator.userAgent.toLowerCase();var b=mb.documentMode;if(function(){return a.indexOf(R)!=-1}())return S;if(function(){return a.indexOf(T)!=-1&&(b>=U&&b<V)}())return W;if(function(){return a.indexOf(T)!=-1&&(b>=X&&b<V)}())return Y;if(function(){return a.indexOf(T)!=-1&&(b>=Z&&b<V)}())return $;if(function(){return a.indexOf(_)!=-1||b>=V}())return ab;return S};rb[Q]={'gecko1_8':m,'ie10':u,'ie8':bb,'ie9':cb,'safari':db};client.onScriptLoad=function(a){client=null;nb=a;yb()};if(xb()){alert(eb+fb);return}zb();Ab();try{var Fb;Db([ab],gb);Db([S],gb+hb);Fb=tb[Eb(Q)];var Gb=Fb.indexOf(ib);if(Gb!=-1){ub=Number(Fb.substring(Gb+u))}}catch(a){return}var Hb;function Ib(){if(!ob){ob=true;yb();if(mb.removeEventListener){mb.removeEventListener(jb,Ib,false)}if(Hb){clearInterval(Hb)}}}
+if(mb.addEventListener){mb.addEventListener(jb,function(){Ib()},false)}var Hb=setInterval(function(){if(/loaded|complete/.test(mb.readyState)){Ib()}},kb)}
+client();(function () {var $gwt_version = "2.9.0";var $wnd = window;var $doc = $wnd.document;var $moduleName, $moduleBase;var $stats = $wnd.__gwtStatsEvent ? function(a) {$wnd.__gwtStatsEvent(a)} : null;var $strongName = '3A6FE3E6D0531AD8632C5B0659FAD550';function I(){}
+function $i(){}
+function Wi(){}
+function nc(){}
+function uc(){}
+function ej(){}
+function Dj(){}
+function Qj(){}
+function Uj(){}
+function Bk(){}
+function Dk(){}
+function Fk(){}
+function Fm(){}
+function Hm(){}
+function Jm(){}
+function al(){}
+function fl(){}
+function kl(){}
+function ml(){}
+function wl(){}
+function fn(){}
+function hn(){}
+function jo(){}
+function Ao(){}
+function jq(){}
+function pr(){}
+function rr(){}
+function tr(){}
+function vr(){}
+function Ur(){}
+function Yr(){}
+function kt(){}
+function ot(){}
+function rt(){}
+function Mt(){}
+function vu(){}
+function ov(){}
+function sv(){}
+function Hv(){}
+function Qv(){}
+function xx(){}
+function Zx(){}
+function _x(){}
+function Uy(){}
+function $y(){}
+function dA(){}
+function NA(){}
+function UB(){}
+function uC(){}
+function LD(){}
+function pF(){}
+function vG(){}
+function GG(){}
+function IG(){}
+function KG(){}
+function _G(){}
+function Lz(){Iz()}
+function T(a){S=a;Jb()}
+function gk(a){throw a}
+function tj(a,b){a.c=b}
+function uj(a,b){a.d=b}
+function vj(a,b){a.e=b}
+function xj(a,b){a.g=b}
+function yj(a,b){a.h=b}
+function zj(a,b){a.i=b}
+function Aj(a,b){a.j=b}
+function Bj(a,b){a.k=b}
+function Cj(a,b){a.l=b}
+function Wt(a,b){a.b=b}
+function $G(a,b){a.a=b}
+function $k(a){this.a=a}
+function lk(a){this.a=a}
+function nk(a){this.a=a}
+function Hk(a){this.a=a}
+function bc(a){this.a=a}
+function dc(a){this.a=a}
+function dl(a){this.a=a}
+function il(a){this.a=a}
+function ql(a){this.a=a}
+function sl(a){this.a=a}
+function ul(a){this.a=a}
+function yl(a){this.a=a}
+function Al(a){this.a=a}
+function Sj(a){this.a=a}
+function dm(a){this.a=a}
+function Lm(a){this.a=a}
+function Pm(a){this.a=a}
+function _m(a){this.a=a}
+function ln(a){this.a=a}
+function Kn(a){this.a=a}
+function Nn(a){this.a=a}
+function On(a){this.a=a}
+function Un(a){this.a=a}
+function ho(a){this.a=a}
+function mo(a){this.a=a}
+function po(a){this.a=a}
+function ro(a){this.a=a}
+function to(a){this.a=a}
+function vo(a){this.a=a}
+function xo(a){this.a=a}
+function Bo(a){this.a=a}
+function Ho(a){this.a=a}
+function _o(a){this.a=a}
+function qp(a){this.a=a}
+function Up(a){this.a=a}
+function _p(a){this.b=a}
+function hq(a){this.a=a}
+function lq(a){this.a=a}
+function nq(a){this.a=a}
+function Wq(a){this.a=a}
+function Yq(a){this.a=a}
+function $q(a){this.a=a}
+function $r(a){this.a=a}
+function hr(a){this.a=a}
+function kr(a){this.a=a}
+function fs(a){this.a=a}
+function hs(a){this.a=a}
+function js(a){this.a=a}
+function Cs(a){this.a=a}
+function Ls(a){this.a=a}
+function Ts(a){this.a=a}
+function Vs(a){this.a=a}
+function Xs(a){this.a=a}
+function Zs(a){this.a=a}
+function _s(a){this.a=a}
+function ws(a){this.d=a}
+function at(a){this.a=a}
+function it(a){this.a=a}
+function Bt(a){this.a=a}
+function Kt(a){this.a=a}
+function Ot(a){this.a=a}
+function $t(a){this.a=a}
+function $v(a){this.a=a}
+function qv(a){this.a=a}
+function Wv(a){this.a=a}
+function au(a){this.a=a}
+function nu(a){this.a=a}
+function tu(a){this.a=a}
+function Ou(a){this.a=a}
+function Su(a){this.a=a}
+function cw(a){this.a=a}
+function ew(a){this.a=a}
+function gw(a){this.a=a}
+function lw(a){this.a=a}
+function dy(a){this.a=a}
+function fy(a){this.a=a}
+function sy(a){this.a=a}
+function wy(a){this.a=a}
+function Ay(a){this.a=a}
+function Cy(a){this.a=a}
+function Yy(a){this.a=a}
+function cy(a){this.b=a}
+function cz(a){this.a=a}
+function az(a){this.a=a}
+function gz(a){this.a=a}
+function oz(a){this.a=a}
+function qz(a){this.a=a}
+function sz(a){this.a=a}
+function uz(a){this.a=a}
+function wz(a){this.a=a}
+function Dz(a){this.a=a}
+function Fz(a){this.a=a}
+function Wz(a){this.a=a}
+function Zz(a){this.a=a}
+function fA(a){this.a=a}
+function LA(a){this.a=a}
+function PA(a){this.a=a}
+function RA(a){this.a=a}
+function hA(a){this.e=a}
+function Xt(a){this.c=a}
+function lB(a){this.a=a}
+function BB(a){this.a=a}
+function DB(a){this.a=a}
+function FB(a){this.a=a}
+function QB(a){this.a=a}
+function SB(a){this.a=a}
+function gC(a){this.a=a}
+function AC(a){this.a=a}
+function HD(a){this.a=a}
+function JD(a){this.a=a}
+function MD(a){this.a=a}
+function BE(a){this.a=a}
+function cH(a){this.a=a}
+function zF(a){this.b=a}
+function MF(a){this.c=a}
+function R(){this.a=xb()}
+function pj(){this.a=++oj}
+function _i(){hp();lp()}
+function hp(){hp=Wi;gp=[]}
+function Ni(a){return a.e}
+function dC(a){EA(a.a,a.b)}
+function et(a,b){pC(a.a,b)}
+function ax(a,b){tx(b,a)}
+function fx(a,b){sx(b,a)}
+function kx(a,b){Yw(b,a)}
+function vA(a,b){hv(b,a)}
+function Lu(a,b){b.hb(a)}
+function tD(b,a){b.log(a)}
+function uD(b,a){b.warn(a)}
+function nD(b,a){b.data=a}
+function rD(b,a){b.debug(a)}
+function sD(b,a){b.error(a)}
+function zp(a,b){a.push(b)}
+function zr(a){a.i||Ar(a.a)}
+function Yb(a){return a.B()}
+function Em(a){return jm(a)}
+function hc(a){gc();fc.D(a)}
+function ps(a){os(a)&&rs(a)}
+function ik(a){S=a;!!a&&Jb()}
+function Iz(){Iz=Wi;Hz=Uz()}
+function pb(){pb=Wi;ob=new I}
+function kb(){ab.call(this)}
+function SD(){ab.call(this)}
+function QD(){kb.call(this)}
+function IE(){kb.call(this)}
+function TF(){kb.call(this)}
+function Wl(a,b,c){Rl(a,c,b)}
+function FA(a,b,c){a.Pb(c,b)}
+function Cm(a,b,c){a.set(b,c)}
+function Z(a,b){a.e=b;W(a,b)}
+function wj(a,b){a.f=b;ck=!b}
+function Px(a,b){b.forEach(a)}
+function Xl(a,b){a.a.add(b.d)}
+function hD(b,a){b.display=a}
+function Wk(a){Nk();this.a=a}
+function $F(a){XF();this.a=a}
+function IA(a){HA.call(this,a)}
+function iB(a){HA.call(this,a)}
+function yB(a){HA.call(this,a)}
+function OD(a){lb.call(this,a)}
+function PD(a){OD.call(this,a)}
+function zE(a){lb.call(this,a)}
+function AE(a){lb.call(this,a)}
+function JE(a){nb.call(this,a)}
+function KE(a){lb.call(this,a)}
+function ME(a){zE.call(this,a)}
+function iF(){MD.call(this,'')}
+function jF(){MD.call(this,'')}
+function lF(a){OD.call(this,a)}
+function rF(a){lb.call(this,a)}
+function XD(a){return lH(a),a}
+function wE(a){return lH(a),a}
+function Q(a){return xb()-a.a}
+function Wc(a,b){return $c(a,b)}
+function FD(b,a){return a in b}
+function xc(a,b){return iE(a,b)}
+function xn(a,b){a.d?zn(b):Xk()}
+function VG(a,b,c){b.fb(oF(c))}
+function yu(a,b){a.c.forEach(b)}
+function yz(a){mx(a.b,a.a,a.c)}
+function aE(a){_D(a);return a.i}
+function Tq(a,b){return a.a>b.a}
+function oF(a){return Ic(a,5).e}
+function ED(a){return Object(a)}
+function Qb(){Qb=Wi;Pb=new Ao}
+function Ft(){Ft=Wi;Et=new Mt}
+function mA(){mA=Wi;lA=new NA}
+function nF(){nF=Wi;mF=new LD}
+function Db(){Db=Wi;!!(gc(),fc)}
+function Qi(){Oi==null&&(Oi=[])}
+function oG(a,b,c){b.fb(a.a[c])}
+function Jx(a,b,c){OB(zx(a,c,b))}
+function dx(a,b){$B(new yy(b,a))}
+function ex(a,b){$B(new Ey(b,a))}
+function xm(a,b){$B(new Zm(b,a))}
+function Uk(a,b){++Mk;b.bb(a,Jk)}
+function MB(a,b){a.e||a.c.add(b)}
+function PG(a,b){LG(a);a.a.gc(b)}
+function FG(a,b){Ic(a,104).$b(b)}
+function dG(a,b){while(a.hc(b));}
+function Mx(a,b){return Dl(a.b,b)}
+function Ox(a,b){return Cl(a.b,b)}
+function ry(a,b){return Lx(a.a,b)}
+function nA(a,b){return BA(a.a,b)}
+function _A(a,b){return BA(a.a,b)}
+function nB(a,b){return BA(a.a,b)}
+function ix(a,b){return Kw(b.a,a)}
+function aj(b,a){return b.exec(a)}
+function Ub(a){return !!a.b||!!a.g}
+function qA(a){GA(a.a);return a.h}
+function uA(a){GA(a.a);return a.c}
+function xw(b,a){qw();delete b[a]}
+function Ol(a,b){return Nc(a.b[b])}
+function ol(a,b){this.a=a;this.b=b}
+function Kl(a,b){this.a=a;this.b=b}
+function Ml(a,b){this.a=a;this.b=b}
+function _l(a,b){this.a=a;this.b=b}
+function bm(a,b){this.a=a;this.b=b}
+function Rm(a,b){this.a=a;this.b=b}
+function Tm(a,b){this.a=a;this.b=b}
+function Vm(a,b){this.a=a;this.b=b}
+function Xm(a,b){this.a=a;this.b=b}
+function Zm(a,b){this.a=a;this.b=b}
+function Rn(a,b){this.a=a;this.b=b}
+function Wn(a,b){this.b=a;this.a=b}
+function Wj(a,b){this.b=a;this.a=b}
+function Nm(a,b){this.b=a;this.a=b}
+function Yn(a,b){this.b=a;this.a=b}
+function xr(a,b){this.b=a;this.a=b}
+function Lo(a,b){this.b=a;this.c=b}
+function bs(a,b){this.a=a;this.b=b}
+function ds(a,b){this.a=a;this.b=b}
+function ys(a,b){this.a=a;this.b=b}
+function pu(a,b){this.a=a;this.b=b}
+function ru(a,b){this.a=a;this.b=b}
+function Mu(a,b){this.a=a;this.b=b}
+function Qu(a,b){this.a=a;this.b=b}
+function Uu(a,b){this.a=a;this.b=b}
+function Yv(a,b){this.a=a;this.b=b}
+function bu(a,b){this.b=a;this.a=b}
+function hy(a,b){this.b=a;this.a=b}
+function jy(a,b){this.b=a;this.a=b}
+function py(a,b){this.b=a;this.a=b}
+function yy(a,b){this.b=a;this.a=b}
+function Ey(a,b){this.b=a;this.a=b}
+function My(a,b){this.a=a;this.b=b}
+function Qy(a,b){this.a=a;this.b=b}
+function Sy(a,b){this.a=a;this.b=b}
+function iz(a,b){this.b=a;this.a=b}
+function kz(a,b){this.a=a;this.b=b}
+function Bz(a,b){this.a=a;this.b=b}
+function Pz(a,b){this.a=a;this.b=b}
+function Rz(a,b){this.b=a;this.a=b}
+function Vo(a,b){Lo.call(this,a,b)}
+function fq(a,b){Lo.call(this,a,b)}
+function sE(){lb.call(this,null)}
+function Ob(){yb!=0&&(yb=0);Cb=-1}
+function fu(){this.a=new $wnd.Map}
+function tC(){this.c=new $wnd.Map}
+function eC(a,b){this.a=a;this.b=b}
+function hC(a,b){this.a=a;this.b=b}
+function TA(a,b){this.a=a;this.b=b}
+function HB(a,b){this.a=a;this.b=b}
+function EG(a,b){this.a=a;this.b=b}
+function YG(a,b){this.a=a;this.b=b}
+function $A(a,b){this.d=a;this.e=b}
+function dH(a,b){this.b=a;this.a=b}
+function SC(a,b){Lo.call(this,a,b)}
+function $C(a,b){Lo.call(this,a,b)}
+function CG(a,b){Lo.call(this,a,b)}
+function Bq(a,b){tq(a,(Sq(),Qq),b)}
+function vt(a,b,c,d){ut(a,b.d,c,d)}
+function cx(a,b,c){qx(a,b);Tw(c.e)}
+function fH(a,b,c){a.splice(b,0,c)}
+function $o(a,b){return Yo(b,Zo(a))}
+function Yc(a){return typeof a===CH}
+function xE(a){return ad((lH(a),a))}
+function _E(a,b){return a.substr(b)}
+function Kz(a,b){PB(b);Hz.delete(a)}
+function wD(b,a){b.clearTimeout(a)}
+function Nb(a){$wnd.clearTimeout(a)}
+function gj(a){$wnd.clearTimeout(a)}
+function vD(b,a){b.clearInterval(a)}
+function Tz(a){a.length=0;return a}
+function fF(a,b){a.a+=''+b;return a}
+function gF(a,b){a.a+=''+b;return a}
+function hF(a,b){a.a+=''+b;return a}
+function bd(a){oH(a==null);return a}
+function TG(a,b,c){FG(b,c);return b}
+function Iq(a,b){tq(a,(Sq(),Rq),b.a)}
+function Vl(a,b){return a.a.has(b.d)}
+function H(a,b){return _c(a)===_c(b)}
+function UE(a,b){return a.indexOf(b)}
+function CD(a){return a&&a.valueOf()}
+function DD(a){return a&&a.valueOf()}
+function VF(a){return a!=null?O(a):0}
+function _c(a){return a==null?null:a}
+function XF(){XF=Wi;WF=new $F(null)}
+function Jv(){Jv=Wi;Iv=new $wnd.Map}
+function qw(){qw=Wi;pw=new $wnd.Map}
+function WD(){WD=Wi;UD=false;VD=true}
+function fj(a){$wnd.clearInterval(a)}
+function fk(a){ck&&sD($wnd.console,a)}
+function dk(a){ck&&rD($wnd.console,a)}
+function jk(a){ck&&tD($wnd.console,a)}
+function kk(a){ck&&uD($wnd.console,a)}
+function $n(a){ck&&sD($wnd.console,a)}
+function U(a){a.h=zc(fi,FH,30,0,0,1)}
+function UG(a,b,c){$G(a,bH(b,a.a,c))}
+function Kx(a,b,c){return zx(a,c.a,b)}
+function Du(a,b){return a.h.delete(b)}
+function Fu(a,b){return a.b.delete(b)}
+function EA(a,b){return a.a.delete(b)}
+function bH(a,b,c){return TG(a.a,b,c)}
+function Uz(){return new $wnd.WeakMap}
+function ht(a){this.a=new tC;this.c=a}
+function fr(a){this.a=a;ej.call(this)}
+function Wr(a){this.a=a;ej.call(this)}
+function Js(a){this.a=a;ej.call(this)}
+function ab(){U(this);V(this);this.w()}
+function vH(){vH=Wi;sH=new I;uH=new I}
+function hx(a,b){var c;c=Kw(b,a);OB(c)}
+function Nx(a,b){return pm(a.b.root,b)}
+function eF(a){return a==null?IH:Zi(a)}
+function Cr(a){return BI in a?a[BI]:-1}
+function Kr(a){zo((Qb(),Pb),new js(a))}
+function Rk(a){zo((Qb(),Pb),new ul(a))}
+function Rx(a){zo((Qb(),Pb),new wz(a))}
+function pp(a){zo((Qb(),Pb),new qp(a))}
+function Ep(a){zo((Qb(),Pb),new Up(a))}
+function xq(a){!!a.b&&Gq(a,(Sq(),Pq))}
+function Lq(a){!!a.b&&Gq(a,(Sq(),Rq))}
+function kF(a){MD.call(this,(lH(a),a))}
+function GF(){this.a=zc(di,FH,1,0,5,1)}
+function jD(a,b,c,d){return bD(a,b,c,d)}
+function Sc(a,b){return a!=null&&Hc(a,b)}
+function ZF(a,b){return a.a!=null?a.a:b}
+function rH(a){return a.$H||(a.$H=++qH)}
+function dn(a){return ''+en(bn.kb()-a,3)}
+function kD(a,b){return a.appendChild(b)}
+function lD(b,a){return b.appendChild(a)}
+function VE(a,b,c){return a.indexOf(b,c)}
+function WE(a,b){return a.lastIndexOf(b)}
+function bB(a,b){GA(a.a);a.c.forEach(b)}
+function oB(a,b){GA(a.a);a.b.forEach(b)}
+function NB(a){if(a.d||a.e){return}LB(a)}
+function _D(a){if(a.i!=null){return}mE(a)}
+function iH(a){if(!a){throw Ni(new QD)}}
+function jH(a){if(!a){throw Ni(new TF)}}
+function oH(a){if(!a){throw Ni(new sE)}}
+function Gs(a){if(a.a){bj(a.a);a.a=null}}
+function Es(a,b){b.a.b==(Uo(),To)&&Gs(a)}
+function VA(a,b){hA.call(this,a);this.a=b}
+function SG(a,b){NG.call(this,a);this.a=b}
+function Yk(a,b,c){Nk();return a.set(c,b)}
+function aF(a,b,c){return a.substr(b,c-b)}
+function iD(d,a,b,c){d.setProperty(a,b,c)}
+function kc(a){gc();return parseInt(a)||-1}
+function Uc(a){return typeof a==='number'}
+function Xc(a){return typeof a==='string'}
+function Tc(a){return typeof a==='boolean'}
+function Ko(a){return a.b!=null?a.b:''+a.c}
+function tb(a){return a==null?null:a.name}
+function oD(b,a){return b.createElement(a)}
+function GA(a){var b;b=WB;!!b&&JB(b,a.b)}
+function ar(a,b){b.a.b==(Uo(),To)&&dr(a,-1)}
+function ao(a,b){bo(a,b,Ic(pk(a.a,td),7).j)}
+function YD(a,b){return lH(a),_c(a)===_c(b)}
+function Jc(a){oH(a==null||Tc(a));return a}
+function Kc(a){oH(a==null||Uc(a));return a}
+function Lc(a){oH(a==null||Yc(a));return a}
+function Pc(a){oH(a==null||Xc(a));return a}
+function $B(a){XB==null&&(XB=[]);XB.push(a)}
+function _B(a){ZB==null&&(ZB=[]);ZB.push(a)}
+function Zk(a){Nk();Mk==0?a.C():Lk.push(a)}
+function sb(a){return a==null?null:a.message}
+function $c(a,b){return a&&b&&a instanceof b}
+function SE(a,b){return lH(a),_c(a)===_c(b)}
+function kj(a,b){return $wnd.setTimeout(a,b)}
+function jj(a,b){return $wnd.setInterval(a,b)}
+function XE(a,b,c){return a.lastIndexOf(b,c)}
+function Eb(a,b,c){return a.apply(b,c);var d}
+function Xb(a,b){a.b=Zb(a.b,[b,false]);Vb(a)}
+function Jr(a,b){gu(Ic(pk(a.i,Wf),84),b[DI])}
+function nr(a,b,c){a.fb(FE(rA(Ic(c.e,16),b)))}
+function Ss(a,b,c){a.set(c,(GA(b.a),Pc(b.h)))}
+function Uq(a,b,c){Lo.call(this,a,b);this.a=c}
+function ly(a,b,c){this.c=a;this.b=b;this.a=c}
+function ny(a,b,c){this.b=a;this.c=b;this.a=c}
+function nw(a,b,c){this.b=a;this.a=b;this.c=c}
+function uy(a,b,c){this.a=a;this.b=b;this.c=c}
+function Gy(a,b,c){this.a=a;this.b=b;this.c=c}
+function Iy(a,b,c){this.a=a;this.b=b;this.c=c}
+function Ky(a,b,c){this.a=a;this.b=b;this.c=c}
+function Wy(a,b,c){this.c=a;this.b=b;this.a=c}
+function Wp(a,b,c){this.a=a;this.c=b;this.b=c}
+function mz(a,b,c){this.b=a;this.c=b;this.a=c}
+function ez(a,b,c){this.b=a;this.a=b;this.c=c}
+function zz(a,b,c){this.b=a;this.a=b;this.c=c}
+function Mv(a,b,c){this.c=a;this.d=b;this.j=c}
+function HA(a){this.a=new $wnd.Set;this.b=a}
+function Ql(){this.a=new $wnd.Map;this.b=[]}
+function Fo(){this.b=(Uo(),Ro);this.a=new tC}
+function Nk(){Nk=Wi;Lk=[];Jk=new al;Kk=new fl}
+function HE(){HE=Wi;GE=zc($h,FH,26,256,0,1)}
+function Sv(a){a.c?vD($wnd,a.d):wD($wnd,a.d)}
+function wu(a,b){a.b.add(b);return new Uu(a,b)}
+function xu(a,b){a.h.add(b);return new Qu(a,b)}
+function xs(a,b){$wnd.navigator.sendBeacon(a,b)}
+function mD(c,a,b){return c.insertBefore(a,b)}
+function gD(b,a){return b.getPropertyValue(a)}
+function hj(a,b){return zH(function(){a.H(b)})}
+function iw(a,b){return jw(new lw(a),b,19,true)}
+function CF(a,b){a.a[a.a.length]=b;return true}
+function DF(a,b){kH(b,a.a.length);return a.a[b]}
+function Ic(a,b){oH(a==null||Hc(a,b));return a}
+function Oc(a,b){oH(a==null||$c(a,b));return a}
+function zD(a){if(a==null){return 0}return +a}
+function gE(a,b){var c;c=dE(a,b);c.e=2;return c}
+function As(a,b){var c;c=ad(wE(Kc(b.a)));Fs(a,c)}
+function tk(a,b,c){sk(a,b,c.ab());a.b.set(b,c)}
+function $l(a,b,c){return a.set(c,(GA(b.a),b.h))}
+function kp(a){return $wnd.Vaadin.Flow.getApp(a)}
+function PB(a){a.e=true;LB(a);a.c.clear();KB(a)}
+function xA(a,b){a.d=true;oA(a,b);_B(new PA(a))}
+function mC(a,b){a.a==null&&(a.a=[]);a.a.push(b)}
+function oC(a,b,c,d){var e;e=qC(a,b,c);e.push(d)}
+function eD(a,b,c,d){a.removeEventListener(b,c,d)}
+function fD(b,a){return b.getPropertyPriority(a)}
+function Bc(a){return Array.isArray(a)&&a.kc===$i}
+function Rc(a){return !Array.isArray(a)&&a.kc===$i}
+function Vc(a){return a!=null&&Zc(a)&&!(a.kc===$i)}
+function RF(a){return new SG(null,QF(a,a.length))}
+function Zc(a){return typeof a===AH||typeof a===CH}
+function lj(a){a.onreadystatechange=function(){}}
+function lb(a){U(this);this.g=a;V(this);this.w()}
+function Jt(a){Ft();this.c=[];this.a=Et;this.d=a}
+function Ut(a,b){this.a=a;this.b=b;ej.call(this)}
+function Nq(a,b){this.a=a;this.b=b;ej.call(this)}
+function Yu(a,b){var c;c=b;return Ic(a.a.get(c),6)}
+function qk(a,b,c){a.a.delete(c);a.a.set(c,b.ab())}
+function zm(a,b,c){return a.push(nA(c,new Xm(c,b)))}
+function QF(a,b){return eG(b,a.length),new pG(a,b)}
+function Zb(a,b){!a&&(a=[]);a[a.length]=b;return a}
+function dE(a,b){var c;c=new bE;c.f=a;c.d=b;return c}
+function eE(a,b,c){var d;d=dE(a,b);qE(c,d);return d}
+function Tw(a){var b;b=a.a;Gu(a,null);Gu(a,b);Gv(a)}
+function Vk(a){++Mk;xn(Ic(pk(a.a,te),58),new ml)}
+function bG(a){XF();return a==null?WF:new $F(lH(a))}
+function Jb(){Db();if(zb){return}zb=true;Kb(false)}
+function yH(){if(tH==256){sH=uH;uH=new I;tH=0}++tH}
+function lH(a){if(a==null){throw Ni(new IE)}return a}
+function Mc(a){oH(a==null||Array.isArray(a));return a}
+function Cc(a,b,c){iH(c==null||wc(a,c));return a[b]=c}
+function XA(a,b,c){hA.call(this,a);this.b=b;this.a=c}
+function Zl(a){this.a=new $wnd.Set;this.b=[];this.c=a}
+function Rw(a){var b;b=new $wnd.Map;a.push(b);return b}
+function LG(a){if(!a.b){MG(a);a.c=true}else{LG(a.b)}}
+function jG(a,b){lH(b);while(a.c<a.d){oG(a,b,a.c++)}}
+function QG(a,b){MG(a);return new SG(a,new WG(b,a.a))}
+function mr(a,b,c,d){var e;e=pB(a,b);nA(e,new xr(c,d))}
+function JB(a,b){var c;if(!a.e){c=b.Ob(a);a.b.push(c)}}
+function RE(a,b){nH(b,a.length);return a.charCodeAt(b)}
+function en(a,b){return +(Math.round(a+'e+'+b)+'e-'+b)}
+function Do(a,b){return nC(a.a,(!Go&&(Go=new pj),Go),b)}
+function ct(a,b){return nC(a.a,(!nt&&(nt=new pj),nt),b)}
+function UF(a,b){return _c(a)===_c(b)||a!=null&&K(a,b)}
+function Ux(a){return YD((WD(),UD),qA(pB(Bu(a,0),QI)))}
+function rk(a){a.b.forEach(Xi(ln.prototype.bb,ln,[a]))}
+function ek(a){$wnd.setTimeout(function(){a.I()},0)}
+function Lb(a){$wnd.setTimeout(function(){throw a},0)}
+function NG(a){if(!a){this.b=null;new GF}else{this.b=a}}
+function pD(a,b,c,d){this.b=a;this.c=b;this.a=c;this.d=d}
+function _r(a,b,c,d){this.a=a;this.d=b;this.b=c;this.c=d}
+function pG(a,b){this.c=0;this.d=b;this.b=17488;this.a=a}
+function iG(a,b){this.d=a;this.c=(b&64)!=0?b|16384:b}
+function Hs(a){this.b=a;Do(Ic(pk(a,Ge),12),new Ls(this))}
+function sq(a,b){co(Ic(pk(a.c,Be),22),'',b,'',null,null)}
+function bo(a,b,c){co(a,c.caption,c.message,b,c.url,null)}
+function ev(a,b,c,d){_u(a,b)&&vt(Ic(pk(a.c,Hf),33),b,c,d)}
+function yt(a,b){var c;c=Ic(pk(a.a,Lf),35);Gt(c,b);It(c)}
+function bC(a,b){var c;c=WB;WB=a;try{b.C()}finally{WB=c}}
+function $(a,b){var c;c=aE(a.ic);return b==null?c:c+': '+b}
+function vC(a,b,c){this.a=a;this.d=b;this.c=null;this.b=c}
+function V(a){if(a.j){a.e!==GH&&a.w();a.h=null}return a}
+function Nc(a){oH(a==null||Zc(a)&&!(a.kc===$i));return a}
+function qm(a){var b;b=a.f;while(!!b&&!b.a){b=b.f}return b}
+function En(a,b,c){this.b=a;this.d=b;this.c=c;this.a=new R}
+function Fs(a,b){Gs(a);if(b>=0){a.a=new Js(a);dj(a.a,b)}}
+function fo(a){PG(RF(Ic(pk(a.a,td),7).c),new jo);a.b=false}
+function or(a){ak('applyDefaultTheme',(WD(),a?true:false))}
+function cA(a){if(!aA){return a}return $wnd.Polymer.dom(a)}
+function Wo(){Uo();return Dc(xc(Fe,1),FH,61,0,[Ro,So,To])}
+function Vq(){Sq();return Dc(xc(Te,1),FH,64,0,[Pq,Qq,Rq])}
+function _C(){ZC();return Dc(xc(Dh,1),FH,44,0,[XC,WC,YC])}
+function DG(){BG();return Dc(xc(zi,1),FH,49,0,[yG,zG,AG])}
+function OG(a,b){var c;return RG(a,new GF,(c=new cH(b),c))}
+function mH(a,b){if(a<0||a>b){throw Ni(new OD(AJ+a+BJ+b))}}
+function dD(a,b){Rc(a)?a.T(b):(a.handleEvent(b),undefined)}
+function Eu(a,b){_c(b.U(a))===_c((WD(),VD))&&a.b.delete(b)}
+function aw(a,b){Yz(b).forEach(Xi(ew.prototype.fb,ew,[a]))}
+function Dm(a,b,c,d,e){a.splice.apply(a,[b,c,d].concat(e))}
+function Gn(a,b,c){this.a=a;this.c=b;this.b=c;ej.call(this)}
+function In(a,b,c){this.a=a;this.c=b;this.b=c;ej.call(this)}
+function RD(a,b){U(this);this.f=b;this.g=a;V(this);this.w()}
+function yD(c,a,b){return c.setTimeout(zH(a.Tb).bind(a),b)}
+function xD(c,a,b){return c.setInterval(zH(a.Tb).bind(a),b)}
+function Qc(a){return a.ic||Array.isArray(a)&&xc(ed,1)||ed}
+function Jp(a){$wnd.vaadinPush.atmosphere.unsubscribeUrl(a)}
+function Ar(a){a&&a.afterServerUpdate&&a.afterServerUpdate()}
+function kE(a){if(a.Zb()){return null}var b=a.h;return Ti[b]}
+function Ht(a){a.a=Et;if(!a.b){return}rs(Ic(pk(a.d,rf),15))}
+function gm(a,b){a.updateComplete.then(zH(function(){b.I()}))}
+function lx(a,b,c){return a.set(c,pA(pB(Bu(b.e,1),c),b.b[c]))}
+function _z(a,b,c,d){return a.splice.apply(a,[b,c].concat(d))}
+function Zv(a,b){Yz(b).forEach(Xi(cw.prototype.fb,cw,[a.a]))}
+function oA(a,b){if(!a.b&&a.c&&UF(b,a.h)){return}yA(a,b,true)}
+function kH(a,b){if(a<0||a>=b){throw Ni(new OD(AJ+a+BJ+b))}}
+function nH(a,b){if(a<0||a>=b){throw Ni(new lF(AJ+a+BJ+b))}}
+function iE(a,b){var c=a.a=a.a||[];return c[b]||(c[b]=a.Ub(b))}
+function cC(a){this.a=a;this.b=[];this.c=new $wnd.Set;LB(this)}
+function cp(a){a?($wnd.location=a):$wnd.location.reload(false)}
+function Zp(a,b,c){return aF(a.b,b,$wnd.Math.min(a.b.length,c))}
+function xC(a,b,c,d){return zC(new $wnd.XMLHttpRequest,a,b,c,d)}
+function gq(){eq();return Dc(xc(Me,1),FH,52,0,[bq,aq,dq,cq])}
+function TC(){RC();return Dc(xc(Ch,1),FH,45,0,[QC,OC,PC,NC])}
+function EC(a){if(a.length>2){IC(a[0],'OS major');IC(a[1],oJ)}}
+function wA(a){if(a.c){a.d=true;yA(a,null,false);_B(new RA(a))}}
+function LF(a){jH(a.a<a.c.a.length);a.b=a.a++;return a.c.a[a.b]}
+function Yi(a){function b(){}
+;b.prototype=a||{};return new b}
+function fE(a,b,c,d){var e;e=dE(a,b);qE(c,e);e.e=d?8:0;return e}
+function sm(a,b,c){var d;d=[];c!=null&&d.push(c);return km(a,b,d)}
+function yA(a,b,c){var d;d=a.h;a.c=c;a.h=b;DA(a.a,new XA(a,d,b))}
+function gu(a,b){var c,d;for(c=0;c<b.length;c++){d=b[c];iu(a,d)}}
+function Jl(a,b){var c;if(b.length!=0){c=new eA(b);a.e.set(Vg,c)}}
+function gc(){gc=Wi;var a,b;b=!mc();a=new uc;fc=b?new nc:a}
+function zo(a,b){++a.a;a.b=Zb(a.b,[b,false]);Vb(a);Xb(a,new Bo(a))}
+function eB(a,b){$A.call(this,a,b);this.c=[];this.a=new iB(this)}
+function rb(a){pb();nb.call(this,a);this.a='';this.b=a;this.a=''}
+function Oy(a,b,c,d,e){this.b=a;this.e=b;this.c=c;this.d=d;this.a=e}
+function Qk(a,b,c,d){Ok(a,d,c).forEach(Xi(ql.prototype.bb,ql,[b]))}
+function qB(a){var b;b=[];oB(a,Xi(DB.prototype.bb,DB,[b]));return b}
+function YF(a,b){lH(b);if(a.a!=null){return bG(ry(b,a.a))}return WF}
+function cb(b){if(!('stack' in b)){try{throw b}catch(a){}}return b}
+function yw(a){qw();var b;b=a[XI];if(!b){b={};vw(b);a[XI]=b}return b}
+function Pl(a,b){var c;c=Nc(a.b[b]);if(c){a.b[b]=null;a.a.delete(c)}}
+function mj(c,a){var b=c;c.onreadystatechange=zH(function(){a.J(b)})}
+function zn(a){$wnd.HTMLImports.whenReady(zH(function(){a.I()}))}
+function OB(a){if(a.d&&!a.e){try{bC(a,new SB(a))}finally{a.d=false}}}
+function bj(a){if(!a.f){return}++a.d;a.e?fj(a.f.a):gj(a.f.a);a.f=null}
+function TD(a){RD.call(this,a==null?IH:Zi(a),Sc(a,5)?Ic(a,5):null)}
+function KB(a){while(a.b.length!=0){Ic(a.b.splice(0,1)[0],46).Eb()}}
+function sB(a,b,c){GA(b.a);b.c&&(a[c]=ZA((GA(b.a),b.h)),undefined)}
+function xG(a,b,c,d){lH(a);lH(b);lH(c);lH(d);return new EG(b,new vG)}
+function $u(a,b){var c;c=av(b);if(!c||!b.f){return c}return $u(a,b.f)}
+function Ul(a,b){if(Vl(a,b.e.e)){a.b.push(b);return true}return false}
+function ZA(a){var b;if(Sc(a,6)){b=Ic(a,6);return zu(b)}else{return a}}
+function bp(a){var b;b=$doc.createElement('a');b.href=a;return b.href}
+function Am(a){return $wnd.customElements&&a.localName.indexOf('-')>-1}
+function Lp(){return $wnd.vaadinPush&&$wnd.vaadinPush.atmosphere}
+function op(a){var b=zH(pp);$wnd.Vaadin.Flow.registerWidgetset(a,b)}
+function ZE(a,b,c){var d;c=dF(c);d=new RegExp(b);return a.replace(d,c)}
+function io(a,b){var c;c=b.keyCode;if(c==27){b.preventDefault();cp(a)}}
+function cB(a,b){var c;c=a.c.splice(0,b);DA(a.a,new jA(a,0,c,[],false))}
+function sG(a,b){!a.a?(a.a=new kF(a.d)):hF(a.a,a.b);fF(a.a,b);return a}
+function WG(a,b){iG.call(this,b.fc(),b.ec()&-6);lH(a);this.a=a;this.b=b}
+function CA(a,b){if(!b){debugger;throw Ni(new SD)}return BA(a,a.Qb(b))}
+function cu(a,b){if(b==null){debugger;throw Ni(new SD)}return a.a.get(b)}
+function du(a,b){if(b==null){debugger;throw Ni(new SD)}return a.a.has(b)}
+function YE(a,b){b=dF(b);return a.replace(new RegExp('[^0-9].*','g'),b)}
+function ym(a,b,c){var d;d=c.a;a.push(nA(d,new Tm(d,b)));$B(new Nm(d,b))}
+function xB(a,b,c,d){var e;GA(c.a);if(c.c){e=Em((GA(c.a),c.h));b[d]=e}}
+function mu(a){Ic(pk(a.a,Ge),12).b==(Uo(),To)||Eo(Ic(pk(a.a,Ge),12),To)}
+function vq(a,b){fk('Heartbeat exception: '+b.v());tq(a,(Sq(),Pq),null)}
+function bx(a,b){var c;c=b.f;Yx(Ic(pk(b.e.e.g.c,td),7),a,c,(GA(b.a),b.h))}
+function Bs(a,b){var c,d;c=Bu(a,8);d=pB(c,'pollInterval');nA(d,new Cs(b))}
+function Yz(a){var b;b=[];a.forEach(Xi(Zz.prototype.bb,Zz,[b]));return b}
+function Gb(b){Db();return function(){return Hb(b,this,arguments);var a}}
+function xb(){if(Date.now){return Date.now()}return (new Date).getTime()}
+function rB(a,b){if(!a.b.has(b)){return false}return uA(Ic(a.b.get(b),16))}
+function kG(a,b){lH(b);if(a.c<a.d){oG(a,b,a.c++);return true}return false}
+function mb(a){U(this);this.g=!a?null:$(a,a.v());this.f=a;V(this);this.w()}
+function nb(a){U(this);V(this);this.e=a;W(this,a);this.g=a==null?IH:Zi(a)}
+function tG(){this.b=', ';this.d='[';this.e=']';this.c=this.d+(''+this.e)}
+function Pr(a){this.j=new $wnd.Set;this.g=[];this.c=new Wr(this);this.i=a}
+function tB(a,b){$A.call(this,a,b);this.b=new $wnd.Map;this.a=new yB(this)}
+function Qs(a){this.a=a;nA(pB(Bu(Ic(pk(this.a,_f),9).e,5),oI),new Ts(this))}
+function VC(){VC=Wi;UC=Mo((RC(),Dc(xc(Ch,1),FH,45,0,[QC,OC,PC,NC])))}
+function ad(a){return Math.max(Math.min(a,2147483647),-2147483648)|0}
+function M(a){return Xc(a)?ii:Uc(a)?Th:Tc(a)?Qh:Rc(a)?a.ic:Bc(a)?a.ic:Qc(a)}
+function Lx(a,b){return WD(),_c(a)===_c(b)||a!=null&&K(a,b)||a==b?false:true}
+function zc(a,b,c,d,e,f){var g;g=Ac(e,d);e!=10&&Dc(xc(a,f),b,c,e,g);return g}
+function RG(a,b,c){var d;LG(a);d=new _G;d.a=b;a.a.gc(new dH(d,c));return d.a}
+function kn(a,b,c){a.addReadyCallback&&a.addReadyCallback(b,zH(c.I.bind(c)))}
+function ep(a,b,c){c==null?cA(a).removeAttribute(b):cA(a).setAttribute(b,c)}
+function um(a,b){$wnd.customElements.whenDefined(a).then(function(){b.I()})}
+function mp(a){hp();!$wnd.WebComponents||$wnd.WebComponents.ready?jp(a):ip(a)}
+function eA(a){this.a=new $wnd.Set;a.forEach(Xi(fA.prototype.fb,fA,[this.a]))}
+function ox(a){var b;b=cA(a);while(b.firstChild){b.removeChild(b.firstChild)}}
+function Rs(a){var b;if(a==null){return false}b=Pc(a);return !SE('DISABLED',b)}
+function uv(a,b){var c,d,e;e=ad(DD(a[YI]));d=Bu(b,e);c=a['key'];return pB(d,c)}
+function Qo(a,b){var c;lH(b);c=a[':'+b];hH(!!c,Dc(xc(di,1),FH,1,5,[b]));return c}
+function EF(a,b,c){for(;c<a.a.length;++c){if(UF(b,a.a[c])){return c}}return -1}
+function Xo(a,b,c){SE(c.substr(0,a.length),a)&&(c=b+(''+_E(c,a.length)));return c}
+function Tx(a){var b;b=Ic(a.e.get(ig),76);!!b&&(!!b.a&&yz(b.a),b.b.e.delete(ig))}
+function Cu(a,b,c,d){var e;e=c.Sb();!!e&&(b[Xu(a.g,ad((lH(d),d)))]=e,undefined)}
+function dB(a,b,c,d){var e,f;e=d;f=_z(a.c,b,c,e);DA(a.a,new jA(a,b,f,d,false))}
+function jx(a,b,c){var d,e;e=(GA(a.a),a.c);d=b.d.has(c);e!=d&&(e?Dw(c,b):px(c,b))}
+function Dv(){var a;Dv=Wi;Cv=(a=[],a.push(new xx),a.push(new Lz),a);Bv=new Hv}
+function Vz(a){var b;b=new $wnd.Set;a.forEach(Xi(Wz.prototype.fb,Wz,[b]));return b}
+function Ir(a){var b;b=a['meta'];if(!b||!('async' in b)){return true}return false}
+function Ap(a){switch(a.f.c){case 0:case 1:return true;default:return false;}}
+function sp(){if(Lp()){return $wnd.vaadinPush.atmosphere.version}else{return null}}
+function gH(a,b){return yc(b)!=10&&Dc(M(b),b.jc,b.__elementTypeId$,yc(b),a),a}
+function yc(a){return a.__elementTypeCategory$==null?10:a.__elementTypeCategory$}
+function bk(a){$wnd.Vaadin.connectionState&&($wnd.Vaadin.connectionState.state=a)}
+function kv(a){this.a=new $wnd.Map;this.e=new Iu(1,this);this.c=a;dv(this,this.e)}
+function ZC(){ZC=Wi;XC=new $C('INLINE',0);WC=new $C('EAGER',1);YC=new $C('LAZY',2)}
+function hH(a,b){if(!a){throw Ni(new zE(pH('Enum constant undefined: %s',b)))}}
+function qE(a,b){var c;if(!a){return}b.h=a;var d=kE(b);if(!d){Ti[a]=[b];return}d.ic=b}
+function LC(a,b){var c,d;d=a.substr(b);c=d.indexOf(' ');c==-1&&(c=d.length);return c}
+function BA(a,b){var c,d;a.a.add(b);d=new eC(a,b);c=WB;!!c&&MB(c,new gC(d));return d}
+function Ps(a,b){var c,d;d=Rs(b.b);c=Rs(b.a);!d&&c?$B(new Vs(a)):d&&!c&&$B(new Xs(a))}
+function Rb(a){var b,c;if(a.c){c=null;do{b=a.c;a.c=null;c=$b(b,c)}while(a.c);a.c=c}}
+function Sb(a){var b,c;if(a.d){c=null;do{b=a.d;a.d=null;c=$b(b,c)}while(a.d);a.d=c}}
+function hk(a){var b;b=S;T(new nk(b));if(Sc(a,32)){gk(Ic(a,32).A())}else{throw Ni(a)}}
+function aB(a){var b;a.b=true;b=a.c.splice(0,a.c.length);DA(a.a,new jA(a,0,b,[],true))}
+function Pi(){Qi();var a=Oi;for(var b=0;b<arguments.length;b++){a.push(arguments[b])}}
+function Xi(a,b,c){var d=function(){return a.apply(d,arguments)};b.apply(d,c);return d}
+function jc(a){var b=/function(?:\s+([\w$]+))?\s*\(/;var c=b.exec(a);return c&&c[1]||MH}
+function ip(a){var b=function(){jp(a)};$wnd.addEventListener('WebComponentsReady',zH(b))}
+function Qt(a){return aD(aD(Ic(pk(a.a,td),7).h,'v-r=uidl'),sI+(''+Ic(pk(a.a,td),7).k))}
+function Gl(a,b){return !!(a[aI]&&a[aI][bI]&&a[aI][bI][b])&&typeof a[aI][bI][b][cI]!=KH}
+function Si(a,b){typeof window===AH&&typeof window['$gwt']===AH&&(window['$gwt'][a]=b)}
+function ak(a,b){$wnd.Vaadin.connectionIndicator&&($wnd.Vaadin.connectionIndicator[a]=b)}
+function by(a,b,c){this.c=new $wnd.Map;this.d=new $wnd.Map;this.e=a;this.b=b;this.a=c}
+function wC(a,b){var c;c=new $wnd.XMLHttpRequest;c.withCredentials=true;return yC(c,a,b)}
+function bD(e,a,b,c){var d=!b?null:cD(b);e.addEventListener(a,d,c);return new pD(e,a,d,c)}
+function mx(a,b,c){var d,e,f,g;for(e=a,f=0,g=e.length;f<g;++f){d=e[f];$w(d,new Bz(b,d),c)}}
+function Zw(a,b,c,d){var e,f,g;g=c[RI];e="id='"+g+"'";f=new Sy(a,g);Sw(a,b,d,f,g,e)}
+function gv(a,b,c,d,e){if(!Wu(a,b)){debugger;throw Ni(new SD)}xt(Ic(pk(a.c,Hf),33),b,c,d,e)}
+function Ov(a,b,c){Jv();b==(mA(),lA)&&a!=null&&c!=null&&a.has(c)?Ic(a.get(c),14).I():b.I()}
+function Tb(a){var b;if(a.b){b=a.b;a.b=null;!a.g&&(a.g=[]);$b(b,a.g)}!!a.g&&(a.g=Wb(a.g))}
+function zu(a){var b;b=$wnd.Object.create(null);yu(a,Xi(Mu.prototype.bb,Mu,[a,b]));return b}
+function Zj(){try{document.createEvent('TouchEvent');return true}catch(a){return false}}
+function Ax(a,b){var c;c=a;while(true){c=c.f;if(!c){return false}if(K(b,c.a)){return true}}}
+function gx(a,b){var c,d;c=a.a;if(c.length!=0){for(d=0;d<c.length;d++){Ew(b,Ic(c[d],6))}}}
+function Qx(a,b,c){var d,e,f;e=Bu(a,1);f=pB(e,c);d=b[c];f.g=(XF(),d==null?WF:new $F(lH(d)))}
+function _w(a,b,c,d){var e,f,g;g=c[RI];e="path='"+wb(g)+"'";f=new Qy(a,g);Sw(a,b,d,f,null,e)}
+function It(a){if(Et!=a.a||a.c.length==0){return}a.b=true;a.a=new Kt(a);zo((Qb(),Pb),new Ot(a))}
+function Tt(b){if(b.readyState!=1){return false}try{b.send();return true}catch(a){return false}}
+function vp(c,a){var b=c.getConfig(a);if(b===null||b===undefined){return null}else{return b+''}}
+function Cp(a,b){if(b.a.b==(Uo(),To)){if(a.f==(eq(),dq)||a.f==cq){return}xp(a,new jq)}}
+function cj(a,b){if(b<0){throw Ni(new zE(PH))}!!a.f&&bj(a);a.e=false;a.f=FE(kj(hj(a,a.d),b))}
+function dj(a,b){if(b<=0){throw Ni(new zE(QH))}!!a.f&&bj(a);a.e=true;a.f=FE(jj(hj(a,a.d),b))}
+function eG(a,b){if(0>a||a>b){throw Ni(new PD('fromIndex: 0, toIndex: '+a+', length: '+b))}}
+function NE(a,b,c){if(a==null){debugger;throw Ni(new SD)}this.a=OH;this.d=a;this.b=b;this.c=c}
+function zA(a,b,c){mA();this.a=new IA(this);this.g=(XF(),XF(),WF);this.f=a;this.e=b;this.b=c}
+function Aq(a,b,c){Bp(b)&&dt(Ic(pk(a.c,Df),13));Fq(c)||uq(a,'Invalid JSON from server: '+c,null)}
+function dr(a,b){ck&&tD($wnd.console,'Setting heartbeat interval to '+b+'sec.');a.a=b;br(a)}
+function px(a,b){var c;c=Ic(b.d.get(a),46);b.d.delete(a);if(!c){debugger;throw Ni(new SD)}c.Eb()}
+function Lw(a,b,c,d){var e;e=Bu(d,a);oB(e,Xi(hy.prototype.bb,hy,[b,c]));return nB(e,new jy(b,c))}
+function jC(b,c,d){return zH(function(){var a=Array.prototype.slice.call(arguments);d.Ab(b,c,a)})}
+function _b(b,c){Qb();function d(){var a=zH(Yb)(b);a&&$wnd.setTimeout(d,c)}
+$wnd.setTimeout(d,c)}
+function up(c,a){var b=c.getConfig(a);if(b===null||b===undefined){return null}else{return FE(b)}}
+function cD(b){var c=b.handler;if(!c){c=zH(function(a){dD(b,a)});c.listener=b;b.handler=c}return c}
+function un(a,b){var c,d;c=new Nn(a);d=new $wnd.Function(a);Dn(a,new Un(d),new Wn(b,c),new Yn(b,c))}
+function us(a,b){b&&(!a.b||!Ap(a.b))?(a.b=new Ip(a.d)):!b&&!!a.b&&Ap(a.b)&&xp(a.b,new ys(a,true))}
+function vs(a,b){b&&(!a.b||!Ap(a.b))?(a.b=new Ip(a.d)):!b&&!!a.b&&Ap(a.b)&&xp(a.b,new ys(a,false))}
+function Vb(a){if(!a.i){a.i=true;!a.f&&(a.f=new bc(a));_b(a.f,1);!a.h&&(a.h=new dc(a));_b(a.h,50)}}
+function bv(a,b){var c;if(b!=a.e){c=b.a;!!c&&(qw(),!!c[XI])&&ww((qw(),c[XI]));jv(a,b);b.f=null}}
+function mv(a,b){var c;if(Sc(a,29)){c=Ic(a,29);ad((lH(b),b))==2?cB(c,(GA(c.a),c.c.length)):aB(c)}}
+function Mi(a){var b;if(Sc(a,5)){return a}b=a&&a.__java$exception;if(!b){b=new rb(a);hc(b)}return b}
+function Yo(a,b){var c;if(a==null){return null}c=Xo('context://',b,a);c=Xo('base://','',c);return c}
+function Hr(a,b){if(b==-1){return true}if(b==a.f+1){return true}if(a.f==-1){return true}return false}
+function BD(c){return $wnd.JSON.stringify(c,function(a,b){if(a=='$H'){return undefined}return b},0)}
+function ac(b,c){Qb();var d=$wnd.setInterval(function(){var a=zH(Yb)(b);!a&&$wnd.clearInterval(d)},c)}
+function St(a){this.a=a;bD($wnd,'beforeunload',new $t(this),false);ct(Ic(pk(a,Df),13),new au(this))}
+function fv(a,b,c,d,e,f){if(!Wu(a,b)){debugger;throw Ni(new SD)}wt(Ic(pk(a.c,Hf),33),b,c,d,e,f)}
+function zq(a){Ic(pk(a.c,_e),27).a>=0&&dr(Ic(pk(a.c,_e),27),Ic(pk(a.c,td),7).d);tq(a,(Sq(),Pq),null)}
+function Eq(a,b){co(Ic(pk(a.c,Be),22),'',b+' could not be loaded. Push will not work.','',null,null)}
+function Sq(){Sq=Wi;Pq=new Uq('HEARTBEAT',0,0);Qq=new Uq('PUSH',1,1);Rq=new Uq('XHR',2,2)}
+function Uo(){Uo=Wi;Ro=new Vo('INITIALIZING',0);So=new Vo('RUNNING',1);To=new Vo('TERMINATED',2)}
+function BG(){BG=Wi;yG=new CG('CONCURRENT',0);zG=new CG('IDENTITY_FINISH',1);AG=new CG('UNORDERED',2)}
+function Tk(a,b){var c;c=new $wnd.Map;b.forEach(Xi(ol.prototype.bb,ol,[a,c]));c.size==0||Zk(new sl(c))}
+function sj(a,b){var c;c='/'.length;if(!SE(b.substr(b.length-c,c),'/')){debugger;throw Ni(new SD)}a.b=b}
+function ku(a,b){var c;c=!!b.a&&!YD((WD(),UD),qA(pB(Bu(b,0),QI)));if(!c||!b.f){return c}return ku(a,b.f)}
+function MC(a,b,c){var d,e;b<0?(e=0):(e=b);c<0||c>a.length?(d=a.length):(d=c);return a.substr(e,d-e)}
+function ut(a,b,c,d){var e;e={};e[VH]=KI;e[LI]=Object(b);e[KI]=c;!!d&&(e['data']=d,undefined);yt(a,e)}
+function Dc(a,b,c,d,e){e.ic=a;e.jc=b;e.kc=$i;e.__elementTypeId$=c;e.__elementTypeCategory$=d;return e}
+function Dp(a,b,c){TE(b,'true')||TE(b,'false')?(a.a[c]=TE(b,'true'),undefined):(a.a[c]=b,undefined)}
+function Dq(a,b){ck&&($wnd.console.log('Reopening push connection'),undefined);Bp(b)&&tq(a,(Sq(),Qq),null)}
+function ss(a){var b,c,d;b=[];c={};c['UNLOAD']=Object(true);d=ns(a,b,c);xs(Qt(Ic(pk(a.d,Rf),71)),BD(d))}
+function Y(a){var b,c,d,e;for(b=(a.h==null&&(a.h=(gc(),e=fc.F(a),ic(e))),a.h),c=0,d=b.length;c<d;++c);}
+function ft(a){var b,c;c=Ic(pk(a.c,Ge),12).b==(Uo(),To);b=a.b||Ic(pk(a.c,Lf),35).b;(c||!b)&&bk('connected')}
+function Os(a){if(rB(Bu(Ic(pk(a.a,_f),9).e,5),JI)){return Pc(qA(pB(Bu(Ic(pk(a.a,_f),9).e,5),JI)))}return null}
+function rA(a,b){var c;GA(a.a);if(a.c){c=(GA(a.a),a.h);if(c==null){return b}return xE(Kc(c))}else{return b}}
+function Dw(a,b){var c;if(b.d.has(a)){debugger;throw Ni(new SD)}c=jD(b.b,a,new gz(b),false);b.d.set(a,c)}
+function av(a){var b,c;if(!a.c.has(0)){return true}c=Bu(a,0);b=Jc(qA(pB(c,'visible')));return !YD((WD(),UD),b)}
+function tp(c,a){var b=c.getConfig(a);if(b===null||b===undefined){return false}else{return WD(),b?true:false}}
+function tA(a){var b;GA(a.a);if(a.c){b=(GA(a.a),a.h);if(b==null){return true}return XD(Jc(b))}else{return true}}
+function ib(a){var b;if(a!=null){b=a.__java$exception;if(b){return b}}return Wc(a,TypeError)?new JE(a):new nb(a)}
+function Gv(a){var b,c;c=Fv(a);b=a.a;if(!a.a){b=c.Ib(a);if(!b){debugger;throw Ni(new SD)}Gu(a,b)}Ev(a,b);return b}
+function SF(a){var b,c,d;d=1;for(c=new MF(a);c.a<c.c.a.length;){b=LF(c);d=31*d+(b!=null?O(b):0);d=d|0}return d}
+function PF(a){var b,c,d,e,f;f=1;for(c=a,d=0,e=c.length;d<e;++d){b=c[d];f=31*f+(b!=null?O(b):0);f=f|0}return f}
+function Mo(a){var b,c,d,e,f;b={};for(d=a,e=0,f=d.length;e<f;++e){c=d[e];b[':'+(c.b!=null?c.b:''+c.c)]=c}return b}
+function GD(c){var a=[];for(var b in c){Object.prototype.hasOwnProperty.call(c,b)&&b!='$H'&&a.push(b)}return a}
+function FE(a){var b,c;if(a>-129&&a<128){b=a+128;c=(HE(),GE)[b];!c&&(c=GE[b]=new BE(a));return c}return new BE(a)}
+function Ow(a){var b,c;b=Au(a.e,24);for(c=0;c<(GA(b.a),b.c.length);c++){Ew(a,Ic(b.c[c],6))}return _A(b,new Ay(a))}
+function jp(a){var b,c,d,e;b=(e=new Dj,e.a=a,np(e,kp(a)),e);c=new Ij(b);gp.push(c);d=kp(a).getConfig('uidl');Hj(c,d)}
+function Fq(a){var b;b=aj(new RegExp('Vaadin-Refresh(:\\s*(.*?))?(\\s|$)'),a);if(b){cp(b[2]);return true}return false}
+function Zu(a,b){var c,d,e;e=Yz(a.a);for(c=0;c<e.length;c++){d=Ic(e[c],6);if(b.isSameNode(d.a)){return d}}return null}
+function im(a,b){var c;hm==null&&(hm=Uz());c=Oc(hm.get(a),$wnd.Set);if(c==null){c=new $wnd.Set;hm.set(a,c)}c.add(b)}
+function Uv(a,b){if(b<=0){throw Ni(new zE(QH))}a.c?vD($wnd,a.d):wD($wnd,a.d);a.c=true;a.d=xD($wnd,new JD(a),b)}
+function Tv(a,b){if(b<0){throw Ni(new zE(PH))}a.c?vD($wnd,a.d):wD($wnd,a.d);a.c=false;a.d=yD($wnd,new HD(a),b)}
+function Jw(a){if(!a.b){debugger;throw Ni(new TD('Cannot bind client delegate methods to a Node'))}return iw(a.b,a.e)}
+function DA(a,b){var c;if(b.Nb()!=a.b){debugger;throw Ni(new SD)}c=Vz(a.a);c.forEach(Xi(hC.prototype.fb,hC,[a,b]))}
+function Kw(a,b){var c,d;d=a.f;if(b.c.has(d)){debugger;throw Ni(new SD)}c=new cC(new ez(a,b,d));b.c.set(d,c);return c}
+function zw(a){var b;b=Lc(pw.get(a));if(b==null){b=Lc(new $wnd.Function(KI,cJ,'return ('+a+')'));pw.set(a,b)}return b}
+function An(a,b,c){var d;d=Mc(c.get(a));if(d==null){d=[];d.push(b);c.set(a,d);return true}else{d.push(b);return false}}
+function sA(a){var b;GA(a.a);if(a.c){b=(GA(a.a),a.h);if(b==null){return null}return GA(a.a),Pc(a.h)}else{return null}}
+function bE(){++$D;this.i=null;this.g=null;this.f=null;this.d=null;this.b=null;this.h=null;this.a=null}
+function Iu(a,b){this.c=new $wnd.Map;this.h=new $wnd.Set;this.b=new $wnd.Set;this.e=new $wnd.Map;this.d=a;this.g=b}
+function Tl(a){var b;if(!Ic(pk(a.c,_f),9).f){b=new $wnd.Map;a.a.forEach(Xi(_l.prototype.fb,_l,[a,b]));_B(new bm(a,b))}}
+function Jq(a,b){var c;dt(Ic(pk(a.c,Df),13));c=b.b.responseText;Fq(c)||uq(a,'Invalid JSON response from server: '+c,b)}
+function rq(a){a.b=null;Ic(pk(a.c,Df),13).b&&dt(Ic(pk(a.c,Df),13));bk('connection-lost');dr(Ic(pk(a.c,_e),27),0)}
+function uq(a,b,c){var d,e;c&&(e=c.b);co(Ic(pk(a.c,Be),22),'',b,'',null,null);d=Ic(pk(a.c,Ge),12);d.b!=(Uo(),To)&&Eo(d,To)}
+function yq(a,b){var c;if(b.a.b==(Uo(),To)){if(a.b){rq(a);c=Ic(pk(a.c,Ge),12);c.b!=To&&Eo(c,To)}!!a.d&&!!a.d.f&&bj(a.d)}}
+function Sl(a,b){var c;a.a.clear();while(a.b.length>0){c=Ic(a.b.splice(0,1)[0],16);Yl(c,b)||hv(Ic(pk(a.c,_f),9),c);aC()}}
+function sC(a){var b,c;if(a.a!=null){try{for(c=0;c<a.a.length;c++){b=Ic(a.a[c],335);oC(b.a,b.d,b.c,b.b)}}finally{a.a=null}}}
+function Xk(){Nk();var a,b;--Mk;if(Mk==0&&Lk.length!=0){try{for(b=0;b<Lk.length;b++){a=Ic(Lk[b],28);a.C()}}finally{Tz(Lk)}}}
+function Mb(a,b){Db();var c;c=S;if(c){if(c==Ab){return}c.q(a);return}if(b){Lb(Sc(a,32)?Ic(a,32).A():a)}else{nF();X(a,mF,'')}}
+function Xx(a,b,c,d){if(d==null){!!c&&(delete c['for'],undefined)}else{!c&&(c={});c['for']=d}ev(a.g,a,b,c)}
+function Dl(b,c){return Array.from(b.querySelectorAll('[name]')).find(function(a){return a.getAttribute('name')==c})}
+function ww(c){qw();var b=c['}p'].promises;b!==undefined&&b.forEach(function(a){a[1](Error('Client is resynchronizing'))})}
+function Zi(a){var b;if(Array.isArray(a)&&a.kc===$i){return aE(M(a))+'@'+(b=O(a)>>>0,b.toString(16))}return a.toString()}
+function rC(a,b){var c,d;d=Oc(a.c.get(b),$wnd.Map);if(d==null){return []}c=Mc(d.get(null));if(c==null){return []}return c}
+function Yl(a,b){var c,d;c=Oc(b.get(a.e.e.d),$wnd.Map);if(c!=null&&c.has(a.f)){d=c.get(a.f);xA(a,d);return true}return false}
+function vm(a){while(a.parentNode&&(a=a.parentNode)){if(a.toString()==='[object ShadowRoot]'){return true}}return false}
+function uw(a,b){if(typeof a.get===CH){var c=a.get(b);if(typeof c===AH&&typeof c[fI]!==KH){return {nodeId:c[fI]}}}return null}
+function MG(a){if(a.b){MG(a.b)}else if(a.c){throw Ni(new AE("Stream already terminated, can't be modified or used"))}}
+function gt(a){if(a.b){throw Ni(new AE('Trying to start a new request while another is active'))}a.b=true;et(a,new kt)}
+function Xv(a){if(a.a.b){Pv(aJ,a.a.b,a.a.a,null);if(a.b.has(_I)){a.a.g=a.a.b;a.a.h=a.a.a}a.a.b=null;a.a.a=null}else{Lv(a.a)}}
+function Vv(a){if(a.a.b){Pv(_I,a.a.b,a.a.a,a.a.i);a.a.b=null;a.a.a=null;a.a.i=null}else !!a.a.g&&Pv(_I,a.a.g,a.a.h,null);Lv(a.a)}
+function _j(){return /iPad|iPhone|iPod/.test(navigator.platform)||navigator.platform==='MacIntel'&&navigator.maxTouchPoints>1}
+function $j(){this.a=new KC($wnd.navigator.userAgent);this.a.b?'ontouchstart' in window:this.a.f?!!navigator.msMaxTouchPoints:Zj()}
+function yn(a){this.b=new $wnd.Set;this.a=new $wnd.Map;this.d=!!($wnd.HTMLImports&&$wnd.HTMLImports.whenReady);this.c=a;rn(this)}
+function Mq(a){this.c=a;Do(Ic(pk(a,Ge),12),new Wq(this));bD($wnd,'offline',new Yq(this),false);bD($wnd,'online',new $q(this),false)}
+function Iw(a,b){var c,d;c=Au(b,11);for(d=0;d<(GA(c.a),c.c.length);d++){cA(a).classList.add(Pc(c.c[d]))}return _A(c,new qz(a))}
+function Zo(a){var b,c;b=Ic(pk(a.a,td),7).b;c='/'.length;if(!SE(b.substr(b.length-c,c),'/')){debugger;throw Ni(new SD)}return b}
+function pB(a,b){var c;c=Ic(a.b.get(b),16);if(!c){c=new zA(b,a,SE('innerHTML',b)&&a.d==1);a.b.set(b,c);DA(a.a,new VA(a,c))}return c}
+function pE(a,b){var c=0;while(!b[c]||b[c]==''){c++}var d=b[c++];for(;c<b.length;c++){if(!b[c]||b[c]==''){continue}d+=a+b[c]}return d}
+function RC(){RC=Wi;QC=new SC('STYLESHEET',0);OC=new SC('JAVASCRIPT',1);PC=new SC('JS_MODULE',2);NC=new SC('DYNAMIC_IMPORT',3)}
+function nm(a){var b;if(hm==null){return}b=Oc(hm.get(a),$wnd.Set);if(b!=null){hm.delete(a);b.forEach(Xi(Jm.prototype.fb,Jm,[]))}}
+function LB(a){var b;a.d=true;KB(a);a.e||$B(new QB(a));if(a.c.size!=0){b=a.c;a.c=new $wnd.Set;b.forEach(Xi(UB.prototype.fb,UB,[]))}}
+function Pv(a,b,c,d){Jv();SE(_I,a)?c.forEach(Xi(gw.prototype.bb,gw,[d])):Yz(c).forEach(Xi(Qv.prototype.fb,Qv,[]));Xx(b.b,b.c,b.a,a)}
+function zt(a,b,c,d,e){var f;f={};f[VH]='mSync';f[LI]=ED(b.d);f['feature']=Object(c);f['property']=d;f[cI]=e==null?null:e;yt(a,f)}
+function Pj(a,b,c){var d;if(a==c.d){d=new $wnd.Function('callback','callback();');d.call(null,b);return WD(),true}return WD(),false}
+function mc(){if(Error.stackTraceLimit>0){$wnd.Error.stackTraceLimit=Error.stackTraceLimit=64;return true}return 'stack' in new Error}
+function fm(a){return typeof a.update==CH&&a.updateComplete instanceof Promise&&typeof a.shouldUpdate==CH&&typeof a.firstUpdated==CH}
+function yE(a){var b;b=uE(a);if(b>3.4028234663852886E38){return Infinity}else if(b<-3.4028234663852886E38){return -Infinity}return b}
+function ZD(a){if(a>=48&&a<48+$wnd.Math.min(10,10)){return a-48}if(a>=97&&a<97){return a-97+10}if(a>=65&&a<65){return a-65+10}return -1}
+function Qw(a){var b;b=Pc(qA(pB(Bu(a,0),'tag')));if(b==null){debugger;throw Ni(new TD('New child must have a tag'))}return oD($doc,b)}
+function Nw(a){var b;if(!a.b){debugger;throw Ni(new TD('Cannot bind shadow root to a Node'))}b=Bu(a.e,20);Fw(a);return nB(b,new Dz(a))}
+function Hl(a,b){var c,d;d=Bu(a,1);if(!a.a){um(Pc(qA(pB(Bu(a,0),'tag'))),new Kl(a,b));return}for(c=0;c<b.length;c++){Il(a,d,Pc(b[c]))}}
+function Au(a,b){var c,d;d=b;c=Ic(a.c.get(d),34);if(!c){c=new eB(b,a);a.c.set(d,c)}if(!Sc(c,29)){debugger;throw Ni(new SD)}return Ic(c,29)}
+function Bu(a,b){var c,d;d=b;c=Ic(a.c.get(d),34);if(!c){c=new tB(b,a);a.c.set(d,c)}if(!Sc(c,43)){debugger;throw Ni(new SD)}return Ic(c,43)}
+function FF(a,b){var c,d;d=a.a.length;b.length<d&&(b=gH(new Array(d),b));for(c=0;c<d;++c){Cc(b,c,a.a[c])}b.length>d&&Cc(b,d,null);return b}
+function lo(a){ck&&($wnd.console.debug('Re-establish PUSH connection'),undefined);us(Ic(pk(a.a.a,rf),15),true);zo((Qb(),Pb),new ro(a))}
+function Sk(a){ck&&($wnd.console.log('Finished loading eager dependencies, loading lazy.'),undefined);a.forEach(Xi(wl.prototype.bb,wl,[]))}
+function cv(a){bB(Au(a.e,24),Xi(ov.prototype.fb,ov,[]));yu(a.e,Xi(sv.prototype.bb,sv,[]));a.a.forEach(Xi(qv.prototype.bb,qv,[a]));a.d=true}
+function TE(a,b){lH(a);if(b==null){return false}if(SE(a,b)){return true}return a.length==b.length&&SE(a.toLowerCase(),b.toLowerCase())}
+function eq(){eq=Wi;bq=new fq('CONNECT_PENDING',0);aq=new fq('CONNECTED',1);dq=new fq('DISCONNECT_PENDING',2);cq=new fq('DISCONNECTED',3)}
+function Gq(a,b){if(a.b!=b){return}a.b=null;a.a=0;bk('connected');ck&&($wnd.console.log('Re-established connection to server'),undefined)}
+function xt(a,b,c,d,e){var f;f={};f[VH]='attachExistingElementById';f[LI]=ED(b.d);f[MI]=Object(c);f[NI]=Object(d);f['attachId']=e;yt(a,f)}
+function bw(a,b){if(b.e){!!b.b&&Pv(_I,b.b,b.a,null)}else{Pv(aJ,b.b,b.a,null);Uv(b.f,ad(b.j))}if(b.b){CF(a,b.b);b.b=null;b.a=null;b.i=null}}
+function xH(a){vH();var b,c,d;c=':'+a;d=uH[c];if(d!=null){return ad((lH(d),d))}d=sH[c];b=d==null?wH(a):ad((lH(d),d));yH();uH[c]=b;return b}
+function O(a){return Xc(a)?xH(a):Uc(a)?ad((lH(a),a)):Tc(a)?(lH(a),a)?1231:1237:Rc(a)?a.o():Bc(a)?rH(a):!!a&&!!a.hashCode?a.hashCode():rH(a)}
+function sk(a,b,c){if(a.a.has(b)){debugger;throw Ni(new TD((_D(b),'Registry already has a class of type '+b.i+' registered')))}a.a.set(b,c)}
+function Ev(a,b){Dv();var c;if(a.g.f){debugger;throw Ni(new TD('Binding state node while processing state tree changes'))}c=Fv(a);c.Hb(a,b,Bv)}
+function jA(a,b,c,d,e){this.e=a;if(c==null){debugger;throw Ni(new SD)}if(d==null){debugger;throw Ni(new SD)}this.c=b;this.d=c;this.a=d;this.b=e}
+function rx(a,b){var c,d;d=pB(b,gJ);GA(d.a);d.c||xA(d,a.getAttribute(gJ));c=pB(b,hJ);vm(a)&&(GA(c.a),!c.c)&&!!a.style&&xA(c,a.style.display)}
+function Fl(a,b,c,d){var e,f;if(!d){f=Ic(pk(a.g.c,Wd),60);e=Ic(f.a.get(c),26);if(!e){f.b[b]=c;f.a.set(c,FE(b));return FE(b)}return e}return d}
+function Ex(a,b){var c,d;while(b!=null){for(c=a.length-1;c>-1;c--){d=Ic(a[c],6);if(b.isSameNode(d.a)){return d.d}}b=cA(b.parentNode)}return -1}
+function Il(a,b,c){var d;if(Gl(a.a,c)){d=Ic(a.e.get(Vg),77);if(!d||!d.a.has(c)){return}pA(pB(b,c),a.a[c]).I()}else{rB(b,c)||xA(pB(b,c),null)}}
+function Rl(a,b,c){var d,e;e=Yu(Ic(pk(a.c,_f),9),ad((lH(b),b)));if(e.c.has(1)){d=new $wnd.Map;oB(Bu(e,1),Xi(dm.prototype.bb,dm,[d]));c.set(b,d)}}
+function qC(a,b,c){var d,e;e=Oc(a.c.get(b),$wnd.Map);if(e==null){e=new $wnd.Map;a.c.set(b,e)}d=Mc(e.get(c));if(d==null){d=[];e.set(c,d)}return d}
+function Dx(a){var b;Bw==null&&(Bw=new $wnd.Map);b=Lc(Bw.get(a));if(b==null){b=Lc(new $wnd.Function(KI,cJ,'return ('+a+')'));Bw.set(a,b)}return b}
+function Qr(){if($wnd.performance&&$wnd.performance.timing){return (new Date).getTime()-$wnd.performance.timing.responseStart}else{return -1}}
+function kw(a,b,c,d){var e,f,g,h,i;i=Nc(a.ab());h=d.d;for(g=0;g<h.length;g++){xw(i,Pc(h[g]))}e=d.a;for(f=0;f<e.length;f++){rw(i,Pc(e[f]),b,c)}}
+function Sx(a,b){var c,d,e,f,g;d=cA(a).classList;g=b.d;for(f=0;f<g.length;f++){d.remove(Pc(g[f]))}c=b.a;for(e=0;e<c.length;e++){d.add(Pc(c[e]))}}
+function Ww(a,b){var c,d,e,f,g;g=Au(b.e,2);d=0;f=null;for(e=0;e<(GA(g.a),g.c.length);e++){if(d==a){return f}c=Ic(g.c[e],6);if(c.a){f=c;++d}}return f}
+function rm(a){var b,c,d,e;d=-1;b=Au(a.f,16);for(c=0;c<(GA(b.a),b.c.length);c++){e=b.c[c];if(K(a,e)){d=c;break}}if(d<0){return null}return ''+d}
+function CC(a){var b,c;if(a.indexOf('android')==-1){return}b=MC(a,a.indexOf('android ')+8,a.length);b=MC(b,0,b.indexOf(';'));c=$E(b,'\\.');HC(c)}
+function GC(a){var b,c;if(a.indexOf('os ')==-1||a.indexOf(' like mac')==-1){return}b=MC(a,a.indexOf('os ')+3,a.indexOf(' like mac'));c=$E(b,'_');HC(c)}
+function Hc(a,b){if(Xc(a)){return !!Gc[b]}else if(a.jc){return !!a.jc[b]}else if(Uc(a)){return !!Fc[b]}else if(Tc(a)){return !!Ec[b]}return false}
+function K(a,b){return Xc(a)?SE(a,b):Uc(a)?(lH(a),_c(a)===_c(b)):Tc(a)?YD(a,b):Rc(a)?a.m(b):Bc(a)?H(a,b):!!a&&!!a.equals?a.equals(b):_c(a)===_c(b)}
+function HC(a){var b,c;a.length>=1&&IC(a[0],'OS major');if(a.length>=2){b=UE(a[1],cF(45));if(b>-1){c=a[1].substr(0,b-0);IC(c,oJ)}else{IC(a[1],oJ)}}}
+function X(a,b,c){var d,e,f,g,h;Y(a);for(e=(a.i==null&&(a.i=zc(ki,FH,5,0,0,1)),a.i),f=0,g=e.length;f<g;++f){d=e[f];X(d,b,'\t'+c)}h=a.f;!!h&&X(h,b,c)}
+function jv(a,b){if(!Wu(a,b)){debugger;throw Ni(new SD)}if(b==a.e){debugger;throw Ni(new TD("Root node can't be unregistered"))}a.a.delete(b.d);Hu(b)}
+function Wu(a,b){if(!b){debugger;throw Ni(new TD(UI))}if(b.g!=a){debugger;throw Ni(new TD(VI))}if(b!=Yu(a,b.d)){debugger;throw Ni(new TD(WI))}return true}
+function pk(a,b){if(!a.a.has(b)){debugger;throw Ni(new TD((_D(b),'Tried to lookup type '+b.i+' but no instance has been registered')))}return a.a.get(b)}
+function zx(a,b,c){var d,e;e=b.f;if(c.has(e)){debugger;throw Ni(new TD("There's already a binding for "+e))}d=new cC(new py(a,b));c.set(e,d);return d}
+function Gu(a,b){var c;if(!(!a.a||!b)){debugger;throw Ni(new TD('StateNode already has a DOM node'))}a.a=b;c=Vz(a.b);c.forEach(Xi(Su.prototype.fb,Su,[a]))}
+function IC(b,c){var d;try{return vE(b)}catch(a){a=Mi(a);if(Sc(a,8)){d=a;nF();c+' version parsing failed for: '+b+' '+d.v()}else throw Ni(a)}return -1}
+function Hq(a,b){var c;if(a.a==1){qq(a,b)}else{a.d=new Nq(a,b);cj(a.d,rA((c=Bu(Ic(pk(Ic(pk(a.c,Bf),37).a,_f),9).e,9),pB(c,'reconnectInterval')),5000))}}
+function Rr(){if($wnd.performance&&$wnd.performance.timing&&$wnd.performance.timing.fetchStart){return $wnd.performance.timing.fetchStart}else{return 0}}
+function Ac(a,b){var c=new Array(b);var d;switch(a){case 14:case 15:d=0;break;case 16:d=false;break;default:return c;}for(var e=0;e<b;++e){c[e]=d}return c}
+function tm(a){var b,c,d,e,f;e=null;c=Bu(a.f,1);f=qB(c);for(b=0;b<f.length;b++){d=Pc(f[b]);if(K(a,qA(pB(c,d)))){e=d;break}}if(e==null){return null}return e}
+function lc(a){gc();var b=a.e;if(b&&b.stack){var c=b.stack;var d=b+'\n';c.substring(0,d.length)==d&&(c=c.substring(d.length));return c.split('\n')}return []}
+function nC(a,b,c){var d;if(!b){throw Ni(new KE('Cannot add a handler with a null type'))}a.b>0?mC(a,new vC(a,b,c)):(d=qC(a,b,null),d.push(c));return new uC}
+function mm(a,b){var c,d,e,f,g;f=a.f;d=a.e.e;g=qm(d);if(!g){kk(gI+d.d+hI);return}c=jm((GA(a.a),a.h));if(wm(g.a)){e=sm(g,d,f);e!=null&&Cm(g.a,e,c);return}b[f]=c}
+function br(a){if(a.a>0){dk('Scheduling heartbeat in '+a.a+' seconds');cj(a.c,a.a*1000)}else{ck&&($wnd.console.debug('Disabling heartbeat'),undefined);bj(a.c)}}
+function Ns(a){var b,c,d,e;b=pB(Bu(Ic(pk(a.a,_f),9).e,5),'parameters');e=(GA(b.a),Ic(b.h,6));d=Bu(e,6);c=new $wnd.Map;oB(d,Xi(Zs.prototype.bb,Zs,[c]));return c}
+function Sw(a,b,c,d,e,f){var g,h;if(!vx(a.e,b,e,f)){return}g=Nc(d.ab());if(wx(g,b,e,f,a)){if(!c){h=Ic(pk(b.g.c,Yd),51);h.a.add(b.d);Tl(h)}Gu(b,g);Gv(b)}c||aC()}
+function hv(a,b){var c,d;if(!b){debugger;throw Ni(new SD)}d=b.e;c=d.e;if(Ul(Ic(pk(a.c,Yd),51),b)||!_u(a,c)){return}zt(Ic(pk(a.c,Hf),33),c,d.d,b.f,(GA(b.a),b.h))}
+function on(){var a,b,c,d;b=$doc.head.childNodes;c=b.length;for(d=0;d<c;d++){a=b.item(d);if(a.nodeType==8&&SE('Stylesheet end',a.nodeValue)){return a}}return null}
+function ms(a,b){a.b=null;b&&Rs(qA(pB(Bu(Ic(pk(Ic(pk(a.d,zf),36).a,_f),9).e,5),oI)))&&(!a.b||!Ap(a.b))&&(a.b=new Ip(a.d));Ic(pk(a.d,Lf),35).b&&It(Ic(pk(a.d,Lf),35))}
+function qx(a,b){var c,d,e;rx(a,b);e=pB(b,gJ);GA(e.a);e.c&&Yx(Ic(pk(b.e.g.c,td),7),a,gJ,(GA(e.a),e.h));c=pB(b,hJ);GA(c.a);if(c.c){d=(GA(c.a),Zi(c.h));hD(a.style,d)}}
+function Hj(a,b){if(!b){ps(Ic(pk(a.a,rf),15))}else{gt(Ic(pk(a.a,Df),13));Fr(Ic(pk(a.a,pf),21),b)}bD($wnd,'pagehide',new Sj(a),false);bD($wnd,'pageshow',new Uj,false)}
+function Eo(a,b){if(b.c!=a.b.c+1){throw Ni(new zE('Tried to move from state '+Ko(a.b)+' to '+(b.b!=null?b.b:''+b.c)+' which is not allowed'))}a.b=b;pC(a.a,new Ho(a))}
+function Tr(a){var b;if(a==null){return null}if(!SE(a.substr(0,9),'for(;;);[')||(b=']'.length,!SE(a.substr(a.length-b,b),']'))){return null}return aF(a,9,a.length-1)}
+function Ri(b,c,d,e){Qi();var f=Oi;$moduleName=c;$moduleBase=d;Li=e;function g(){for(var a=0;a<f.length;a++){f[a]()}}
+if(b){try{zH(g)()}catch(a){b(c,a)}}else{zH(g)()}}
+function ic(a){var b,c,d,e;b='hc';c='hb';e=$wnd.Math.min(a.length,5);for(d=e-1;d>=0;d--){if(SE(a[d].d,b)||SE(a[d].d,c)){a.length>=d+1&&a.splice(0,d+1);break}}return a}
+function wt(a,b,c,d,e,f){var g;g={};g[VH]='attachExistingElement';g[LI]=ED(b.d);g[MI]=Object(c);g[NI]=Object(d);g['attachTagName']=e;g['attachIndex']=Object(f);yt(a,g)}
+function wm(a){var b=typeof $wnd.Polymer===CH&&$wnd.Polymer.Element&&a instanceof $wnd.Polymer.Element;var c=a.constructor.polymerElementVersion!==undefined;return b||c}
+function jw(a,b,c,d){var e,f,g,h;h=Au(b,c);GA(h.a);if(h.c.length>0){f=Nc(a.ab());for(e=0;e<(GA(h.a),h.c.length);e++){g=Pc(h.c[e]);rw(f,g,b,d)}}return _A(h,new nw(a,b,d))}
+function Cx(a,b){var c,d,e,f,g;c=cA(b).childNodes;for(e=0;e<c.length;e++){d=Nc(c[e]);for(f=0;f<(GA(a.a),a.c.length);f++){g=Ic(a.c[f],6);if(K(d,g.a)){return d}}}return null}
+function dF(a){var b;b=0;while(0<=(b=a.indexOf('\\',b))){nH(b+1,a.length);a.charCodeAt(b+1)==36?(a=a.substr(0,b)+'$'+_E(a,++b)):(a=a.substr(0,b)+(''+_E(a,++b)))}return a}
+function lu(a){var b,c,d;if(!!a.a||!Yu(a.g,a.d)){return false}if(rB(Bu(a,0),RI)){d=qA(pB(Bu(a,0),RI));if(Vc(d)){b=Nc(d);c=b[VH];return SE('@id',c)||SE(SI,c)}}return false}
+function qn(a,b){var c,d,e,f;jk('Loaded '+b.a);f=b.a;e=Mc(a.a.get(f));a.b.add(f);a.a.delete(f);if(e!=null&&e.length!=0){for(c=0;c<e.length;c++){d=Ic(e[c],24);!!d&&d.db(b)}}}
+function os(a){switch(a.e){case 0:ck&&($wnd.console.log('Resynchronize from server requested'),undefined);a.e=1;return true;case 1:return true;case 2:default:return false;}}
+function iv(a,b){if(a.f==b){debugger;throw Ni(new TD('Inconsistent state tree updating status, expected '+(b?'no ':'')+' updates in progress.'))}a.f=b;Tl(Ic(pk(a.c,Yd),51))}
+function qs(a,b){if(!!a.b&&Bp(a.b)){ck&&($wnd.console.debug('send PUSH'),undefined);a.c=b;Gp(a.b,b)}else{ck&&($wnd.console.log('send XHR'),undefined);Rt(Ic(pk(a.d,Rf),71),b)}}
+function qb(a){var b;if(a.c==null){b=_c(a.b)===_c(ob)?null:a.b;a.d=b==null?IH:Vc(b)?tb(Nc(b)):Xc(b)?'String':aE(M(b));a.a=a.a+': '+(Vc(b)?sb(Nc(b)):b+'');a.c='('+a.d+') '+a.a}}
+function sn(a,b,c){var d,e;d=new Nn(b);if(a.b.has(b)){!!c&&c.db(d);return}if(An(b,c,a.a)){e=$doc.createElement(mI);e.textContent=b;e.type=_H;Bn(e,new On(a),d);lD($doc.head,e)}}
+function Nr(a){var b,c,d;for(b=0;b<a.g.length;b++){c=Ic(a.g[b],62);d=Cr(c.a);if(d!=-1&&d<a.f+1){ck&&tD($wnd.console,'Removing old message with id '+d);a.g.splice(b,1)[0];--b}}}
+function Ui(){Ti={};!Array.isArray&&(Array.isArray=function(a){return Object.prototype.toString.call(a)===BH});function b(){return (new Date).getTime()}
+!Date.now&&(Date.now=b)}
+function Or(a,b){a.j.delete(b);if(a.j.size==0){bj(a.c);if(a.g.length!=0){ck&&($wnd.console.log('No more response handling locks, handling pending requests.'),undefined);Gr(a)}}}
+function wv(a,b){var c,d,e,f,g,h;h=new $wnd.Set;e=b.length;for(d=0;d<e;d++){c=b[d];if(SE('attach',c[VH])){g=ad(DD(c[LI]));if(g!=a.e.d){f=new Iu(g,a);dv(a,f);h.add(f)}}}return h}
+function Jz(a,b){var c,d,e;if(!a.c.has(7)){debugger;throw Ni(new SD)}if(Hz.has(a)){return}Hz.set(a,(WD(),true));d=Bu(a,7);e=pB(d,'text');c=new cC(new Pz(b,e));xu(a,new Rz(a,c))}
+function FC(a){var b,c;b=a.indexOf(' crios/');if(b==-1){b=a.indexOf(' chrome/');b==-1?(b=a.indexOf(pJ)+16):(b+=8);c=LC(a,b);JC(MC(a,b,b+c))}else{b+=7;c=LC(a,b);JC(MC(a,b,b+c))}}
+function eo(a){var b=document.getElementsByTagName(a);for(var c=0;c<b.length;++c){var d=b[c];d.$server.disconnected=function(){};d.parentNode.replaceChild(d.cloneNode(false),d)}}
+function Bp(a){if(a.g==null){return false}if(!SE(a.g,tI)){return false}if(rB(Bu(Ic(pk(Ic(pk(a.d,zf),36).a,_f),9).e,5),'alwaysXhrToServer')){return false}a.f==(eq(),bq);return true}
+function Gt(a,b){if(Ic(pk(a.d,Ge),12).b!=(Uo(),So)){ck&&($wnd.console.warn('Trying to invoke method on not yet started or stopped application'),undefined);return}a.c[a.c.length]=b}
+function cn(){if(typeof $wnd.Vaadin.Flow.gwtStatsEvents==AH){delete $wnd.Vaadin.Flow.gwtStatsEvents;typeof $wnd.__gwtStatsEvent==CH&&($wnd.__gwtStatsEvent=function(){return true})}}
+function Hb(b,c,d){var e,f;e=Fb();try{if(S){try{return Eb(b,c,d)}catch(a){a=Mi(a);if(Sc(a,5)){f=a;Mb(f,true);return undefined}else throw Ni(a)}}else{return Eb(b,c,d)}}finally{Ib(e)}}
+function aD(a,b){var c,d;if(b.length==0){return a}c=null;d=UE(a,cF(35));if(d!=-1){c=a.substr(d);a=a.substr(0,d)}a.indexOf('?')!=-1?(a+='&'):(a+='?');a+=b;c!=null&&(a+=''+c);return a}
+function Pw(a,b,c){var d;if(!b.b){debugger;throw Ni(new TD(eJ+b.e.d+iI))}d=Bu(b.e,0);xA(pB(d,QI),(WD(),av(b.e)?true:false));ux(a,b,c);return nA(pB(Bu(b.e,0),'visible'),new ly(a,b,c))}
+function nn(a){var b;b=on();!b&&ck&&($wnd.console.error("Expected to find a 'Stylesheet end' comment inside <head> but none was found. Appending instead."),undefined);mD($doc.head,a,b)}
+function uE(a){tE==null&&(tE=new RegExp('^\\s*[+-]?(NaN|Infinity|((\\d+\\.?\\d*)|(\\.\\d+))([eE][+-]?\\d+)?[dDfF]?)\\s*$'));if(!tE.test(a)){throw Ni(new ME(xJ+a+'"'))}return parseFloat(a)}
+function bF(a){var b,c,d;c=a.length;d=0;while(d<c&&(nH(d,a.length),a.charCodeAt(d)<=32)){++d}b=c;while(b>d&&(nH(b-1,a.length),a.charCodeAt(b-1)<=32)){--b}return d>0||b<c?a.substr(d,b-d):a}
+function pn(a,b){var c,d,e,f;$n((Ic(pk(a.c,Be),22),'Error loading '+b.a));f=b.a;e=Mc(a.a.get(f));a.a.delete(f);if(e!=null&&e.length!=0){for(c=0;c<e.length;c++){d=Ic(e[c],24);!!d&&d.cb(b)}}}
+function At(a,b,c,d,e){var f;f={};f[VH]='publishedEventHandler';f[LI]=ED(b.d);f['templateEventMethodName']=c;f['templateEventMethodArgs']=d;e!=-1&&(f['promise']=Object(e),undefined);yt(a,f)}
+function sw(a,b,c,d){var e,f,g,h,i,j;if(rB(Bu(d,18),c)){f=[];e=Ic(pk(d.g.c,Sf),59);i=Pc(qA(pB(Bu(d,18),c)));g=Mc(cu(e,i));for(j=0;j<g.length;j++){h=Pc(g[j]);f[j]=tw(a,b,d,h)}return f}return null}
+function vv(a,b){var c;if(!('featType' in a)){debugger;throw Ni(new TD("Change doesn't contain feature type. Don't know how to populate feature"))}c=ad(DD(a[YI]));CD(a['featType'])?Au(b,c):Bu(b,c)}
+function cF(a){var b,c;if(a>=65536){b=55296+(a-65536>>10&1023)&65535;c=56320+(a-65536&1023)&65535;return String.fromCharCode(b)+(''+String.fromCharCode(c))}else{return String.fromCharCode(a&65535)}}
+function Ib(a){a&&Sb((Qb(),Pb));--yb;if(yb<0){debugger;throw Ni(new TD('Negative entryDepth value at exit '+yb))}if(a){if(yb!=0){debugger;throw Ni(new TD('Depth not 0'+yb))}if(Cb!=-1){Nb(Cb);Cb=-1}}}
+function co(a,b,c,d,e,f){var g;if(b==null&&c==null&&d==null){Ic(pk(a.a,td),7).l?go(a):cp(e);return}g=_n(b,c,d,f);if(!Ic(pk(a.a,td),7).l){bD(g,'click',new vo(e),false);bD($doc,'keydown',new xo(e),false)}}
+function kC(a,b){var c,d,e,f;if(AD(b)==1){c=b;f=ad(DD(c[0]));switch(f){case 0:{e=ad(DD(c[1]));return d=e,Ic(a.a.get(d),6)}case 1:case 2:return null;default:throw Ni(new zE(mJ+BD(c)));}}else{return null}}
+function er(a){this.c=new fr(this);this.b=a;dr(this,Ic(pk(a,td),7).d);this.d=Ic(pk(a,td),7).h;this.d=aD(this.d,'v-r=heartbeat');this.d=aD(this.d,sI+(''+Ic(pk(a,td),7).k));Do(Ic(pk(a,Ge),12),new kr(this))}
+function Vx(a,b,c,d,e){var f,g,h,i,j,k,l;f=false;for(i=0;i<c.length;i++){g=c[i];l=DD(g[0]);if(l==0){f=true;continue}k=new $wnd.Set;for(j=1;j<g.length;j++){k.add(g[j])}h=Kv(Nv(a,b,l),k,d,e);f=f|h}return f}
+function vn(a,b,c,d,e){var f,g,h;h=bp(b);f=new Nn(h);if(a.b.has(h)){!!c&&c.db(f);return}if(An(h,c,a.a)){g=$doc.createElement(mI);g.src=h;g.type=e;g.async=false;g.defer=d;Bn(g,new On(a),f);lD($doc.head,g)}}
+function tw(a,b,c,d){var e,f,g,h,i;if(!SE(d.substr(0,5),KI)||SE('event.model.item',d)){return SE(d.substr(0,KI.length),KI)?(g=zw(d),h=g(b,a),i={},i[fI]=ED(DD(h[fI])),i):uw(c.a,d)}e=zw(d);f=e(b,a);return f}
+function Cq(a,b){if(a.b){Gq(a,(Sq(),Qq));if(Ic(pk(a.c,Df),13).b){dt(Ic(pk(a.c,Df),13));if(Bp(b)){ck&&($wnd.console.debug('Flush pending messages after PUSH reconnection.'),undefined);rs(Ic(pk(a.c,rf),15))}}}}
+function JC(a){var b,c,d,e;b=UE(a,cF(46));b<0&&(b=a.length);d=MC(a,0,b);IC(d,'Browser major');c=VE(a,cF(46),b+1);if(c<0){if(a.substr(b).length==0){return}c=a.length}e=YE(MC(a,b+1,c),'');IC(e,'Browser minor')}
+function Fb(){var a;if(yb<0){debugger;throw Ni(new TD('Negative entryDepth value at entry '+yb))}if(yb!=0){a=xb();if(a-Bb>2000){Bb=a;Cb=$wnd.setTimeout(Ob,10)}}if(yb++==0){Rb((Qb(),Pb));return true}return false}
+function $p(a){var b,c,d;if(a.a>=a.b.length){debugger;throw Ni(new SD)}if(a.a==0){c=''+a.b.length+'|';b=4095-c.length;d=c+aF(a.b,0,$wnd.Math.min(a.b.length,b));a.a+=b}else{d=Zp(a,a.a,a.a+4095);a.a+=4095}return d}
+function Gr(a){var b,c,d,e;if(a.g.length==0){return false}e=-1;for(b=0;b<a.g.length;b++){c=Ic(a.g[b],62);if(Hr(a,Cr(c.a))){e=b;break}}if(e!=-1){d=Ic(a.g.splice(e,1)[0],62);Er(a,d.a);return true}else{return false}}
+function wq(a,b){var c,d;c=b.status;ck&&uD($wnd.console,'Heartbeat request returned '+c);if(c==403){ao(Ic(pk(a.c,Be),22),null);d=Ic(pk(a.c,Ge),12);d.b!=(Uo(),To)&&Eo(d,To)}else if(c==404);else{tq(a,(Sq(),Pq),null)}}
+function Kq(a,b){var c,d;c=b.b.status;ck&&uD($wnd.console,'Server returned '+c+' for xhr');if(c==401){dt(Ic(pk(a.c,Df),13));ao(Ic(pk(a.c,Be),22),'');d=Ic(pk(a.c,Ge),12);d.b!=(Uo(),To)&&Eo(d,To);return}else{tq(a,(Sq(),Rq),b.a)}}
+function dp(c){return JSON.stringify(c,function(a,b){if(b instanceof Node){throw 'Message JsonObject contained a dom node reference which should not be sent to the server and can cause a cyclic dependecy.'}return b})}
+function Nv(a,b,c){Jv();var d,e,f;e=Oc(Iv.get(a),$wnd.Map);if(e==null){e=new $wnd.Map;Iv.set(a,e)}f=Oc(e.get(b),$wnd.Map);if(f==null){f=new $wnd.Map;e.set(b,f)}d=Ic(f.get(c),79);if(!d){d=new Mv(a,b,c);f.set(c,d)}return d}
+function DC(a){var b,c,d,e,f;f=a.indexOf('; cros ');if(f==-1){return}c=VE(a,cF(41),f);if(c==-1){return}b=c;while(b>=f&&(nH(b,a.length),a.charCodeAt(b)!=32)){--b}if(b==f){return}d=a.substr(b+1,c-(b+1));e=$E(d,'\\.');EC(e)}
+function eu(a,b){var c,d,e,f,g,h;if(!b){debugger;throw Ni(new SD)}for(d=(g=GD(b),g),e=0,f=d.length;e<f;++e){c=d[e];if(a.a.has(c)){debugger;throw Ni(new SD)}h=b[c];if(!(!!h&&AD(h)!=5)){debugger;throw Ni(new SD)}a.a.set(c,h)}}
+function _u(a,b){var c;c=true;if(!b){ck&&($wnd.console.warn(UI),undefined);c=false}else if(K(b.g,a)){if(!K(b,Yu(a,b.d))){ck&&($wnd.console.warn(WI),undefined);c=false}}else{ck&&($wnd.console.warn(VI),undefined);c=false}return c}
+function Hw(a){var b,c,d,e,f;d=Au(a.e,2);d.b&&ox(a.b);for(f=0;f<(GA(d.a),d.c.length);f++){c=Ic(d.c[f],6);e=Ic(pk(c.g.c,Wd),60);b=Ol(e,c.d);if(b){Pl(e,c.d);Gu(c,b);Gv(c)}else{b=Gv(c);cA(a.b).appendChild(b)}}return _A(d,new wy(a))}
+function yC(b,c,d){var e,f;try{mj(b,new AC(d));b.open('GET',c,true);b.send(null)}catch(a){a=Mi(a);if(Sc(a,32)){e=a;ck&&sD($wnd.console,e);dr(Ic(pk(d.a.a,_e),27),Ic(pk(d.a.a,td),7).d);f=e;$n(f.v());lj(b)}else throw Ni(a)}return b}
+function Cn(b){for(var c=0;c<$doc.styleSheets.length;c++){if($doc.styleSheets[c].href===b){var d=$doc.styleSheets[c];try{var e=d.cssRules;e===undefined&&(e=d.rules);if(e===null){return 1}return e.length}catch(a){return 1}}}return -1}
+function Lv(a){var b,c;if(a.f){Sv(a.f);a.f=null}if(a.e){Sv(a.e);a.e=null}b=Oc(Iv.get(a.c),$wnd.Map);if(b==null){return}c=Oc(b.get(a.d),$wnd.Map);if(c==null){return}c.delete(a.j);if(c.size==0){b.delete(a.d);b.size==0&&Iv.delete(a.c)}}
+function Dn(b,c,d,e){try{var f=c.ab();if(!(f instanceof $wnd.Promise)){throw new Error('The expression "'+b+'" result is not a Promise.')}f.then(function(a){d.I()},function(a){console.error(a);e.I()})}catch(a){console.error(a);e.I()}}
+function cr(a){bj(a.c);if(a.a<0){ck&&($wnd.console.debug('Heartbeat terminated, skipping request'),undefined);return}ck&&($wnd.console.debug('Sending heartbeat request...'),undefined);xC(a.d,null,'text/plain; charset=utf-8',new hr(a))}
+function Mw(g,b,c){if(wm(c)){g.Lb(b,c)}else if(Am(c)){var d=g;try{var e=$wnd.customElements.whenDefined(c.localName);var f=new Promise(function(a){setTimeout(a,1000)});Promise.race([e,f]).then(function(){wm(c)&&d.Lb(b,c)})}catch(a){}}}
+function dt(a){if(!a.b){throw Ni(new AE('endRequest called when no request is active'))}a.b=false;(Ic(pk(a.c,Ge),12).b==(Uo(),So)&&Ic(pk(a.c,Lf),35).b||Ic(pk(a.c,rf),15).e==1)&&rs(Ic(pk(a.c,rf),15));zo((Qb(),Pb),new it(a));et(a,new ot)}
+function nx(a,b,c){var d;d=Xi(Uy.prototype.bb,Uy,[]);c.forEach(Xi(Yy.prototype.fb,Yy,[d]));b.c.forEach(d);b.d.forEach(Xi($y.prototype.bb,$y,[]));a.forEach(Xi(Zx.prototype.fb,Zx,[]));if(Aw==null){debugger;throw Ni(new SD)}Aw.delete(b.e)}
+function Wx(a,b,c,d,e,f){var g,h,i,j,k,l,m,n,o,p,q;o=true;g=false;for(j=(q=GD(c),q),k=0,l=j.length;k<l;++k){i=j[k];p=c[i];n=AD(p)==1;if(!n&&!p){continue}o=false;m=!!d&&CD(d[i]);if(n&&m){h='on-'+b+':'+i;m=Vx(a,h,p,e,f)}g=g|m}return o||g}
+function Vi(a,b,c){var d=Ti,h;var e=d[a];var f=e instanceof Array?e[0]:null;if(e&&!f){_=e}else{_=(h=b&&b.prototype,!h&&(h=Ti[b]),Yi(h));_.jc=c;!b&&(_.kc=$i);d[a]=_}for(var g=3;g<arguments.length;++g){arguments[g].prototype=_}f&&(_.ic=f)}
+function lm(a,b){var c,d,e,f,g,h,i,j;c=a.a;e=a.c;i=a.d.length;f=Ic(a.e,29).e;j=qm(f);if(!j){kk(gI+f.d+hI);return}d=[];c.forEach(Xi(_m.prototype.fb,_m,[d]));if(wm(j.a)){g=sm(j,f,null);if(g!=null){Dm(j.a,g,e,i,d);return}}h=Mc(b);_z(h,e,i,d)}
+function zC(b,c,d,e,f){var g;try{mj(b,new AC(f));b.open('POST',c,true);b.setRequestHeader('Content-type',e);b.withCredentials=true;b.send(d)}catch(a){a=Mi(a);if(Sc(a,32)){g=a;ck&&sD($wnd.console,g);f.lb(b,g);lj(b)}else throw Ni(a)}return b}
+function pm(a,b){var c,d,e;c=a;for(d=0;d<b.length;d++){e=b[d];c=om(c,ad(zD(e)))}if(c){return c}else !c?ck&&uD($wnd.console,"There is no element addressed by the path '"+b+"'"):ck&&uD($wnd.console,'The node addressed by path '+b+iI);return null}
+function Sr(b){var c,d;if(b==null){return null}d=bn.kb();try{c=JSON.parse(b);jk('JSON parsing took '+(''+en(bn.kb()-d,3))+'ms');return c}catch(a){a=Mi(a);if(Sc(a,8)){ck&&sD($wnd.console,'Unable to parse JSON: '+b);return null}else throw Ni(a)}}
+function ns(a,b,c){var d,e,f,g,h,i,j,k;i={};d=Ic(pk(a.d,pf),21).b;SE(d,'init')||(i['csrfToken']=d,undefined);i['rpc']=b;i[BI]=ED(Ic(pk(a.d,pf),21).f);i[FI]=ED(a.a++);if(c){for(f=(j=GD(c),j),g=0,h=f.length;g<h;++g){e=f[g];k=c[e];i[e]=k}}return i}
+function aC(){var a;if(YB){return}try{YB=true;while(XB!=null&&XB.length!=0||ZB!=null&&ZB.length!=0){while(XB!=null&&XB.length!=0){a=Ic(XB.splice(0,1)[0],17);a.eb()}if(ZB!=null&&ZB.length!=0){a=Ic(ZB.splice(0,1)[0],17);a.eb()}}}finally{YB=false}}
+function Xw(a,b){var c,d,e,f,g,h;f=b.b;if(a.b){ox(f)}else{h=a.d;for(g=0;g<h.length;g++){e=Ic(h[g],6);d=e.a;if(!d){debugger;throw Ni(new TD("Can't find element to remove"))}cA(d).parentNode==f&&cA(f).removeChild(d)}}c=a.a;c.length==0||Cw(a.c,b,c)}
+function wp(a){var b,c;c=$o(Ic(pk(a.d,He),50),a.h);c=aD(c,'v-r=push');c=aD(c,sI+(''+Ic(pk(a.d,td),7).k));b=Ic(pk(a.d,pf),21).h;b!=null&&(c=aD(c,'v-pushId='+b));ck&&($wnd.console.log('Establishing push connection'),undefined);a.c=c;a.e=yp(a,c,a.a)}
+function dv(a,b){var c;if(b.g!=a){debugger;throw Ni(new SD)}if(b.i){debugger;throw Ni(new TD("Can't re-register a node"))}c=b.d;if(a.a.has(c)){debugger;throw Ni(new TD('Node '+c+' is already registered'))}a.a.set(c,b);a.f&&Xl(Ic(pk(a.c,Yd),51),b)}
+function mE(a){if(a.Yb()){var b=a.c;b.Zb()?(a.i='['+b.h):!b.Yb()?(a.i='[L'+b.Wb()+';'):(a.i='['+b.Wb());a.b=b.Vb()+'[]';a.g=b.Xb()+'[]';return}var c=a.f;var d=a.d;d=d.split('/');a.i=pE('.',[c,pE('$',d)]);a.b=pE('.',[c,pE('.',d)]);a.g=d[d.length-1]}
+function Rt(a,b){var c,d,e;d=new Xt(a);d.a=b;Wt(d,bn.kb());c=dp(b);e=xC(aD(aD(Ic(pk(a.a,td),7).h,'v-r=uidl'),sI+(''+Ic(pk(a.a,td),7).k)),c,vI,d);ck&&tD($wnd.console,'Sending xhr message to server: '+c);a.b&&(!Yj&&(Yj=new $j),Yj).a.l&&cj(new Ut(a,e),250)}
+function Uw(b,c,d){var e,f,g;if(!c){return -1}try{g=cA(Nc(c));while(g!=null){f=Zu(b,g);if(f){return f.d}g=cA(g.parentNode)}}catch(a){a=Mi(a);if(Sc(a,8)){e=a;dk(fJ+c+', returned by an event data expression '+d+'. Error: '+e.v())}else throw Ni(a)}return -1}
+function vw(f){var e='}p';Object.defineProperty(f,e,{value:function(a,b,c){var d=this[e].promises[a];if(d!==undefined){delete this[e].promises[a];b?d[0](c):d[1](Error('Something went wrong. Check server-side logs for more information.'))}}});f[e].promises=[]}
+function Hu(a){var b,c;if(Yu(a.g,a.d)){debugger;throw Ni(new TD('Node should no longer be findable from the tree'))}if(a.i){debugger;throw Ni(new TD('Node is already unregistered'))}a.i=true;c=new vu;b=Vz(a.h);b.forEach(Xi(Ou.prototype.fb,Ou,[c]));a.h.clear()}
+function tn(a,b,c){var d,e;d=new Nn(b);if(a.b.has(b)){!!c&&c.db(d);return}if(An(b,c,a.a)){e=$doc.createElement('style');e.textContent=b;e.type='text/css';(!Yj&&(Yj=new $j),Yj).a.j||_j()||(!Yj&&(Yj=new $j),Yj).a.i?cj(new In(a,b,d),5000):Bn(e,new Kn(a),d);nn(e)}}
+function Fv(a){Dv();var b,c,d;b=null;for(c=0;c<Cv.length;c++){d=Ic(Cv[c],310);if(d.Jb(a)){if(b){debugger;throw Ni(new TD('Found two strategies for the node : '+M(b)+', '+M(d)))}b=d}}if(!b){throw Ni(new zE('State node has no suitable binder strategy'))}return b}
+function pH(a,b){var c,d,e,f;a=a;c=new jF;f=0;d=0;while(d<b.length){e=a.indexOf('%s',f);if(e==-1){break}hF(c,a.substr(f,e-f));gF(c,b[d++]);f=e+2}hF(c,a.substr(f));if(d<b.length){c.a+=' [';gF(c,b[d++]);while(d<b.length){c.a+=', ';gF(c,b[d++])}c.a+=']'}return c.a}
+function pC(b,c){var d,e,f,g,h,i;try{++b.b;h=(e=rC(b,c.L()),e);d=null;for(i=0;i<h.length;i++){g=h[i];try{c.K(g)}catch(a){a=Mi(a);if(Sc(a,8)){f=a;d==null&&(d=[]);d[d.length]=f}else throw Ni(a)}}if(d!=null){throw Ni(new mb(Ic(d[0],5)))}}finally{--b.b;b.b==0&&sC(b)}}
+function Kb(g){Db();function h(a,b,c,d,e){if(!e){e=a+' ('+b+':'+c;d&&(e+=':'+d);e+=')'}var f=ib(e);Mb(f,false)}
+;function i(a){var b=a.onerror;if(b&&!g){return}a.onerror=function(){h.apply(this,arguments);b&&b.apply(this,arguments);return false}}
+i($wnd);i(window)}
+function pA(a,b){var c,d,e;c=(GA(a.a),a.c?(GA(a.a),a.h):null);(_c(b)===_c(c)||b!=null&&K(b,c))&&(a.d=false);if(!((_c(b)===_c(c)||b!=null&&K(b,c))&&(GA(a.a),a.c))&&!a.d){d=a.e.e;e=d.g;if($u(e,d)){oA(a,b);return new TA(a,e)}else{DA(a.a,new XA(a,c,c));aC()}}return lA}
+function AD(a){var b;if(a===null){return 5}b=typeof a;if(SE('string',b)){return 2}else if(SE('number',b)){return 3}else if(SE('boolean',b)){return 4}else if(SE(AH,b)){return Object.prototype.toString.apply(a)===BH?1:0}debugger;throw Ni(new TD('Unknown Json Type'))}
+function yv(a,b){var c,d,e,f,g;if(a.f){debugger;throw Ni(new TD('Previous tree change processing has not completed'))}try{iv(a,true);f=wv(a,b);e=b.length;for(d=0;d<e;d++){c=b[d];if(!SE('attach',c[VH])){g=xv(a,c);!!g&&f.add(g)}}return f}finally{iv(a,false);a.d=false}}
+function xp(a,b){if(!b){debugger;throw Ni(new SD)}switch(a.f.c){case 0:a.f=(eq(),dq);a.b=b;break;case 1:ck&&($wnd.console.log('Closing push connection'),undefined);Jp(a.c);a.f=(eq(),cq);b.C();break;case 2:case 3:throw Ni(new AE('Can not disconnect more than once'));}}
+function Fw(a){var b,c,d,e,f;c=Bu(a.e,20);f=Ic(qA(pB(c,dJ)),6);if(f){b=new $wnd.Function(cJ,"if ( element.shadowRoot ) { return element.shadowRoot; } else { return element.attachShadow({'mode' : 'open'});}");e=Nc(b.call(null,a.b));!f.a&&Gu(f,e);d=new by(f,e,a.a);Hw(d)}}
+function km(a,b,c){var d,e,f,g,h,i;f=b.f;if(f.c.has(1)){h=tm(b);if(h==null){return null}c.push(h)}else if(f.c.has(16)){e=rm(b);if(e==null){return null}c.push(e)}if(!K(f,a)){return km(a,f,c)}g=new iF;i='';for(d=c.length-1;d>=0;d--){hF((g.a+=i,g),Pc(c[d]));i='.'}return g.a}
+function Hp(a,b){var c,d,e,f,g;if(Lp()){Ep(b.a)}else{f=(Ic(pk(a.d,td),7).f?(e='VAADIN/static/push/vaadinPush-min.js'):(e='VAADIN/static/push/vaadinPush.js'),e);ck&&tD($wnd.console,'Loading '+f);d=Ic(pk(a.d,te),58);g=Ic(pk(a.d,td),7).h+f;c=new Wp(a,f,b);vn(d,g,c,false,_H)}}
+function lC(a,b){var c,d,e,f,g,h;if(AD(b)==1){c=b;h=ad(DD(c[0]));switch(h){case 0:{g=ad(DD(c[1]));d=(f=g,Ic(a.a.get(f),6)).a;return d}case 1:return e=Mc(c[1]),e;case 2:return jC(ad(DD(c[1])),ad(DD(c[2])),Ic(pk(a.c,Hf),33));default:throw Ni(new zE(mJ+BD(c)));}}else{return b}}
+function Dr(a,b){var c,d,e,f,g;ck&&($wnd.console.log('Handling dependencies'),undefined);c=new $wnd.Map;for(e=(ZC(),Dc(xc(Dh,1),FH,44,0,[XC,WC,YC])),f=0,g=e.length;f<g;++f){d=e[f];FD(b,d.b!=null?d.b:''+d.c)&&c.set(d,b[d.b!=null?d.b:''+d.c])}c.size==0||Tk(Ic(pk(a.i,Td),72),c)}
+function zv(a,b){var c,d,e,f,g;f=uv(a,b);if(cI in a){e=a[cI];g=e;xA(f,g)}else if('nodeValue' in a){d=ad(DD(a['nodeValue']));c=Yu(b.g,d);if(!c){debugger;throw Ni(new SD)}c.f=b;xA(f,c)}else{debugger;throw Ni(new TD('Change should have either value or nodeValue property: '+dp(a)))}}
+function wH(a){var b,c,d,e;b=0;d=a.length;e=d-4;c=0;while(c<e){b=(nH(c+3,a.length),a.charCodeAt(c+3)+(nH(c+2,a.length),31*(a.charCodeAt(c+2)+(nH(c+1,a.length),31*(a.charCodeAt(c+1)+(nH(c,a.length),31*(a.charCodeAt(c)+31*b)))))));b=b|0;c+=4}while(c<d){b=b*31+RE(a,c++)}b=b|0;return b}
+function Fp(a,b){a.g=b[uI];switch(a.f.c){case 0:a.f=(eq(),aq);Cq(Ic(pk(a.d,Re),18),a);break;case 2:a.f=(eq(),aq);if(!a.b){debugger;throw Ni(new SD)}xp(a,a.b);break;case 1:break;default:throw Ni(new AE('Got onOpen event when connection state is '+a.f+'. This should never happen.'));}}
+function lp(){hp();if(fp||!($wnd.Vaadin.Flow!=null)){ck&&($wnd.console.warn('vaadinBootstrap.js was not loaded, skipping vaadin application configuration.'),undefined);return}fp=true;$wnd.performance&&typeof $wnd.performance.now==CH?(bn=new hn):(bn=new fn);cn();op((Db(),$moduleName))}
+function $b(b,c){var d,e,f,g;if(!b){debugger;throw Ni(new TD('tasks'))}for(e=0,f=b.length;e<f;e++){if(b.length!=f){debugger;throw Ni(new TD(LH+b.length+' != '+f))}g=b[e];try{g[1]?g[0].B()&&(c=Zb(c,g)):g[0].C()}catch(a){a=Mi(a);if(Sc(a,5)){d=a;Db();Mb(d,true)}else throw Ni(a)}}return c}
+function iu(a,b){var c,d,e,f,g,h,i,j,k,l;l=Ic(pk(a.a,_f),9);g=b.length-1;i=zc(ii,FH,2,g+1,6,1);j=[];e=new $wnd.Map;for(d=0;d<g;d++){h=b[d];f=lC(l,h);j.push(f);i[d]='$'+d;k=kC(l,h);if(k){if(lu(k)||!ku(a,k)){wu(k,new pu(a,b));return}e.set(f,k)}}c=b[b.length-1];i[i.length-1]=c;ju(a,i,j,e)}
+function ux(a,b,c){var d,e;if(!b.b){debugger;throw Ni(new TD(eJ+b.e.d+iI))}e=Bu(b.e,0);d=b.b;if(Ux(b.e)&&av(b.e)){nx(a,b,c);$B(new ny(d,e,b))}else if(av(b.e)){xA(pB(e,QI),(WD(),true));qx(d,e)}else{rx(d,e);Yx(Ic(pk(e.e.g.c,td),7),d,gJ,(WD(),VD));vm(d)&&(d.style.display='none',undefined)}}
+function W(d,b){if(b instanceof Object){try{b.__java$exception=d;if(navigator.userAgent.toLowerCase().indexOf('msie')!=-1&&$doc.documentMode<9){return}var c=d;Object.defineProperties(b,{cause:{get:function(){var a=c.u();return a&&a.s()}},suppressed:{get:function(){return c.t()}}})}catch(a){}}}
+function Fj(f,b,c){var d=f;var e=$wnd.Vaadin.Flow.clients[b];e.isActive=zH(function(){return d.S()});e.getVersionInfo=zH(function(a){return {'flow':c}});e.debug=zH(function(){var a=d.a;return a.Z().Fb().Cb()});e.getNodeInfo=zH(function(a){return {element:d.O(a),javaClass:d.Q(a),styles:d.P(a)}})}
+function Kv(a,b,c,d){var e;e=b.has('leading')&&!a.e&&!a.f;if(!e&&(b.has(_I)||b.has(aJ))){a.b=c;a.a=d;!b.has(aJ)&&(!a.e||a.i==null)&&(a.i=d);a.g=null;a.h=null}if(b.has('leading')||b.has(_I)){!a.e&&(a.e=new Wv(a));Sv(a.e);Tv(a.e,ad(a.j))}if(!a.f&&b.has(aJ)){a.f=new Yv(a,b);Uv(a.f,ad(a.j))}return e}
+function rn(a){var b,c,d,e,f,g,h,i,j,k;b=$doc;j=b.getElementsByTagName(mI);for(f=0;f<j.length;f++){c=j.item(f);k=c.src;k!=null&&k.length!=0&&a.b.add(k)}h=b.getElementsByTagName('link');for(e=0;e<h.length;e++){g=h.item(e);i=g.rel;d=g.href;(TE(nI,i)||TE('import',i))&&d!=null&&d.length!=0&&a.b.add(d)}}
+function Bn(a,b,c){a.onload=zH(function(){a.onload=null;a.onerror=null;a.onreadystatechange=null;b.db(c)});a.onerror=zH(function(){a.onload=null;a.onerror=null;a.onreadystatechange=null;b.cb(c)});a.onreadystatechange=function(){('loaded'===a.readyState||'complete'===a.readyState)&&a.onload(arguments[0])}}
+function wn(a,b,c){var d,e,f;f=bp(b);d=new Nn(f);if(a.b.has(f)){!!c&&c.db(d);return}if(An(f,c,a.a)){e=$doc.createElement('link');e.rel=nI;e.type='text/css';e.href=f;if((!Yj&&(Yj=new $j),Yj).a.j||_j()){ac((Qb(),new En(a,f,d)),10)}else{Bn(e,new Rn(a,f),d);(!Yj&&(Yj=new $j),Yj).a.i&&cj(new Gn(a,f,d),5000)}nn(e)}}
+function pq(a){var b,c,d,e;sA((c=Bu(Ic(pk(Ic(pk(a.c,Bf),37).a,_f),9).e,9),pB(c,zI)))!=null&&ak('reconnectingText',sA((d=Bu(Ic(pk(Ic(pk(a.c,Bf),37).a,_f),9).e,9),pB(d,zI))));sA((e=Bu(Ic(pk(Ic(pk(a.c,Bf),37).a,_f),9).e,9),pB(e,AI)))!=null&&ak('offlineText',sA((b=Bu(Ic(pk(Ic(pk(a.c,Bf),37).a,_f),9).e,9),pB(b,AI))))}
+function tx(a,b){var c,d,e,f,g,h;c=a.f;d=b.style;GA(a.a);if(a.c){h=(GA(a.a),Pc(a.h));e=false;if(h.indexOf('!important')!=-1){f=oD($doc,b.tagName);g=f.style;g.cssText=c+': '+h+';';if(SE('important',fD(f.style,c))){iD(d,c,gD(f.style,c),'important');e=true}}e||(d.setProperty(c,h),undefined)}else{d.removeProperty(c)}}
+function sx(a,b){var c,d,e,f,g;d=a.f;GA(a.a);if(a.c){f=(GA(a.a),a.h);c=b[d];e=a.g;g=XD(Jc(ZF(YF(e,new sy(f)),(WD(),true))));g&&(c===undefined||!(_c(c)===_c(f)||c!=null&&K(c,f)||c==f))&&bC(null,new uy(b,d,f))}else Object.prototype.hasOwnProperty.call(b,d)?(delete b[d],undefined):(b[d]=null,undefined);a.g=(XF(),XF(),WF)}
+function rs(a){var b;if(Ic(pk(a.d,Ge),12).b!=(Uo(),So)){ck&&($wnd.console.warn('Trying to send RPC from not yet started or stopped application'),undefined);return}b=Ic(pk(a.d,Df),13).b;b||!!a.b&&!Ap(a.b)?ck&&rD($wnd.console,'Postpone sending invocations to server because of '+(b?'active request':'PUSH not active')):ls(a)}
+function om(a,b){var c,d,e,f,g;c=cA(a).children;e=-1;for(f=0;f<c.length;f++){g=c.item(f);if(!g){debugger;throw Ni(new TD('Unexpected element type in the collection of children. DomElement::getChildren is supposed to return Element chidren only, but got '+Qc(g)))}d=g;TE('style',d.tagName)||++e;if(e==b){return g}}return null}
+function Cw(a,b,c){var d,e,f,g,h,i,j,k;j=Au(b.e,2);if(a==0){d=Cx(j,b.b)}else if(a<=(GA(j.a),j.c.length)&&a>0){k=Ww(a,b);d=!k?null:cA(k.a).nextSibling}else{d=null}for(g=0;g<c.length;g++){i=c[g];h=Ic(i,6);f=Ic(pk(h.g.c,Wd),60);e=Ol(f,h.d);if(e){Pl(f,h.d);Gu(h,e);Gv(h)}else{e=Gv(h);cA(b.b).insertBefore(e,d)}d=cA(e).nextSibling}}
+function Vw(b,c){var d,e,f,g,h;if(!c){return -1}try{h=cA(Nc(c));f=[];f.push(b);for(e=0;e<f.length;e++){g=Ic(f[e],6);if(h.isSameNode(g.a)){return g.d}bB(Au(g,2),Xi(uz.prototype.fb,uz,[f]))}h=cA(h.parentNode);return Ex(f,h)}catch(a){a=Mi(a);if(Sc(a,8)){d=a;dk(fJ+c+', which was the event.target. Error: '+d.v())}else throw Ni(a)}return -1}
+function Br(a){if(a.j.size==0){kk('Gave up waiting for message '+(a.f+1)+' from the server')}else{ck&&($wnd.console.warn('WARNING: reponse handling was never resumed, forcibly removing locks...'),undefined);a.j.clear()}if(!Gr(a)&&a.g.length!=0){Tz(a.g);os(Ic(pk(a.i,rf),15));Ic(pk(a.i,Df),13).b&&dt(Ic(pk(a.i,Df),13));ps(Ic(pk(a.i,rf),15))}}
+function ts(a,b,c){if(b==a.a){!!a.c&&ad(DD(a.c[FI]))<b&&(a.c=null);return}if(c){jk('Forced update of clientId to '+a.a);a.a=b;return}if(b>a.a){a.a==0?ck&&tD($wnd.console,'Updating client-to-server id to '+b+' based on server'):kk('Server expects next client-to-server id to be '+b+' but we were going to use '+a.a+'. Will use '+b+'.');a.a=b}}
+function Pk(a,b,c){var d,e;e=Ic(pk(a.a,te),58);d=c==(ZC(),XC);switch(b.c){case 0:if(d){return new $k(e)}return new dl(e);case 1:if(d){return new il(e)}return new yl(e);case 2:if(d){throw Ni(new zE('Inline load mode is not supported for JsModule.'))}return new Al(e);case 3:return new kl;default:throw Ni(new zE('Unknown dependency type '+b));}}
+function Lr(b,c){var d,e,f,g;f=Ic(pk(b.i,_f),9);g=yv(f,c['changes']);if(!Ic(pk(b.i,td),7).f){try{d=zu(f.e);ck&&($wnd.console.log('StateTree after applying changes:'),undefined);ck&&tD($wnd.console,d)}catch(a){a=Mi(a);if(Sc(a,8)){e=a;ck&&($wnd.console.error('Failed to log state tree'),undefined);ck&&sD($wnd.console,e)}else throw Ni(a)}}_B(new hs(g))}
+function rw(n,k,l,m){qw();n[k]=zH(function(c){var d=Object.getPrototypeOf(this);d[k]!==undefined&&d[k].apply(this,arguments);var e=c||$wnd.event;var f=l.Db();var g=sw(this,e,k,l);g===null&&(g=Array.prototype.slice.call(arguments));var h;var i=-1;if(m){var j=this['}p'].promises;i=j.length;h=new Promise(function(a,b){j[i]=[a,b]})}f.Gb(l,k,g,i);return h})}
+function Ok(a,b,c){var d,e,f,g,h;f=new $wnd.Map;for(e=0;e<c.length;e++){d=c[e];h=(RC(),Qo((VC(),UC),d[VH]));g=Pk(a,h,b);if(h==NC){Uk(d['url'],g)}else{switch(b.c){case 1:Uk($o(Ic(pk(a.a,He),50),d['url']),g);break;case 2:f.set($o(Ic(pk(a.a,He),50),d['url']),g);break;case 0:Uk(d['contents'],g);break;default:throw Ni(new zE('Unknown load mode = '+b));}}}return f}
+function go(a){var b,c;if(a.b){ck&&($wnd.console.debug('Web components resynchronization already in progress'),undefined);return}a.b=true;b=Ic(pk(a.a,td),7).h+'web-component/web-component-bootstrap.js';dr(Ic(pk(a.a,_e),27),-1);Rs(qA(pB(Bu(Ic(pk(Ic(pk(a.a,zf),36).a,_f),9).e,5),oI)))&&vs(Ic(pk(a.a,rf),15),false);c=aD(b,'v-r=webcomponent-resync');wC(c,new mo(a))}
+function $E(a,b){var c,d,e,f,g,h,i,j;c=new RegExp(b,'g');i=zc(ii,FH,2,0,6,1);d=0;j=a;f=null;while(true){h=c.exec(j);if(h==null||j==''){i[d]=j;break}else{g=h.index;i[d]=j.substr(0,g);j=aF(j,g+h[0].length,j.length);c.lastIndex=0;if(f==j){i[d]=j.substr(0,1);j=j.substr(1)}f=j;++d}}if(a.length>0){e=i.length;while(e>0&&i[e-1]==''){--e}e<i.length&&(i.length=e)}return i}
+function qq(a,b){if(Ic(pk(a.c,Ge),12).b!=(Uo(),So)){ck&&($wnd.console.warn('Trying to reconnect after application has been stopped. Giving up'),undefined);return}if(b){ck&&($wnd.console.log('Re-sending last message to the server...'),undefined);qs(Ic(pk(a.c,rf),15),b)}else{ck&&($wnd.console.log('Trying to re-establish server connection...'),undefined);cr(Ic(pk(a.c,_e),27))}}
+function vE(a){var b,c,d,e,f;if(a==null){throw Ni(new ME(IH))}d=a.length;e=d>0&&(nH(0,a.length),a.charCodeAt(0)==45||(nH(0,a.length),a.charCodeAt(0)==43))?1:0;for(b=e;b<d;b++){if(ZD((nH(b,a.length),a.charCodeAt(b)))==-1){throw Ni(new ME(xJ+a+'"'))}}f=parseInt(a,10);c=f<-2147483648;if(isNaN(f)){throw Ni(new ME(xJ+a+'"'))}else if(c||f>2147483647){throw Ni(new ME(xJ+a+'"'))}return f}
+function vx(a,b,c,d){var e,f,g,h,i;i=Au(a,24);for(f=0;f<(GA(i.a),i.c.length);f++){e=Ic(i.c[f],6);if(e==b){continue}if(SE((h=Bu(b,0),BD(Nc(qA(pB(h,RI))))),(g=Bu(e,0),BD(Nc(qA(pB(g,RI))))))){kk('There is already a request to attach element addressed by the '+d+". The existing request's node id='"+e.d+"'. Cannot attach the same element twice.");gv(b.g,a,b.d,e.d,c);return false}}return true}
+function wc(a,b){var c;switch(yc(a)){case 6:return Xc(b);case 7:return Uc(b);case 8:return Tc(b);case 3:return Array.isArray(b)&&(c=yc(b),!(c>=14&&c<=16));case 11:return b!=null&&Yc(b);case 12:return b!=null&&(typeof b===AH||typeof b==CH);case 0:return Hc(b,a.__elementTypeId$);case 2:return Zc(b)&&!(b.kc===$i);case 1:return Zc(b)&&!(b.kc===$i)||Hc(b,a.__elementTypeId$);default:return true;}}
+function Cl(b,c){if(document.body.$&&document.body.$.hasOwnProperty&&document.body.$.hasOwnProperty(c)){return document.body.$[c]}else if(b.shadowRoot){return b.shadowRoot.getElementById(c)}else if(b.getElementById){return b.getElementById(c)}else if(c&&c.match('^[a-zA-Z0-9-_]*$')){return b.querySelector('#'+c)}else{return Array.from(b.querySelectorAll('[id]')).find(function(a){return a.id==c})}}
+function Gp(a,b){var c,d;if(!Bp(a)){throw Ni(new AE('This server to client push connection should not be used to send client to server messages'))}if(a.f==(eq(),aq)){d=dp(b);jk('Sending push ('+a.g+') message to server: '+d);if(SE(a.g,tI)){c=new _p(d);while(c.a<c.b.length){zp(a.e,$p(c))}}else{zp(a.e,d)}return}if(a.f==bq){Bq(Ic(pk(a.d,Re),18),b);return}throw Ni(new AE('Can not push after disconnecting'))}
+function tq(a,b,c){var d;if(Ic(pk(a.c,Ge),12).b!=(Uo(),So)){return}bk('reconnecting');if(a.b){if(Tq(b,a.b)){ck&&uD($wnd.console,'Now reconnecting because of '+b+' failure');a.b=b}}else{a.b=b;ck&&uD($wnd.console,'Reconnecting because of '+b+' failure')}if(a.b!=b){return}++a.a;jk('Reconnect attempt '+a.a+' for '+b);a.a>=rA((d=Bu(Ic(pk(Ic(pk(a.c,Bf),37).a,_f),9).e,9),pB(d,'reconnectAttempts')),10000)?rq(a):Hq(a,c)}
+function El(a,b,c,d){var e,f,g,h,i,j,k,l,m,n,o,p,q,r;j=null;g=cA(a.a).childNodes;o=new $wnd.Map;e=!b;i=-1;for(m=0;m<g.length;m++){q=Nc(g[m]);o.set(q,FE(m));K(q,b)&&(e=true);if(e&&!!q&&TE(c,q.tagName)){j=q;i=m;break}}if(!j){fv(a.g,a,d,-1,c,-1)}else{p=Au(a,2);k=null;f=0;for(l=0;l<(GA(p.a),p.c.length);l++){r=Ic(p.c[l],6);h=r.a;n=Ic(o.get(h),26);!!n&&n.a<i&&++f;if(K(h,j)){k=FE(r.d);break}}k=Fl(a,d,j,k);fv(a.g,a,d,k.a,j.tagName,f)}}
+function Av(a,b){var c,d,e,f,g,h,i,j,k,l,m,n,o,p,q;n=ad(DD(a[YI]));m=Au(b,n);i=ad(DD(a['index']));ZI in a?(o=ad(DD(a[ZI]))):(o=0);if('add' in a){d=a['add'];c=(j=Mc(d),j);dB(m,i,o,c)}else if('addNodes' in a){e=a['addNodes'];l=e.length;c=[];q=b.g;for(h=0;h<l;h++){g=ad(DD(e[h]));f=(k=g,Ic(q.a.get(k),6));if(!f){debugger;throw Ni(new TD('No child node found with id '+g))}f.f=b;c[h]=f}dB(m,i,o,c)}else{p=m.c.splice(i,o);DA(m.a,new jA(m,i,p,[],false))}}
+function xv(a,b){var c,d,e,f,g,h,i;g=b[VH];e=ad(DD(b[LI]));d=(c=e,Ic(a.a.get(c),6));if(!d&&a.d){return d}if(!d){debugger;throw Ni(new TD('No attached node found'))}switch(g){case 'empty':vv(b,d);break;case 'splice':Av(b,d);break;case 'put':zv(b,d);break;case ZI:f=uv(b,d);wA(f);break;case 'detach':jv(d.g,d);d.f=null;break;case 'clear':h=ad(DD(b[YI]));i=Au(d,h);aB(i);break;default:{debugger;throw Ni(new TD('Unsupported change type: '+g))}}return d}
+function jm(a){var b,c,d,e,f;if(Sc(a,6)){e=Ic(a,6);d=null;if(e.c.has(1)){d=Bu(e,1)}else if(e.c.has(16)){d=Au(e,16)}else if(e.c.has(23)){return jm(pB(Bu(e,23),cI))}if(!d){debugger;throw Ni(new TD("Don't know how to convert node without map or list features"))}b=d.Rb(new Fm);if(!!b&&!(fI in b)){b[fI]=ED(e.d);Bm(e,d,b)}return b}else if(Sc(a,16)){f=Ic(a,16);if(f.e.d==23){return jm((GA(f.a),f.h))}else{c={};c[f.f]=jm((GA(f.a),f.h));return c}}else{return a}}
+function yp(f,c,d){var e=f;d.url=c;d.onOpen=zH(function(a){e.ub(a)});d.onReopen=zH(function(a){e.wb(a)});d.onMessage=zH(function(a){e.tb(a)});d.onError=zH(function(a){e.sb(a)});d.onTransportFailure=zH(function(a,b){e.xb(a)});d.onClose=zH(function(a){e.rb(a)});d.onReconnect=zH(function(a,b){e.vb(a,b)});d.onClientTimeout=zH(function(a){e.qb(a)});d.headers={'X-Vaadin-LastSeenServerSyncId':function(){return e.pb()}};return $wnd.vaadinPush.atmosphere.subscribe(d)}
+function hu(h,e,f){var g={};g.getNode=zH(function(a){var b=e.get(a);if(b==null){throw new ReferenceError('There is no a StateNode for the given argument.')}return b});g.$appId=h.Bb().replace(/-\d+$/,'');g.registry=h.a;g.attachExistingElement=zH(function(a,b,c,d){El(g.getNode(a),b,c,d)});g.populateModelProperties=zH(function(a,b){Hl(g.getNode(a),b)});g.registerUpdatableModelProperties=zH(function(a,b){Jl(g.getNode(a),b)});g.stopApplication=zH(function(){f.I()});return g}
+function Yx(a,b,c,d){var e,f,g,h,i;if(d==null||Xc(d)){ep(b,c,Pc(d))}else{f=d;if(0==AD(f)){g=f;if(!('uri' in g)){debugger;throw Ni(new TD("Implementation error: JsonObject is recieved as an attribute value for '"+c+"' but it has no "+'uri'+' key'))}i=g['uri'];if(a.l&&!i.match(/^(?:[a-zA-Z]+:)?\/\//)){e=a.h;e=(h='/'.length,SE(e.substr(e.length-h,h),'/')?e:e+'/');cA(b).setAttribute(c,e+(''+i))}else{i==null?cA(b).removeAttribute(c):cA(b).setAttribute(c,i)}}else{ep(b,c,Zi(d))}}}
+function $w(a,b,c){var d,e,f,g,h,i,j,k,l,m,n,o,p;p=Ic(c.e.get(Vg),77);if(!p||!p.a.has(a)){return}k=$E(a,'\\.');g=c;f=null;e=0;j=k.length;for(m=k,n=0,o=m.length;n<o;++n){l=m[n];d=Bu(g,1);if(!rB(d,l)&&e<j-1){ck&&rD($wnd.console,"Ignoring property change for property '"+a+"' which isn't defined from server");return}f=pB(d,l);Sc((GA(f.a),f.h),6)&&(g=(GA(f.a),Ic(f.h,6)));++e}if(Sc((GA(f.a),f.h),6)){h=(GA(f.a),Ic(f.h,6));i=Nc(b.a[b.b]);if(!(fI in i)||h.c.has(16)){return}}pA(f,b.a[b.b]).I()}
+function ls(a){var b,c,d,e;if(a.c){jk('Sending pending push message '+BD(a.c));c=a.c;a.c=null;gt(Ic(pk(a.d,Df),13));qs(a,c);return}e=Ic(pk(a.d,Lf),35);if(e.c.length==0&&a.e!=1){return}d=e.c;e.c=[];e.b=false;e.a=Et;if(d.length==0&&a.e!=1){ck&&($wnd.console.warn('All RPCs filtered out, not sending anything to the server'),undefined);return}b={};if(a.e==1){a.e=2;ck&&($wnd.console.log('Resynchronizing from server'),undefined);b[CI]=Object(true)}bk('loading');gt(Ic(pk(a.d,Df),13));qs(a,ns(a,d,b))}
+function Ij(a){var b,c,d,e,f,g,h,i;this.a=new Ak(this,a);T((Ic(pk(this.a,Be),22),new Qj));f=Ic(pk(this.a,_f),9).e;Bs(f,Ic(pk(this.a,vf),73));new cC(new at(Ic(pk(this.a,Re),18)));h=Bu(f,10);mr(h,'first',new pr,450);mr(h,'second',new rr,1500);mr(h,'third',new tr,5000);i=pB(h,'theme');nA(i,new vr);c=$doc.body;Gu(f,c);Ev(f,c);jk('Starting application '+a.a);b=a.a;b=ZE(b,'-\\d+$','');d=a.f;e=a.g;Gj(this,b,d,e,a.c);if(!d){g=a.i;Fj(this,b,g);ck&&tD($wnd.console,'Vaadin application servlet version: '+g)}bk('loading')}
+function Fr(a,b){var c,d;if(!b){throw Ni(new zE('The json to handle cannot be null'))}if((BI in b?b[BI]:-1)==-1){c=b['meta'];(!c||!(II in c))&&ck&&($wnd.console.error("Response didn't contain a server id. Please verify that the server is up-to-date and that the response data has not been modified in transmission."),undefined)}d=Ic(pk(a.i,Ge),12).b;if(d==(Uo(),Ro)){d=So;Eo(Ic(pk(a.i,Ge),12),d)}d==So?Er(a,b):ck&&($wnd.console.warn('Ignored received message because application has already been stopped'),undefined)}
+function Wb(a){var b,c,d,e,f,g,h;if(!a){debugger;throw Ni(new TD('tasks'))}f=a.length;if(f==0){return null}b=false;c=new R;while(xb()-c.a<16){d=false;for(e=0;e<f;e++){if(a.length!=f){debugger;throw Ni(new TD(LH+a.length+' != '+f))}h=a[e];if(!h){continue}d=true;if(!h[1]){debugger;throw Ni(new TD('Found a non-repeating Task'))}if(!h[0].B()){a[e]=null;b=true}}if(!d){break}}if(b){g=[];for(e=0;e<f;e++){!!a[e]&&(g[g.length]=a[e],undefined)}if(g.length>=f){debugger;throw Ni(new SD)}return g.length==0?null:g}else{return a}}
+function Fx(a,b,c,d,e){var f,g,h;h=Yu(e,ad(a));if(!h.c.has(1)){return}if(!Ax(h,b)){debugger;throw Ni(new TD('Host element is not a parent of the node whose property has changed. This is an implementation error. Most likely it means that there are several StateTrees on the same page (might be possible with portlets) and the target StateTree should not be passed into the method as an argument but somehow detected from the host element. Another option is that host element is calculated incorrectly.'))}f=Bu(h,1);g=pB(f,c);pA(g,d).I()}
+function _n(a,b,c,d){var e,f,g,h,i,j;h=$doc;j=h.createElement('div');j.className='v-system-error';if(a!=null){f=h.createElement('div');f.className='caption';f.textContent=a;j.appendChild(f);ck&&sD($wnd.console,a)}if(b!=null){i=h.createElement('div');i.className='message';i.textContent=b;j.appendChild(i);ck&&sD($wnd.console,b)}if(c!=null){g=h.createElement('div');g.className='details';g.textContent=c;j.appendChild(g);ck&&sD($wnd.console,c)}if(d!=null){e=h.querySelector(d);!!e&&kD(Nc(ZF(bG(e.shadowRoot),e)),j)}else{lD(h.body,j)}return j}
+function np(a,b){var c,d,e;c=vp(b,'serviceUrl');Cj(a,tp(b,'webComponentMode'));if(c==null){yj(a,bp('.'));sj(a,bp(vp(b,qI)))}else{a.h=c;sj(a,bp(c+(''+vp(b,qI))))}Bj(a,up(b,'v-uiId').a);uj(a,up(b,'heartbeatInterval').a);vj(a,up(b,'maxMessageSuspendTimeout').a);zj(a,(d=b.getConfig(rI),d?d.vaadinVersion:null));e=b.getConfig(rI);sp();Aj(a,b.getConfig('sessExpMsg'));wj(a,!tp(b,'debug'));xj(a,tp(b,'requestTiming'));tj(a,b.getConfig('webcomponents'));tp(b,'devToolsEnabled');vp(b,'liveReloadUrl');vp(b,'liveReloadBackend');vp(b,'springBootLiveReloadPort')}
+function qc(a,b){var c,d,e,f,g,h,i,j,k;j='';if(b.length==0){return a.G(OH,MH,-1,-1)}k=bF(b);SE(k.substr(0,3),'at ')&&(k=k.substr(3));k=k.replace(/\[.*?\]/g,'');g=k.indexOf('(');if(g==-1){g=k.indexOf('@');if(g==-1){j=k;k=''}else{j=bF(k.substr(g+1));k=bF(k.substr(0,g))}}else{c=k.indexOf(')',g);j=k.substr(g+1,c-(g+1));k=bF(k.substr(0,g))}g=UE(k,cF(46));g!=-1&&(k=k.substr(g+1));(k.length==0||SE(k,'Anonymous function'))&&(k=MH);h=WE(j,cF(58));e=XE(j,cF(58),h-1);i=-1;d=-1;f=OH;if(h!=-1&&e!=-1){f=j.substr(0,e);i=kc(j.substr(e+1,h-(e+1)));d=kc(j.substr(h+1))}return a.G(f,k,i,d)}
+function Ew(a,b){var c,d,e,f,g,h;g=(e=Bu(b,0),Nc(qA(pB(e,RI))));h=g[VH];if(SE('inMemory',h)){Gv(b);return}if(!a.b){debugger;throw Ni(new TD('Unexpected html node. The node is supposed to be a custom element'))}if(SE('@id',h)){if(fm(a.b)){gm(a.b,new Gy(a,b,g));return}else if(!(typeof a.b.$!=KH)){im(a.b,new Iy(a,b,g));return}Zw(a,b,g,true)}else if(SE(SI,h)){if(!a.b.root){im(a.b,new Ky(a,b,g));return}_w(a,b,g,true)}else if(SE('@name',h)){f=g[RI];c="name='"+f+"'";d=new My(a,f);if(!Mx(d.a,d.b)){kn(a.b,f,new Oy(a,b,d,f,c));return}Sw(a,b,true,d,f,c)}else{debugger;throw Ni(new TD('Unexpected payload type '+h))}}
+function Ak(a,b){var c;this.a=new $wnd.Map;this.b=new $wnd.Map;sk(this,yd,a);sk(this,td,b);sk(this,te,new yn(this));sk(this,He,new _o(this));sk(this,Td,new Wk(this));sk(this,Be,new ho(this));tk(this,Ge,new Bk);sk(this,_f,new kv(this));sk(this,Df,new ht(this));sk(this,pf,new Pr(this));sk(this,rf,new ws(this));sk(this,Lf,new Jt(this));sk(this,Hf,new Bt(this));sk(this,Wf,new nu(this));tk(this,Sf,new Dk);tk(this,Wd,new Fk);sk(this,Yd,new Zl(this));c=new Hk(this);sk(this,_e,new er(c.a));this.b.set(_e,c);sk(this,Re,new Mq(this));sk(this,Rf,new St(this));sk(this,zf,new Qs(this));sk(this,Bf,new _s(this));sk(this,vf,new Hs(this))}
+function wb(b){var c=function(a){return typeof a!=KH};var d=function(a){return a.replace(/\r\n/g,'')};if(c(b.outerHTML))return d(b.outerHTML);c(b.innerHTML)&&b.cloneNode&&$doc.createElement('div').appendChild(b.cloneNode(true)).innerHTML;if(c(b.nodeType)&&b.nodeType==3){return "'"+b.data.replace(/ /g,'\u25AB').replace(/\u00A0/,'\u25AA')+"'"}if(typeof c(b.htmlText)&&b.collapse){var e=b.htmlText;if(e){return 'IETextRange ['+d(e)+']'}else{var f=b.duplicate();f.pasteHTML('|');var g='IETextRange '+d(b.parentElement().outerHTML);f.moveStart('character',-1);f.pasteHTML('');return g}}return b.toString?b.toString():'[JavaScriptObject]'}
+function Bm(a,b,c){var d,e,f;f=[];if(a.c.has(1)){if(!Sc(b,43)){debugger;throw Ni(new TD('Received an inconsistent NodeFeature for a node that has a ELEMENT_PROPERTIES feature. It should be NodeMap, but it is: '+b))}e=Ic(b,43);oB(e,Xi(Vm.prototype.bb,Vm,[f,c]));f.push(nB(e,new Rm(f,c)))}else if(a.c.has(16)){if(!Sc(b,29)){debugger;throw Ni(new TD('Received an inconsistent NodeFeature for a node that has a TEMPLATE_MODELLIST feature. It should be NodeList, but it is: '+b))}d=Ic(b,29);f.push(_A(d,new Lm(c)))}if(f.length==0){debugger;throw Ni(new TD('Node should have ELEMENT_PROPERTIES or TEMPLATE_MODELLIST feature'))}f.push(xu(a,new Pm(f)))}
+function wx(a,b,c,d,e){var f,g,h,i,j,k,l,m,n,o;l=e.e;o=Pc(qA(pB(Bu(b,0),'tag')));h=false;if(!a){h=true;ck&&uD($wnd.console,iJ+d+" is not found. The requested tag name is '"+o+"'")}else if(!(!!a&&TE(o,a.tagName))){h=true;kk(iJ+d+" has the wrong tag name '"+a.tagName+"', the requested tag name is '"+o+"'")}if(h){gv(l.g,l,b.d,-1,c);return false}if(!l.c.has(20)){return true}k=Bu(l,20);m=Ic(qA(pB(k,dJ)),6);if(!m){return true}j=Au(m,2);g=null;for(i=0;i<(GA(j.a),j.c.length);i++){n=Ic(j.c[i],6);f=n.a;if(K(f,a)){g=FE(n.d);break}}if(g){ck&&uD($wnd.console,iJ+d+" has been already attached previously via the node id='"+g+"'");gv(l.g,l,b.d,g.a,c);return false}return true}
+function ju(b,c,d,e){var f,g,h,i,j,k,l,m,n;if(c.length!=d.length+1){debugger;throw Ni(new SD)}try{j=new ($wnd.Function.bind.apply($wnd.Function,[null].concat(c)));j.apply(hu(b,e,new tu(b)),d)}catch(a){a=Mi(a);if(Sc(a,8)){i=a;ek(new lk(i));ck&&($wnd.console.error('Exception is thrown during JavaScript execution. Stacktrace will be dumped separately.'),undefined);if(!Ic(pk(b.a,td),7).f){g=new kF('[');h='';for(l=c,m=0,n=l.length;m<n;++m){k=l[m];hF((g.a+=h,g),k);h=', '}g.a+=']';f=g.a;nH(0,f.length);f.charCodeAt(0)==91&&(f=f.substr(1));RE(f,f.length-1)==93&&(f=aF(f,0,f.length-1));ck&&sD($wnd.console,"The error has occurred in the JS code: '"+f+"'")}}else throw Ni(a)}}
+function Gw(a,b,c,d){var e,f,g,h,i,j,k;g=av(b);i=Pc(qA(pB(Bu(b,0),'tag')));if(!(i==null||TE(c.tagName,i))){debugger;throw Ni(new TD("Element tag name is '"+c.tagName+"', but the required tag name is "+Pc(qA(pB(Bu(b,0),'tag')))))}Aw==null&&(Aw=Uz());if(Aw.has(b)){return}Aw.set(b,(WD(),true));f=new by(b,c,d);e=[];h=[];if(g){h.push(Jw(f));h.push(jw(new sz(f),f.e,17,false));h.push((j=Bu(f.e,4),oB(j,Xi(az.prototype.bb,az,[f])),nB(j,new cz(f))));h.push(Ow(f));h.push(Hw(f));h.push(Nw(f));h.push(Iw(c,b));h.push(Lw(12,new dy(c),Rw(e),b));h.push(Lw(3,new fy(c),Rw(e),b));h.push(Lw(1,new Cy(c),Rw(e),b));Mw(a,b,c);h.push(xu(b,new Wy(h,f,e)))}h.push(Pw(h,f,e));k=new cy(b);b.e.set(ig,k);_B(new oz(b))}
+function Gj(k,e,f,g,h){var i=k;var j={};j.isActive=zH(function(){return i.S()});j.getByNodeId=zH(function(a){return i.O(a)});j.getNodeId=zH(function(a){return i.R(a)});j.getUIId=zH(function(){var a=i.a.V();return a.M()});j.addDomBindingListener=zH(function(a,b){i.N(a,b)});j.productionMode=f;j.poll=zH(function(){var a=i.a.X();a.yb()});j.connectWebComponent=zH(function(a){var b=i.a;var c=b.Y();var d=b.Z().Fb().d;c.zb(d,'connect-web-component',a)});g&&(j.getProfilingData=zH(function(){var a=i.a.W();var b=[a.e,a.l];null!=a.k?(b=b.concat(a.k)):(b=b.concat(-1,-1));b[b.length]=a.a;return b}));j.resolveUri=zH(function(a){var b=i.a._();return b.ob(a)});j.sendEventMessage=zH(function(a,b,c){var d=i.a.Y();d.zb(a,b,c)});j.initializing=false;j.exportedWebComponents=h;$wnd.Vaadin.Flow.clients[e]=j}
+function Mr(a,b,c,d){var e,f,g,h,i,j,k,l,m;if(!((BI in b?b[BI]:-1)==-1||(BI in b?b[BI]:-1)==a.f)){debugger;throw Ni(new SD)}try{k=xb();i=b;if('constants' in i){e=Ic(pk(a.i,Sf),59);f=i['constants'];eu(e,f)}'changes' in i&&Lr(a,i);DI in i&&_B(new bs(a,i));jk('handleUIDLMessage: '+(xb()-k)+' ms');aC();j=b['meta'];if(j){m=Ic(pk(a.i,Ge),12).b;if(II in j){if(m!=(Uo(),To)){Eo(Ic(pk(a.i,Ge),12),To);_b((Qb(),new fs(a)),250)}}else if('appError' in j&&m!=(Uo(),To)){g=j['appError'];co(Ic(pk(a.i,Be),22),g['caption'],g['message'],g['details'],g['url'],g['querySelector']);Eo(Ic(pk(a.i,Ge),12),(Uo(),To))}}a.e=ad(xb()-d);a.l+=a.e;if(!a.d){a.d=true;h=Rr();if(h!=0){l=ad(xb()-h);ck&&tD($wnd.console,'First response processed '+l+' ms after fetchStart')}a.a=Qr()}}finally{jk(' Processing time was '+(''+a.e)+'ms');Ir(b)&&dt(Ic(pk(a.i,Df),13));Or(a,c)}}
+function Ip(a){var b,c,d,e;this.f=(eq(),bq);this.d=a;Do(Ic(pk(a,Ge),12),new hq(this));this.a={transport:tI,maxStreamingLength:1000000,fallbackTransport:'long-polling',contentType:vI,reconnectInterval:5000,withCredentials:true,maxWebsocketErrorRetries:12,timeout:-1,maxReconnectOnClose:10000000,trackMessageLength:true,enableProtocol:true,handleOnlineOffline:false,executeCallbackBeforeReconnect:true,messageDelimiter:String.fromCharCode(124)};this.a['logLevel']='debug';Ns(Ic(pk(this.d,zf),36)).forEach(Xi(lq.prototype.bb,lq,[this]));c=Os(Ic(pk(this.d,zf),36));if(c==null||bF(c).length==0||SE('/',c)){this.h=wI;d=Ic(pk(a,td),7).h;if(!SE(d,'.')){e='/'.length;SE(d.substr(d.length-e,e),'/')||(d+='/');this.h=d+(''+this.h)}}else{b=Ic(pk(a,td),7).b;e='/'.length;SE(b.substr(b.length-e,e),'/')&&SE(c.substr(0,1),'/')&&(c=c.substr(1));this.h=b+(''+c)+wI}Hp(this,new nq(this))}
+function Xu(a,b){if(a.b==null){a.b=new $wnd.Map;a.b.set(FE(0),'elementData');a.b.set(FE(1),'elementProperties');a.b.set(FE(2),'elementChildren');a.b.set(FE(3),'elementAttributes');a.b.set(FE(4),'elementListeners');a.b.set(FE(5),'pushConfiguration');a.b.set(FE(6),'pushConfigurationParameters');a.b.set(FE(7),'textNode');a.b.set(FE(8),'pollConfiguration');a.b.set(FE(9),'reconnectDialogConfiguration');a.b.set(FE(10),'loadingIndicatorConfiguration');a.b.set(FE(11),'classList');a.b.set(FE(12),'elementStyleProperties');a.b.set(FE(15),'componentMapping');a.b.set(FE(16),'modelList');a.b.set(FE(17),'polymerServerEventHandlers');a.b.set(FE(18),'polymerEventListenerMap');a.b.set(FE(19),'clientDelegateHandlers');a.b.set(FE(20),'shadowRootData');a.b.set(FE(21),'shadowRootHost');a.b.set(FE(22),'attachExistingElementFeature');a.b.set(FE(24),'virtualChildrenList');a.b.set(FE(23),'basicTypeValue')}return a.b.has(FE(b))?Pc(a.b.get(FE(b))):'Unknown node feature: '+b}
+function Yw(a,b){var c,d,e,f,g,h,i,j,k,l,m,n,o,p,q,r,s,t,u,v,w,A,B,C,D,F,G;if(!b){debugger;throw Ni(new SD)}f=b.b;t=b.e;if(!f){debugger;throw Ni(new TD('Cannot handle DOM event for a Node'))}D=a.type;s=Bu(t,4);e=Ic(pk(t.g.c,Sf),59);i=Pc(qA(pB(s,D)));if(i==null){debugger;throw Ni(new SD)}if(!du(e,i)){debugger;throw Ni(new SD)}j=Nc(cu(e,i));p=(A=GD(j),A);B=new $wnd.Set;p.length==0?(g=null):(g={});for(l=p,m=0,n=l.length;m<n;++m){k=l[m];if(SE(k.substr(0,1),'}')){u=k.substr(1);B.add(u)}else if(SE(k,']')){C=Vw(t,a.target);g[']']=Object(C)}else if(SE(k.substr(0,1),']')){r=k.substr(1);h=Dx(r);o=h(a,f);C=Uw(t.g,o,r);g[k]=Object(C)}else{h=Dx(k);o=h(a,f);g[k]=o}}B.forEach(Xi(iz.prototype.fb,iz,[t,f]));d=new $wnd.Map;B.forEach(Xi(kz.prototype.fb,kz,[d,b]));v=new mz(t,D,g);w=Wx(f,D,j,g,v,d);if(w){c=false;q=B.size==0;q&&(c=EF((Jv(),F=new GF,G=Xi($v.prototype.bb,$v,[F]),Iv.forEach(G),F),v,0)!=-1);if(!c){Yz(d).forEach(Xi(_x.prototype.fb,_x,[]));Xx(v.b,v.c,v.a,null)}}}
+function Er(a,b){var c,d,e,f,g,h,i,j,k,l,m,n;j=BI in b?b[BI]:-1;e=CI in b;if(!e&&Ic(pk(a.i,rf),15).e==2){g=b;if(DI in g){d=g[DI];for(f=0;f<d.length;f++){c=d[f];if(c.length>0&&SE('window.location.reload();',c[0])){ck&&($wnd.console.warn('Executing forced page reload while a resync request is ongoing.'),undefined);$wnd.location.reload();return}}}ck&&($wnd.console.warn('Ignoring message from the server as a resync request is ongoing.'),undefined);return}Ic(pk(a.i,rf),15).e=0;if(e&&!Hr(a,j)){jk('Received resync message with id '+j+' while waiting for '+(a.f+1));a.f=j-1;Nr(a)}i=a.j.size!=0;if(i||!Hr(a,j)){if(i){ck&&($wnd.console.log('Postponing UIDL handling due to lock...'),undefined)}else{if(j<=a.f){kk(EI+j+' but have already seen '+a.f+'. Ignoring it');Ir(b)&&dt(Ic(pk(a.i,Df),13));return}jk(EI+j+' but expected '+(a.f+1)+'. Postponing handling until the missing message(s) have been received')}a.g.push(new $r(b));if(!a.c.f){m=Ic(pk(a.i,td),7).e;cj(a.c,m)}return}CI in b&&cv(Ic(pk(a.i,_f),9));l=xb();h=new I;a.j.add(h);ck&&($wnd.console.log('Handling message from server'),undefined);et(Ic(pk(a.i,Df),13),new rt);if(FI in b){k=b[FI];ts(Ic(pk(a.i,rf),15),k,CI in b)}j!=-1&&(a.f=j);if('redirect' in b){n=b['redirect']['url'];ck&&tD($wnd.console,'redirecting to '+n);cp(n);return}GI in b&&(a.b=b[GI]);HI in b&&(a.h=b[HI]);Dr(a,b);a.d||Vk(Ic(pk(a.i,Td),72));'timings' in b&&(a.k=b['timings']);Zk(new Ur);Zk(new _r(a,b,h,l))}
+function KC(b){var c,d,e,f,g;b=b.toLowerCase();this.e=b.indexOf('gecko')!=-1&&b.indexOf('webkit')==-1&&b.indexOf(qJ)==-1;b.indexOf(' presto/')!=-1;this.k=b.indexOf(qJ)!=-1;this.l=!this.k&&b.indexOf('applewebkit')!=-1;this.b=b.indexOf(' chrome/')!=-1||b.indexOf(' crios/')!=-1||b.indexOf(pJ)!=-1;this.i=b.indexOf('opera')!=-1;this.f=b.indexOf('msie')!=-1&&!this.i&&b.indexOf('webtv')==-1;this.f=this.f||this.k;this.j=!this.b&&!this.f&&b.indexOf('safari')!=-1;this.d=b.indexOf(' firefox/')!=-1;if(b.indexOf(' edge/')!=-1||b.indexOf(' edg/')!=-1||b.indexOf(rJ)!=-1||b.indexOf(sJ)!=-1){this.c=true;this.b=false;this.i=false;this.f=false;this.j=false;this.d=false;this.l=false;this.e=false}try{if(this.e){f=b.indexOf('rv:');if(f>=0){g=b.substr(f+3);g=ZE(g,tJ,'$1');this.a=yE(g)}}else if(this.l){g=_E(b,b.indexOf('webkit/')+7);g=ZE(g,uJ,'$1');this.a=yE(g)}else if(this.k){g=_E(b,b.indexOf(qJ)+8);g=ZE(g,uJ,'$1');this.a=yE(g);this.a>7&&(this.a=7)}else this.c&&(this.a=0)}catch(a){a=Mi(a);if(Sc(a,8)){c=a;nF();'Browser engine version parsing failed for: '+b+' '+c.v()}else throw Ni(a)}try{if(this.f){if(b.indexOf('msie')!=-1){if(this.k);else{e=_E(b,b.indexOf('msie ')+5);e=MC(e,0,UE(e,cF(59)));JC(e)}}else{f=b.indexOf('rv:');if(f>=0){g=b.substr(f+3);g=ZE(g,tJ,'$1');JC(g)}}}else if(this.d){d=b.indexOf(' firefox/')+9;JC(MC(b,d,d+5))}else if(this.b){FC(b)}else if(this.j){d=b.indexOf(' version/');if(d>=0){d+=9;JC(MC(b,d,d+5))}}else if(this.i){d=b.indexOf(' version/');d!=-1?(d+=9):(d=b.indexOf('opera/')+6);JC(MC(b,d,d+5))}else if(this.c){d=b.indexOf(' edge/')+6;b.indexOf(' edg/')!=-1?(d=b.indexOf(' edg/')+5):b.indexOf(rJ)!=-1?(d=b.indexOf(rJ)+6):b.indexOf(sJ)!=-1&&(d=b.indexOf(sJ)+8);JC(MC(b,d,d+8))}}catch(a){a=Mi(a);if(Sc(a,8)){c=a;nF();'Browser version parsing failed for: '+b+' '+c.v()}else throw Ni(a)}if(b.indexOf('windows ')!=-1){b.indexOf('windows phone')!=-1}else if(b.indexOf('android')!=-1){CC(b)}else if(b.indexOf('linux')!=-1);else if(b.indexOf('macintosh')!=-1||b.indexOf('mac osx')!=-1||b.indexOf('mac os x')!=-1){this.g=b.indexOf('ipad')!=-1;this.h=b.indexOf('iphone')!=-1;(this.g||this.h)&&GC(b)}else b.indexOf('; cros ')!=-1&&DC(b)}
+var AH='object',BH='[object Array]',CH='function',DH='java.lang',EH='com.google.gwt.core.client',FH={4:1},GH='__noinit__',HH={4:1,8:1,10:1,5:1},IH='null',JH='com.google.gwt.core.client.impl',KH='undefined',LH='Working array length changed ',MH='anonymous',NH='fnStack',OH='Unknown',PH='must be non-negative',QH='must be positive',RH='com.google.web.bindery.event.shared',SH='com.vaadin.client',TH={56:1},UH={25:1},VH='type',WH={48:1},XH={24:1},YH={14:1},ZH={28:1},_H='text/javascript',aI='constructor',bI='properties',cI='value',dI='com.vaadin.client.flow.reactive',eI={17:1},fI='nodeId',gI='Root node for node ',hI=' could not be found',iI=' is not an Element',jI={65:1},kI={81:1},lI={47:1},mI='script',nI='stylesheet',oI='pushMode',pI='com.vaadin.flow.shared',qI='contextRootUrl',rI='versionInfo',sI='v-uiId=',tI='websocket',uI='transport',vI='application/json; charset=UTF-8',wI='VAADIN/push',xI='com.vaadin.client.communication',yI={90:1},zI='dialogText',AI='dialogTextGaveUp',BI='syncId',CI='resynchronize',DI='execute',EI='Received message with server id ',FI='clientId',GI='Vaadin-Security-Key',HI='Vaadin-Push-ID',II='sessionExpired',JI='pushServletMapping',KI='event',LI='node',MI='attachReqId',NI='attachAssignedId',OI='com.vaadin.client.flow',QI='bound',RI='payload',SI='subTemplate',TI={46:1},UI='Node is null',VI='Node is not created for this tree',WI='Node id is not registered with this tree',XI='$server',YI='feat',ZI='remove',$I='com.vaadin.client.flow.binding',_I='trailing',aJ='intermediate',bJ='elemental.util',cJ='element',dJ='shadowRoot',eJ='The HTML node for the StateNode with id=',fJ='An error occurred when Flow tried to find a state node matching the element ',gJ='hidden',hJ='styleDisplay',iJ='Element addressed by the ',jJ='dom-repeat',kJ='dom-change',lJ='com.vaadin.client.flow.nodefeature',mJ='Unsupported complex type in ',nJ='com.vaadin.client.gwt.com.google.web.bindery.event.shared',oJ='OS minor',pJ=' headlesschrome/',qJ='trident/',rJ=' edga/',sJ=' edgios/',tJ='(\\.[0-9]+).+',uJ='([0-9]+\\.[0-9]+).*',vJ='com.vaadin.flow.shared.ui',wJ='java.io',xJ='For input string: "',yJ='java.util',zJ='java.util.stream',AJ='Index: ',BJ=', Size: ',CJ='user.agent';var _,Ti,Oi,Li=-1;$wnd.goog=$wnd.goog||{};$wnd.goog.global=$wnd.goog.global||$wnd;Ui();Vi(1,null,{},I);_.m=function J(a){return H(this,a)};_.n=function L(){return this.ic};_.o=function N(){return rH(this)};_.p=function P(){var a;return aE(M(this))+'@'+(a=O(this)>>>0,a.toString(16))};_.equals=function(a){return this.m(a)};_.hashCode=function(){return this.o()};_.toString=function(){return this.p()};var Ec,Fc,Gc;Vi(67,1,{67:1},bE);_.Ub=function cE(a){var b;b=new bE;b.e=4;a>1?(b.c=iE(this,a-1)):(b.c=this);return b};_.Vb=function hE(){_D(this);return this.b};_.Wb=function jE(){return aE(this)};_.Xb=function lE(){_D(this);return this.g};_.Yb=function nE(){return (this.e&4)!=0};_.Zb=function oE(){return (this.e&1)!=0};_.p=function rE(){return ((this.e&2)!=0?'interface ':(this.e&1)!=0?'':'class ')+(_D(this),this.i)};_.e=0;var $D=1;var di=eE(DH,'Object',1);var Sh=eE(DH,'Class',67);Vi(95,1,{},R);_.a=0;var cd=eE(EH,'Duration',95);var S=null;Vi(5,1,{4:1,5:1});_.r=function bb(a){return new Error(a)};_.s=function db(){return this.e};_.t=function eb(){var a;return a=Ic(OG(QG(RF((this.i==null&&(this.i=zc(ki,FH,5,0,0,1)),this.i)),new pF),xG(new IG,new GG,new KG,Dc(xc(zi,1),FH,49,0,[(BG(),zG)]))),91),FF(a,zc(di,FH,1,a.a.length,5,1))};_.u=function fb(){return this.f};_.v=function gb(){return this.g};_.w=function hb(){Z(this,cb(this.r($(this,this.g))));hc(this)};_.p=function jb(){return $(this,this.v())};_.e=GH;_.j=true;var ki=eE(DH,'Throwable',5);Vi(8,5,{4:1,8:1,5:1});var Wh=eE(DH,'Exception',8);Vi(10,8,HH,mb);var ei=eE(DH,'RuntimeException',10);Vi(55,10,HH,nb);var _h=eE(DH,'JsException',55);Vi(120,55,HH);var gd=eE(JH,'JavaScriptExceptionBase',120);Vi(32,120,{32:1,4:1,8:1,10:1,5:1},rb);_.v=function ub(){return qb(this),this.c};_.A=function vb(){return _c(this.b)===_c(ob)?null:this.b};var ob;var dd=eE(EH,'JavaScriptException',32);var ed=eE(EH,'JavaScriptObject$',0);Vi(312,1,{});var fd=eE(EH,'Scheduler',312);var yb=0,zb=false,Ab,Bb=0,Cb=-1;Vi(130,312,{});_.e=false;_.i=false;var Pb;var kd=eE(JH,'SchedulerImpl',130);Vi(131,1,{},bc);_.B=function cc(){this.a.e=true;Tb(this.a);this.a.e=false;return this.a.i=Ub(this.a)};var hd=eE(JH,'SchedulerImpl/Flusher',131);Vi(132,1,{},dc);_.B=function ec(){this.a.e&&_b(this.a.f,1);return this.a.i};var jd=eE(JH,'SchedulerImpl/Rescuer',132);var fc;Vi(322,1,{});var od=eE(JH,'StackTraceCreator/Collector',322);Vi(121,322,{},nc);_.D=function oc(a){var b={},j;var c=[];a[NH]=c;var d=arguments.callee.caller;while(d){var e=(gc(),d.name||(d.name=jc(d.toString())));c.push(e);var f=':'+e;var g=b[f];if(g){var h,i;for(h=0,i=g.length;h<i;h++){if(g[h]===d){return}}}(g||(b[f]=[])).push(d);d=d.caller}};_.F=function pc(a){var b,c,d,e;d=(gc(),a&&a[NH]?a[NH]:[]);c=d.length;e=zc(fi,FH,30,c,0,1);for(b=0;b<c;b++){e[b]=new NE(d[b],null,-1)}return e};var ld=eE(JH,'StackTraceCreator/CollectorLegacy',121);Vi(323,322,{});_.D=function rc(a){};_.G=function sc(a,b,c,d){return new NE(b,a+'@'+d,c<0?-1:c)};_.F=function tc(a){var b,c,d,e,f,g;e=lc(a);f=zc(fi,FH,30,0,0,1);b=0;d=e.length;if(d==0){return f}g=qc(this,e[0]);SE(g.d,MH)||(f[b++]=g);for(c=1;c<d;c++){f[b++]=qc(this,e[c])}return f};var nd=eE(JH,'StackTraceCreator/CollectorModern',323);Vi(122,323,{},uc);_.G=function vc(a,b,c,d){return new NE(b,a,-1)};var md=eE(JH,'StackTraceCreator/CollectorModernNoSourceMap',122);Vi(42,1,{});_.H=function ij(a){if(a!=this.d){return}this.e||(this.f=null);this.I()};_.d=0;_.e=false;_.f=null;var pd=eE('com.google.gwt.user.client','Timer',42);Vi(329,1,{});_.p=function nj(){return 'An event type'};var sd=eE(RH,'Event',329);Vi(98,1,{},pj);_.o=function qj(){return this.a};_.p=function rj(){return 'Event type'};_.a=0;var oj=0;var qd=eE(RH,'Event/Type',98);Vi(330,1,{});var rd=eE(RH,'EventBus',330);Vi(7,1,{7:1},Dj);_.M=function Ej(){return this.k};_.d=0;_.e=0;_.f=false;_.g=false;_.k=0;_.l=false;var td=eE(SH,'ApplicationConfiguration',7);Vi(93,1,{93:1},Ij);_.N=function Jj(a,b){wu(Yu(Ic(pk(this.a,_f),9),a),new Wj(a,b))};_.O=function Kj(a){var b;b=Yu(Ic(pk(this.a,_f),9),a);return !b?null:b.a};_.P=function Lj(a){var b,c,d,e,f;e=Yu(Ic(pk(this.a,_f),9),a);f={};if(e){d=qB(Bu(e,12));for(b=0;b<d.length;b++){c=Pc(d[b]);f[c]=qA(pB(Bu(e,12),c))}}return f};_.Q=function Mj(a){var b;b=Yu(Ic(pk(this.a,_f),9),a);return !b?null:sA(pB(Bu(b,0),'jc'))};_.R=function Nj(a){var b;b=Zu(Ic(pk(this.a,_f),9),cA(a));return !b?-1:b.d};_.S=function Oj(){var a;return Ic(pk(this.a,pf),21).a==0||Ic(pk(this.a,Df),13).b||(a=(Qb(),Pb),!!a&&a.a!=0)};var yd=eE(SH,'ApplicationConnection',93);Vi(147,1,{},Qj);_.q=function Rj(a){var b;b=a;Sc(b,3)?$n('Assertion error: '+b.v()):$n(b.v())};var ud=eE(SH,'ApplicationConnection/0methodref$handleError$Type',147);Vi(148,1,{},Sj);_.T=function Tj(a){ss(Ic(pk(this.a.a,rf),15))};var vd=eE(SH,'ApplicationConnection/lambda$1$Type',148);Vi(149,1,{},Uj);_.T=function Vj(a){$wnd.location.reload()};var wd=eE(SH,'ApplicationConnection/lambda$2$Type',149);Vi(150,1,TH,Wj);_.U=function Xj(a){return Pj(this.b,this.a,a)};_.b=0;var xd=eE(SH,'ApplicationConnection/lambda$3$Type',150);Vi(38,1,{},$j);var Yj;var zd=eE(SH,'BrowserInfo',38);var Ad=gE(SH,'Command');var ck=false;Vi(129,1,{},lk);_.I=function mk(){hk(this.a)};var Bd=eE(SH,'Console/lambda$0$Type',129);Vi(128,1,{},nk);_.q=function ok(a){ik(this.a)};var Cd=eE(SH,'Console/lambda$1$Type',128);Vi(154,1,{});_.V=function uk(){return Ic(pk(this,td),7)};_.W=function vk(){return Ic(pk(this,pf),21)};_.X=function wk(){return Ic(pk(this,vf),73)};_.Y=function xk(){return Ic(pk(this,Hf),33)};_.Z=function yk(){return Ic(pk(this,_f),9)};_._=function zk(){return Ic(pk(this,He),50)};var he=eE(SH,'Registry',154);Vi(155,154,{},Ak);var Hd=eE(SH,'DefaultRegistry',155);Vi(156,1,UH,Bk);_.ab=function Ck(){return new Fo};var Dd=eE(SH,'DefaultRegistry/0methodref$ctor$Type',156);Vi(157,1,UH,Dk);_.ab=function Ek(){return new fu};var Ed=eE(SH,'DefaultRegistry/1methodref$ctor$Type',157);Vi(158,1,UH,Fk);_.ab=function Gk(){return new Ql};var Fd=eE(SH,'DefaultRegistry/2methodref$ctor$Type',158);Vi(159,1,UH,Hk);_.ab=function Ik(){return new er(this.a)};var Gd=eE(SH,'DefaultRegistry/lambda$3$Type',159);Vi(72,1,{72:1},Wk);var Jk,Kk,Lk,Mk=0;var Td=eE(SH,'DependencyLoader',72);Vi(200,1,WH,$k);_.bb=function _k(a,b){tn(this.a,a,Ic(b,24))};var Id=eE(SH,'DependencyLoader/0methodref$inlineStyleSheet$Type',200);var ne=gE(SH,'ResourceLoader/ResourceLoadListener');Vi(196,1,XH,al);_.cb=function bl(a){fk("'"+a.a+"' could not be loaded.");Xk()};_.db=function cl(a){Xk()};var Jd=eE(SH,'DependencyLoader/1',196);Vi(201,1,WH,dl);_.bb=function el(a,b){wn(this.a,a,Ic(b,24))};var Kd=eE(SH,'DependencyLoader/1methodref$loadStylesheet$Type',201);Vi(197,1,XH,fl);_.cb=function gl(a){fk(a.a+' could not be loaded.')};_.db=function hl(a){};var Ld=eE(SH,'DependencyLoader/2',197);Vi(202,1,WH,il);_.bb=function jl(a,b){sn(this.a,a,Ic(b,24))};var Md=eE(SH,'DependencyLoader/2methodref$inlineScript$Type',202);Vi(205,1,WH,kl);_.bb=function ll(a,b){un(a,Ic(b,24))};var Nd=eE(SH,'DependencyLoader/3methodref$loadDynamicImport$Type',205);Vi(206,1,YH,ml);_.I=function nl(){Xk()};var Od=eE(SH,'DependencyLoader/4methodref$endEagerDependencyLoading$Type',206);Vi(349,$wnd.Function,{},ol);_.bb=function pl(a,b){Qk(this.a,this.b,Nc(a),Ic(b,44))};Vi(350,$wnd.Function,{},ql);_.bb=function rl(a,b){Yk(this.a,Ic(a,48),Pc(b))};Vi(199,1,ZH,sl);_.C=function tl(){Rk(this.a)};var Pd=eE(SH,'DependencyLoader/lambda$2$Type',199);Vi(198,1,{},ul);_.C=function vl(){Sk(this.a)};var Qd=eE(SH,'DependencyLoader/lambda$3$Type',198);Vi(351,$wnd.Function,{},wl);_.bb=function xl(a,b){Ic(a,48).bb(Pc(b),(Nk(),Kk))};Vi(203,1,WH,yl);_.bb=function zl(a,b){Nk();vn(this.a,a,Ic(b,24),true,_H)};var Rd=eE(SH,'DependencyLoader/lambda$8$Type',203);Vi(204,1,WH,Al);_.bb=function Bl(a,b){Nk();vn(this.a,a,Ic(b,24),true,'module')};var Sd=eE(SH,'DependencyLoader/lambda$9$Type',204);Vi(305,1,YH,Kl);_.I=function Ll(){_B(new Ml(this.a,this.b))};var Ud=eE(SH,'ExecuteJavaScriptElementUtils/lambda$0$Type',305);var ph=gE(dI,'FlushListener');Vi(304,1,eI,Ml);_.eb=function Nl(){Hl(this.a,this.b)};var Vd=eE(SH,'ExecuteJavaScriptElementUtils/lambda$1$Type',304);Vi(60,1,{60:1},Ql);var Wd=eE(SH,'ExistingElementMap',60);Vi(51,1,{51:1},Zl);var Yd=eE(SH,'InitialPropertiesHandler',51);Vi(352,$wnd.Function,{},_l);_.fb=function am(a){Wl(this.a,this.b,Kc(a))};Vi(213,1,eI,bm);_.eb=function cm(){Sl(this.a,this.b)};var Xd=eE(SH,'InitialPropertiesHandler/lambda$1$Type',213);Vi(353,$wnd.Function,{},dm);_.bb=function em(a,b){$l(this.a,Ic(a,16),Pc(b))};var hm;Vi(294,1,TH,Fm);_.U=function Gm(a){return Em(a)};var Zd=eE(SH,'PolymerUtils/0methodref$createModelTree$Type',294);Vi(374,$wnd.Function,{},Hm);_.fb=function Im(a){Ic(a,46).Eb()};Vi(373,$wnd.Function,{},Jm);_.fb=function Km(a){Ic(a,14).I()};Vi(295,1,jI,Lm);_.gb=function Mm(a){xm(this.a,a)};var $d=eE(SH,'PolymerUtils/lambda$1$Type',295);Vi(89,1,eI,Nm);_.eb=function Om(){mm(this.b,this.a)};var _d=eE(SH,'PolymerUtils/lambda$10$Type',89);Vi(296,1,{105:1},Pm);_.hb=function Qm(a){this.a.forEach(Xi(Hm.prototype.fb,Hm,[]))};var ae=eE(SH,'PolymerUtils/lambda$2$Type',296);Vi(298,1,kI,Rm);_.ib=function Sm(a){ym(this.a,this.b,a)};var be=eE(SH,'PolymerUtils/lambda$4$Type',298);Vi(297,1,lI,Tm);_.jb=function Um(a){$B(new Nm(this.a,this.b))};var ce=eE(SH,'PolymerUtils/lambda$5$Type',297);Vi(371,$wnd.Function,{},Vm);_.bb=function Wm(a,b){var c;zm(this.a,this.b,(c=Ic(a,16),Pc(b),c))};Vi(299,1,lI,Xm);_.jb=function Ym(a){$B(new Nm(this.a,this.b))};var de=eE(SH,'PolymerUtils/lambda$7$Type',299);Vi(300,1,eI,Zm);_.eb=function $m(){lm(this.a,this.b)};var ee=eE(SH,'PolymerUtils/lambda$8$Type',300);Vi(372,$wnd.Function,{},_m);_.fb=function an(a){this.a.push(jm(a))};var bn;Vi(113,1,{},fn);_.kb=function gn(){return (new Date).getTime()};var fe=eE(SH,'Profiler/DefaultRelativeTimeSupplier',113);Vi(112,1,{},hn);_.kb=function jn(){return $wnd.performance.now()};var ge=eE(SH,'Profiler/HighResolutionTimeSupplier',112);Vi(345,$wnd.Function,{},ln);_.bb=function mn(a,b){qk(this.a,Ic(a,25),Ic(b,67))};Vi(58,1,{58:1},yn);_.d=false;var te=eE(SH,'ResourceLoader',58);Vi(189,1,{},En);_.B=function Fn(){var a;a=Cn(this.d);if(Cn(this.d)>0){qn(this.b,this.c);return false}else if(a==0){pn(this.b,this.c);return true}else if(Q(this.a)>60000){pn(this.b,this.c);return false}else{return true}};var ie=eE(SH,'ResourceLoader/1',189);Vi(190,42,{},Gn);_.I=function Hn(){this.a.b.has(this.c)||pn(this.a,this.b)};var je=eE(SH,'ResourceLoader/2',190);Vi(194,42,{},In);_.I=function Jn(){this.a.b.has(this.c)?qn(this.a,this.b):pn(this.a,this.b)};var ke=eE(SH,'ResourceLoader/3',194);Vi(195,1,XH,Kn);_.cb=function Ln(a){pn(this.a,a)};_.db=function Mn(a){qn(this.a,a)};var le=eE(SH,'ResourceLoader/4',195);Vi(63,1,{},Nn);var me=eE(SH,'ResourceLoader/ResourceLoadEvent',63);Vi(100,1,XH,On);_.cb=function Pn(a){pn(this.a,a)};_.db=function Qn(a){qn(this.a,a)};var oe=eE(SH,'ResourceLoader/SimpleLoadListener',100);Vi(188,1,XH,Rn);_.cb=function Sn(a){pn(this.a,a)};_.db=function Tn(a){var b;if((!Yj&&(Yj=new $j),Yj).a.b||(!Yj&&(Yj=new $j),Yj).a.f||(!Yj&&(Yj=new $j),Yj).a.c){b=Cn(this.b);if(b==0){pn(this.a,a);return}}qn(this.a,a)};var pe=eE(SH,'ResourceLoader/StyleSheetLoadListener',188);Vi(191,1,UH,Un);_.ab=function Vn(){return this.a.call(null)};var qe=eE(SH,'ResourceLoader/lambda$0$Type',191);Vi(192,1,YH,Wn);_.I=function Xn(){this.b.db(this.a)};var re=eE(SH,'ResourceLoader/lambda$1$Type',192);Vi(193,1,YH,Yn);_.I=function Zn(){this.b.cb(this.a)};var se=eE(SH,'ResourceLoader/lambda$2$Type',193);Vi(22,1,{22:1},ho);_.b=false;var Be=eE(SH,'SystemErrorHandler',22);Vi(166,1,{},jo);_.fb=function ko(a){eo(Pc(a))};var ue=eE(SH,'SystemErrorHandler/0methodref$recreateNodes$Type',166);Vi(162,1,{},mo);_.lb=function no(a,b){var c;dr(Ic(pk(this.a.a,_e),27),Ic(pk(this.a.a,td),7).d);c=b;$n(c.v())};_.mb=function oo(a){var b,c,d,e;jk('Received xhr HTTP session resynchronization message: '+a.responseText);dr(Ic(pk(this.a.a,_e),27),-1);e=Ic(pk(this.a.a,td),7).k;b=Sr(Tr(a.responseText));c=b['uiId'];if(c!=e){ck&&rD($wnd.console,'UI ID switched from '+e+' to '+c+' after resynchronization');Bj(Ic(pk(this.a.a,td),7),c)}rk(this.a.a);Eo(Ic(pk(this.a.a,Ge),12),(Uo(),So));Fr(Ic(pk(this.a.a,pf),21),b);d=Rs(qA(pB(Bu(Ic(pk(Ic(pk(this.a.a,zf),36).a,_f),9).e,5),oI)));d?zo((Qb(),Pb),new po(this)):zo((Qb(),Pb),new to(this))};var ye=eE(SH,'SystemErrorHandler/1',162);Vi(164,1,{},po);_.C=function qo(){lo(this.a)};var ve=eE(SH,'SystemErrorHandler/1/lambda$0$Type',164);Vi(163,1,{},ro);_.C=function so(){fo(this.a.a)};var we=eE(SH,'SystemErrorHandler/1/lambda$1$Type',163);Vi(165,1,{},to);_.C=function uo(){fo(this.a.a)};var xe=eE(SH,'SystemErrorHandler/1/lambda$2$Type',165);Vi(160,1,{},vo);_.T=function wo(a){cp(this.a)};var ze=eE(SH,'SystemErrorHandler/lambda$0$Type',160);Vi(161,1,{},xo);_.T=function yo(a){io(this.a,a)};var Ae=eE(SH,'SystemErrorHandler/lambda$1$Type',161);Vi(134,130,{},Ao);_.a=0;var De=eE(SH,'TrackingScheduler',134);Vi(135,1,{},Bo);_.C=function Co(){this.a.a--};var Ce=eE(SH,'TrackingScheduler/lambda$0$Type',135);Vi(12,1,{12:1},Fo);var Ge=eE(SH,'UILifecycle',12);Vi(170,329,{},Ho);_.K=function Io(a){Ic(a,90).nb(this)};_.L=function Jo(){return Go};var Go=null;var Ee=eE(SH,'UILifecycle/StateChangeEvent',170);Vi(20,1,{4:1,31:1,20:1});_.m=function No(a){return this===a};_.o=function Oo(){return rH(this)};_.p=function Po(){return this.b!=null?this.b:''+this.c};_.c=0;var Uh=eE(DH,'Enum',20);Vi(61,20,{61:1,4:1,31:1,20:1},Vo);var Ro,So,To;var Fe=fE(SH,'UILifecycle/UIState',61,Wo);Vi(328,1,FH);var Bh=eE(pI,'VaadinUriResolver',328);Vi(50,328,{50:1,4:1},_o);_.ob=function ap(a){return $o(this,a)};var He=eE(SH,'URIResolver',50);var fp=false,gp;Vi(114,1,{},qp);_.C=function rp(){mp(this.a)};var Ie=eE('com.vaadin.client.bootstrap','Bootstrapper/lambda$0$Type',114);Vi(86,1,{},Ip);_.pb=function Kp(){return Ic(pk(this.d,pf),21).f};_.qb=function Mp(a){this.f=(eq(),cq);co(Ic(pk(Ic(pk(this.d,Re),18).c,Be),22),'','Client unexpectedly disconnected. Ensure client timeout is disabled.','',null,null)};_.rb=function Np(a){this.f=(eq(),bq);Ic(pk(this.d,Re),18);ck&&($wnd.console.log('Push connection closed'),undefined)};_.sb=function Op(a){this.f=(eq(),cq);sq(Ic(pk(this.d,Re),18),'Push connection using '+a[uI]+' failed!')};_.tb=function Pp(a){var b,c;c=a['responseBody'];b=Sr(Tr(c));if(!b){Aq(Ic(pk(this.d,Re),18),this,c);return}else{jk('Received push ('+this.g+') message: '+c);Fr(Ic(pk(this.d,pf),21),b)}};_.ub=function Qp(a){jk('Push connection established using '+a[uI]);Fp(this,a)};_.vb=function Rp(a,b){this.f==(eq(),aq)&&(this.f=bq);Dq(Ic(pk(this.d,Re),18),this)};_.wb=function Sp(a){jk('Push connection re-established using '+a[uI]);Fp(this,a)};_.xb=function Tp(){kk('Push connection using primary method ('+this.a[uI]+') failed. Trying with '+this.a['fallbackTransport'])};var Qe=eE(xI,'AtmospherePushConnection',86);Vi(246,1,{},Up);_.C=function Vp(){wp(this.a)};var Je=eE(xI,'AtmospherePushConnection/0methodref$connect$Type',246);Vi(248,1,XH,Wp);_.cb=function Xp(a){Eq(Ic(pk(this.a.d,Re),18),a.a)};_.db=function Yp(a){if(Lp()){jk(this.c+' loaded');Ep(this.b.a)}else{Eq(Ic(pk(this.a.d,Re),18),a.a)}};var Ke=eE(xI,'AtmospherePushConnection/1',248);Vi(243,1,{},_p);_.a=0;var Le=eE(xI,'AtmospherePushConnection/FragmentedMessage',243);Vi(52,20,{52:1,4:1,31:1,20:1},fq);var aq,bq,cq,dq;var Me=fE(xI,'AtmospherePushConnection/State',52,gq);Vi(245,1,yI,hq);_.nb=function iq(a){Cp(this.a,a)};var Ne=eE(xI,'AtmospherePushConnection/lambda$0$Type',245);Vi(244,1,ZH,jq);_.C=function kq(){};var Oe=eE(xI,'AtmospherePushConnection/lambda$1$Type',244);Vi(360,$wnd.Function,{},lq);_.bb=function mq(a,b){Dp(this.a,Pc(a),Pc(b))};Vi(247,1,ZH,nq);_.C=function oq(){Ep(this.a)};var Pe=eE(xI,'AtmospherePushConnection/lambda$3$Type',247);var Re=gE(xI,'ConnectionStateHandler');Vi(217,1,{18:1},Mq);_.a=0;_.b=null;var Xe=eE(xI,'DefaultConnectionStateHandler',217);Vi(219,42,{},Nq);_.I=function Oq(){this.a.d=null;qq(this.a,this.b)};var Se=eE(xI,'DefaultConnectionStateHandler/1',219);Vi(64,20,{64:1,4:1,31:1,20:1},Uq);_.a=0;var Pq,Qq,Rq;var Te=fE(xI,'DefaultConnectionStateHandler/Type',64,Vq);Vi(218,1,yI,Wq);_.nb=function Xq(a){yq(this.a,a)};var Ue=eE(xI,'DefaultConnectionStateHandler/lambda$0$Type',218);Vi(220,1,{},Yq);_.T=function Zq(a){rq(this.a)};var Ve=eE(xI,'DefaultConnectionStateHandler/lambda$1$Type',220);Vi(221,1,{},$q);_.T=function _q(a){zq(this.a)};var We=eE(xI,'DefaultConnectionStateHandler/lambda$2$Type',221);Vi(27,1,{27:1},er);_.a=-1;var _e=eE(xI,'Heartbeat',27);Vi(214,42,{},fr);_.I=function gr(){cr(this.a)};var Ye=eE(xI,'Heartbeat/1',214);Vi(216,1,{},hr);_.lb=function ir(a,b){!b?this.a.a<0?ck&&($wnd.console.debug('Heartbeat terminated, ignoring failure.'),undefined):wq(Ic(pk(this.a.b,Re),18),a):vq(Ic(pk(this.a.b,Re),18),b);br(this.a)};_.mb=function jr(a){xq(Ic(pk(this.a.b,Re),18));br(this.a)};var Ze=eE(xI,'Heartbeat/2',216);Vi(215,1,yI,kr);_.nb=function lr(a){ar(this.a,a)};var $e=eE(xI,'Heartbeat/lambda$0$Type',215);Vi(172,1,{},pr);_.fb=function qr(a){ak('firstDelay',FE(Ic(a,26).a))};var af=eE(xI,'LoadingIndicatorConfigurator/0methodref$setFirstDelay$Type',172);Vi(173,1,{},rr);_.fb=function sr(a){ak('secondDelay',FE(Ic(a,26).a))};var bf=eE(xI,'LoadingIndicatorConfigurator/1methodref$setSecondDelay$Type',173);Vi(174,1,{},tr);_.fb=function ur(a){ak('thirdDelay',FE(Ic(a,26).a))};var cf=eE(xI,'LoadingIndicatorConfigurator/2methodref$setThirdDelay$Type',174);Vi(175,1,lI,vr);_.jb=function wr(a){or(tA(Ic(a.e,16)))};var df=eE(xI,'LoadingIndicatorConfigurator/lambda$3$Type',175);Vi(176,1,lI,xr);_.jb=function yr(a){nr(this.b,this.a,a)};_.a=0;var ef=eE(xI,'LoadingIndicatorConfigurator/lambda$4$Type',176);Vi(21,1,{21:1},Pr);_.a=0;_.b='init';_.d=false;_.e=0;_.f=-1;_.h=null;_.l=0;var pf=eE(xI,'MessageHandler',21);Vi(180,1,ZH,Ur);_.C=function Vr(){!bA&&$wnd.Polymer!=null&&SE($wnd.Polymer.version.substr(0,'1.'.length),'1.')&&(bA=true,ck&&($wnd.console.log('Polymer micro is now loaded, using Polymer DOM API'),undefined),aA=new dA,undefined)};var ff=eE(xI,'MessageHandler/0methodref$updateApiImplementation$Type',180);Vi(179,42,{},Wr);_.I=function Xr(){Br(this.a)};var gf=eE(xI,'MessageHandler/1',179);Vi(348,$wnd.Function,{},Yr);_.fb=function Zr(a){zr(Ic(a,6))};Vi(62,1,{62:1},$r);var hf=eE(xI,'MessageHandler/PendingUIDLMessage',62);Vi(181,1,ZH,_r);_.C=function as(){Mr(this.a,this.d,this.b,this.c)};_.c=0;var jf=eE(xI,'MessageHandler/lambda$1$Type',181);Vi(183,1,eI,bs);_.eb=function cs(){_B(new ds(this.a,this.b))};var kf=eE(xI,'MessageHandler/lambda$3$Type',183);Vi(182,1,eI,ds);_.eb=function es(){Jr(this.a,this.b)};var lf=eE(xI,'MessageHandler/lambda$4$Type',182);Vi(184,1,{},fs);_.B=function gs(){return ao(Ic(pk(this.a.i,Be),22),null),false};var mf=eE(xI,'MessageHandler/lambda$5$Type',184);Vi(186,1,eI,hs);_.eb=function is(){Kr(this.a)};var nf=eE(xI,'MessageHandler/lambda$6$Type',186);Vi(185,1,{},js);_.C=function ks(){this.a.forEach(Xi(Yr.prototype.fb,Yr,[]))};var of=eE(xI,'MessageHandler/lambda$7$Type',185);Vi(15,1,{15:1},ws);_.a=0;_.e=0;var rf=eE(xI,'MessageSender',15);Vi(99,1,ZH,ys);_.C=function zs(){ms(this.a,this.b)};_.b=false;var qf=eE(xI,'MessageSender/lambda$0$Type',99);Vi(167,1,lI,Cs);_.jb=function Ds(a){As(this.a,a)};var sf=eE(xI,'PollConfigurator/lambda$0$Type',167);Vi(73,1,{73:1},Hs);_.yb=function Is(){var a;a=Ic(pk(this.b,_f),9);ev(a,a.e,'ui-poll',null)};_.a=null;var vf=eE(xI,'Poller',73);Vi(169,42,{},Js);_.I=function Ks(){var a;a=Ic(pk(this.a.b,_f),9);ev(a,a.e,'ui-poll',null)};var tf=eE(xI,'Poller/1',169);Vi(168,1,yI,Ls);_.nb=function Ms(a){Es(this.a,a)};var uf=eE(xI,'Poller/lambda$0$Type',168);Vi(36,1,{36:1},Qs);var zf=eE(xI,'PushConfiguration',36);Vi(227,1,lI,Ts);_.jb=function Us(a){Ps(this.a,a)};var wf=eE(xI,'PushConfiguration/0methodref$onPushModeChange$Type',227);Vi(228,1,eI,Vs);_.eb=function Ws(){us(Ic(pk(this.a.a,rf),15),true)};var xf=eE(xI,'PushConfiguration/lambda$1$Type',228);Vi(229,1,eI,Xs);_.eb=function Ys(){us(Ic(pk(this.a.a,rf),15),false)};var yf=eE(xI,'PushConfiguration/lambda$2$Type',229);Vi(354,$wnd.Function,{},Zs);_.bb=function $s(a,b){Ss(this.a,Ic(a,16),Pc(b))};Vi(37,1,{37:1},_s);var Bf=eE(xI,'ReconnectConfiguration',37);Vi(171,1,ZH,at);_.C=function bt(){pq(this.a)};var Af=eE(xI,'ReconnectConfiguration/lambda$0$Type',171);Vi(13,1,{13:1},ht);_.b=false;var Df=eE(xI,'RequestResponseTracker',13);Vi(178,1,{},it);_.C=function jt(){ft(this.a)};var Cf=eE(xI,'RequestResponseTracker/lambda$0$Type',178);Vi(242,329,{},kt);_.K=function lt(a){bd(a);null.lc()};_.L=function mt(){return null};var Ef=eE(xI,'RequestStartingEvent',242);Vi(226,329,{},ot);_.K=function pt(a){Ic(a,333).a.b=false};_.L=function qt(){return nt};var nt;var Ff=eE(xI,'ResponseHandlingEndedEvent',226);Vi(286,329,{},rt);_.K=function st(a){bd(a);null.lc()};_.L=function tt(){return null};var Gf=eE(xI,'ResponseHandlingStartedEvent',286);Vi(33,1,{33:1},Bt);_.zb=function Ct(a,b,c){ut(this,a,b,c)};_.Ab=function Dt(a,b,c){var d;d={};d[VH]='channel';d[LI]=Object(a);d['channel']=Object(b);d['args']=c;yt(this,d)};var Hf=eE(xI,'ServerConnector',33);Vi(35,1,{35:1},Jt);_.b=false;var Et;var Lf=eE(xI,'ServerRpcQueue',35);Vi(208,1,YH,Kt);_.I=function Lt(){Ht(this.a)};var If=eE(xI,'ServerRpcQueue/0methodref$doFlush$Type',208);Vi(207,1,YH,Mt);_.I=function Nt(){Ft()};var Jf=eE(xI,'ServerRpcQueue/lambda$0$Type',207);Vi(209,1,{},Ot);_.C=function Pt(){this.a.a.I()};var Kf=eE(xI,'ServerRpcQueue/lambda$2$Type',209);Vi(71,1,{71:1},St);_.b=false;var Rf=eE(xI,'XhrConnection',71);Vi(225,42,{},Ut);_.I=function Vt(){Tt(this.b)&&this.a.b&&cj(this,250)};var Mf=eE(xI,'XhrConnection/1',225);Vi(222,1,{},Xt);_.lb=function Yt(a,b){var c;c=new bu(a,this.a);if(!b){Kq(Ic(pk(this.c.a,Re),18),c);return}else{Iq(Ic(pk(this.c.a,Re),18),c)}};_.mb=function Zt(a){var b,c;jk('Server visit took '+dn(this.b)+'ms');c=a.responseText;b=Sr(Tr(c));if(!b){Jq(Ic(pk(this.c.a,Re),18),new bu(a,this.a));return}Lq(Ic(pk(this.c.a,Re),18));ck&&tD($wnd.console,'Received xhr message: '+c);Fr(Ic(pk(this.c.a,pf),21),b)};_.b=0;var Nf=eE(xI,'XhrConnection/XhrResponseHandler',222);Vi(223,1,{},$t);_.T=function _t(a){this.a.b=true};var Of=eE(xI,'XhrConnection/lambda$0$Type',223);Vi(224,1,{333:1},au);var Pf=eE(xI,'XhrConnection/lambda$1$Type',224);Vi(103,1,{},bu);var Qf=eE(xI,'XhrConnectionError',103);Vi(59,1,{59:1},fu);var Sf=eE(OI,'ConstantPool',59);Vi(84,1,{84:1},nu);_.Bb=function ou(){return Ic(pk(this.a,td),7).a};var Wf=eE(OI,'ExecuteJavaScriptProcessor',84);Vi(211,1,TH,pu);_.U=function qu(a){var b;return _B(new ru(this.a,(b=this.b,b))),WD(),true};var Tf=eE(OI,'ExecuteJavaScriptProcessor/lambda$0$Type',211);Vi(210,1,eI,ru);_.eb=function su(){iu(this.a,this.b)};var Uf=eE(OI,'ExecuteJavaScriptProcessor/lambda$1$Type',210);Vi(212,1,YH,tu);_.I=function uu(){mu(this.a)};var Vf=eE(OI,'ExecuteJavaScriptProcessor/lambda$2$Type',212);Vi(303,1,{},vu);var Xf=eE(OI,'NodeUnregisterEvent',303);Vi(6,1,{6:1},Iu);_.Cb=function Ju(){return zu(this)};_.Db=function Ku(){return this.g};_.d=0;_.i=false;var $f=eE(OI,'StateNode',6);Vi(341,$wnd.Function,{},Mu);_.bb=function Nu(a,b){Cu(this.a,this.b,Ic(a,34),Kc(b))};Vi(342,$wnd.Function,{},Ou);_.fb=function Pu(a){Lu(this.a,Ic(a,105))};var Eh=gE('elemental.events','EventRemover');Vi(152,1,TI,Qu);_.Eb=function Ru(){Du(this.a,this.b)};var Yf=eE(OI,'StateNode/lambda$2$Type',152);Vi(343,$wnd.Function,{},Su);_.fb=function Tu(a){Eu(this.a,Ic(a,56))};Vi(153,1,TI,Uu);_.Eb=function Vu(){Fu(this.a,this.b)};var Zf=eE(OI,'StateNode/lambda$4$Type',153);Vi(9,1,{9:1},kv);_.Fb=function lv(){return this.e};_.Gb=function nv(a,b,c,d){var e;if(_u(this,a)){e=Nc(c);At(Ic(pk(this.c,Hf),33),a,b,e,d)}};_.d=false;_.f=false;var _f=eE(OI,'StateTree',9);Vi(346,$wnd.Function,{},ov);_.fb=function pv(a){yu(Ic(a,6),Xi(sv.prototype.bb,sv,[]))};Vi(347,$wnd.Function,{},qv);_.bb=function rv(a,b){var c;bv(this.a,(c=Ic(a,6),Kc(b),c))};Vi(332,$wnd.Function,{},sv);_.bb=function tv(a,b){mv(Ic(a,34),Kc(b))};var Bv,Cv;Vi(177,1,{},Hv);var ag=eE($I,'Binder/BinderContextImpl',177);var bg=gE($I,'BindingStrategy');Vi(79,1,{79:1},Mv);_.j=0;var Iv;var eg=eE($I,'Debouncer',79);Vi(377,$wnd.Function,{},Qv);_.fb=function Rv(a){Ic(a,14).I()};Vi(331,1,{});_.c=false;_.d=0;var Ih=eE(bJ,'Timer',331);Vi(306,331,{},Wv);var cg=eE($I,'Debouncer/1',306);Vi(307,331,{},Yv);var dg=eE($I,'Debouncer/2',307);Vi(378,$wnd.Function,{},$v);_.bb=function _v(a,b){var c;Zv(this,(c=Oc(a,$wnd.Map),Nc(b),c))};Vi(379,$wnd.Function,{},cw);_.fb=function dw(a){aw(this.a,Oc(a,$wnd.Map))};Vi(380,$wnd.Function,{},ew);_.fb=function fw(a){bw(this.a,Ic(a,79))};Vi(376,$wnd.Function,{},gw);_.bb=function hw(a,b){Ov(this.a,Ic(a,14),Pc(b))};Vi(301,1,UH,lw);_.ab=function mw(){return yw(this.a)};var fg=eE($I,'ServerEventHandlerBinder/lambda$0$Type',301);Vi(302,1,jI,nw);_.gb=function ow(a){kw(this.b,this.a,this.c,a)};_.c=false;var gg=eE($I,'ServerEventHandlerBinder/lambda$1$Type',302);var pw;Vi(249,1,{310:1},xx);_.Hb=function yx(a,b,c){Gw(this,a,b,c)};_.Ib=function Bx(a){return Qw(a)};_.Kb=function Gx(a,b){var c,d,e;d=Object.keys(a);e=new zz(d,a,b);c=Ic(b.e.get(ig),76);!c?mx(e.b,e.a,e.c):(c.a=e)};_.Lb=function Hx(r,s){var t=this;var u=s._propertiesChanged;u&&(s._propertiesChanged=function(a,b,c){zH(function(){t.Kb(b,r)})();u.apply(this,arguments)});var v=r.Db();var w=s.ready;s.ready=function(){w.apply(this,arguments);nm(s);var q=function(){var o=s.root.querySelector(jJ);if(o){s.removeEventListener(kJ,q)}else{return}if(!o.constructor.prototype.$propChangedModified){o.constructor.prototype.$propChangedModified=true;var p=o.constructor.prototype._propertiesChanged;o.constructor.prototype._propertiesChanged=function(a,b,c){p.apply(this,arguments);var d=Object.getOwnPropertyNames(b);var e='items.';var f;for(f=0;f<d.length;f++){var g=d[f].indexOf(e);if(g==0){var h=d[f].substr(e.length);g=h.indexOf('.');if(g>0){var i=h.substr(0,g);var j=h.substr(g+1);var k=a.items[i];if(k&&k.nodeId){var l=k.nodeId;var m=k[j];var n=this.__dataHost;while(!n.localName||n.__dataHost){n=n.__dataHost}zH(function(){Fx(l,n,j,m,v)})()}}}}}}};s.root&&s.root.querySelector(jJ)?q():s.addEventListener(kJ,q)}};_.Jb=function Ix(a){if(a.c.has(0)){return true}return !!a.g&&K(a,a.g.e)};var Aw,Bw;var Qg=eE($I,'SimpleElementBindingStrategy',249);Vi(365,$wnd.Function,{},Zx);_.fb=function $x(a){Ic(a,46).Eb()};Vi(369,$wnd.Function,{},_x);_.fb=function ay(a){Ic(a,14).I()};Vi(101,1,{},by);var hg=eE($I,'SimpleElementBindingStrategy/BindingContext',101);Vi(76,1,{76:1},cy);var ig=eE($I,'SimpleElementBindingStrategy/InitialPropertyUpdate',76);Vi(250,1,{},dy);_.Mb=function ey(a){ax(this.a,a)};var jg=eE($I,'SimpleElementBindingStrategy/lambda$0$Type',250);Vi(251,1,{},fy);_.Mb=function gy(a){bx(this.a,a)};var kg=eE($I,'SimpleElementBindingStrategy/lambda$1$Type',251);Vi(361,$wnd.Function,{},hy);_.bb=function iy(a,b){var c;Jx(this.b,this.a,(c=Ic(a,16),Pc(b),c))};Vi(260,1,kI,jy);_.ib=function ky(a){Kx(this.b,this.a,a)};var lg=eE($I,'SimpleElementBindingStrategy/lambda$11$Type',260);Vi(261,1,lI,ly);_.jb=function my(a){ux(this.c,this.b,this.a)};var mg=eE($I,'SimpleElementBindingStrategy/lambda$12$Type',261);Vi(262,1,eI,ny);_.eb=function oy(){cx(this.b,this.c,this.a)};var ng=eE($I,'SimpleElementBindingStrategy/lambda$13$Type',262);Vi(263,1,ZH,py);_.C=function qy(){this.b.Mb(this.a)};var og=eE($I,'SimpleElementBindingStrategy/lambda$14$Type',263);Vi(264,1,TH,sy);_.U=function ty(a){return ry(this,a)};var pg=eE($I,'SimpleElementBindingStrategy/lambda$15$Type',264);Vi(265,1,ZH,uy);_.C=function vy(){this.a[this.b]=jm(this.c)};var qg=eE($I,'SimpleElementBindingStrategy/lambda$16$Type',265);Vi(267,1,jI,wy);_.gb=function xy(a){dx(this.a,a)};var rg=eE($I,'SimpleElementBindingStrategy/lambda$17$Type',267);Vi(266,1,eI,yy);_.eb=function zy(){Xw(this.b,this.a)};var sg=eE($I,'SimpleElementBindingStrategy/lambda$18$Type',266);Vi(269,1,jI,Ay);_.gb=function By(a){ex(this.a,a)};var tg=eE($I,'SimpleElementBindingStrategy/lambda$19$Type',269);Vi(252,1,{},Cy);_.Mb=function Dy(a){fx(this.a,a)};var ug=eE($I,'SimpleElementBindingStrategy/lambda$2$Type',252);Vi(268,1,eI,Ey);_.eb=function Fy(){gx(this.b,this.a)};var vg=eE($I,'SimpleElementBindingStrategy/lambda$20$Type',268);Vi(270,1,YH,Gy);_.I=function Hy(){Zw(this.a,this.b,this.c,false)};var wg=eE($I,'SimpleElementBindingStrategy/lambda$21$Type',270);Vi(271,1,YH,Iy);_.I=function Jy(){Zw(this.a,this.b,this.c,false)};var xg=eE($I,'SimpleElementBindingStrategy/lambda$22$Type',271);Vi(272,1,YH,Ky);_.I=function Ly(){_w(this.a,this.b,this.c,false)};var yg=eE($I,'SimpleElementBindingStrategy/lambda$23$Type',272);Vi(273,1,UH,My);_.ab=function Ny(){return Mx(this.a,this.b)};var zg=eE($I,'SimpleElementBindingStrategy/lambda$24$Type',273);Vi(274,1,YH,Oy);_.I=function Py(){Sw(this.b,this.e,false,this.c,this.d,this.a)};var Ag=eE($I,'SimpleElementBindingStrategy/lambda$25$Type',274);Vi(275,1,UH,Qy);_.ab=function Ry(){return Nx(this.a,this.b)};var Bg=eE($I,'SimpleElementBindingStrategy/lambda$26$Type',275);Vi(276,1,UH,Sy);_.ab=function Ty(){return Ox(this.a,this.b)};var Cg=eE($I,'SimpleElementBindingStrategy/lambda$27$Type',276);Vi(362,$wnd.Function,{},Uy);_.bb=function Vy(a,b){var c;PB((c=Ic(a,74),Pc(b),c))};Vi(253,1,{105:1},Wy);_.hb=function Xy(a){nx(this.c,this.b,this.a)};var Dg=eE($I,'SimpleElementBindingStrategy/lambda$3$Type',253);Vi(363,$wnd.Function,{},Yy);_.fb=function Zy(a){Px(this.a,Oc(a,$wnd.Map))};Vi(364,$wnd.Function,{},$y);_.bb=function _y(a,b){var c;(c=Ic(a,46),Pc(b),c).Eb()};Vi(366,$wnd.Function,{},az);_.bb=function bz(a,b){var c;hx(this.a,(c=Ic(a,16),Pc(b),c))};Vi(277,1,kI,cz);_.ib=function dz(a){ix(this.a,a)};var Eg=eE($I,'SimpleElementBindingStrategy/lambda$34$Type',277);Vi(278,1,ZH,ez);_.C=function fz(){jx(this.b,this.a,this.c)};var Fg=eE($I,'SimpleElementBindingStrategy/lambda$35$Type',278);Vi(279,1,{},gz);_.T=function hz(a){kx(this.a,a)};var Gg=eE($I,'SimpleElementBindingStrategy/lambda$36$Type',279);Vi(367,$wnd.Function,{},iz);_.fb=function jz(a){Qx(this.b,this.a,Pc(a))};Vi(368,$wnd.Function,{},kz);_.fb=function lz(a){lx(this.a,this.b,Pc(a))};Vi(280,1,{},mz);_.fb=function nz(a){Xx(this.b,this.c,this.a,Pc(a))};var Hg=eE($I,'SimpleElementBindingStrategy/lambda$39$Type',280);Vi(255,1,eI,oz);_.eb=function pz(){Rx(this.a)};var Ig=eE($I,'SimpleElementBindingStrategy/lambda$4$Type',255);Vi(281,1,jI,qz);_.gb=function rz(a){Sx(this.a,a)};var Jg=eE($I,'SimpleElementBindingStrategy/lambda$41$Type',281);Vi(282,1,UH,sz);_.ab=function tz(){return this.a.b};var Kg=eE($I,'SimpleElementBindingStrategy/lambda$42$Type',282);Vi(370,$wnd.Function,{},uz);_.fb=function vz(a){this.a.push(Ic(a,6))};Vi(254,1,{},wz);_.C=function xz(){Tx(this.a)};var Lg=eE($I,'SimpleElementBindingStrategy/lambda$5$Type',254);Vi(257,1,YH,zz);_.I=function Az(){yz(this)};var Mg=eE($I,'SimpleElementBindingStrategy/lambda$6$Type',257);Vi(256,1,UH,Bz);_.ab=function Cz(){return this.a[this.b]};var Ng=eE($I,'SimpleElementBindingStrategy/lambda$7$Type',256);Vi(259,1,kI,Dz);_.ib=function Ez(a){$B(new Fz(this.a))};var Og=eE($I,'SimpleElementBindingStrategy/lambda$8$Type',259);Vi(258,1,eI,Fz);_.eb=function Gz(){Fw(this.a)};var Pg=eE($I,'SimpleElementBindingStrategy/lambda$9$Type',258);Vi(283,1,{310:1},Lz);_.Hb=function Mz(a,b,c){Jz(a,b)};_.Ib=function Nz(a){return $doc.createTextNode('')};_.Jb=function Oz(a){return a.c.has(7)};var Hz;var Tg=eE($I,'TextBindingStrategy',283);Vi(284,1,ZH,Pz);_.C=function Qz(){Iz();nD(this.a,Pc(qA(this.b)))};var Rg=eE($I,'TextBindingStrategy/lambda$0$Type',284);Vi(285,1,{105:1},Rz);_.hb=function Sz(a){Kz(this.b,this.a)};var Sg=eE($I,'TextBindingStrategy/lambda$1$Type',285);Vi(340,$wnd.Function,{},Wz);_.fb=function Xz(a){this.a.add(a)};Vi(344,$wnd.Function,{},Zz);_.bb=function $z(a,b){this.a.push(a)};var aA,bA=false;Vi(293,1,{},dA);var Ug=eE('com.vaadin.client.flow.dom','PolymerDomApiImpl',293);Vi(77,1,{77:1},eA);var Vg=eE('com.vaadin.client.flow.model','UpdatableModelProperties',77);Vi(375,$wnd.Function,{},fA);_.fb=function gA(a){this.a.add(Pc(a))};Vi(87,1,{});_.Nb=function iA(){return this.e};var uh=eE(dI,'ReactiveValueChangeEvent',87);Vi(54,87,{54:1},jA);_.Nb=function kA(){return Ic(this.e,29)};_.b=false;_.c=0;var Wg=eE(lJ,'ListSpliceEvent',54);Vi(16,1,{16:1,311:1},zA);_.Ob=function AA(a){return CA(this.a,a)};_.b=false;_.c=false;_.d=false;var lA;var eh=eE(lJ,'MapProperty',16);Vi(85,1,{});var th=eE(dI,'ReactiveEventRouter',85);Vi(235,85,{},IA);_.Pb=function JA(a,b){Ic(a,47).jb(Ic(b,78))};_.Qb=function KA(a){return new LA(a)};var Yg=eE(lJ,'MapProperty/1',235);Vi(236,1,lI,LA);_.jb=function MA(a){NB(this.a)};var Xg=eE(lJ,'MapProperty/1/0methodref$onValueChange$Type',236);Vi(234,1,YH,NA);_.I=function OA(){mA()};var Zg=eE(lJ,'MapProperty/lambda$0$Type',234);Vi(237,1,eI,PA);_.eb=function QA(){this.a.d=false};var $g=eE(lJ,'MapProperty/lambda$1$Type',237);Vi(238,1,eI,RA);_.eb=function SA(){this.a.d=false};var _g=eE(lJ,'MapProperty/lambda$2$Type',238);Vi(239,1,YH,TA);_.I=function UA(){vA(this.a,this.b)};var ah=eE(lJ,'MapProperty/lambda$3$Type',239);Vi(88,87,{88:1},VA);_.Nb=function WA(){return Ic(this.e,43)};var bh=eE(lJ,'MapPropertyAddEvent',88);Vi(78,87,{78:1},XA);_.Nb=function YA(){return Ic(this.e,16)};var dh=eE(lJ,'MapPropertyChangeEvent',78);Vi(34,1,{34:1});_.d=0;var fh=eE(lJ,'NodeFeature',34);Vi(29,34,{34:1,29:1,311:1},eB);_.Ob=function fB(a){return CA(this.a,a)};_.Rb=function gB(a){var b,c,d;c=[];for(b=0;b<this.c.length;b++){d=this.c[b];c[c.length]=jm(d)}return c};_.Sb=function hB(){var a,b,c,d;b=[];for(a=0;a<this.c.length;a++){d=this.c[a];c=ZA(d);b[b.length]=c}return b};_.b=false;var ih=eE(lJ,'NodeList',29);Vi(289,85,{},iB);_.Pb=function jB(a,b){Ic(a,65).gb(Ic(b,54))};_.Qb=function kB(a){return new lB(a)};var hh=eE(lJ,'NodeList/1',289);Vi(290,1,jI,lB);_.gb=function mB(a){NB(this.a)};var gh=eE(lJ,'NodeList/1/0methodref$onValueChange$Type',290);Vi(43,34,{34:1,43:1,311:1},tB);_.Ob=function uB(a){return CA(this.a,a)};_.Rb=function vB(a){var b;b={};this.b.forEach(Xi(HB.prototype.bb,HB,[a,b]));return b};_.Sb=function wB(){var a,b;a={};this.b.forEach(Xi(FB.prototype.bb,FB,[a]));if((b=GD(a),b).length==0){return null}return a};var lh=eE(lJ,'NodeMap',43);Vi(230,85,{},yB);_.Pb=function zB(a,b){Ic(a,81).ib(Ic(b,88))};_.Qb=function AB(a){return new BB(a)};var kh=eE(lJ,'NodeMap/1',230);Vi(231,1,kI,BB);_.ib=function CB(a){NB(this.a)};var jh=eE(lJ,'NodeMap/1/0methodref$onValueChange$Type',231);Vi(355,$wnd.Function,{},DB);_.bb=function EB(a,b){this.a.push((Ic(a,16),Pc(b)))};Vi(356,$wnd.Function,{},FB);_.bb=function GB(a,b){sB(this.a,Ic(a,16),Pc(b))};Vi(357,$wnd.Function,{},HB);_.bb=function IB(a,b){xB(this.a,this.b,Ic(a,16),Pc(b))};Vi(74,1,{74:1});_.d=false;_.e=false;var oh=eE(dI,'Computation',74);Vi(240,1,eI,QB);_.eb=function RB(){OB(this.a)};var mh=eE(dI,'Computation/0methodref$recompute$Type',240);Vi(241,1,ZH,SB);_.C=function TB(){this.a.a.C()};var nh=eE(dI,'Computation/1methodref$doRecompute$Type',241);Vi(359,$wnd.Function,{},UB);_.fb=function VB(a){dC(Ic(a,334).a)};var WB=null,XB,YB=false,ZB;Vi(75,74,{74:1},cC);var qh=eE(dI,'Reactive/1',75);Vi(232,1,TI,eC);_.Eb=function fC(){dC(this)};var rh=eE(dI,'ReactiveEventRouter/lambda$0$Type',232);Vi(233,1,{334:1},gC);var sh=eE(dI,'ReactiveEventRouter/lambda$1$Type',233);Vi(358,$wnd.Function,{},hC);_.fb=function iC(a){FA(this.a,this.b,a)};Vi(102,330,{},tC);_.b=0;var yh=eE(nJ,'SimpleEventBus',102);var vh=gE(nJ,'SimpleEventBus/Command');Vi(287,1,{},uC);var wh=eE(nJ,'SimpleEventBus/lambda$0$Type',287);Vi(288,1,{335:1},vC);var xh=eE(nJ,'SimpleEventBus/lambda$1$Type',288);Vi(97,1,{},AC);_.J=function BC(a){if(a.readyState==4){if(a.status==200){this.a.mb(a);lj(a);return}this.a.lb(a,null);lj(a)}};var zh=eE('com.vaadin.client.gwt.elemental.js.util','Xhr/Handler',97);Vi(292,1,FH,KC);_.a=-1;_.b=false;_.c=false;_.d=false;_.e=false;_.f=false;_.g=false;_.h=false;_.i=false;_.j=false;_.k=false;_.l=false;var Ah=eE(pI,'BrowserDetails',292);Vi(45,20,{45:1,4:1,31:1,20:1},SC);var NC,OC,PC,QC;var Ch=fE(vJ,'Dependency/Type',45,TC);var UC;Vi(44,20,{44:1,4:1,31:1,20:1},$C);var WC,XC,YC;var Dh=fE(vJ,'LoadMode',44,_C);Vi(115,1,TI,pD);_.Eb=function qD(){eD(this.b,this.c,this.a,this.d)};_.d=false;var Fh=eE('elemental.js.dom','JsElementalMixinBase/Remover',115);Vi(308,1,{},HD);_.Tb=function ID(){Vv(this.a)};var Gh=eE(bJ,'Timer/1',308);Vi(309,1,{},JD);_.Tb=function KD(){Xv(this.a)};var Hh=eE(bJ,'Timer/2',309);Vi(324,1,{});var Kh=eE(wJ,'OutputStream',324);Vi(325,324,{});var Jh=eE(wJ,'FilterOutputStream',325);Vi(125,325,{},LD);var Lh=eE(wJ,'PrintStream',125);Vi(83,1,{111:1});_.p=function ND(){return this.a};var Mh=eE(DH,'AbstractStringBuilder',83);Vi(69,10,HH,OD);var Zh=eE(DH,'IndexOutOfBoundsException',69);Vi(187,69,HH,PD);var Nh=eE(DH,'ArrayIndexOutOfBoundsException',187);Vi(126,10,HH,QD);var Oh=eE(DH,'ArrayStoreException',126);Vi(39,5,{4:1,39:1,5:1});var Vh=eE(DH,'Error',39);Vi(3,39,{4:1,3:1,39:1,5:1},SD,TD);var Ph=eE(DH,'AssertionError',3);Ec={4:1,116:1,31:1};var UD,VD;var Qh=eE(DH,'Boolean',116);Vi(118,10,HH,sE);var Rh=eE(DH,'ClassCastException',118);Vi(82,1,{4:1,82:1});var tE;var ci=eE(DH,'Number',82);Fc={4:1,31:1,117:1,82:1};var Th=eE(DH,'Double',117);Vi(19,10,HH,zE);var Xh=eE(DH,'IllegalArgumentException',19);Vi(40,10,HH,AE);var Yh=eE(DH,'IllegalStateException',40);Vi(26,82,{4:1,31:1,26:1,82:1},BE);_.m=function CE(a){return Sc(a,26)&&Ic(a,26).a==this.a};_.o=function DE(){return this.a};_.p=function EE(){return ''+this.a};_.a=0;var $h=eE(DH,'Integer',26);var GE;Vi(480,1,{});Vi(66,55,HH,IE,JE,KE);_.r=function LE(a){return new TypeError(a)};var ai=eE(DH,'NullPointerException',66);Vi(57,19,HH,ME);var bi=eE(DH,'NumberFormatException',57);Vi(30,1,{4:1,30:1},NE);_.m=function OE(a){var b;if(Sc(a,30)){b=Ic(a,30);return this.c==b.c&&this.d==b.d&&this.a==b.a&&this.b==b.b}return false};_.o=function PE(){return PF(Dc(xc(di,1),FH,1,5,[FE(this.c),this.a,this.d,this.b]))};_.p=function QE(){return this.a+'.'+this.d+'('+(this.b!=null?this.b:'Unknown Source')+(this.c>=0?':'+this.c:'')+')'};_.c=0;var fi=eE(DH,'StackTraceElement',30);Gc={4:1,111:1,31:1,2:1};var ii=eE(DH,'String',2);Vi(68,83,{111:1},iF,jF,kF);var gi=eE(DH,'StringBuilder',68);Vi(124,69,HH,lF);var hi=eE(DH,'StringIndexOutOfBoundsException',124);Vi(484,1,{});var mF;Vi(106,1,TH,pF);_.U=function qF(a){return oF(a)};var ji=eE(DH,'Throwable/lambda$0$Type',106);Vi(94,10,HH,rF);var li=eE(DH,'UnsupportedOperationException',94);Vi(326,1,{104:1});_.$b=function sF(a){throw Ni(new rF('Add not supported on this collection'))};_.p=function tF(){var a,b,c;c=new tG;for(b=this._b();b.cc();){a=b.dc();sG(c,a===this?'(this Collection)':a==null?IH:Zi(a))}return !c.a?c.c:c.e.length==0?c.a.a:c.a.a+(''+c.e)};var mi=eE(yJ,'AbstractCollection',326);Vi(327,326,{104:1,91:1});_.bc=function uF(a,b){throw Ni(new rF('Add not supported on this list'))};_.$b=function vF(a){this.bc(this.ac(),a);return true};_.m=function wF(a){var b,c,d,e,f;if(a===this){return true}if(!Sc(a,41)){return false}f=Ic(a,91);if(this.a.length!=f.a.length){return false}e=new MF(f);for(c=new MF(this);c.a<c.c.a.length;){b=LF(c);d=LF(e);if(!(_c(b)===_c(d)||b!=null&&K(b,d))){return false}}return true};_.o=function xF(){return SF(this)};_._b=function yF(){return new zF(this)};var oi=eE(yJ,'AbstractList',327);Vi(133,1,{},zF);_.cc=function AF(){return this.a<this.b.a.length};_.dc=function BF(){jH(this.a<this.b.a.length);return DF(this.b,this.a++)};_.a=0;var ni=eE(yJ,'AbstractList/IteratorImpl',133);Vi(41,327,{4:1,41:1,104:1,91:1},GF);_.bc=function HF(a,b){mH(a,this.a.length);fH(this.a,a,b)};_.$b=function IF(a){return CF(this,a)};_._b=function JF(){return new MF(this)};_.ac=function KF(){return this.a.length};var qi=eE(yJ,'ArrayList',41);Vi(70,1,{},MF);_.cc=function NF(){return this.a<this.c.a.length};_.dc=function OF(){return LF(this)};_.a=0;_.b=-1;var pi=eE(yJ,'ArrayList/1',70);Vi(151,10,HH,TF);var ri=eE(yJ,'NoSuchElementException',151);Vi(53,1,{53:1},$F);_.m=function _F(a){var b;if(a===this){return true}if(!Sc(a,53)){return false}b=Ic(a,53);return UF(this.a,b.a)};_.o=function aG(){return VF(this.a)};_.p=function cG(){return this.a!=null?'Optional.of('+eF(this.a)+')':'Optional.empty()'};var WF;var si=eE(yJ,'Optional',53);Vi(139,1,{});_.gc=function hG(a){dG(this,a)};_.ec=function fG(){return this.c};_.fc=function gG(){return this.d};_.c=0;_.d=0;var wi=eE(yJ,'Spliterators/BaseSpliterator',139);Vi(140,139,{});var ti=eE(yJ,'Spliterators/AbstractSpliterator',140);Vi(136,1,{});_.gc=function nG(a){dG(this,a)};_.ec=function lG(){return this.b};_.fc=function mG(){return this.d-this.c};_.b=0;_.c=0;_.d=0;var vi=eE(yJ,'Spliterators/BaseArraySpliterator',136);Vi(137,136,{},pG);_.gc=function qG(a){jG(this,a)};_.hc=function rG(a){return kG(this,a)};var ui=eE(yJ,'Spliterators/ArraySpliterator',137);Vi(123,1,{},tG);_.p=function uG(){return !this.a?this.c:this.e.length==0?this.a.a:this.a.a+(''+this.e)};var xi=eE(yJ,'StringJoiner',123);Vi(110,1,TH,vG);_.U=function wG(a){return a};var yi=eE('java.util.function','Function/lambda$0$Type',110);Vi(49,20,{4:1,31:1,20:1,49:1},CG);var yG,zG,AG;var zi=fE(zJ,'Collector/Characteristics',49,DG);Vi(291,1,{},EG);var Ai=eE(zJ,'CollectorImpl',291);Vi(108,1,WH,GG);_.bb=function HG(a,b){FG(a,b)};var Bi=eE(zJ,'Collectors/20methodref$add$Type',108);Vi(107,1,UH,IG);_.ab=function JG(){return new GF};var Ci=eE(zJ,'Collectors/21methodref$ctor$Type',107);Vi(109,1,{},KG);var Di=eE(zJ,'Collectors/lambda$42$Type',109);Vi(138,1,{});_.c=false;var Ki=eE(zJ,'TerminatableStream',138);Vi(96,138,{},SG);var Ji=eE(zJ,'StreamImpl',96);Vi(141,140,{},WG);_.hc=function XG(a){return this.b.hc(new YG(this,a))};var Fi=eE(zJ,'StreamImpl/MapToObjSpliterator',141);Vi(143,1,{},YG);_.fb=function ZG(a){VG(this.a,this.b,a)};var Ei=eE(zJ,'StreamImpl/MapToObjSpliterator/lambda$0$Type',143);Vi(142,1,{},_G);_.fb=function aH(a){$G(this,a)};var Gi=eE(zJ,'StreamImpl/ValueConsumer',142);Vi(144,1,{},cH);var Hi=eE(zJ,'StreamImpl/lambda$4$Type',144);Vi(145,1,{},dH);_.fb=function eH(a){UG(this.b,this.a,a)};var Ii=eE(zJ,'StreamImpl/lambda$5$Type',145);Vi(482,1,{});Vi(479,1,{});var qH=0;var sH,tH=0,uH;var zH=(Db(),Gb);var gwtOnLoad=gwtOnLoad=Ri;Pi(_i);Si('permProps',[[[CJ,'gecko1_8']],[[CJ,'safari']]]);if (client) client.onScriptLoad(gwtOnLoad);})();
+};
\ No newline at end of file
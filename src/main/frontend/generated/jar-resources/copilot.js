@@ -0,0 +1 @@
+import "./copilot/copilot-BpTSGORU.js";
@@ -0,0 +1,153 @@
+package org.vaadin.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Column for mostly unique values such as streets and emails: the UTF-8
+ * bytes of every row are appended to one shared byte array and rows hold
+ * an offset and a length, instead of a String object and its own array.
+ * <p>
+ * Updates append and leave the old bytes behind; the arena is compacted
+ * once more than half of it is garbage. Filters on ASCII rows run on the
+ * bytes directly; other rows are decoded to keep Unicode case folding
+ * identical to {@link PersonField#containsIgnoreCase}.
+ */
+class ArenaColumn extends StringColumn {
+
+    private static final int NULL = -1;
+
+    private byte[] arena = new byte[1024];
+    private int used;
+    private long garbage;
+    private int[] offsets = new int[0];
+    private int[] lengths = new int[0];
+    private final BitSet nonAscii = new BitSet();
+
+    @Override
+    void ensureCapacity(int capacity) {
+        if (offsets.length < capacity) {
+            int old = offsets.length;
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            Arrays.fill(lengths, old, capacity, NULL);
+        }
+    }
+
+    @Override
+    String get(int slot) {
+        int length = lengths[slot];
+        return length == NULL ? null : new String(arena, offsets[slot], length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    void set(int slot, String value) {
+        clear(slot);
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (used + bytes.length > arena.length) {
+            makeRoom(bytes.length);
+        }
+        System.arraycopy(bytes, 0, arena, used, bytes.length);
+        offsets[slot] = used;
+        lengths[slot] = bytes.length;
+        used += bytes.length;
+        nonAscii.set(slot, bytes.length != value.length());
+    }
+
+    @Override
+    void clear(int slot) {
+        if (lengths[slot] != NULL) {
+            garbage += lengths[slot];
+            lengths[slot] = NULL;
+        }
+    }
+
+    private void makeRoom(int needed) {
+        if (garbage > used / 2) {
+            compact();
+        }
+        if (used + needed > arena.length) {
+            long capacity = Math.max((long) used + needed, arena.length + (arena.length >> 1));
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Column arena is full");
+            }
+            arena = Arrays.copyOf(arena, (int) capacity);
+        }
+    }
+
+    /**
+     * Copies live values to the front of a new arena in slot order.
+     */
+    private void compact() {
+        byte[] compacted = new byte[Math.max(1024, used - (int) garbage + (used >> 2))];
+        int position = 0;
+        for (int slot = 0; slot < lengths.length; slot++) {
+            int length = lengths[slot];
+            if (length != NULL) {
+                System.arraycopy(arena, offsets[slot], compacted, position, length);
+                offsets[slot] = position;
+                position += length;
+            }
+        }
+        arena = compacted;
+        used = position;
+        garbage = 0;
+    }
+
+    @Override
+    IntPredicate contains(String lowerCaseNeedle) {
+        boolean asciiNeedle = lowerCaseNeedle.chars().allMatch(c -> c < 128);
+        byte[] needle = lowerCaseNeedle.getBytes(StandardCharsets.US_ASCII);
+        return slot -> {
+            int length = lengths[slot];
+            if (length == NULL) {
+                return false;
+            }
+            if (asciiNeedle && !nonAscii.get(slot)) {
+                return containsAscii(offsets[slot], length, needle);
+            }
+            return PersonField.containsIgnoreCase(get(slot), lowerCaseNeedle);
+        };
+    }
+
+    private boolean containsAscii(int offset, int length, byte[] needle) {
+        for (int start = offset, last = offset + length - needle.length; start <= last; start++) {
+            int i = 0;
+            while (i < needle.length && lower(arena[start + i]) == needle[i]) {
+                i++;
+            }
+            if (i == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    @Override
+    Comparator<Integer> order(int[] slots, int count) {
+        // decode only the rows being sorted, once each
+        Map<Integer, String> keys = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            keys.put(slots[i], get(slots[i]));
+        }
+        return Comparator.comparing(keys::get, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    @Override
+    long footprint() {
+        return arrayBytes(arena.length, 1) + arrayBytes(offsets.length, 4) + arrayBytes(lengths.length, 4)
+                + nonAscii.size() / 8;
+    }
+}
@@ -0,0 +1,19 @@
+package org.vaadin.example;
+
+/**
+ * Thrown by {@link PersonStore#persistAll} when only part of the batch was
+ * written, e.g. when write-behind retried the batch one write at a time.
+ */
+public class BatchWriteException extends RuntimeException {
+
+    private final int written;
+
+    public BatchWriteException(int written, int total, Throwable firstFailure) {
+        super((total - written) + " of " + total + " writes failed: " + firstFailure.getMessage(), firstFailure);
+        this.written = written;
+    }
+
+    public int getWritten() {
+        return written;
+    }
+}
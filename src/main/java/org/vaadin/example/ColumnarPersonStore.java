@@ -0,0 +1,539 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.SortDirection;
+import org.vaadin.example.ProviderMetrics.Operation;
+import org.vaadin.example.utility.MetricsConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * In-memory store that keeps contacts column-wise instead of as one
+ * {@link Person} per row. Ids and versions are primitive arrays indexed by
+ * row slot. Last names, cities and countries repeat heavily and are
+ * dictionary-encoded ({@link DictionaryColumn}); first names, streets, phone
+ * numbers and emails are mostly distinct and live in UTF-8 arenas
+ * ({@link ArenaColumn}). A {@code Person} is built only for
+ * the rows a query returns.
+ * <p>
+ * Filters run over the columns, testing each distinct dictionary value
+ * once. Pages sorted by id or by one dictionary column are ordered by
+ * sorting packed primitive keys. Slots of deleted rows are reused.
+ * <p>
+ * A read-write lock guards the whole store: queries run in parallel with
+ * each other and exclude writers. Unlike {@link PersonDataProviderInMemory}
+ * each instance is a separate store.
+ */
+public class ColumnarPersonStore extends PersonDataProvider {
+
+    private static final PersonField[] DICTIONARY = {
+            PersonField.LAST_NAME, PersonField.CITY, PersonField.COUNTRY};
+    private static final PersonField[] ARENA = {
+            PersonField.FIRST_NAME, PersonField.STREET, PersonField.PHONE_NUMBER, PersonField.EMAIL};
+    private static final int NONE = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<PersonField, StringColumn> columns = new EnumMap<>(PersonField.class);
+    private final IntIntMap slotById = new IntIntMap(1024);
+    private final BitSet live = new BitSet();
+    private int[] ids = new int[0];
+    private int[] versions = new int[0];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int highWater;
+
+    // chains of slots per normalized phone hash, for existsByPhoneNumber
+    private int[] phoneHeads = new int[0];
+    private int[] phoneNext = new int[0];
+    private int[] phoneHash = new int[0];
+    private final BitSet hasPhone = new BitSet();
+
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final CountCache countCache = new CountCache(0);
+    private final PersonChangeBus changes = new PersonChangeBus();
+    private final ProviderMetrics metrics = ProviderMetrics.create("columnar");
+
+    public ColumnarPersonStore() {
+        for (PersonField field : DICTIONARY) {
+            columns.put(field, new DictionaryColumn());
+        }
+        for (PersonField field : ARENA) {
+            columns.put(field, new ArenaColumn());
+        }
+        ensureCapacity(1024);
+    }
+
+    @Override
+    public PersonChangeBus getChangeBus() {
+        return changes;
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return Set.of();
+    }
+
+    @Override
+    public ProviderMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsConfig config) {
+        metrics.configure(config);
+    }
+
+    /**
+     * Lets grid size queries reuse a count for up to {@code ttlMillis}; 0 disables caching.
+     */
+    public void setCountCacheTtl(long ttlMillis) {
+        countCache.setTtlMillis(ttlMillis);
+    }
+
+    // Reads
+
+    @Override
+    public Optional<Person> find(int id) {
+        long start = metrics.start();
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            int slot = slotById.get(id);
+            return slot == IntIntMap.MISSING ? Optional.empty() : Optional.of(materialize(slot));
+        } finally {
+            read.unlock();
+            metrics.stop(Operation.FIND_BY_ID, start);
+        }
+    }
+
+    @Override
+    public List<Person> findAllById(List<Integer> idList) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            List<Person> found = new ArrayList<>(idList.size());
+            for (Integer id : idList) {
+                int slot = slotById.get(id);
+                if (slot != IntIntMap.MISSING) {
+                    found.add(materialize(slot));
+                }
+            }
+            return found;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public List<Person> page(CrudFilter filter, int offset, int limit) {
+        long start = metrics.start();
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            int[] slots = matching(filter);
+            int count = slots.length;
+            metrics.rowsFetched(count);
+            int[] ordered = sort(filter, slots, count);
+            int from = Math.min(offset, count);
+            int to = (int) Math.min(count, (long) offset + limit);
+            List<Person> page = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                page.add(materialize(ordered[i]));
+            }
+            metrics.rowsReturned(page.size());
+            return page;
+        } finally {
+            read.unlock();
+            metrics.stop(Operation.FETCH, start);
+        }
+    }
+
+    /**
+     * Ranks the matching rows once and then reads them a chunk at a time by
+     * id, so the whole result is never materialized at once. The order and
+     * the set of ids are fixed when this is called; a row deleted meanwhile
+     * is skipped and one updated meanwhile is read as updated.
+     */
+    @Override
+    public Stream<Person> stream(CrudFilter filter) {
+        int[] orderedIds;
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            int[] slots = matching(filter);
+            int[] ordered = sort(filter, slots, slots.length);
+            orderedIds = new int[ordered.length];
+            for (int i = 0; i < ordered.length; i++) {
+                orderedIds[i] = ids[ordered[i]];
+            }
+        } finally {
+            read.unlock();
+        }
+        int chunk = 1000;
+        return IntStream.iterate(0, from -> from < orderedIds.length, from -> from + chunk)
+                .mapToObj(from -> findAllById(Arrays.stream(orderedIds, from, Math.min(from + chunk, orderedIds.length))
+                        .boxed().toList()))
+                .flatMap(List::stream);
+    }
+
+    @Override
+    public int count(CrudFilter filter) {
+        long start = metrics.start();
+        int count = countCache.get(filter, this::countRows);
+        metrics.stop(Operation.SIZE, start);
+        return count;
+    }
+
+    private int countRows(CrudFilter filter) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            IntPredicate predicate = predicate(filter);
+            if (predicate == null) {
+                return slotById.size();
+            }
+            int count = 0;
+            for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+                if (predicate.test(slot)) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public boolean existsByPhoneNumber(String normalizedPhone, Integer excludeId) {
+        if (normalizedPhone == null) {
+            return false;
+        }
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            int hash = normalizedPhone.hashCode();
+            for (int slot = phoneHeads[hash & (phoneHeads.length - 1)]; slot != NONE; slot = phoneNext[slot]) {
+                if (phoneHash[slot] == hash && (excludeId == null || ids[slot] != excludeId)
+                        && normalizedPhone.equals(PhoneNumbers.normalize(columns.get(PersonField.PHONE_NUMBER).get(slot)))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Live slots passing every constraint of {@code filter}.
+     */
+    private int[] matching(CrudFilter filter) {
+        IntPredicate predicate = predicate(filter);
+        int[] slots = new int[slotById.size()];
+        int count = 0;
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            if (predicate == null || predicate.test(slot)) {
+                slots[count++] = slot;
+            }
+        }
+        return count == slots.length ? slots : Arrays.copyOf(slots, count);
+    }
+
+    /**
+     * The constraints as one slot predicate, or null when there are none.
+     */
+    private IntPredicate predicate(CrudFilter filter) {
+        if (filter == null || filter.getConstraints().isEmpty()) {
+            return null;
+        }
+        IntPredicate combined = null;
+        for (Map.Entry<String, String> constraint : filter.getConstraints().entrySet()) {
+            PersonField field = PersonField.of(constraint.getKey());
+            String needle = constraint.getValue().toLowerCase(Locale.ROOT);
+            IntPredicate test = field == PersonField.ID
+                    ? slot -> PersonField.containsIgnoreCase(Integer.toString(ids[slot]), needle)
+                    : columns.get(field).contains(needle);
+            combined = combined == null ? test : combined.and(test);
+        }
+        return combined;
+    }
+
+    /**
+     * {@code slots} in the filter's order, ties broken by id, as
+     * {@link PersonField#comparator(CrudFilter)} would sort the rows.
+     */
+    private int[] sort(CrudFilter filter, int[] slots, int count) {
+        Map<String, SortDirection> sortOrders = filter == null ? Map.of() : filter.getSortOrders();
+        if (sortOrders.isEmpty()) {
+            return sortByKey(slots, count, slot -> 0);
+        }
+        if (sortOrders.size() == 1) {
+            Map.Entry<String, SortDirection> sortOrder = sortOrders.entrySet().iterator().next();
+            if (columns.get(PersonField.of(sortOrder.getKey())) instanceof DictionaryColumn dictionary) {
+                int[] rank = dictionary.ranks();
+                boolean descending = sortOrder.getValue() == SortDirection.DESCENDING;
+                return sortByKey(slots, count, slot -> {
+                    int code = dictionary.code(slot);
+                    // nulls rank first ascending and last descending
+                    int key = code < 0 ? -1 : rank[code];
+                    return descending ? Integer.MAX_VALUE - key - 1 : key;
+                });
+            }
+        }
+        Comparator<Integer> comparator = null;
+        for (Map.Entry<String, SortDirection> sortOrder : sortOrders.entrySet()) {
+            PersonField field = PersonField.of(sortOrder.getKey());
+            Comparator<Integer> byField = field == PersonField.ID
+                    ? Comparator.comparingInt(slot -> ids[slot])
+                    : columns.get(field).order(slots, count);
+            if (sortOrder.getValue() == SortDirection.DESCENDING) {
+                byField = byField.reversed();
+            }
+            comparator = comparator == null ? byField : comparator.thenComparing(byField);
+        }
+        Integer[] boxed = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            boxed[i] = slots[i];
+        }
+        Arrays.sort(boxed, comparator.thenComparingInt(slot -> ids[slot]));
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = boxed[i];
+        }
+        return sorted;
+    }
+
+    /**
+     * Sorts by (key, id) packed into longs, so no boxing and a primitive sort.
+     */
+    private int[] sortByKey(int[] slots, int count, IntUnaryOperator key) {
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            int slot = slots[i];
+            packed[i] = ((long) key.applyAsInt(slot) << 32) | (ids[slot] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(packed);
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = slotById.get((int) packed[i]);
+        }
+        return sorted;
+    }
+
+    private Person materialize(int slot) {
+        Person person = new Person();
+        person.setId(ids[slot]);
+        person.setVersion(versions[slot]);
+        person.setFirstName(columns.get(PersonField.FIRST_NAME).get(slot));
+        person.setLastName(columns.get(PersonField.LAST_NAME).get(slot));
+        person.setStreet(columns.get(PersonField.STREET).get(slot));
+        person.setCity(columns.get(PersonField.CITY).get(slot));
+        person.setCountry(columns.get(PersonField.COUNTRY).get(slot));
+        person.setPhoneNumber(columns.get(PersonField.PHONE_NUMBER).get(slot));
+        person.setEmail(columns.get(PersonField.EMAIL).get(slot));
+        return person;
+    }
+
+    // Writes
+
+    /**
+     * Stores {@code item}. An item carrying a version must still match the
+     * stored one, otherwise {@link OptimisticLockException} is thrown.
+     */
+    @Override
+    public void persist(Person item) {
+        long start = metrics.start();
+        PersonChange change;
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            change = store(item);
+        } catch (OptimisticLockException e) {
+            metrics.error(Operation.PERSIST);
+            throw e;
+        } finally {
+            write.unlock();
+            metrics.stop(Operation.PERSIST, start);
+        }
+        countCache.invalidate();
+        changes.publish(change);
+    }
+
+    @Override
+    public void persistAll(List<Person> items) {
+        long start = metrics.start();
+        List<PersonChange> stored = new ArrayList<>(items.size());
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            for (Person item : items) {
+                stored.add(store(item));
+            }
+        } finally {
+            write.unlock();
+            metrics.stop(Operation.PERSIST, start);
+            countCache.invalidate();
+            changes.publish(stored);
+        }
+    }
+
+    private PersonChange store(Person item) {
+        Integer id = item.getId();
+        int slot = id == null ? IntIntMap.MISSING : slotById.get(id);
+        Integer expected = item.getVersion();
+        if (expected != null && (slot == IntIntMap.MISSING || versions[slot] != expected)) {
+            throw new OptimisticLockException(id, expected);
+        }
+        boolean inserted = slot == IntIntMap.MISSING;
+        if (id == null) {
+            id = sequence.incrementAndGet();
+            item.setId(id);
+        } else {
+            // keep the sequence ahead of ids that were assigned elsewhere
+            sequence.accumulateAndGet(id, Math::max);
+        }
+        if (inserted) {
+            slot = allocate();
+            ids[slot] = id;
+            versions[slot] = 0;
+            slotById.put(id, slot);
+            live.set(slot);
+        } else {
+            unlinkPhone(slot);
+            versions[slot]++;
+        }
+        columns.get(PersonField.FIRST_NAME).set(slot, item.getFirstName());
+        columns.get(PersonField.LAST_NAME).set(slot, item.getLastName());
+        columns.get(PersonField.STREET).set(slot, item.getStreet());
+        columns.get(PersonField.CITY).set(slot, item.getCity());
+        columns.get(PersonField.COUNTRY).set(slot, item.getCountry());
+        columns.get(PersonField.PHONE_NUMBER).set(slot, item.getPhoneNumber());
+        columns.get(PersonField.EMAIL).set(slot, item.getEmail());
+        linkPhone(slot, PhoneNumbers.normalize(item.getPhoneNumber()));
+        item.setVersion(versions[slot]);
+        Person stored = materialize(slot);
+        return inserted ? PersonChange.inserted(stored) : PersonChange.updated(stored);
+    }
+
+    @Override
+    public void delete(Person item) {
+        long start = metrics.start();
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            int slot = slotById.remove(item.getId());
+            if (slot != IntIntMap.MISSING) {
+                unlinkPhone(slot);
+                columns.values().forEach(column -> column.clear(slot));
+                live.clear(slot);
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        } finally {
+            write.unlock();
+            metrics.stop(Operation.DELETE, start);
+        }
+        countCache.invalidate();
+        changes.publish(PersonChange.deleted(item.getId()));
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (highWater == ids.length) {
+            ensureCapacity(ids.length + (ids.length >> 1));
+        }
+        return highWater++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        phoneNext = Arrays.copyOf(phoneNext, capacity);
+        phoneHash = Arrays.copyOf(phoneHash, capacity);
+        columns.values().forEach(column -> column.ensureCapacity(capacity));
+        // rehash the phone chains into a table sized for the new capacity
+        phoneHeads = new int[Integer.highestOneBit(capacity - 1) << 1];
+        Arrays.fill(phoneHeads, NONE);
+        for (int slot = hasPhone.nextSetBit(0); slot >= 0; slot = hasPhone.nextSetBit(slot + 1)) {
+            int bucket = phoneHash[slot] & (phoneHeads.length - 1);
+            phoneNext[slot] = phoneHeads[bucket];
+            phoneHeads[bucket] = slot;
+        }
+    }
+
+    private void linkPhone(int slot, String normalizedPhone) {
+        if (normalizedPhone == null) {
+            return;
+        }
+        int hash = normalizedPhone.hashCode();
+        int bucket = hash & (phoneHeads.length - 1);
+        phoneHash[slot] = hash;
+        phoneNext[slot] = phoneHeads[bucket];
+        phoneHeads[bucket] = slot;
+        hasPhone.set(slot);
+    }
+
+    private void unlinkPhone(int slot) {
+        if (!hasPhone.get(slot)) {
+            return;
+        }
+        hasPhone.clear(slot);
+        int bucket = phoneHash[slot] & (phoneHeads.length - 1);
+        if (phoneHeads[bucket] == slot) {
+            phoneHeads[bucket] = phoneNext[slot];
+            return;
+        }
+        for (int previous = phoneHeads[bucket]; previous != NONE; previous = phoneNext[previous]) {
+            if (phoneNext[previous] == slot) {
+                phoneNext[previous] = phoneNext[slot];
+                return;
+            }
+        }
+    }
+
+    // Footprint
+
+    /**
+     * Approximate heap bytes per part of the store, plus {@code total}.
+     * Compare with {@link PersonDataProviderInMemory#footprint()}. Takes the
+     * read lock while it sums the columns, so it is computed on demand rather
+     * than on every metrics scrape.
+     */
+    public Map<String, Long> footprint() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            Map<String, Long> parts = new LinkedHashMap<>();
+            parts.put("ids", StringColumn.arrayBytes(ids.length, 4) + StringColumn.arrayBytes(versions.length, 4)
+                    + slotById.footprint() + live.size() / 8 + StringColumn.arrayBytes(freeSlots.length, 4));
+            columns.forEach((field, column) -> parts.put(field.property(), column.footprint()));
+            parts.put("phoneIndex", StringColumn.arrayBytes(phoneHeads.length, 4)
+                    + StringColumn.arrayBytes(phoneNext.length, 4) + StringColumn.arrayBytes(phoneHash.length, 4));
+            parts.put("total", parts.values().stream().mapToLong(Long::longValue).sum());
+            return parts;
+        } finally {
+            read.unlock();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of row counts per filter. The grid asks for the size on
+ * every refresh, so concurrent sessions looking at the same filter share one
+ * count for {@code ttlMillis}. Any write clears the cache, and a count
+ * loaded while a write happened is not cached. A loader that fails throws,
+ * so failures are never cached.
+ */
+class CountCache {
+
+    private final Map<String, Entry> counts = new ConcurrentHashMap<>();
+    private volatile long ttlMillis;
+    private volatile long generation;
+
+    interface Loader<E extends Exception> {
+        int load(CrudFilter filter) throws E;
+    }
+
+    CountCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    <E extends Exception> int get(CrudFilter filter, Loader<E> loader) throws E {
+        if (ttlMillis <= 0) {
+            return loader.load(filter);
+        }
+        String key = key(filter);
+        long now = System.currentTimeMillis();
+        Entry entry = counts.get(key);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.count;
+        }
+        long current = generation;
+        int count = loader.load(filter);
+        synchronized (this) {
+            if (generation == current) {
+                counts.put(key, new Entry(count, now + ttlMillis));
+            }
+        }
+        return count;
+    }
+
+    synchronized void invalidate() {
+        generation++;
+        counts.clear();
+    }
+
+    synchronized void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        generation++;
+        counts.clear();
+    }
+
+    /**
+     * Canonical form of the constraints only; sort orders don't change a count.
+     */
+    static String key(CrudFilter filter) {
+        if (filter == null || filter.getConstraints().isEmpty()) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder();
+        new TreeMap<>(filter.getConstraints()).forEach((field, value) ->
+                key.append(field).append('=').append(value.toLowerCase(Locale.ROOT)).append('\u0000'));
+        return key.toString();
+    }
+
+    private record Entry(int count, long expiresAt) {
+    }
+}
@@ -1,12 +1,35 @@
 package org.vaadin.example;
 
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public class DataService {
-//    public static List<Person> getPeople() {
-//        return IntStream.range(0, 1000).mapToObj(i -> new Person("Person " + i, i))
-//                .collect(Collectors.toList());
-//    }
+
+    private static final String[] FIRST_NAMES = {"John", "Jane", "Alice", "Bob", "Carol", "David", "Eve", "Frank", "Grace", "Heidi"};
+    private static final String[] LAST_NAMES = {"Smith", "Doe", "Brown", "Taylor", "Wilson", "Evans", "Walker", "Wright", "Green", "Hall"};
+    private static final String[] CITIES = {"London", "Paris", "Berlin", "Madrid", "Rome", "Vienna", "Dublin", "Lisbon"};
+    private static final String[] COUNTRIES = {"UK", "France", "Germany", "Spain", "Italy", "Austria", "Ireland", "Portugal"};
+
+    /**
+     * Synthetic contacts for tests and benchmarks. The same seed always gives
+     * the same people; ids are left unset and phone numbers are unique 11-digit
+     * strings.
+     */
+    public static List<Person> getPeople(int count, long seed) {
+        Random random = new Random(seed);
+        return IntStream.range(0, count).mapToObj(i -> {
+            int city = random.nextInt(CITIES.length);
+            Person person = new Person();
+            person.setFirstName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + i);
+            person.setLastName(LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+            person.setStreet(random.nextInt(1000) + " Main St");
+            person.setCity(CITIES[city]);
+            person.setCountry(COUNTRIES[city]);
+            person.setPhoneNumber(String.format("%011d", 10_000_000_000L + i));
+            person.setEmail("person" + i + "@example.com");
+            return person;
+        }).collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,145 @@
+package org.vaadin.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Dictionary-encoded column for values that repeat a lot, such as cities
+ * and countries: each distinct string is stored once and rows hold a 4-byte
+ * code. A filter is evaluated once per distinct value and rows are then
+ * matched by code, and sorting compares precomputed ranks.
+ * <p>
+ * Codes are recycled once no row uses them, so the dictionary stays as
+ * large as the number of distinct live values.
+ */
+class DictionaryColumn extends StringColumn {
+
+    private static final int NULL = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private final List<Integer> freeCodes = new ArrayList<>();
+    private int[] references = new int[16];
+    private int[] rows = new int[0];
+
+    @Override
+    void ensureCapacity(int capacity) {
+        if (rows.length < capacity) {
+            int old = rows.length;
+            rows = Arrays.copyOf(rows, capacity);
+            Arrays.fill(rows, old, capacity, NULL);
+        }
+    }
+
+    @Override
+    String get(int slot) {
+        int code = rows[slot];
+        return code == NULL ? null : values.get(code);
+    }
+
+    @Override
+    void set(int slot, String value) {
+        int previous = rows[slot];
+        int code = value == null ? NULL : codeOf(value);
+        if (code != NULL) {
+            references[code]++;
+        }
+        release(previous);
+        rows[slot] = code;
+    }
+
+    @Override
+    void clear(int slot) {
+        release(rows[slot]);
+        rows[slot] = NULL;
+    }
+
+    private int codeOf(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        int assigned;
+        if (freeCodes.isEmpty()) {
+            assigned = values.size();
+            values.add(value);
+            if (assigned == references.length) {
+                references = Arrays.copyOf(references, assigned * 2);
+            }
+        } else {
+            assigned = freeCodes.remove(freeCodes.size() - 1);
+            values.set(assigned, value);
+        }
+        codes.put(value, assigned);
+        return assigned;
+    }
+
+    private void release(int code) {
+        if (code != NULL && --references[code] == 0) {
+            codes.remove(values.get(code));
+            values.set(code, null);
+            freeCodes.add(code);
+        }
+    }
+
+    int distinctValues() {
+        return codes.size();
+    }
+
+    @Override
+    IntPredicate contains(String lowerCaseNeedle) {
+        boolean[] matching = new boolean[values.size()];
+        for (int code = 0; code < matching.length; code++) {
+            matching[code] = PersonField.containsIgnoreCase(values.get(code), lowerCaseNeedle);
+        }
+        return slot -> {
+            int code = rows[slot];
+            return code != NULL && matching[code];
+        };
+    }
+
+    @Override
+    Comparator<Integer> order(int[] slots, int count) {
+        int[] rank = ranks();
+        return Comparator.comparingInt(slot -> rows[slot] == NULL ? -1 : rank[rows[slot]]);
+    }
+
+    /**
+     * The position of each code's value in sorted order, so rows sort by
+     * comparing ints.
+     */
+    int[] ranks() {
+        Integer[] sorted = new Integer[values.size()];
+        int live = 0;
+        for (int code = 0; code < values.size(); code++) {
+            if (values.get(code) != null) {
+                sorted[live++] = code;
+            }
+        }
+        Arrays.sort(sorted, 0, live, Comparator.comparing(values::get));
+        int[] rank = new int[values.size()];
+        for (int i = 0; i < live; i++) {
+            rank[sorted[i]] = i;
+        }
+        return rank;
+    }
+
+    int code(int slot) {
+        return rows[slot];
+    }
+
+    @Override
+    long footprint() {
+        long bytes = arrayBytes(rows.length, 4) + arrayBytes(references.length, 4);
+        for (String value : codes.keySet()) {
+            // the string, its map entry and boxed code, and the list slot
+            bytes += stringBytes(value) + 32 + 16 + 4;
+        }
+        return bytes;
+    }
+}
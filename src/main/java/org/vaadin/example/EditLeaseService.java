@@ -0,0 +1,65 @@
+package org.vaadin.example;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks who has a contact open in the editor. Each id has its own entry
+ * updated atomically through {@link ConcurrentHashMap#compute}, so editors
+ * of different contacts never contend. Leases expire after {@code ttl}
+ * unless renewed, which cleans up after sessions that vanish without
+ * releasing them.
+ */
+public class EditLeaseService {
+
+    private final long ttlMillis;
+    private final ConcurrentHashMap<Integer, Map<String, Long>> leases = new ConcurrentHashMap<>();
+
+    public EditLeaseService(Duration ttl) {
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    /**
+     * Takes or renews a lease on {@code personId} for {@code holder} and
+     * returns whether the holder is the only live editor.
+     */
+    public boolean acquire(int personId, String holder) {
+        long now = System.currentTimeMillis();
+        boolean[] exclusive = new boolean[1];
+        leases.compute(personId, (id, holders) -> {
+            Map<String, Long> live = holders == null ? new HashMap<>() : holders;
+            live.values().removeIf(expiresAt -> expiresAt <= now);
+            exclusive[0] = live.isEmpty() || (live.size() == 1 && live.containsKey(holder));
+            live.put(holder, now + ttlMillis);
+            return live;
+        });
+        return exclusive[0];
+    }
+
+    public void release(int personId, String holder) {
+        long now = System.currentTimeMillis();
+        leases.computeIfPresent(personId, (id, holders) -> {
+            holders.remove(holder);
+            holders.values().removeIf(expiresAt -> expiresAt <= now);
+            return holders.isEmpty() ? null : holders;
+        });
+    }
+
+    /**
+     * Drops every lease of {@code holder}, e.g. when its UI is detached.
+     */
+    public void releaseAll(String holder) {
+        leases.keySet().forEach(personId -> release(personId, holder));
+    }
+
+    public int editors(int personId) {
+        long now = System.currentTimeMillis();
+        Map<String, Long> holders = leases.computeIfPresent(personId, (id, live) -> {
+            live.values().removeIf(expiresAt -> expiresAt <= now);
+            return live.isEmpty() ? null : live;
+        });
+        return holders == null ? 0 : holders.size();
+    }
+}
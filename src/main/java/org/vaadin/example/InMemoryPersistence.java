@@ -0,0 +1,217 @@
+package org.vaadin.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.example.utility.OpLogConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Durability for {@link PersonDataProviderInMemory}: a {@link PersonOpLog}
+ * of every write plus periodic {@link PersonSnapshot}s in one directory.
+ * <p>
+ * A snapshot rotates the log first and then copies the live map without
+ * pausing writers. Only the rotation waits for writes that have queued
+ * their record but not yet published the row, so no write lands in a
+ * segment the snapshot replaces without being in the snapshot. {@code snapshot-<n>.bin} covers every segment before
+ * {@code n}; once it is in place those segments and older snapshots are
+ * deleted. Recovery loads the newest snapshot and replays the segments
+ * from {@code n} on. Replay splits the records by id, so each contact's
+ * writes stay in order while partitions are applied in parallel.
+ */
+class InMemoryPersistence implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryPersistence.class);
+
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    private final Path directory;
+    private final ConcurrentMap<Integer, Person> database;
+    private final PersonOpLog log;
+    private final ScheduledExecutorService snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "person-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // writers hold the read side from changing a row until its record is queued
+    private final ReadWriteLock barrier = new ReentrantReadWriteLock();
+    private long snapshotRecords;
+
+    private InMemoryPersistence(Path directory, ConcurrentMap<Integer, Person> database, PersonOpLog log) {
+        this.directory = directory;
+        this.database = database;
+        this.log = log;
+    }
+
+    /**
+     * Recovers the contacts in {@code directory} into {@code database} and
+     * starts logging. Snapshots are taken every
+     * {@code snapshotIntervalSeconds} if anything was written meanwhile.
+     */
+    static InMemoryPersistence open(Path directory, OpLogConfig config, ConcurrentMap<Integer, Person> database)
+            throws IOException {
+        Files.createDirectories(directory);
+        long next = recover(directory, database);
+        InMemoryPersistence persistence = new InMemoryPersistence(directory, database,
+                new PersonOpLog(directory, next, config.getGroupCommitMillis()));
+        long interval = config.getSnapshotIntervalSeconds();
+        if (interval > 0) {
+            persistence.snapshots.scheduleWithFixedDelay(persistence::snapshotIfChanged, interval, interval, TimeUnit.SECONDS);
+        }
+        return persistence;
+    }
+
+    /**
+     * Loads the newest snapshot and replays the log after it. Returns the
+     * number for the next log segment.
+     */
+    static long recover(Path directory, ConcurrentMap<Integer, Person> database) throws IOException {
+        long start = System.currentTimeMillis();
+        long from = 0;
+        Path snapshot = newestSnapshot(directory);
+        if (snapshot != null) {
+            from = PersonSnapshot.load(snapshot, database);
+        }
+        int loaded = database.size();
+
+        int partitions = Runtime.getRuntime().availableProcessors();
+        List<List<byte[]>> byId = new ArrayList<>(partitions);
+        IntStream.range(0, partitions).forEach(i -> byId.add(new ArrayList<>()));
+        long last = from - 1;
+        int replayed = 0;
+        for (long segment : PersonOpLog.segments(directory)) {
+            last = Math.max(last, segment);
+            if (segment < from) {
+                continue;
+            }
+            for (byte[] payload : PersonOpLog.read(directory, segment)) {
+                byId.get(Math.floorMod(PersonOpLog.idOf(payload), partitions)).add(payload);
+                replayed++;
+            }
+        }
+        byId.parallelStream().forEach(records -> records.forEach(payload -> {
+            PersonOpLog.Op op = PersonOpLog.decode(payload);
+            if (op.person() == null) {
+                database.remove(op.id());
+            } else {
+                database.put(op.id(), op.person());
+            }
+        }));
+        LOGGER.info("Recovered {} contacts ({} from snapshot, {} log records) in {} ms",
+                database.size(), loaded, replayed, System.currentTimeMillis() - start);
+        return last + 1;
+    }
+
+    CompletableFuture<Long> logPut(Person stored) {
+        return log.put(stored);
+    }
+
+    CompletableFuture<Long> logDelete(int id) {
+        return log.delete(id);
+    }
+
+    PersonOpLog log() {
+        return log;
+    }
+
+    /**
+     * Held around applying a write to the map and queueing its record.
+     */
+    Lock writer() {
+        return barrier.readLock();
+    }
+
+    /**
+     * Writes a snapshot of the current contacts and drops the log segments
+     * and snapshots it replaces. Writers keep going meanwhile.
+     */
+    synchronized void snapshot() throws IOException {
+        long start = System.currentTimeMillis();
+        long records = log.records();
+        CompletableFuture<Long> rotated;
+        barrier.writeLock().lock();
+        try {
+            // every record queued before the switch now has its row in the map
+            rotated = log.rotate();
+        } finally {
+            barrier.writeLock().unlock();
+        }
+        long segment = rotated.join();
+        Path file = directory.resolve("snapshot-" + segment + ".bin");
+        long rows = PersonSnapshot.write(file, segment, database.values().iterator());
+        snapshotRecords = records;
+        for (long old : PersonOpLog.segments(directory)) {
+            if (old < segment) {
+                Files.deleteIfExists(PersonOpLog.segmentFile(directory, old));
+            }
+        }
+        for (Map.Entry<Long, Path> old : snapshotFiles(directory).entrySet()) {
+            if (old.getKey() < segment) {
+                Files.deleteIfExists(old.getValue());
+            }
+        }
+        LOGGER.info("Wrote snapshot of {} contacts in {} ms", rows, System.currentTimeMillis() - start);
+    }
+
+    private void snapshotIfChanged() {
+        if (log.records() == snapshotRecords) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            // the log still has everything, try again next time
+            LOGGER.warn("Contact snapshot failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshots.shutdown();
+        try {
+            snapshots.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    private static Path newestSnapshot(Path directory) throws IOException {
+        NavigableMap<Long, Path> files = snapshotFiles(directory);
+        return files.isEmpty() ? null : files.lastEntry().getValue();
+    }
+
+    private static NavigableMap<Long, Path> snapshotFiles(Path directory) throws IOException {
+        NavigableMap<Long, Path> found = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    found.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+        return found;
+    }
+}
@@ -0,0 +1,103 @@
+package org.vaadin.example;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int to non-negative int, without boxing.
+ * Uses linear probing with backward-shift deletion, so there are no
+ * tombstones to clean up. Not thread-safe.
+ */
+class IntIntMap {
+
+    static final int MISSING = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    IntIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(8, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+    }
+
+    int get(int key) {
+        int mask = keys.length - 1;
+        for (int i = mix(key) & mask; values[i] != MISSING; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return MISSING;
+    }
+
+    void put(int key, int value) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != MISSING) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 4 > keys.length * 3) {
+            resize();
+        }
+    }
+
+    int remove(int key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != MISSING && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        int removed = values[i];
+        if (removed == MISSING) {
+            return MISSING;
+        }
+        size--;
+        // shift later entries of the probe run back into the hole
+        int hole = i;
+        for (int j = (hole + 1) & mask; values[j] != MISSING; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        values[hole] = MISSING;
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, MISSING);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    long footprint() {
+        return StringColumn.arrayBytes(keys.length, 4) * 2;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,95 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.SortDirection;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers where recently served pages ended so the next contiguous page
+ * can be read with a keyset (seek) predicate instead of OFFSET. Cursors are
+ * keyed by query shape and end offset, so sessions scrolling the same
+ * filter at different positions don't overwrite each other. The least
+ * recently used cursors are dropped beyond {@code maxCursors}; any write
+ * clears them all because it may shift rows between pages. A page read
+ * while a write landed is not remembered, see {@link #generation()}.
+ */
+class KeysetCursors {
+
+    private final Map<String, Cursor> cursors;
+    private long generation;
+
+    KeysetCursors(int maxCursors) {
+        this.cursors = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cursor> eldest) {
+                return size() > maxCursors;
+            }
+        };
+    }
+
+    /**
+     * Keyset paging needs a total order the database can seek into: at most
+     * one sort column, with id as the tie-breaker.
+     */
+    static boolean supports(CrudFilter filter) {
+        return filter == null || filter.getSortOrders().size() <= 1;
+    }
+
+    synchronized Cursor find(CrudFilter filter, int offset) {
+        return offset == 0 ? null : cursors.get(key(filter, offset));
+    }
+
+    /**
+     * Taken before a page query and passed to {@link #remember}, which drops
+     * the cursor if an {@link #invalidate()} happened meanwhile.
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    void remember(CrudFilter filter, int endOffset, Person last, long readAt) {
+        Object sortValue = null;
+        if (filter != null && !filter.getSortOrders().isEmpty()) {
+            sortValue = PersonField.of(filter.getSortOrders().keySet().iterator().next()).valueOf(last);
+            if (sortValue == null) {
+                return;
+            }
+        }
+        synchronized (this) {
+            if (generation == readAt) {
+                cursors.put(key(filter, endOffset), new Cursor(sortValue, last.getId()));
+            }
+        }
+    }
+
+    synchronized void invalidate() {
+        generation++;
+        cursors.clear();
+    }
+
+    private static String key(CrudFilter filter, int offset) {
+        return shape(filter) + '@' + offset;
+    }
+
+    /**
+     * Canonical form of the constraints and sort orders of a query.
+     */
+    static String shape(CrudFilter filter) {
+        StringBuilder key = new StringBuilder(CountCache.key(filter)).append('|');
+        if (filter != null) {
+            for (Map.Entry<String, SortDirection> sortOrder : filter.getSortOrders().entrySet()) {
+                key.append(sortOrder.getKey()).append(' ').append(sortOrder.getValue()).append(',');
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Sort value and id of the last row of a page; {@code sortValue} is null
+     * when the query is ordered by id only.
+     */
+    record Cursor(Object sortValue, int id) {
+    }
+}
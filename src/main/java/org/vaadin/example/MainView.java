@@ -1,26 +1,54 @@
 package org.vaadin.example;
 
 
+import com.vaadin.flow.component.HasValue;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.crud.BinderCrudEditor;
 import com.vaadin.flow.component.crud.Crud;
 import com.vaadin.flow.component.crud.CrudEditor;
 import com.vaadin.flow.component.crud.CrudFilter;
 import com.vaadin.flow.component.formlayout.FormLayout;
 import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.grid.HeaderRow;
+import com.vaadin.flow.component.html.Anchor;
+import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.EmailField;
 import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.component.upload.Upload;
+import com.vaadin.flow.component.upload.receivers.FileBuffer;
 import com.vaadin.flow.data.binder.Binder;
-import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.provider.DataCommunicator;
+import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.router.Route;
-
+import com.vaadin.flow.server.StreamResource;
+import com.vaadin.flow.shared.Registration;
+import org.vaadin.example.search.PersonSearchEngine;
+import org.vaadin.example.search.SearchHit;
+import org.vaadin.example.utility.AppConfig;
+import org.vaadin.example.utility.ConfigLoader;
+import org.vaadin.example.utility.PersonDataProviderFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 
 /**
@@ -44,10 +72,19 @@ public class MainView extends VerticalLayout {
     private String PHONE_NUMBER = "phoneNumber";
     private String EMAIL = "email";
     private String EDIT_COLUMN = "vaadin-crud-edit-column";
-    private final static PersonDataProviderDb dataProvider = new PersonDataProviderDb();
-    private final static ConcurrentHashMap<Integer, Integer> personViewed = new ConcurrentHashMap<>();
-    private static Integer viewCount = 0;
-    //private final static PersonDataProviderInMemory dataProvider = new PersonDataProviderInMemory();
+    private final static PersonDataProvider dataProvider = PersonDataProviderFactory.createDataProvider();
+    private final static PersonSearchEngine searchEngine = openSearchEngine();
+    private final static int SEARCH_LIMIT = 200;
+    // other writers' changes re-run a shown search at most this often
+    private final static long SEARCH_REFRESH_MILLIS = 1000;
+    private final static EditLeaseService editLeases = new EditLeaseService(Duration.ofMinutes(15));
+    // identifies this view's leases; a session may have several tabs open
+    private final String leaseHolder = UUID.randomUUID().toString();
+    private Registration changeFeed;
+    private final TextField search = new TextField();
+    private CompletableFuture<List<Person>> pendingSearch;
+    private SearchResultsDataProvider searchResults;
+    private boolean searchRefreshQueued;
 
 
 
@@ -58,7 +95,7 @@ public class MainView extends VerticalLayout {
         setupDataProvider();
 
 
-        add(crud);
+        add(createSearch(), createImportExport(), crud);
 
     }
     public CrudEditor<Person> createEditor() {
@@ -75,7 +112,7 @@ public class MainView extends VerticalLayout {
 
         binder.forField(firstName)
                 .asRequired("First Name is required")
-                .withValidator(nameValue -> nameValue.length() >= 3, "Name must be at least 3 characters long")
+                .withValidator(PersonValidator::isValidName, "Name must be at least 3 characters long")
                 .withValidationStatusHandler(status -> {
                     if (status.isError()) {
                         firstName.setErrorMessage(status.getMessage().orElse(""));
@@ -87,7 +124,7 @@ public class MainView extends VerticalLayout {
                 .bind(Person::getFirstName, Person::setFirstName);
         binder.forField(lastName)
                 .asRequired("Last Name is required")
-                .withValidator(nameValue -> nameValue.length() >= 3, "Name must be at least 3 characters long")
+                .withValidator(PersonValidator::isValidName, "Name must be at least 3 characters long")
                 .withValidationStatusHandler(status -> {
                     if (status.isError()) {
                         lastName.setErrorMessage(status.getMessage().orElse(""));
@@ -103,7 +140,7 @@ public class MainView extends VerticalLayout {
         binder.forField(country).asRequired().bind(Person::getCountry, Person::setCountry);
         binder.forField(phoneNumber)
                 .asRequired("Phone number is required")
-                .withValidator(phone -> phone.matches("\\d{11}"), "Phone number must be 11 digits")
+                .withValidator(PersonValidator::isValidPhoneNumber, "Phone number must be 11 digits")
                 .withValidator(phone -> isPhoneNumberUnique(crud.getEditor().getItem(), phone), "Phone number must be unique")
                 .withValidationStatusHandler(status -> {
                     if (status.isError()) {
@@ -118,6 +155,7 @@ public class MainView extends VerticalLayout {
 
         binder.forField(email)
                 .asRequired("Email is required")
+                .withValidator(PersonValidator::isValidEmail, "Please enter a valid email address")
                 .withValidationStatusHandler(status -> {
                     if (status.isError()) {
                         email.setErrorMessage("Please enter a valid email address");
@@ -132,6 +170,177 @@ public class MainView extends VerticalLayout {
     }
 
 
+    private TextField createSearch() {
+        search.setPlaceholder("Search name, address, email or phone");
+        search.setClearButtonVisible(true);
+        search.setValueChangeMode(ValueChangeMode.LAZY);
+        search.setWidthFull();
+        search.addValueChangeListener(event -> runSearch());
+        return search;
+    }
+
+    /**
+     * Swaps the grid to the ranked matches of the search box, or back to the
+     * full list when it is empty. Matches are looked up off the UI thread
+     * and pushed back; typing on cancels a lookup that is still pending.
+     */
+    private void runSearch() {
+        cancelSearch();
+        String query = search.getValue().trim();
+        if (query.isEmpty()) {
+            searchResults = null;
+            crud.setDataProvider(dataProvider);
+            return;
+        }
+        // only when the user searches; background refreshes stay quiet
+        if (!searchEngine.isReady()) {
+            Notification.show("The search index is still being built, results may be incomplete", 3000,
+                    Notification.Position.BOTTOM_START);
+        }
+        lookUp(query, people -> {
+            searchResults = new SearchResultsDataProvider(people);
+            crud.setDataProvider(searchResults);
+        });
+    }
+
+    /**
+     * Re-runs the shown search after other writers' changes, swapping the
+     * result into the same provider so the grid stays where the user is.
+     */
+    private void refreshSearch() {
+        searchRefreshQueued = false;
+        String query = search.getValue().trim();
+        if (query.isEmpty() || searchResults == null || pendingSearch != null) {
+            // cleared, or a lookup already in flight will show fresh results
+            return;
+        }
+        SearchResultsDataProvider shown = searchResults;
+        lookUp(query, shown::replace);
+    }
+
+    private void scheduleSearchRefresh() {
+        if (searchRefreshQueued) {
+            return;
+        }
+        searchRefreshQueued = true;
+        UI ui = UI.getCurrent();
+        CompletableFuture.runAsync(() -> ui.access(this::refreshSearch),
+                CompletableFuture.delayedExecutor(SEARCH_REFRESH_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    private void lookUp(String query, Consumer<List<Person>> show) {
+        UI ui = UI.getCurrent();
+        CompletableFuture<List<Person>> lookup = dataProvider.callAsync(() -> dataProvider.findAllById(
+                searchEngine.search(query, SEARCH_LIMIT).stream().map(SearchHit::id).toList()));
+        pendingSearch = lookup;
+        lookup.whenComplete((people, error) -> {
+            if (lookup.isCancelled()) {
+                return;
+            }
+            ui.access(() -> {
+                if (pendingSearch != lookup) {
+                    // a newer search replaced this one meanwhile
+                    return;
+                }
+                pendingSearch = null;
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    Notification failed = Notification.show("Search failed: " + cause.getMessage(), 5000, Notification.Position.MIDDLE);
+                    failed.addThemeVariants(NotificationVariant.LUMO_ERROR);
+                    return;
+                }
+                show.accept(people);
+            });
+        });
+    }
+
+    private void cancelSearch() {
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true);
+            pendingSearch = null;
+        }
+    }
+
+    /**
+     * A store that forgets its contacts on restart gets an index that does
+     * too; otherwise a saved index would list contacts that no longer exist.
+     * Either way a full build runs on the engine's own thread, not while
+     * this class loads.
+     */
+    private static PersonSearchEngine openSearchEngine() {
+        if (dataProvider.capabilities().contains(PersonStore.Capability.DURABLE)) {
+            return PersonSearchEngine.open(searchIndexDirectory(), dataProvider.getChangeBus(), MainView::allContacts);
+        }
+        return PersonSearchEngine.inMemory(dataProvider.getChangeBus(), MainView::allContacts);
+    }
+
+    private static Path searchIndexDirectory() {
+        AppConfig config = ConfigLoader.loadConfig();
+        return Path.of(config != null ? config.getSearchIndexDirectory() : "search-index");
+    }
+
+    /**
+     * Every contact, for building the search index.
+     */
+    private static Stream<Person> allContacts() {
+        return dataProvider.stream(null);
+    }
+
+    private HorizontalLayout createImportExport() {
+        FileBuffer buffer = new FileBuffer();
+        Upload upload = new Upload(buffer);
+        upload.setAcceptedFileTypes(".csv", "text/csv");
+        upload.setUploadButton(new Button("Import CSV"));
+        upload.setDropAllowed(false);
+        Span status = new Span();
+
+        upload.addSucceededListener(event -> {
+            UI ui = UI.getCurrent();
+            File file = buffer.getFileData().getFile();
+            status.setText("Importing " + event.getFileName() + "...");
+            // holds one of the provider's I/O slots while it runs
+            dataProvider.callAsync(() -> {
+                importCsv(ui, file, status);
+                return null;
+            }).exceptionally(error -> {
+                ui.access(() -> status.setText("Import failed: " + error.getMessage()));
+                return null;
+            });
+        });
+
+        StreamResource export = new StreamResource("contacts.csv", (out, session) ->
+                PersonCsvExporter.export(dataProvider.stream(new CrudFilter()), Channels.newChannel(out), written -> {
+                }));
+        Anchor download = new Anchor(export, "Export CSV");
+        download.getElement().setAttribute("download", true);
+
+        HorizontalLayout toolbar = new HorizontalLayout(upload, download, status);
+        toolbar.setAlignItems(Alignment.CENTER);
+        return toolbar;
+    }
+
+    /**
+     * Runs on the provider's executor; progress is pushed to the browser
+     * after every batch.
+     */
+    private void importCsv(UI ui, File file, Span status) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            PersonCsvImporter.Result result = PersonCsvImporter.into(dataProvider).importFrom(channel,
+                    progress -> ui.access(() -> status.setText(PersonCsvImporter.describe(progress))));
+            ui.access(() -> {
+                if (!result.errors().isEmpty()) {
+                    Notification rejected = Notification.show(result.rejected() + " rows rejected, first: "
+                            + result.errors().get(0), 5000, Notification.Position.MIDDLE);
+                    rejected.addThemeVariants(NotificationVariant.LUMO_ERROR);
+                }
+            });
+        } catch (IOException e) {
+            ui.access(() -> status.setText("Import failed: " + e.getMessage()));
+        } finally {
+            file.delete();
+        }
+    }
+
     void setupGrid() {
         Grid<Person> grid = crud.getGrid();
         Crud.removeEditColumn(grid);
@@ -170,79 +379,114 @@ private void setupDataProvider() {
     notification.addThemeVariants(NotificationVariant.LUMO_ERROR);
     crud.setDataProvider(dataProvider);
 
+    // Saves are checked against the version the editor was opened with, so
+    // editors never block each other; the lease only warns about the overlap.
     crud.addSaveListener(saveEvent -> {
-        synchronized (dataProvider) {
-            dataProvider.persist(saveEvent.getItem());
-            dataProvider.refreshAll();
-        }
+        Person person = saveEvent.getItem();
+        release(person);
+        acknowledge(dataProvider.persistAsync(person), "Saving", saved -> {
+            if (saved != null) {
+                // the save ran on a copy; the next one is checked against this version
+                person.setId(saved.getId());
+                person.setVersion(saved.getVersion());
+            }
+        });
     });
 
-    crud.addCancelListener(cancelEvent -> {
-        synchronized (dataProvider) {
-            Person person = cancelEvent.getItem();
-            if (personViewed.get(person.getId()) > 0) {
-                personViewed.put(person.getId(), personViewed.get(person.getId()) - 1);
-            }
-            dataProvider.persist(cancelEvent.getItem());
-            cancelEvent.getSource().getSaveButton().setEnabled(true);
-            cancelEvent.getSource().getDeleteButton().setEnabled(true);
-        }
+    crud.addCancelListener(cancelEvent -> release(cancelEvent.getItem()));
+
+    crud.addDeleteListener(deleteEvent -> {
+        release(deleteEvent.getItem());
+        acknowledge(dataProvider.deleteAsync(deleteEvent.getItem()), "Deleting", deleted -> {});
     });
 
     crud.addEditListener(editEvent -> {
         Person person = editEvent.getItem();
-        if (!personViewed.containsKey(person.getId())) {
-            personViewed.put(person.getId(), 0);
-        }
-
-        synchronized (dataProvider) {
-            if (personViewed.get(person.getId()) > 0) {
-                System.out.println("Hello");
-                notification.open();
-                editEvent.getSource().getSaveButton().setEnabled(false);
-                editEvent.getSource().getDeleteButton().setEnabled(false);
-                personViewed.put(person.getId(), personViewed.get(person.getId()) + 1);
-//                dataProvider.refreshAll();
-            } else {
-                personViewed.put(person.getId(), personViewed.get(person.getId()) + 1);
-
-                editEvent.getSource().addSaveListener(saveEvent -> {
-                    synchronized (dataProvider) {
-                        if (personViewed.get(person.getId()) > 0) {
-                            personViewed.put(person.getId(), personViewed.get(person.getId()) - 1);
-                        }
-                        System.out.println(person.getFlag());
-                        editEvent.getSource().getSaveButton().setEnabled(true);
-                        editEvent.getSource().getDeleteButton().setEnabled(true);
-                        dataProvider.persist(saveEvent.getItem());
-                    }
-                });
-                editEvent.getSource().addDeleteListener(deleteEvent -> {
-                    synchronized (dataProvider) {
-                        dataProvider.delete(deleteEvent.getItem());
-                    }
-                });
-            }
+        if (person.getId() != null && !editLeases.acquire(person.getId(), leaseHolder)) {
+            notification.open();
         }
     });
 
-    crud.addNewListener(newEvent -> {
-        newEvent.getSource().getSaveButton().setEnabled(true);
-        newEvent.getSource().getDeleteButton().setEnabled(true);
+    addAttachListener(attachEvent -> {
+        UI ui = attachEvent.getUI();
+        changeFeed = dataProvider.getChangeBus().subscribeCoalesced(frame -> ui.access(() -> applyChanges(frame)));
+    });
+    addDetachListener(detachEvent -> {
+        cancelSearch();
+        changeFeed.remove();
+        editLeases.releaseAll(leaseHolder);
     });
-
 }
 
+    /**
+     * Patches the rows other writers touched. Updates are re-rendered in
+     * place when the grid shows plain id order; inserts and deletes shift
+     * rows, and so do updates under a sort or a column filter, so then the
+     * grid re-fetches its size and the visible range only. A shown search
+     * is re-run, at most once per {@code SEARCH_REFRESH_MILLIS}, when a
+     * change may add a match or touches one of its hits.
+     */
+    private void applyChanges(List<PersonChange> frame) {
+        if (!search.isEmpty()) {
+            if (searchResults != null && frame.stream().anyMatch(change -> change.type() == PersonChange.Type.INSERTED
+                    || change.type() == PersonChange.Type.RESET || searchResults.shows(change.id()))) {
+                scheduleSearchRefresh();
+            }
+            return;
+        }
+        DataCommunicator<Person> communicator = crud.getGrid().getDataCommunicator();
+        if (isSortedOrFiltered() || frame.stream().anyMatch(PersonChange::isStructural)) {
+            communicator.reset();
+            return;
+        }
+        frame.forEach(change -> communicator.refresh(change.person()));
+    }
 
-    private boolean isPhoneNumberUnique(Person person, String phoneNumber) {
-        CrudFilter filter = new CrudFilter();
-        filter.getConstraints().put("phoneNumber", phoneNumber);
-        List<Person> persons = dataProvider.fetchFromBackEnd(new Query<>(filter)).toList();
-        if(person.getId()==null){
-            return persons.stream().noneMatch(p -> Objects.equals(p.getPhoneNumber(), phoneNumber));
+    private boolean isSortedOrFiltered() {
+        Grid<Person> grid = crud.getGrid();
+        if (!grid.getSortOrder().isEmpty()) {
+            return true;
+        }
+        // the crud's column filters live in the header
+        return grid.getHeaderRows().stream()
+                .flatMap(row -> row.getCells().stream())
+                .map(HeaderRow.HeaderCell::getComponent)
+                .anyMatch(component -> component instanceof HasValue<?, ?> filter && !filter.isEmpty());
+    }
+
+    private void release(Person person) {
+        if (person != null && person.getId() != null) {
+            editLeases.release(person.getId(), leaseHolder);
         }
+    }
+
+    /**
+     * Writes may complete on the write-behind thread, so failures are pushed
+     * back to this UI once the database has answered. A successful write
+     * hands its result to {@code applied} there, and its row shows up
+     * through the change feed like everyone else's.
+     */
+    private <T> void acknowledge(CompletableFuture<T> write, String action, Consumer<T> applied) {
+        UI ui = UI.getCurrent();
+        write.whenComplete((result, error) -> ui.access(() -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof OptimisticLockException) {
+                Notification conflict = Notification.show("Someone else changed this contact first, reload it and try again",
+                        5000, Notification.Position.MIDDLE);
+                conflict.addThemeVariants(NotificationVariant.LUMO_ERROR);
+                // drop the rejected edits the editor wrote into the grid's row
+                crud.getGrid().getDataCommunicator().reset();
+            } else if (cause != null) {
+                Notification failed = Notification.show(action + " failed: " + cause.getMessage(), 5000, Notification.Position.MIDDLE);
+                failed.addThemeVariants(NotificationVariant.LUMO_ERROR);
+            } else {
+                applied.accept(result);
+            }
+        }));
+    }
 
-        return persons.stream().noneMatch(p -> p.getPhoneNumber().equals(phoneNumber) && !p.getId().equals(person.getId()));
+    private boolean isPhoneNumberUnique(Person person, String phoneNumber) {
+        return !dataProvider.existsByPhoneNumber(PhoneNumbers.normalize(phoneNumber), person.getId());
     }
 
 
@@ -0,0 +1,683 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.example.ProviderMetrics.Operation;
+import org.vaadin.example.utility.MetricsConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Durable single-node store that keeps contacts in memory-mapped files, so
+ * there is no load phase: opening maps the files and scans the slot table
+ * for ids, and rows are decoded from the mapping when read.
+ * <p>
+ * {@code slots-<generation>.dat} holds a 64 byte header and one fixed
+ * {@value #SLOT_SIZE} byte slot per contact: id, version + 1 (0 marks a free
+ * slot) and a reference per text property into the append-only
+ * {@link OverflowArea} in {@code strings-<generation>.dat}. Every write
+ * first commits a redo record to {@code wal.log} ({@link WriteAheadLog})
+ * and only then touches the mapped files, which are flushed and the log
+ * emptied at checkpoints. Opening replays whatever the log still holds.
+ * <p>
+ * When more than half of the string area is garbage, opening copies the
+ * live rows into the next generation, which only becomes current once its
+ * header is written, so a crash mid-way leaves the old files in charge.
+ * <p>
+ * Filtering and sorting scan the rows through {@link PersonQueryEngine}
+ * without secondary indexes; the phone number index is built on first use.
+ */
+public class MappedPersonStore extends PersonDataProvider implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedPersonStore.class);
+
+    static final int SLOT_SIZE = 64;
+    private static final int HEADER = 64;
+    private static final int MAGIC = 0x5042534C; // "PBSL"
+    private static final int FORMAT = 1;
+    private static final long COMPACT_MIN_BYTES = 16 * 1024 * 1024;
+    private static final Pattern SLOTS_NAME = Pattern.compile("slots-(\\d+)\\.dat");
+
+    private final Path directory;
+    private final FileChannel lockChannel;
+    private final FileLock fileLock;
+    private final WriteAheadLog wal;
+    private int generation;
+    private FileChannel slotChannel;
+    private MappedByteBuffer slots;
+    private int capacity;
+    private OverflowArea strings;
+
+    private final IntIntMap slotById = new IntIntMap(1024);
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int highWater;
+    private long checkpointBytes = 8 * 1024 * 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final PersonQueryEngine engine = new PersonQueryEngine(new PersonQueryEngine.Rows() {
+        @Override
+        public Person get(int id) {
+            int slot = slotById.get(id);
+            return slot == IntIntMap.MISSING ? null : read(slot);
+        }
+
+        @Override
+        public Stream<Person> scan() {
+            return IntStream.range(0, highWater).filter(slot -> state(slot) != 0).mapToObj(MappedPersonStore.this::read);
+        }
+
+        @Override
+        public int size() {
+            return slotById.size();
+        }
+    }, Set.of());
+    private boolean phonesIndexed;
+    private final CountCache countCache = new CountCache(0);
+    private final PersonChangeBus changes = new PersonChangeBus();
+    private final ProviderMetrics metrics = ProviderMetrics.create("mapped");
+
+    /**
+     * Opens the store in {@code directory}, creating it with room for
+     * {@code initialSlots} contacts if it doesn't exist. With
+     * {@code syncWrites} every write is fsynced before it returns.
+     */
+    public MappedPersonStore(Path directory, int initialSlots, boolean syncWrites) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        fileLock = lockChannel.tryLock();
+        if (fileLock == null) {
+            lockChannel.close();
+            throw new IOException("Contact store in " + directory + " is used by another process");
+        }
+        try {
+            generation = currentGeneration();
+            openGeneration(generation, Math.max(initialSlots, 16));
+            for (int slot = 0; slot < capacity; slot++) {
+                if (state(slot) != 0) {
+                    slotById.put(id(slot), slot);
+                }
+            }
+            wal = new WriteAheadLog(directory.resolve("wal.log"), syncWrites);
+            List<WriteAheadLog.Entry> entries = wal.replay();
+            entries.forEach(this::redo);
+            rebuildFreeSlots();
+            if (!entries.isEmpty()) {
+                LOGGER.info("Recovered {} writes from the contact store log", entries.size());
+                checkpoint();
+            }
+            if (strings.size() > COMPACT_MIN_BYTES && strings.garbage() > strings.size() / 2) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            fileLock.release();
+            lockChannel.close();
+            throw e;
+        }
+        metrics.gauge("file_bytes", () -> HEADER + (long) capacity * SLOT_SIZE + strings.size());
+        metrics.gauge("garbage_bytes", () -> strings.garbage());
+        metrics.gauge("wal_bytes", () -> {
+            try {
+                return wal.size();
+            } catch (IOException e) {
+                return -1;
+            }
+        });
+        LOGGER.info("Opened contact store in {} with {} contacts", directory, slotById.size());
+    }
+
+    @Override
+    public PersonChangeBus getChangeBus() {
+        return changes;
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return Set.of(Capability.DURABLE, Capability.BATCH_WRITES);
+    }
+
+    @Override
+    public ProviderMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsConfig config) {
+        metrics.configure(config);
+    }
+
+    /**
+     * Scans over at least {@code rows} contacts run on all cores, see
+     * {@link PersonQueryEngine#setParallelThreshold}.
+     */
+    public void setParallelQueryThreshold(int rows) {
+        engine.setParallelThreshold(rows);
+    }
+
+    /**
+     * Lets grid size queries reuse a count for up to {@code ttlMillis}; 0 disables caching.
+     */
+    public void setCountCacheTtl(long ttlMillis) {
+        countCache.setTtlMillis(ttlMillis);
+    }
+
+    /**
+     * Log size at which the mapped files are flushed and the log emptied.
+     */
+    public void setCheckpointBytes(long checkpointBytes) {
+        this.checkpointBytes = checkpointBytes;
+    }
+
+    // Reads
+
+    @Override
+    public Optional<Person> find(int id) {
+        long start = metrics.start();
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            int slot = slotById.get(id);
+            return slot == IntIntMap.MISSING ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            read.unlock();
+            metrics.stop(Operation.FIND_BY_ID, start);
+        }
+    }
+
+    @Override
+    public List<Person> findAllById(List<Integer> ids) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return engine.findAll(ids);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public List<Person> page(CrudFilter filter, int offset, int limit) {
+        long start = metrics.start();
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            List<Person> page = engine.page(filter, offset, limit);
+            metrics.rowsReturned(page.size());
+            return page;
+        } finally {
+            read.unlock();
+            metrics.stop(Operation.FETCH, start);
+        }
+    }
+
+    @Override
+    public Stream<Person> stream(CrudFilter filter) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            // rows are decoded from the file, so the snapshot stays valid after unlocking
+            return engine.stream(filter);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    @Override
+    public int count(CrudFilter filter) {
+        long start = metrics.start();
+        int count = countCache.get(filter, f -> {
+            Lock read = lock.readLock();
+            read.lock();
+            try {
+                return engine.count(f);
+            } finally {
+                read.unlock();
+            }
+        });
+        metrics.stop(Operation.SIZE, start);
+        return count;
+    }
+
+    @Override
+    public boolean existsByPhoneNumber(String normalizedPhone, Integer excludeId) {
+        if (!phonesIndexed) {
+            Lock write = lock.writeLock();
+            write.lock();
+            try {
+                if (!phonesIndexed) {
+                    indexPhoneNumbers();
+                }
+            } finally {
+                write.unlock();
+            }
+        }
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return engine.existsByPhoneNumber(normalizedPhone, excludeId);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    private void indexPhoneNumbers() {
+        for (int slot = 0; slot < highWater; slot++) {
+            if (state(slot) != 0) {
+                Person phone = new Person();
+                phone.setId(id(slot));
+                phone.setPhoneNumber(strings.read(slots.getLong(offset(slot) + 48)));
+                engine.update(phone);
+            }
+        }
+        phonesIndexed = true;
+    }
+
+    // Writes
+
+    /**
+     * Stores {@code item}. An item carrying a version must still match the
+     * stored one, otherwise {@link OptimisticLockException} is thrown.
+     */
+    @Override
+    public void persist(Person item) {
+        persistAll(List.of(item));
+    }
+
+    /**
+     * Stores every item with one log commit. Nothing is stored when one of
+     * them fails the version check.
+     */
+    @Override
+    public void persistAll(List<Person> items) {
+        long start = metrics.start();
+        List<PersonChange> stored = new ArrayList<>(items.size());
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            List<WriteAheadLog.Entry> writes = new ArrayList<>(items.size());
+            Map<Integer, WriteAheadLog.Entry> batch = new HashMap<>();
+            List<Integer> allocated = new ArrayList<>();
+            try {
+                for (Person item : items) {
+                    Integer id = item.getId() == null ? sequence.incrementAndGet() : item.getId();
+                    WriteAheadLog.Entry earlier = batch.get(id);
+                    int slot = earlier != null ? earlier.slot() : slotById.get(id);
+                    Integer current = earlier != null ? earlier.person().getVersion()
+                            : slot == IntIntMap.MISSING ? null : state(slot) - 1;
+                    Integer expected = item.getVersion();
+                    if (expected != null && !expected.equals(current)) {
+                        throw new OptimisticLockException(id, expected);
+                    }
+                    if (slot == IntIntMap.MISSING) {
+                        slot = allocate();
+                        allocated.add(slot);
+                    }
+                    Person copy = new Person(item);
+                    copy.setId(id);
+                    copy.setVersion(current == null ? 0 : current + 1);
+                    WriteAheadLog.Entry entry = new WriteAheadLog.Entry(slot, id, copy);
+                    wal.put(slot, copy);
+                    writes.add(entry);
+                    batch.put(id, entry);
+                }
+                wal.commit();
+            } catch (IOException | RuntimeException e) {
+                wal.rollback();
+                allocated.forEach(this::free);
+                metrics.error(Operation.PERSIST);
+                if (e instanceof IOException io) {
+                    throw new UncheckedIOException("Writing contacts failed", io);
+                }
+                throw (RuntimeException) e;
+            }
+            for (int i = 0; i < writes.size(); i++) {
+                WriteAheadLog.Entry entry = writes.get(i);
+                boolean inserted = slotById.get(entry.id()) == IntIntMap.MISSING;
+                redo(entry);
+                sequence.accumulateAndGet(entry.id(), Math::max);
+                Person item = items.get(i);
+                item.setId(entry.id());
+                item.setVersion(entry.person().getVersion());
+                stored.add(inserted ? PersonChange.inserted(entry.person()) : PersonChange.updated(entry.person()));
+            }
+            checkpointIfDue();
+        } finally {
+            write.unlock();
+            metrics.stop(Operation.PERSIST, start);
+        }
+        countCache.invalidate();
+        changes.publish(stored);
+    }
+
+    @Override
+    public void delete(Person item) {
+        long start = metrics.start();
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            int slot = slotById.get(item.getId());
+            if (slot != IntIntMap.MISSING) {
+                WriteAheadLog.Entry entry = new WriteAheadLog.Entry(slot, item.getId(), null);
+                wal.delete(slot, item.getId());
+                try {
+                    wal.commit();
+                } catch (IOException e) {
+                    wal.rollback();
+                    metrics.error(Operation.DELETE);
+                    throw new UncheckedIOException("Deleting contact failed", e);
+                }
+                redo(entry);
+                free(slot);
+                checkpointIfDue();
+            }
+        } finally {
+            write.unlock();
+            metrics.stop(Operation.DELETE, start);
+        }
+        countCache.invalidate();
+        changes.publish(PersonChange.deleted(item.getId()));
+    }
+
+    /**
+     * Flushes the mapped files and empties the log.
+     */
+    public void checkpoint() throws IOException {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            slots.force();
+            strings.force();
+            wal.truncate();
+        } finally {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Checkpoints and releases the files. The store can't be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        checkpoint();
+        release();
+    }
+
+    /**
+     * Releases the files without a checkpoint, as if the process died.
+     */
+    void release() throws IOException {
+        wal.close();
+        strings.close();
+        slotChannel.close();
+        fileLock.release();
+        lockChannel.close();
+    }
+
+    private void checkpointIfDue() {
+        try {
+            if (wal.size() >= checkpointBytes) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            // the log still holds everything, the next checkpoint tries again
+            LOGGER.warn("Contact store checkpoint failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Applies a committed write to the mapped files and the id map. Also
+     * used for recovery, so it must cope with writes already applied.
+     */
+    private void redo(WriteAheadLog.Entry entry) {
+        int slot = entry.slot();
+        ensureCapacity(slot + 1);
+        if (state(slot) != 0) {
+            for (int field = 8; field < SLOT_SIZE; field += 8) {
+                strings.release(slots.getLong(offset(slot) + field));
+            }
+            if (slotById.get(id(slot)) == slot) {
+                slotById.remove(id(slot));
+            }
+        }
+        Person person = entry.person();
+        if (person == null) {
+            slots.putInt(offset(slot) + 4, 0);
+            if (phonesIndexed) {
+                engine.remove(entry.id());
+            }
+            return;
+        }
+        try {
+            int at = offset(slot);
+            slots.putInt(at, person.getId());
+            slots.putLong(at + 8, strings.append(person.getFirstName()));
+            slots.putLong(at + 16, strings.append(person.getLastName()));
+            slots.putLong(at + 24, strings.append(person.getStreet()));
+            slots.putLong(at + 32, strings.append(person.getCity()));
+            slots.putLong(at + 40, strings.append(person.getCountry()));
+            slots.putLong(at + 48, strings.append(person.getPhoneNumber()));
+            slots.putLong(at + 56, strings.append(person.getEmail()));
+            slots.putInt(at + 4, person.getVersion() + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing contact " + person.getId() + " failed", e);
+        }
+        slotById.put(person.getId(), slot);
+        highWater = Math.max(highWater, slot + 1);
+        if (phonesIndexed) {
+            engine.update(person);
+        }
+    }
+
+    private Person read(int slot) {
+        int at = offset(slot);
+        Person person = new Person();
+        person.setId(slots.getInt(at));
+        person.setVersion(slots.getInt(at + 4) - 1);
+        person.setFirstName(strings.read(slots.getLong(at + 8)));
+        person.setLastName(strings.read(slots.getLong(at + 16)));
+        person.setStreet(strings.read(slots.getLong(at + 24)));
+        person.setCity(strings.read(slots.getLong(at + 32)));
+        person.setCountry(strings.read(slots.getLong(at + 40)));
+        person.setPhoneNumber(strings.read(slots.getLong(at + 48)));
+        person.setEmail(strings.read(slots.getLong(at + 56)));
+        return person;
+    }
+
+    private static int offset(int slot) {
+        return HEADER + slot * SLOT_SIZE;
+    }
+
+    private int id(int slot) {
+        return slots.getInt(offset(slot));
+    }
+
+    private int state(int slot) {
+        return slots.getInt(offset(slot) + 4);
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        return highWater++;
+    }
+
+    private void free(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void rebuildFreeSlots() {
+        highWater = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (state(slot) != 0) {
+                highWater = slot + 1;
+                sequence.accumulateAndGet(id(slot), Math::max);
+            }
+        }
+        freeCount = 0;
+        // lowest slots on top of the stack, so the table stays dense
+        for (int slot = highWater - 1; slot >= 0; slot--) {
+            if (state(slot) == 0) {
+                free(slot);
+            }
+        }
+    }
+
+    /**
+     * Grows the slot file to hold at least {@code slots} slots.
+     */
+    private void ensureCapacity(int needed) {
+        if (needed <= capacity) {
+            return;
+        }
+        int grown = (int) Math.min((Integer.MAX_VALUE - HEADER) / SLOT_SIZE, Math.max(needed, (long) capacity * 2));
+        if (needed > grown) {
+            throw new IllegalStateException("Contact store is full at " + capacity + " contacts");
+        }
+        try {
+            slots = slotChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) grown * SLOT_SIZE);
+            capacity = grown;
+            slots.putInt(8, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Growing the contact store failed", e);
+        }
+    }
+
+    // Files and generations
+
+    /**
+     * The newest generation whose slot file was completely written;
+     * leftovers of older and unfinished ones are deleted.
+     */
+    private int currentGeneration() throws IOException {
+        List<Integer> generations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SLOTS_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    generations.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        generations.sort(null);
+        int current = 0;
+        for (int i = generations.size() - 1; i >= 0 && current == 0; i--) {
+            if (complete(slotsFile(generations.get(i)))) {
+                current = generations.get(i);
+            }
+        }
+        for (int generation : generations) {
+            if (generation != current) {
+                Files.deleteIfExists(slotsFile(generation));
+                Files.deleteIfExists(stringsFile(generation));
+            }
+        }
+        return current == 0 ? 1 : current;
+    }
+
+    private static boolean complete(Path slotsFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(slotsFile, StandardOpenOption.READ)) {
+            return channel.size() >= HEADER
+                    && channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER).getInt(0) == MAGIC;
+        }
+    }
+
+    private void openGeneration(int generation, int initialSlots) throws IOException {
+        slotChannel = FileChannel.open(slotsFile(generation),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean exists = slotChannel.size() >= HEADER;
+        MappedByteBuffer header = slotChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+        if (exists && header.getInt(4) != FORMAT) {
+            throw new IOException("Unsupported contact store format " + header.getInt(4) + " in " + directory);
+        }
+        capacity = exists ? header.getInt(8) : initialSlots;
+        slots = slotChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * SLOT_SIZE);
+        strings = new OverflowArea(stringsFile(generation));
+        if (!exists) {
+            slots.putInt(4, FORMAT);
+            slots.putInt(8, capacity);
+            slots.force();
+            slots.putInt(0, MAGIC);
+            slots.force();
+        }
+    }
+
+    /**
+     * Copies the live rows into the next generation and switches to it.
+     * Runs with an empty log, so the current files hold everything.
+     */
+    private void compact() throws IOException {
+        long start = System.currentTimeMillis();
+        long before = strings.size();
+        FileChannel oldChannel = slotChannel;
+        MappedByteBuffer oldSlots = slots;
+        OverflowArea oldStrings = strings;
+        int oldGeneration = generation;
+
+        generation++;
+        Files.deleteIfExists(slotsFile(generation));
+        Files.deleteIfExists(stringsFile(generation));
+        slotChannel = FileChannel.open(slotsFile(generation),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        slots = slotChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * SLOT_SIZE);
+        strings = new OverflowArea(stringsFile(generation));
+        for (int slot = 0; slot < highWater; slot++) {
+            int at = offset(slot);
+            slots.putInt(at, oldSlots.getInt(at));
+            slots.putInt(at + 4, oldSlots.getInt(at + 4));
+            if (oldSlots.getInt(at + 4) != 0) {
+                for (int field = 8; field < SLOT_SIZE; field += 8) {
+                    slots.putLong(at + field, strings.append(oldStrings.read(oldSlots.getLong(at + field))));
+                }
+            }
+        }
+        slots.putInt(4, FORMAT);
+        slots.putInt(8, capacity);
+        strings.force();
+        slots.force();
+        // the new generation takes over once its magic is on disk
+        slots.putInt(0, MAGIC);
+        slots.force();
+
+        oldStrings.close();
+        oldChannel.close();
+        Files.deleteIfExists(slotsFile(oldGeneration));
+        Files.deleteIfExists(stringsFile(oldGeneration));
+        LOGGER.info("Compacted contact strings from {} to {} bytes in {} ms",
+                before, strings.size(), System.currentTimeMillis() - start);
+    }
+
+    private Path slotsFile(int generation) {
+        return directory.resolve("slots-" + generation + ".dat");
+    }
+
+    private Path stringsFile(int generation) {
+        return directory.resolve("strings-" + generation + ".dat");
+    }
+}
@@ -0,0 +1,49 @@
+package org.vaadin.example;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Plain-text export of every {@link ProviderMetrics} in the Prometheus text
+ * format, one line per value. Latencies are in microseconds.
+ */
+@WebServlet(urlPatterns = "/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        PrintWriter out = response.getWriter();
+        for (ProviderMetrics metrics : ProviderMetrics.all()) {
+            write(out, metrics);
+        }
+    }
+
+    static void write(PrintWriter out, ProviderMetrics metrics) {
+        String provider = "provider=\"" + metrics.getName() + "\"";
+        for (ProviderMetrics.Operation operation : ProviderMetrics.Operation.values()) {
+            LatencyHistogram histogram = metrics.latency(operation);
+            String labels = provider + ",operation=\"" + operation.name().toLowerCase(Locale.ROOT) + "\"";
+            out.println("phonebook_provider_calls_total{" + labels + "} " + histogram.count());
+            out.println("phonebook_provider_errors_total{" + labels + "} " + metrics.errors(operation));
+            if (histogram.count() == 0) {
+                continue;
+            }
+            for (double quantile : new double[]{0.5, 0.9, 0.99}) {
+                out.println("phonebook_provider_latency_micros{" + labels + ",quantile=\"" + quantile + "\"} "
+                        + histogram.percentile(quantile));
+            }
+            out.println("phonebook_provider_latency_micros_max{" + labels + "} " + histogram.max());
+        }
+        out.println("phonebook_provider_rows_fetched_total{" + provider + "} " + metrics.getRowsFetched());
+        out.println("phonebook_provider_rows_returned_total{" + provider + "} " + metrics.getRowsReturned());
+        metrics.gauges().forEach((name, value) ->
+                out.println("phonebook_provider_" + name + "{" + provider + "} " + value));
+    }
+}
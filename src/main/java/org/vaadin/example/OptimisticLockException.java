@@ -0,0 +1,19 @@
+package org.vaadin.example;
+
+/**
+ * Thrown when a contact was changed or deleted by someone else since the
+ * version being saved was read.
+ */
+public class OptimisticLockException extends RuntimeException {
+
+    private final Integer personId;
+
+    public OptimisticLockException(Integer personId, Integer expectedVersion) {
+        super("Contact " + personId + " was modified by someone else (expected version " + expectedVersion + ")");
+        this.personId = personId;
+    }
+
+    public Integer getPersonId() {
+        return personId;
+    }
+}
@@ -0,0 +1,129 @@
+package org.vaadin.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only file of UTF-8 strings for {@link MappedPersonStore}, mapped
+ * in {@value #REGION}-byte regions and read in place. A string is addressed
+ * by a reference packing its offset (high 40 bits) and byte length (low 24
+ * bits); 0 stands for null, since offset 0 is the header.
+ * <p>
+ * Strings never move or get overwritten. Replaced and deleted ones are only
+ * counted as garbage, and the store compacts into a new file when garbage
+ * dominates. The header holding the end offset is written by
+ * {@link #force()}; until then the write-ahead log covers anything appended.
+ */
+class OverflowArea implements Closeable {
+
+    static final int REGION = 1 << 26;
+    private static final int HEADER = 64;
+    private static final int MAGIC = 0x50425354; // "PBST"
+    private static final int FORMAT = 1;
+    private static final int MAX_LENGTH = (1 << 24) - 1;
+
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private long end;
+    private long garbage;
+
+    OverflowArea(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = region(0);
+        if (header.getInt(0) == MAGIC) {
+            if (header.getInt(4) != FORMAT) {
+                throw new IOException("Unsupported string area format " + header.getInt(4) + " in " + file);
+            }
+            end = header.getLong(8);
+            garbage = header.getLong(16);
+            region((end - 1) / REGION);
+        } else {
+            end = HEADER;
+            header.putInt(0, MAGIC);
+            header.putInt(4, FORMAT);
+            writeHeader();
+        }
+    }
+
+    /**
+     * Appends {@code value} and returns its reference. Strings never span
+     * two regions; the rest of a region that can't take one is skipped.
+     */
+    long append(String value) throws IOException {
+        if (value == null) {
+            return 0;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_LENGTH) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long to store");
+        }
+        long room = REGION - end % REGION;
+        if (bytes.length > room) {
+            garbage += room;
+            end += room;
+        }
+        region(end / REGION).put((int) (end % REGION), bytes);
+        long ref = end << 24 | bytes.length;
+        end += bytes.length;
+        return ref;
+    }
+
+    String read(long ref) {
+        if (ref == 0) {
+            return null;
+        }
+        long offset = ref >>> 24;
+        byte[] bytes = new byte[(int) (ref & MAX_LENGTH)];
+        regions.get((int) (offset / REGION)).get((int) (offset % REGION), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Marks the string of {@code ref} as no longer referenced.
+     */
+    void release(long ref) {
+        garbage += ref & MAX_LENGTH;
+    }
+
+    long size() {
+        return end;
+    }
+
+    long garbage() {
+        return garbage;
+    }
+
+    /**
+     * Flushes every appended string to disk, then the header.
+     */
+    void force() {
+        regions.forEach(MappedByteBuffer::force);
+        writeHeader();
+        regions.get(0).force();
+    }
+
+    private void writeHeader() {
+        MappedByteBuffer header = regions.get(0);
+        header.putLong(8, end);
+        header.putLong(16, garbage);
+    }
+
+    private MappedByteBuffer region(long index) throws IOException {
+        while (regions.size() <= index) {
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) regions.size() * REGION, REGION));
+        }
+        return regions.get((int) index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
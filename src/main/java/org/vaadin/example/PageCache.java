@@ -0,0 +1,108 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Grid pages shared between sessions, keyed by query shape, offset and
+ * limit. Every write bumps the version, which retires all cached pages at
+ * once; a page loaded while a write happened is not cached. Least recently
+ * used pages are dropped once the cached pages hold more than
+ * {@code maxRows} rows in total.
+ */
+class PageCache {
+
+    private final int maxRows;
+    private final AtomicLong version = new AtomicLong();
+    private final Map<String, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private int rows;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    PageCache(int maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    interface Loader {
+        List<Person> load() throws SQLException;
+    }
+
+    List<Person> get(CrudFilter filter, int offset, int limit, Loader loader) throws SQLException {
+        String key = KeysetCursors.shape(filter) + '@' + offset + '+' + limit;
+        long current = version.get();
+        Page page;
+        synchronized (this) {
+            page = pages.get(key);
+        }
+        if (page != null && page.version == current) {
+            hits.increment();
+            return copy(page.rows);
+        }
+        misses.increment();
+
+        List<Person> loaded = loader.load();
+        if (loaded.size() <= maxRows) {
+            synchronized (this) {
+                if (version.get() == current) {
+                    Page previous = pages.put(key, new Page(current, copy(loaded)));
+                    rows += loaded.size() - (previous == null ? 0 : previous.rows.size());
+                    evict();
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private void evict() {
+        Iterator<Page> eldest = pages.values().iterator();
+        while (rows > maxRows && eldest.hasNext()) {
+            rows -= eldest.next().rows.size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Retires every cached page; called on each write.
+     */
+    synchronized void invalidate() {
+        version.incrementAndGet();
+        pages.clear();
+        rows = 0;
+    }
+
+    private static List<Person> copy(List<Person> persons) {
+        return persons.stream().map(Person::new).toList();
+    }
+
+    synchronized int getCachedRows() {
+        return rows;
+    }
+
+    synchronized int getCachedPages() {
+        return pages.size();
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private record Page(long version, List<Person> rows) {
+    }
+}
@@ -14,6 +14,7 @@ public class Person {
     private String country;
     private String phoneNumber;
     private String email;
+    private Integer version;
     private transient boolean flag = false;
 
 
@@ -54,6 +55,19 @@ public class Person {
 
     }
 
+    public Person(Person other) {
+        this.id = other.id;
+        this.firstName = other.firstName;
+        this.lastName = other.lastName;
+        this.street = other.street;
+        this.city = other.city;
+        this.country = other.country;
+        this.phoneNumber = other.phoneNumber;
+        this.email = other.email;
+        this.version = other.version;
+        this.flag = other.flag;
+    }
+
     public void setId(Integer id) {
         this.id = id;
     }
@@ -78,6 +92,17 @@ public class Person {
         return city;
     }
 
+    /**
+     * Row version for optimistic locking; null for contacts not yet stored.
+     */
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     public boolean getFlag() {
         return flag;
     }
@@ -0,0 +1,94 @@
+package org.vaadin.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded read-through cache of contacts by id with LRU eviction. Entries
+ * are copied in and out because {@link Person} is mutable and the editor
+ * writes into the instance it is given.
+ * <p>
+ * A load that overlaps with an invalidation is not cached, so a reader
+ * racing with a writer can't put the pre-write row back.
+ */
+class PersonCache {
+
+    private final int maxSize;
+    private final Map<Integer, Person> entries;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    PersonCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Person> eldest) {
+                if (size() > PersonCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    Person get(int id, IntFunction<Person> loader) {
+        Person cached;
+        synchronized (this) {
+            cached = entries.get(id);
+        }
+        if (cached != null) {
+            hits.increment();
+            return new Person(cached);
+        }
+        misses.increment();
+
+        long before = invalidations.get();
+        Person loaded = loader.apply(id);
+        if (loaded != null) {
+            synchronized (this) {
+                if (invalidations.get() == before) {
+                    entries.put(id, new Person(loaded));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    void invalidate(Integer id) {
+        if (id == null) {
+            return;
+        }
+        synchronized (this) {
+            invalidations.incrementAndGet();
+            entries.remove(id);
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
@@ -0,0 +1,47 @@
+package org.vaadin.example;
+
+/**
+ * A committed change to one contact, as published on the {@link PersonChangeBus}.
+ *
+ * @param type   what happened
+ * @param id     the contact id; null only for {@link Type#RESET}
+ * @param person a copy of the contact as written; null for deletes and resets
+ */
+public record PersonChange(Type type, Integer id, Person person) {
+
+    public enum Type {
+        INSERTED,
+        UPDATED,
+        DELETED,
+        /**
+         * Too many changes to list one by one; reload everything.
+         */
+        RESET
+    }
+
+    static PersonChange inserted(Person person) {
+        return new PersonChange(Type.INSERTED, person.getId(), new Person(person));
+    }
+
+    static PersonChange updated(Person person) {
+        return new PersonChange(Type.UPDATED, person.getId(), new Person(person));
+    }
+
+    static PersonChange deleted(Integer id) {
+        return new PersonChange(Type.DELETED, id, null);
+    }
+
+    static PersonChange reset() {
+        return new PersonChange(Type.RESET, null, null);
+    }
+
+    /**
+     * Whether the change can move rows or change the row count, so a view
+     * has to re-fetch instead of patching one row in place. An update can
+     * still move a row in a sorted or filtered view; views showing one
+     * re-fetch on every change.
+     */
+    public boolean isStructural() {
+        return type != Type.UPDATED;
+    }
+}
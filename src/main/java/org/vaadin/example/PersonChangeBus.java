@@ -0,0 +1,140 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.shared.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Fans committed contact changes out to interested parties. Data providers
+ * publish after a write commits, on the writing thread.
+ * <p>
+ * {@link #subscribe} listeners see every change immediately and must be
+ * quick. {@link #subscribeCoalesced} listeners, typically one per UI, get
+ * changes in frames: everything published within {@code frameMillis} is
+ * merged to the latest change per id and delivered once from a shared
+ * background thread. A frame that grows past {@code maxFrameSize} ids
+ * collapses into a single {@link PersonChange.Type#RESET}.
+ */
+public class PersonChangeBus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonChangeBus.class);
+
+    private static final ScheduledExecutorService FRAMES = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "person-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Consumer<List<PersonChange>>> listeners = new CopyOnWriteArrayList<>();
+    private volatile long frameMillis = 100;
+    private volatile int maxFrameSize = 256;
+
+    public Registration subscribe(Consumer<List<PersonChange>> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    public Registration subscribeCoalesced(Consumer<List<PersonChange>> listener) {
+        Frame frame = new Frame(listener);
+        Registration registration = subscribe(frame);
+        return () -> {
+            registration.remove();
+            frame.close();
+        };
+    }
+
+    void publish(PersonChange change) {
+        publish(List.of(change));
+    }
+
+    void publish(List<PersonChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (Consumer<List<PersonChange>> listener : listeners) {
+            try {
+                listener.accept(changes);
+            } catch (RuntimeException e) {
+                LOGGER.error("Change listener failed", e);
+            }
+        }
+    }
+
+    public void setFrameMillis(long frameMillis) {
+        this.frameMillis = frameMillis;
+    }
+
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    int subscriberCount() {
+        return listeners.size();
+    }
+
+    /**
+     * Collects changes for one coalesced subscriber until its frame is due.
+     */
+    private class Frame implements Consumer<List<PersonChange>> {
+        private final Consumer<List<PersonChange>> delegate;
+        private final Map<Object, PersonChange> pending = new LinkedHashMap<>();
+        private boolean reset;
+        private boolean scheduled;
+        private boolean closed;
+
+        Frame(Consumer<List<PersonChange>> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void accept(List<PersonChange> changes) {
+            if (!reset) {
+                for (PersonChange change : changes) {
+                    // inserts without a generated id can't be merged with anything
+                    pending.put(change.id() != null ? change.id() : new Object(), change);
+                }
+                if (pending.size() > maxFrameSize) {
+                    pending.clear();
+                    reset = true;
+                }
+            }
+            if (!scheduled) {
+                scheduled = true;
+                FRAMES.schedule(this::deliver, frameMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            pending.clear();
+        }
+
+        private void deliver() {
+            List<PersonChange> frame;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                frame = reset ? List.of(PersonChange.reset()) : new ArrayList<>(pending.values());
+                pending.clear();
+                reset = false;
+                scheduled = false;
+            }
+            try {
+                delegate.accept(frame);
+            } catch (RuntimeException e) {
+                LOGGER.error("Change listener failed", e);
+            }
+        }
+    }
+}
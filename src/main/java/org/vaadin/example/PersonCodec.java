@@ -0,0 +1,64 @@
+package org.vaadin.example;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary form of a contact's id, version and text properties, shared by the
+ * on-disk formats of the stores: each string is its UTF-8 byte length (-1
+ * for null) followed by the bytes. A null version is written as -1.
+ */
+final class PersonCodec {
+
+    private PersonCodec() {
+    }
+
+    static void write(DataOutput out, Person person) throws IOException {
+        out.writeInt(person.getId());
+        out.writeInt(person.getVersion() == null ? -1 : person.getVersion());
+        writeString(out, person.getFirstName());
+        writeString(out, person.getLastName());
+        writeString(out, person.getStreet());
+        writeString(out, person.getCity());
+        writeString(out, person.getCountry());
+        writeString(out, person.getPhoneNumber());
+        writeString(out, person.getEmail());
+    }
+
+    static Person read(ByteBuffer in) {
+        Person person = new Person();
+        person.setId(in.getInt());
+        int version = in.getInt();
+        person.setVersion(version < 0 ? null : version);
+        person.setFirstName(readString(in));
+        person.setLastName(readString(in));
+        person.setStreet(readString(in));
+        person.setCity(readString(in));
+        person.setCountry(readString(in));
+        person.setPhoneNumber(readString(in));
+        person.setEmail(readString(in));
+        return person;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
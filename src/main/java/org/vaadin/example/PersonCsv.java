@@ -0,0 +1,160 @@
+package org.vaadin.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RFC 4180 style CSV for contacts: a header line, comma separated fields,
+ * fields quoted when they contain a comma, quote or line break, and quotes
+ * doubled inside quoted fields. Rows are read and written one at a time.
+ */
+final class PersonCsv {
+
+    static final List<String> HEADER = List.of(
+            "firstName", "lastName", "street", "city", "country", "phoneNumber", "email");
+
+    private PersonCsv() {
+    }
+
+    static void writeHeader(Writer out) throws IOException {
+        writeRow(out, HEADER);
+    }
+
+    static void writePerson(Writer out, Person person) throws IOException {
+        writeRow(out, List.of(
+                nullToEmpty(person.getFirstName()), nullToEmpty(person.getLastName()),
+                nullToEmpty(person.getStreet()), nullToEmpty(person.getCity()),
+                nullToEmpty(person.getCountry()), nullToEmpty(person.getPhoneNumber()),
+                nullToEmpty(person.getEmail())));
+    }
+
+    private static void writeRow(Writer out, List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            String field = fields.get(i);
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(field.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(field);
+            }
+        }
+        out.write("\r\n");
+    }
+
+    static Person toPerson(List<String> fields) {
+        Person person = new Person();
+        person.setFirstName(field(fields, 0));
+        person.setLastName(field(fields, 1));
+        person.setStreet(field(fields, 2));
+        person.setCity(field(fields, 3));
+        person.setCountry(field(fields, 4));
+        person.setPhoneNumber(field(fields, 5));
+        person.setEmail(field(fields, 6));
+        return person;
+    }
+
+    private static String field(List<String> fields, int index) {
+        if (index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Pulls one record at a time; a quoted field may span lines.
+     */
+    static class RowReader {
+        private final Reader in;
+        private long line = 1;
+        private int peeked = -2;
+
+        RowReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * Line number the next record starts on.
+         */
+        long line() {
+            return line;
+        }
+
+        /**
+         * The next record, or null at the end of input.
+         */
+        List<String> next() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>(HEADER.size());
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field before line " + line);
+                    }
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            read();
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r' && peek() == '\n') {
+                        read();
+                    }
+                    if (c != -1) {
+                        line++;
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (peeked != -2) {
+                int c = peeked;
+                peeked = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) {
+                peeked = in.read();
+            }
+            return peeked;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.provider.Query;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Streams contacts matching a filter to CSV, reading the provider one page
+ * at a time so memory stays bounded by {@link #PAGE_SIZE}, or straight from
+ * a lazy stream such as {@link PersonDataProviderDb#stream}.
+ */
+class PersonCsvExporter {
+
+    static final int PAGE_SIZE = 1000;
+
+    /**
+     * Returns the number of contacts written; {@code progress} gets the
+     * running total after each page.
+     */
+    static long export(DataProvider<Person, CrudFilter> dataProvider, CrudFilter filter,
+                       WritableByteChannel channel, Consumer<Long> progress) throws IOException {
+        long written = 0;
+        Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 64 * 1024);
+        PersonCsv.writeHeader(out);
+        while (true) {
+            List<Person> page;
+            try (Stream<Person> rows = dataProvider.fetch(new Query<>((int) written, PAGE_SIZE, List.of(), null, filter))) {
+                page = rows.toList();
+            }
+            for (Person person : page) {
+                PersonCsv.writePerson(out, person);
+            }
+            written += page.size();
+            progress.accept(written);
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+        out.flush();
+        return written;
+    }
+
+    /**
+     * Writes and closes {@code people}; {@code progress} gets the running
+     * total every {@link #PAGE_SIZE} contacts and at the end.
+     */
+    static long export(Stream<Person> people, WritableByteChannel channel, Consumer<Long> progress) throws IOException {
+        long written = 0;
+        Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 64 * 1024);
+        PersonCsv.writeHeader(out);
+        try (people) {
+            Iterator<Person> rows = people.iterator();
+            while (rows.hasNext()) {
+                PersonCsv.writePerson(out, rows.next());
+                if (++written % PAGE_SIZE == 0) {
+                    progress.accept(written);
+                }
+            }
+        }
+        progress.accept(written);
+        out.flush();
+        return written;
+    }
+}
@@ -0,0 +1,147 @@
+package org.vaadin.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Streams contacts from CSV into a data provider. Rows are validated with
+ * {@link PersonValidator}, checked for phone numbers already in the
+ * provider or earlier in the same batch, and written in batches of
+ * {@link #BATCH_SIZE}, so only one batch is held in memory. A batch is
+ * written before the next one is checked, so the provider's check covers
+ * the earlier batches of the file.
+ */
+class PersonCsvImporter {
+
+    static final int BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    /**
+     * Reported after every batch and once more at the end.
+     */
+    record Progress(long rowsRead, long imported, long rejected, double rowsPerSecond, boolean done) {
+    }
+
+    record Result(long imported, long rejected, List<String> errors, long elapsedMillis) {
+        double rowsPerSecond() {
+            return elapsedMillis == 0 ? 0 : (imported + rejected) * 1000.0 / elapsedMillis;
+        }
+    }
+
+    private final Predicate<String> phoneNumberTaken;
+    private final Consumer<List<Person>> batchWriter;
+
+    PersonCsvImporter(Predicate<String> phoneNumberTaken, Consumer<List<Person>> batchWriter) {
+        this.phoneNumberTaken = phoneNumberTaken;
+        this.batchWriter = batchWriter;
+    }
+
+    static PersonCsvImporter into(PersonStore store) {
+        return new PersonCsvImporter(phone -> store.existsByPhoneNumber(phone, null), store::persistAll);
+    }
+
+    Result importFrom(ReadableByteChannel channel, Consumer<Progress> progress) throws IOException {
+        long start = System.currentTimeMillis();
+        long rowsRead = 0;
+        long imported = 0;
+        long rejected = 0;
+        List<String> errors = new ArrayList<>();
+        Set<String> phonesInBatch = new HashSet<>();
+        List<Person> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), 64 * 1024)) {
+            PersonCsv.RowReader rows = new PersonCsv.RowReader(reader);
+            List<String> header = rows.next();
+            if (header == null || !PersonCsv.HEADER.equals(header.stream().map(String::trim).toList())) {
+                throw new IOException("Expected header " + String.join(",", PersonCsv.HEADER));
+            }
+
+            List<String> fields;
+            long line = rows.line();
+            while ((fields = rows.next()) != null) {
+                if (fields.size() == 1 && fields.get(0).isBlank()) {
+                    line = rows.line();
+                    continue;
+                }
+                rowsRead++;
+                Person person = PersonCsv.toPerson(fields);
+                List<String> rowErrors = PersonValidator.validate(person);
+                String phone = PhoneNumbers.normalize(person.getPhoneNumber());
+                if (rowErrors.isEmpty() && (!phonesInBatch.add(phone) || phoneNumberTaken.test(phone))) {
+                    rowErrors = List.of("Phone number must be unique");
+                }
+                if (rowErrors.isEmpty()) {
+                    batch.add(person);
+                } else {
+                    rejected++;
+                    report(errors, "Line " + line + ": " + String.join("; ", rowErrors));
+                }
+                line = rows.line();
+
+                if (batch.size() == BATCH_SIZE) {
+                    phonesInBatch.clear();
+                    long written = write(batch, errors);
+                    imported += written;
+                    rejected += BATCH_SIZE - written;
+                    progress.accept(new Progress(rowsRead, imported, rejected, rate(imported + rejected, start), false));
+                }
+            }
+            int remaining = batch.size();
+            long written = write(batch, errors);
+            imported += written;
+            rejected += remaining - written;
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        progress.accept(new Progress(rowsRead, imported, rejected, rate(imported + rejected, start), true));
+        return new Result(imported, rejected, errors, elapsed);
+    }
+
+    /**
+     * Writes and clears the batch; returns how many rows were written.
+     */
+    private long write(List<Person> batch, List<String> errors) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int size = batch.size();
+        try {
+            batchWriter.accept(new ArrayList<>(batch));
+            return size;
+        } catch (BatchWriteException e) {
+            report(errors, "Batch of " + size + " rows: " + e.getMessage());
+            return e.getWritten();
+        } catch (RuntimeException e) {
+            report(errors, "Batch of " + size + " rows failed: " + e.getMessage());
+            return 0;
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private static void report(List<String> errors, String error) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    private static double rate(long rows, long start) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        return rows * 1000.0 / elapsed;
+    }
+
+    static String describe(Progress progress) {
+        return String.format(Locale.ROOT, "%,d rows read, %,d imported, %,d rejected (%,.0f rows/s)",
+                progress.rowsRead(), progress.imported(), progress.rejected(), progress.rowsPerSecond());
+    }
+}
@@ -0,0 +1,111 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.AbstractBackEndDataProvider;
+import com.vaadin.flow.data.provider.Query;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A {@link PersonStore} that a grid or crud can bind to directly. Grid
+ * queries are answered by {@link #page} and {@link #count}; rows are
+ * identified by id, so a refreshed copy of a contact replaces the old one.
+ * <p>
+ * The {@code ...Async} methods run on the provider's {@link ProviderExecutor},
+ * so views can query without holding their session lock meanwhile.
+ */
+public abstract class PersonDataProvider extends AbstractBackEndDataProvider<Person, CrudFilter> implements PersonStore {
+
+    private Consumer<Long> sizeChangeListener;
+    private int ioConcurrency = Runtime.getRuntime().availableProcessors();
+    private ProviderExecutor io;
+
+    @Override
+    protected Stream<Person> fetchFromBackEnd(Query<Person, CrudFilter> query) {
+        return page(query.getFilter().orElse(null), query.getOffset(), query.getLimit()).stream();
+    }
+
+    @Override
+    protected int sizeInBackEnd(Query<Person, CrudFilter> query) {
+        int count = count(query.getFilter().orElse(null));
+
+        if (sizeChangeListener != null) {
+            sizeChangeListener.accept((long) count);
+        }
+
+        return count;
+    }
+
+    void setSizeChangeListener(Consumer<Long> listener) {
+        sizeChangeListener = listener;
+    }
+
+    @Override
+    public Object getId(Person item) {
+        return item.getId();
+    }
+
+    public abstract ProviderMetrics getMetrics();
+
+    /**
+     * How many {@link #callAsync} calls may run against this backend at
+     * once; the rest wait their turn.
+     */
+    public synchronized void setIoConcurrency(int maxConcurrent) {
+        ioConcurrency = maxConcurrent;
+        if (io != null) {
+            io.close();
+            io = null;
+        }
+    }
+
+    synchronized ProviderExecutor io() {
+        if (io == null) {
+            io = new ProviderExecutor(getMetrics().getName(), ioConcurrency, getMetrics());
+        }
+        return io;
+    }
+
+    /**
+     * Runs blocking work against this backend off the calling thread.
+     * Cancelling the future drops the work if it has not started yet.
+     */
+    public <T> CompletableFuture<T> callAsync(Callable<T> work) {
+        return io().submit(work);
+    }
+
+    public CompletableFuture<List<Person>> pageAsync(CrudFilter filter, int offset, int limit) {
+        return callAsync(() -> page(filter, offset, limit));
+    }
+
+    public CompletableFuture<Integer> countAsync(CrudFilter filter) {
+        return callAsync(() -> count(filter));
+    }
+
+    /**
+     * Saves off the calling thread; completes exceptionally on failure, e.g.
+     * with {@link OptimisticLockException}. {@code item} itself is not
+     * touched, since the save runs on another thread: the future completes
+     * with a copy as saved, whose id and version the caller applies on its
+     * own thread.
+     */
+    public CompletableFuture<Person> persistAsync(Person item) {
+        Person copy = new Person(item);
+        return callAsync(() -> {
+            persist(copy);
+            return copy;
+        });
+    }
+
+    public CompletableFuture<Void> deleteAsync(Person item) {
+        Person copy = new Person(item);
+        return callAsync(() -> {
+            delete(copy);
+            return null;
+        });
+    }
+}
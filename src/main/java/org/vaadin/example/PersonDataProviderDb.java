@@ -1,198 +1,651 @@
 package org.vaadin.example;
 
 import com.vaadin.flow.component.crud.CrudFilter;
-import com.vaadin.flow.data.provider.AbstractBackEndDataProvider;
-import com.vaadin.flow.data.provider.Query;
-import com.vaadin.flow.data.provider.SortDirection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.example.ProviderMetrics.Operation;
+import org.vaadin.example.utility.CacheConfig;
+import org.vaadin.example.utility.ConnectionPool;
+import org.vaadin.example.utility.MetricsConfig;
+import org.vaadin.example.utility.PoolConfig;
+import org.vaadin.example.utility.WriteBehindConfig;
 
-import java.lang.reflect.Field;
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Stream;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.StreamSupport;
 
-public class PersonDataProviderDb extends AbstractBackEndDataProvider<Person, CrudFilter> {
+public class PersonDataProviderDb extends PersonDataProvider {
 
-    private static Consumer<Long> sizeChangeListener;
-    private String jdbcUrl;
-    private String jdbcUser;
-    private String jdbcPassword;
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonDataProviderDb.class);
+
+    private final DataSource dataSource;
+    private final CountCache countCache = new CountCache(0);
+    private final KeysetCursors keysetCursors = new KeysetCursors(1024);
+    private volatile WriteBehindQueue writeBehind;
+    private volatile PersonCache entityCache;
+    private volatile PageCache pageCache;
+    private volatile int streamFetchSize = 1000;
+    private final PersonChangeBus changes = new PersonChangeBus();
+    private final ProviderMetrics metrics = ProviderMetrics.create("db");
+
+    private static final String INSERT_SQL = "INSERT INTO Person (name,lname, street, city, country, phoneNumber, phoneNormalized, email, version) VALUES (?,?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final String UPDATE_SQL = "UPDATE Person SET name = ?,lname = ?, street = ?, city = ?, country = ?, phoneNumber = ?, phoneNormalized = ?, email = ?, version = version + 1 WHERE id = ? AND version = ?";
+    // for callers that never read a version, e.g. code constructing a Person by id
+    private static final String UPDATE_UNCHECKED_SQL = "UPDATE Person SET name = ?,lname = ?, street = ?, city = ?, country = ?, phoneNumber = ?, phoneNormalized = ?, email = ?, version = version + 1 WHERE id = ?";
+    private static final String DELETE_SQL = "DELETE FROM Person WHERE id = ?";
 
     public PersonDataProviderDb() {
         this("jdbc:mysql://localhost:3306/phonebook", "root", "l1nx@3!");
     }
 
     public PersonDataProviderDb(String jdbcUrl, String jdbcUser, String jdbcPassword) {
-        this.jdbcUrl = jdbcUrl;
-        this.jdbcUser = jdbcUser;
-        this.jdbcPassword = jdbcPassword;
+        this(new ConnectionPool(jdbcUrl, jdbcUser, jdbcPassword, new PoolConfig()));
+    }
+
+    public PersonDataProviderDb(DataSource dataSource) {
+        this.dataSource = dataSource;
+        if (dataSource instanceof ConnectionPool pool) {
+            metrics.gauge("pool_active_connections", pool::getActiveConnections);
+            metrics.gauge("pool_idle_connections", pool::getIdleConnections);
+            metrics.gauge("pool_threads_waiting", pool::getThreadsAwaitingConnection);
+            metrics.gauge("statement_cache_hits", pool::getStatementCacheHits);
+            metrics.gauge("statement_cache_misses", pool::getStatementCacheMisses);
+            metrics.gauge("statement_cache_evictions", pool::getStatementCacheEvictions);
+            // one call per connection, more would only queue inside the pool
+            setIoConcurrency(pool.getConfig().getMaxSize());
+        }
     }
 
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Committed inserts, updates and deletes, for views that patch their
+     * rows instead of calling {@link #refreshAll()}.
+     */
     @Override
-    protected Stream<Person> fetchFromBackEnd(Query<Person, CrudFilter> query) {
-        List<Person> resultList = new ArrayList<>();
-        String sql = "SELECT * FROM Person";
+    public PersonChangeBus getChangeBus() {
+        return changes;
+    }
 
-        try (Connection connection = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword);
-             PreparedStatement statement = connection.prepareStatement(sql)) {
+    @Override
+    public Set<Capability> capabilities() {
+        return Set.of(Capability.NATIVE_QUERY, Capability.DURABLE, Capability.STREAMING, Capability.BATCH_WRITES);
+    }
 
-            ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                Person person = new Person();
-                person.setId(resultSet.getInt("id"));
-                person.setFirstName(resultSet.getString("name"));
-                person.setLastName(resultSet.getString("lname"));
-                person.setStreet(resultSet.getString("street"));
-                person.setCity(resultSet.getString("city"));
-                person.setCountry(resultSet.getString("country"));
-                person.setPhoneNumber(resultSet.getString("phoneNumber"));
-                person.setEmail(resultSet.getString("email"));
-                resultList.add(person);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * The columns with a database index in {@code schema.sql}.
+     */
+    @Override
+    public boolean isIndexed(String property) {
+        return property.equals("phoneNumber");
+    }
+
+    @Override
+    public ProviderMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsConfig config) {
+        metrics.configure(config);
+    }
+
+    @Override
+    public List<Person> page(CrudFilter filter, int offset, int limit) {
+        PageCache cache = pageCache;
+        long start = metrics.start();
+        try {
+            List<Person> page = cache == null
+                    ? fetchPage(filter, offset, limit)
+                    : cache.get(filter, offset, limit, () -> fetchPage(filter, offset, limit));
+            metrics.rowsReturned(page.size());
+            return page;
+        } catch (SQLException e) {
+            metrics.error(Operation.FETCH);
+            LOGGER.error("Fetching contacts failed", e);
+            return List.of();
+        } finally {
+            metrics.stop(Operation.FETCH, start);
         }
+    }
+
+    private List<Person> fetchPage(CrudFilter filter, int offset, int limit) throws SQLException {
+        List<Person> resultList = new ArrayList<>();
+        boolean keyset = KeysetCursors.supports(filter);
+        long generation = keysetCursors.generation();
+        KeysetCursors.Cursor cursor = keyset ? keysetCursors.find(filter, offset) : null;
+        PersonQueryBuilder sql = cursor != null
+                ? PersonQueryBuilder.seek(filter, cursor, limit)
+                : PersonQueryBuilder.select(filter, offset, limit);
 
-        Stream<Person> stream = resultList.stream();
+        long start = metrics.start();
+        try (Connection connection = connection();
+             PreparedStatement statement = connection.prepareStatement(sql.getSql())) {
 
-        if (query.getFilter().isPresent()) {
-            stream = stream.filter(predicate(query.getFilter().get()))
-                    .sorted(comparator(query.getFilter().get()));
+            sql.bind(statement);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                PersonRowMapper mapper = PersonRowMapper.of(resultSet);
+                while (resultSet.next()) {
+                    resultList.add(mapper.map(resultSet));
+                }
+            }
         }
+        metrics.checkSlow(start, sql);
+        metrics.rowsFetched(resultList.size());
 
-        return stream.skip(query.getOffset()).limit(query.getLimit());
+        if (keyset && !resultList.isEmpty()) {
+            keysetCursors.remember(filter, offset + resultList.size(), resultList.get(resultList.size() - 1), generation);
+        }
+        return resultList;
     }
 
+    /**
+     * Every contact matching {@code filter}, in its sort order, read lazily
+     * from one forward-only cursor {@link #setStreamFetchSize fetch size}
+     * rows at a time. Unlike {@link #fetch} nothing is cached and memory
+     * does not grow with the result, which suits exports and index builds.
+     * The stream holds a pooled connection until it is exhausted or closed,
+     * so use it in try-with-resources.
+     */
     @Override
-    protected int sizeInBackEnd(Query<Person, CrudFilter> query) {
-        long count = fetchFromBackEnd(query).count();
+    public Stream<Person> stream(CrudFilter filter) {
+        PersonResultSpliterator rows = new PersonResultSpliterator(this::connection,
+                PersonQueryBuilder.selectAll(filter), streamFetchSize, metrics::rowsFetched);
+        return StreamSupport.stream(rows, false).onClose(rows::close);
+    }
+
+    /**
+     * Rows the driver fetches per round trip in {@link #stream}.
+     */
+    public void setStreamFetchSize(int fetchSize) {
+        streamFetchSize = fetchSize;
+    }
 
-        if (sizeChangeListener != null) {
-            sizeChangeListener.accept(count);
+    @Override
+    public int count(CrudFilter filter) {
+        long start = metrics.start();
+        try {
+            return countCache.get(filter, this::countRows);
+        } catch (SQLException e) {
+            // not cached, the next size query tries again
+            metrics.error(Operation.SIZE);
+            LOGGER.error("Counting contacts failed", e);
+            return 0;
+        } finally {
+            metrics.stop(Operation.SIZE, start);
         }
+    }
 
-        return (int) count;
+    /**
+     * Lets grid size queries reuse a count for up to {@code ttlMillis}; 0 disables caching.
+     */
+    public void setCountCacheTtl(long ttlMillis) {
+        countCache.setTtlMillis(ttlMillis);
     }
 
-    void setSizeChangeListener(Consumer<Long> listener) {
-        sizeChangeListener = listener;
+    private int countRows(CrudFilter filter) throws SQLException {
+        PersonQueryBuilder sql = PersonQueryBuilder.count(filter);
+
+        long start = metrics.start();
+        try (Connection connection = connection();
+             PreparedStatement statement = connection.prepareStatement(sql.getSql())) {
+
+            sql.bind(statement);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        } finally {
+            metrics.checkSlow(start, sql);
+        }
     }
 
-    private static Predicate<Person> predicate(CrudFilter filter) {
-        return filter.getConstraints().entrySet().stream()
-                .map(constraint -> (Predicate<Person>) person -> {
-                    try {
-                        Object value = valueOf(constraint.getKey(), person);
-                        return value != null && value.toString().toLowerCase()
-                                .contains(constraint.getValue().toLowerCase());
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }).reduce(Predicate::and).orElse(e -> true);
+    @Override
+    public void persist(Person item) {
+        evict(item.getId());
+        if (writeBehind != null) {
+            writeBehind.upsert(item);
+            return;
+        }
+        boolean insert = item.getId() == null;
+        PersonChange change = null;
+        long start = metrics.start();
+        try (Connection connection = connection()) {
+            try (PreparedStatement statement = connection.prepareStatement(sqlFor(item), Statement.RETURN_GENERATED_KEYS)) {
+                bind(statement, item);
+                if (statement.executeUpdate() == 0 && !insert) {
+                    throw new OptimisticLockException(item.getId(), item.getVersion());
+                }
+                if (insert) {
+                    assignIds(List.of(item), generatedIds(statement));
+                } else {
+                    bumpVersion(item);
+                }
+            }
+            change = insert ? PersonChange.inserted(item) : PersonChange.updated(item);
+        } catch (SQLException e) {
+            metrics.error(Operation.PERSIST);
+            LOGGER.error("Saving contact {} failed", item.getId(), e);
+            throw new IllegalStateException("Saving contact failed", e);
+        } finally {
+            metrics.stop(Operation.PERSIST, start);
+            invalidateCaches();
+            evict(item.getId());
+        }
+        if (change != null) {
+            changes.publish(change);
+        }
     }
 
-    private static Comparator<Person> comparator(CrudFilter filter) {
-        return filter.getSortOrders().entrySet().stream().map(sortClause -> {
-            try {
-                Comparator<Person> comparator = Comparator.comparing(
-                        person -> (Comparable) valueOf(sortClause.getKey(), person));
+    @Override
+    public void delete(Person item) {
+        evict(item.getId());
+        if (writeBehind != null) {
+            writeBehind.delete(item.getId());
+            return;
+        }
+        PersonChange change = null;
+        long start = metrics.start();
+        try (Connection connection = connection()) {
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
+                statement.setInt(1, item.getId());
+                statement.executeUpdate();
+            }
+            change = PersonChange.deleted(item.getId());
+        } catch (SQLException e) {
+            metrics.error(Operation.DELETE);
+            LOGGER.error("Deleting contact {} failed", item.getId(), e);
+            throw new IllegalStateException("Deleting contact failed", e);
+        } finally {
+            metrics.stop(Operation.DELETE, start);
+            invalidateCaches();
+            evict(item.getId());
+        }
+        if (change != null) {
+            changes.publish(change);
+        }
+    }
 
-                if (sortClause.getValue() == SortDirection.DESCENDING) {
-                    comparator = comparator.reversed();
+    /**
+     * Writes new and existing contacts in one batch transaction. With
+     * write-behind they are queued and this waits until every one landed;
+     * a {@link BatchWriteException} tells how many did if some failed.
+     */
+    @Override
+    public void persistAll(List<Person> items) {
+        items.forEach(item -> evict(item.getId()));
+        if (writeBehind != null) {
+            List<CompletableFuture<Person>> acks = items.stream().map(writeBehind::upsert).toList();
+            int written = 0;
+            Throwable firstFailure = null;
+            for (CompletableFuture<Person> ack : acks) {
+                try {
+                    ack.join();
+                    written++;
+                } catch (CompletionException e) {
+                    firstFailure = firstFailure == null ? e.getCause() : firstFailure;
                 }
+            }
+            if (firstFailure != null) {
+                throw new BatchWriteException(written, items.size(), firstFailure);
+            }
+            return;
+        }
+        try {
+            writeBatch(items.stream().filter(item -> item.getId() == null).toList(),
+                    items.stream().filter(item -> item.getId() != null).toList(), List.of());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Batch write failed", e);
+        }
+    }
 
-                return comparator;
+    /**
+     * Like {@link #persist}, but off the calling thread; the returned future
+     * tells whether the write reached the database. With write-behind
+     * enabled it completes when the batch holding the write commits.
+     */
+    @Override
+    public CompletableFuture<Person> persistAsync(Person item) {
+        evict(item.getId());
+        if (writeBehind != null) {
+            return writeBehind.upsert(item);
+        }
+        // writeBatch assigns the id and bumps the version on the I/O thread
+        Person copy = new Person(item);
+        return callAsync(() -> {
+            long start = metrics.start();
+            try {
+                writeBatch(copy.getId() == null ? List.of(copy) : List.of(), copy.getId() == null ? List.of() : List.of(copy), List.of());
+                return copy;
+            } catch (SQLException | RuntimeException e) {
+                if (!(e instanceof OptimisticLockException)) {
+                    metrics.error(Operation.PERSIST);
+                    LOGGER.error("Saving contact {} failed", copy.getId(), e);
+                }
+                throw e;
+            } finally {
+                metrics.stop(Operation.PERSIST, start);
+            }
+        });
+    }
 
-            } catch (Exception ex) {
-                return (Comparator<Person>) (o1, o2) -> 0;
+    @Override
+    public CompletableFuture<Void> deleteAsync(Person item) {
+        evict(item.getId());
+        if (writeBehind != null) {
+            return writeBehind.delete(item.getId());
+        }
+        Integer id = item.getId();
+        return callAsync(() -> {
+            long start = metrics.start();
+            try {
+                writeBatch(List.of(), List.of(), List.of(id));
+                return null;
+            } catch (SQLException | RuntimeException e) {
+                metrics.error(Operation.DELETE);
+                LOGGER.error("Deleting contact {} failed", id, e);
+                throw e;
+            } finally {
+                metrics.stop(Operation.DELETE, start);
             }
-        }).reduce(Comparator::thenComparing).orElse((o1, o2) -> 0);
+        });
     }
 
-    private static Object valueOf(String fieldName, Person person) {
-        try {
-            Field field = Person.class.getDeclaredField(fieldName);
-            field.setAccessible(true);
-            return field.get(person);
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
-        }
-    }
-
-    void persist(Person item) {
-        try (Connection connection = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword)) {
-            if (item.getId() == null) {
-                String sql = "INSERT INTO Person (name,lname, street, city, country, phoneNumber, email) VALUES (?,?, ?, ?, ?, ?, ?)";
-                try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                    statement.setString(1, item.getFirstName());
-                    statement.setString(2,item.getLastName());
-                    statement.setString(3, item.getStreet());
-                    statement.setString(4, item.getCity());
-                    statement.setString(5, item.getCountry());
-                    statement.setString(6, item.getPhoneNumber());
-                    statement.setString(7, item.getEmail());
-                    statement.executeUpdate();
+    /**
+     * Queue writes and flush them from a background thread in batches
+     * instead of writing on the caller's thread. Reads don't see queued
+     * writes until their batch commits.
+     */
+    public void setWriteBehind(WriteBehindConfig config) {
+        if (writeBehind != null) {
+            throw new IllegalStateException("Write-behind is already enabled");
+        }
+        if (config.isEnabled()) {
+            writeBehind = new WriteBehindQueue(config, this::writeBatch);
+        }
+    }
+
+    private void writeBatch(List<Person> inserts, List<Person> updates, List<Integer> deletes) throws SQLException {
+        List<Integer> insertedIds = List.of();
+        List<PersonChange> committed = new ArrayList<>(inserts.size() + updates.size() + deletes.size());
+        try (Connection connection = connection()) {
+            connection.setAutoCommit(false);
+            try {
+                if (!inserts.isEmpty()) {
+                    try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                        for (Person item : inserts) {
+                            bind(statement, item);
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                        insertedIds = generatedIds(statement);
+                    }
+                }
+                List<Person> checked = updates.stream().filter(item -> item.getVersion() != null).toList();
+                List<Person> unchecked = updates.stream().filter(item -> item.getVersion() == null).toList();
+                for (List<Person> group : List.of(checked, unchecked)) {
+                    if (group.isEmpty()) {
+                        continue;
+                    }
+                    try (PreparedStatement statement = connection.prepareStatement(sqlFor(group.get(0)))) {
+                        for (Person item : group) {
+                            bind(statement, item);
+                            statement.addBatch();
+                        }
+                        int[] counts = statement.executeBatch();
+                        for (int i = 0; i < counts.length; i++) {
+                            if (counts[i] == 0) {
+                                throw new OptimisticLockException(group.get(i).getId(), group.get(i).getVersion());
+                            }
+                        }
+                    }
                 }
-            } else {
-                String sql = "UPDATE Person SET name = ?,lname = ?, street = ?, city = ?, country = ?, phoneNumber = ?, email = ? WHERE id = ?";
-                try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                    statement.setString(1, item.getFirstName());
-                    statement.setString(2, item.getLastName());
-                    statement.setString(3, item.getStreet());
-                    statement.setString(4, item.getCity());
-                    statement.setString(5, item.getCountry());
-                    statement.setString(6, item.getPhoneNumber());
-                    statement.setString(7, item.getEmail());
-                    statement.setInt(8, item.getId());
-                    statement.executeUpdate();
+                if (!deletes.isEmpty()) {
+                    try (PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
+                        for (Integer id : deletes) {
+                            statement.setInt(1, id);
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
                 }
+                connection.commit();
+                // only now, so a rolled back insert is still an insert when retried
+                assignIds(inserts, insertedIds);
+                updates.forEach(PersonDataProviderDb::bumpVersion);
+                inserts.forEach(item -> committed.add(PersonChange.inserted(item)));
+                updates.forEach(item -> committed.add(PersonChange.updated(item)));
+                deletes.forEach(id -> committed.add(PersonChange.deleted(id)));
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
             }
-        } catch (SQLException ignored) {
+        } finally {
+            invalidateCaches();
+            updates.forEach(item -> evict(item.getId()));
+            deletes.forEach(this::evict);
+        }
+        changes.publish(committed);
+    }
 
+    private static List<Integer> generatedIds(Statement statement) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            while (keys.next()) {
+                ids.add(keys.getInt(1));
+            }
         }
+        return ids;
     }
 
-    void delete(Person item) {
-        try (Connection connection = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword)) {
-            String sql = "DELETE FROM Person WHERE id = ?";
-            try (PreparedStatement statement = connection.prepareStatement(sql)) {
-                statement.setInt(1, item.getId());
-                statement.executeUpdate();
+    /**
+     * Copies generated ids onto freshly inserted contacts. Drivers that don't
+     * report keys for a batch leave the ids null, which is harmless.
+     */
+    private static void assignIds(List<Person> inserts, List<Integer> ids) {
+        if (ids.size() != inserts.size()) {
+            return;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            inserts.get(i).setId(ids.get(i));
+            inserts.get(i).setVersion(0);
+        }
+    }
+
+    private static String sqlFor(Person item) {
+        if (item.getId() == null) {
+            return INSERT_SQL;
+        }
+        return item.getVersion() == null ? UPDATE_UNCHECKED_SQL : UPDATE_SQL;
+    }
+
+    private static void bumpVersion(Person item) {
+        item.setVersion(item.getId() == null || item.getVersion() == null ? null : item.getVersion() + 1);
+    }
+
+    /**
+     * Sets the eight column parameters, the phone number also in its
+     * {@link PhoneNumbers#normalize normalized} form that the unique index
+     * covers, and for an existing person the id and the version it was read at.
+     */
+    private static void bind(PreparedStatement statement, Person item) throws SQLException {
+        statement.setString(1, item.getFirstName());
+        statement.setString(2, item.getLastName());
+        statement.setString(3, item.getStreet());
+        statement.setString(4, item.getCity());
+        statement.setString(5, item.getCountry());
+        statement.setString(6, item.getPhoneNumber());
+        statement.setString(7, PhoneNumbers.normalize(item.getPhoneNumber()));
+        statement.setString(8, item.getEmail());
+        if (item.getId() != null) {
+            statement.setInt(9, item.getId());
+            if (item.getVersion() != null) {
+                statement.setInt(10, item.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Drops a contact from the entity cache; called both when a write is
+     * issued and after it lands, so queued writes can't be shadowed.
+     */
+    private void evict(Integer id) {
+        PersonCache cache = entityCache;
+        if (cache != null) {
+            cache.invalidate(id);
+        }
+    }
+
+    /**
+     * Serve {@link #findById} from a bounded in-memory cache when enabled.
+     */
+    public void setEntityCache(CacheConfig config) {
+        entityCache = config.isEnabled() ? new PersonCache(config.getMaxSize()) : null;
+    }
+
+    PersonCache getEntityCache() {
+        return entityCache;
+    }
+
+    /**
+     * Share identical grid page queries between sessions; {@code maxSize}
+     * is the budget in cached rows.
+     */
+    public void setPageCache(CacheConfig config) {
+        pageCache = config.isEnabled() ? new PageCache(config.getMaxSize()) : null;
+    }
+
+    PageCache getPageCache() {
+        return pageCache;
+    }
+
+    private void invalidateCaches() {
+        countCache.invalidate();
+        keysetCursors.invalidate();
+        PageCache pages = pageCache;
+        if (pages != null) {
+            pages.invalidate();
+        }
+    }
+
+    /**
+     * Whether a contact other than {@code excludeId} already uses the phone
+     * number; {@code normalizedPhone} must come from {@link PhoneNumbers#normalize}.
+     * Looks up {@code Person.phoneNormalized}, which every write fills and
+     * a unique index covers (see {@link org.vaadin.example.utility.SchemaMigrations}).
+     */
+    @Override
+    public boolean existsByPhoneNumber(String normalizedPhone, Integer excludeId) {
+        if (normalizedPhone == null) {
+            return false;
+        }
+        String sql = excludeId == null
+                ? "SELECT 1 FROM Person WHERE phoneNormalized = ? LIMIT 1"
+                : "SELECT 1 FROM Person WHERE phoneNormalized = ? AND id <> ? LIMIT 1";
+
+        try (Connection connection = connection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            statement.setString(1, normalizedPhone);
+            if (excludeId != null) {
+                statement.setInt(2, excludeId);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Phone number lookup failed", e);
+            return false;
         }
     }
 
+    @Override
+    public Optional<Person> find(int id) {
+        return Optional.ofNullable(findById(id));
+    }
+
     public Person findById(int id) {
+        PersonCache cache = entityCache;
+        long start = metrics.start();
+        try {
+            return cache == null ? load(id) : cache.get(id, this::load);
+        } finally {
+            metrics.stop(Operation.FIND_BY_ID, start);
+        }
+    }
+
+    /**
+     * The contacts with the given ids in the given order; ids that no longer
+     * exist are skipped.
+     */
+    @Override
+    public List<Person> findAllById(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        PersonQueryBuilder sql = PersonQueryBuilder.byIds(ids);
+        Map<Integer, Person> found = new HashMap<>();
+        long start = metrics.start();
+        try (Connection connection = connection();
+             PreparedStatement statement = connection.prepareStatement(sql.getSql())) {
+
+            sql.bind(statement);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                PersonRowMapper mapper = PersonRowMapper.of(resultSet);
+                while (resultSet.next()) {
+                    Person person = mapper.map(resultSet);
+                    found.put(person.getId(), person);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Loading {} contacts by id failed", ids.size(), e);
+        }
+        metrics.checkSlow(start, sql);
+        return ids.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    private Person load(int id) {
         String sql = "SELECT * FROM Person WHERE id = ?";
         Person person = null;
 
-        try (Connection connection = DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword);
+        try (Connection connection = connection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
 
             statement.setInt(1, id);
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                person = new Person();
-                person.setId(resultSet.getInt("id"));
-                person.setFirstName(resultSet.getString("name"));
-                person.setLastName(resultSet.getString("lname"));
-                person.setStreet(resultSet.getString("street"));
-                person.setCity(resultSet.getString("city"));
-                person.setCountry(resultSet.getString("country"));
-                person.setPhoneNumber(resultSet.getString("phoneNumber"));
-                person.setEmail(resultSet.getString("email"));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    person = PersonRowMapper.of(resultSet).map(resultSet);
+                }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (SQLException e) {
+            metrics.error(Operation.FIND_BY_ID);
+            LOGGER.error("Loading contact {} failed", id, e);
         }
 
         return person;
     }
+
+    private Connection connection() throws SQLException {
+        long start = metrics.start();
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            metrics.error(Operation.ACQUIRE_CONNECTION);
+            throw e;
+        } finally {
+            metrics.stop(Operation.ACQUIRE_CONNECTION, start);
+        }
+    }
 }
\ No newline at end of file
@@ -1,118 +1,343 @@
 package org.vaadin.example;
 
 import com.vaadin.flow.component.crud.CrudFilter;
-import com.vaadin.flow.data.provider.AbstractBackEndDataProvider;
-import com.vaadin.flow.data.provider.Query;
-import com.vaadin.flow.data.provider.SortDirection;
+import org.vaadin.example.ProviderMetrics.Operation;
+import org.vaadin.example.utility.MetricsConfig;
+import org.vaadin.example.utility.OpLogConfig;
 
-import java.lang.reflect.Field;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Stream;
 
-import static java.util.Comparator.naturalOrder;
+public class PersonDataProviderInMemory extends PersonDataProvider {
 
-public class PersonDataProviderInMemory extends AbstractBackEndDataProvider<Person, CrudFilter> {
+    final static ConcurrentMap<Integer, Person> DATABASE = new ConcurrentHashMap<>();
+    private final static AtomicInteger SEQUENCE = new AtomicInteger();
+    private final static PersonQueryEngine ENGINE = new PersonQueryEngine(new PersonQueryEngine.Rows() {
+        @Override
+        public Person get(int id) {
+            return DATABASE.get(id);
+        }
+
+        @Override
+        public Stream<Person> scan() {
+            return DATABASE.values().stream();
+        }
+
+        @Override
+        public int size() {
+            return DATABASE.size();
+        }
+    });
+    private static final CountCache countCache = new CountCache(0);
+    private static final PersonChangeBus CHANGES = new PersonChangeBus();
+    private static final ProviderMetrics METRICS = ProviderMetrics.create("inmemory");
 
-    final static Map<Integer, Person> DATABASE = new HashMap<>();
-    private static Consumer<Long> sizeChangeListener;
+    private static volatile InMemoryPersistence persistence;
 
     public PersonDataProviderInMemory() {
     }
 
-    @Override
-    protected Stream<Person> fetchFromBackEnd(Query<Person, CrudFilter> query) {
-        int offset = query.getOffset();
-        int limit = query.getLimit();
+    /**
+     * Makes the store durable: recovers the contacts saved in
+     * {@code directory} and logs every write there from now on, see
+     * {@link InMemoryPersistence}. Saves and deletes then return once their
+     * log record is fsynced. Does nothing when already enabled.
+     */
+    public static synchronized void persistTo(Path directory, OpLogConfig config) throws IOException {
+        if (persistence != null) {
+            return;
+        }
+        persistence = InMemoryPersistence.open(directory, config, DATABASE);
+        DATABASE.keySet().forEach(id -> SEQUENCE.accumulateAndGet(id, Math::max));
+        ENGINE.rebuild();
+        countCache.invalidate();
+        PersonOpLog log = persistence.log();
+        METRICS.gauge("oplog_records", log::records);
+        METRICS.gauge("oplog_group_commits", log::groupCommits);
+        METRICS.gauge("oplog_pending", log::pending);
+    }
 
-        Stream<Person> stream = DATABASE.values().stream();
+    /**
+     * Flushes and closes the log; writes after this are no longer durable.
+     */
+    static synchronized void stopPersisting() throws IOException {
+        if (persistence != null) {
+            persistence.close();
+            persistence = null;
+        }
+    }
+
+    /**
+     * Forgets the id sequence, as a restart does, so tests can check that
+     * recovery restores it.
+     */
+    static void resetSequence() {
+        SEQUENCE.set(0);
+    }
+
+    static InMemoryPersistence persistence() {
+        return persistence;
+    }
 
-        if (query.getFilter().isPresent()) {
-            stream = stream.filter(predicate(query.getFilter().get()))
-                    .sorted(comparator(query.getFilter().get()));
+    @Override
+    public List<Person> page(CrudFilter filter, int offset, int limit) {
+        long start = METRICS.start();
+        try {
+            List<Person> page = ENGINE.page(filter, offset, limit);
+            METRICS.rowsReturned(page.size());
+            return page;
+        } finally {
+            METRICS.stop(Operation.FETCH, start);
         }
+    }
 
-        return stream.skip(offset).limit(limit);
+    @Override
+    public Stream<Person> stream(CrudFilter filter) {
+        return ENGINE.stream(filter);
     }
 
     @Override
-    protected int sizeInBackEnd(Query<Person, CrudFilter> query) {
-        long count = fetchFromBackEnd(query).count();
+    public PersonChangeBus getChangeBus() {
+        return CHANGES;
+    }
 
-        if (sizeChangeListener != null) {
-            sizeChangeListener.accept(count);
-        }
+    @Override
+    public Set<Capability> capabilities() {
+        return persistence == null ? Set.of() : Set.of(Capability.DURABLE);
+    }
 
-        return (int) count;
+    @Override
+    public boolean isIndexed(String property) {
+        return ENGINE.isIndexed(property);
     }
 
-    void setSizeChangeListener(Consumer<Long> listener) {
-        sizeChangeListener = listener;
+    @Override
+    public ProviderMetrics getMetrics() {
+        return METRICS;
     }
 
-    private static Predicate<Person> predicate(CrudFilter filter) {
-        return filter.getConstraints().entrySet().stream()
-                .map(constraint -> (Predicate<Person>) person -> {
-                    try {
-                        Object value = valueOf(constraint.getKey(), person);
-                        return value != null && value.toString().toLowerCase()
-                                .contains(constraint.getValue().toLowerCase());
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }).reduce(Predicate::and).orElse(e -> true);
+    public void setMetrics(MetricsConfig config) {
+        METRICS.configure(config);
     }
 
-    private static Comparator<Person> comparator(CrudFilter filter) {
-        return filter.getSortOrders().entrySet().stream().map(sortClause -> {
-            try {
-                Comparator<Person> comparator = Comparator.comparing(
-                        person -> (Comparable) valueOf(sortClause.getKey(), person));
+    @Override
+    public int count(CrudFilter filter) {
+        long start = METRICS.start();
+        int count = countCache.get(filter, ENGINE::count);
+        METRICS.stop(Operation.SIZE, start);
+        return count;
+    }
 
-                if (sortClause.getValue() == SortDirection.DESCENDING) {
-                    comparator = comparator.reversed();
-                }
+    /**
+     * Scans over at least {@code rows} contacts run on all cores, see
+     * {@link PersonQueryEngine#setParallelThreshold}.
+     */
+    public void setParallelQueryThreshold(int rows) {
+        ENGINE.setParallelThreshold(rows);
+    }
 
-                return comparator;
+    /**
+     * Lets grid size queries reuse a count for up to {@code ttlMillis}; 0 disables caching.
+     */
+    public void setCountCacheTtl(long ttlMillis) {
+        countCache.setTtlMillis(ttlMillis);
+    }
 
-            } catch (Exception ex) {
-                return (Comparator<Person>) (o1, o2) -> 0;
-            }
-        }).reduce(Comparator::thenComparing).orElse((o1, o2) -> 0);
+    /**
+     * Stores a copy of {@code item}. An item carrying a version must still
+     * match the stored one, otherwise someone else saved or deleted it first
+     * and {@link OptimisticLockException} is thrown.
+     */
+    @Override
+    public void persist(Person item) {
+        persistAll(List.of(item));
     }
 
-    private static Object valueOf(String fieldName, Person person) {
+    /**
+     * Stores every item, then waits once for the log so a batch shares its
+     * fsyncs. Changes are published once they are durable.
+     */
+    @Override
+    public void persistAll(List<Person> items) {
+        long start = METRICS.start();
+        List<PersonChange> stored = new ArrayList<>(items.size());
+        List<CompletableFuture<Long>> logged = new ArrayList<>(1);
         try {
-            Field field = Person.class.getDeclaredField(fieldName);
-            field.setAccessible(true);
-            return field.get(person);
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
+            for (Person item : items) {
+                stored.add(store(item, logged));
+            }
+        } catch (OptimisticLockException e) {
+            METRICS.error(Operation.PERSIST);
+            throw e;
+        } finally {
+            try {
+                // the log is written in order, so the last record covers the others
+                awaitLogged(logged.isEmpty() ? null : logged.get(logged.size() - 1));
+            } finally {
+                METRICS.stop(Operation.PERSIST, start);
+                CHANGES.publish(stored);
+            }
         }
     }
 
-    void persist(Person item) {
+    /**
+     * With persistence, the log record is queued inside {@code compute} and
+     * its future added to {@code logged}, so the log has each contact's
+     * writes in the order they were applied. Both happen under the
+     * persistence's writer lock, so a snapshot can't switch segments
+     * between them. The indexes are updated inside {@code compute} too, so
+     * racing saves and deletes of one id reach them in the order they
+     * reached the map.
+     */
+    private PersonChange store(Person item, List<CompletableFuture<Long>> logged) {
         if (item.getId() == null) {
-            item.setId(DATABASE.keySet().stream().max(naturalOrder()).orElse(0) + 1);
+            item.setId(SEQUENCE.incrementAndGet());
+        } else {
+            // keep the sequence ahead of ids that were assigned elsewhere
+            SEQUENCE.accumulateAndGet(item.getId(), Math::max);
+        }
+        boolean[] inserted = new boolean[1];
+        InMemoryPersistence log = persistence;
+        Lock writer = log != null ? log.writer() : null;
+        if (writer != null) {
+            writer.lock();
         }
-        DATABASE.put(item.getId(), item);
-        
+        Person stored;
+        try {
+            stored = DATABASE.compute(item.getId(), (id, current) -> {
+                Integer expected = item.getVersion();
+                if (expected != null && (current == null || !expected.equals(current.getVersion()))) {
+                    throw new OptimisticLockException(id, expected);
+                }
+                inserted[0] = current == null;
+                Person copy = new Person(item);
+                copy.setVersion(current == null || current.getVersion() == null ? 0 : current.getVersion() + 1);
+                if (log != null) {
+                    logged.add(log.logPut(copy));
+                }
+                ENGINE.update(copy);
+                return copy;
+            });
+        } finally {
+            if (writer != null) {
+                writer.unlock();
+            }
+        }
+        item.setVersion(stored.getVersion());
+        countCache.invalidate();
+        return inserted[0] ? PersonChange.inserted(stored) : PersonChange.updated(stored);
     }
 
+    private static void awaitLogged(CompletableFuture<Long> logged) {
+        if (logged == null) {
+            return;
+        }
+        try {
+            logged.join();
+        } catch (CompletionException e) {
+            throw new UncheckedIOException("Contact was stored but could not be logged",
+                    e.getCause() instanceof IOException io ? io : new IOException(e.getCause()));
+        }
+    }
+
+    @Override
+    public boolean existsByPhoneNumber(String normalizedPhone, Integer excludeId) {
+        return ENGINE.existsByPhoneNumber(normalizedPhone, excludeId);
+    }
+
+    @Override
+    public Optional<Person> find(int id) {
+        long start = METRICS.start();
+        try {
+            return Optional.ofNullable(DATABASE.get(id)).map(Person::new);
+        } finally {
+            METRICS.stop(Operation.FIND_BY_ID, start);
+        }
+    }
 
+    @Override
+    public List<Person> findAllById(List<Integer> ids) {
+        return ENGINE.findAll(ids);
+    }
 
-    Optional<Person> find(Integer id) {
-        return Optional.ofNullable(DATABASE.get(id));
+    /**
+     * Approximate heap bytes of the stored rows: map table and nodes, boxed
+     * keys and versions, {@code Person} objects and their strings. Comparable
+     * with {@link ColumnarPersonStore#footprint()}; the query engine's
+     * secondary indexes come on top and are not counted. Walks every row,
+     * so it is meant for the benchmark and tests, not for a metrics scrape.
+     */
+    public static Map<String, Long> footprint() {
+        return footprint(DATABASE);
     }
 
-    void delete(Person item) {
-        DATABASE.remove(item.getId());
+    /**
+     * The same estimate for any map of rows keyed by id.
+     */
+    static Map<String, Long> footprint(Map<Integer, Person> database) {
+        long rows = 0;
+        long strings = 0;
+        for (Person person : database.values()) {
+            // node, boxed key, Person (header, 9 references, flag) and boxed version
+            rows += 32 + 16 + 56 + 16;
+            for (PersonField field : PersonField.values()) {
+                if (field != PersonField.ID && field.valueOf(person) instanceof String value) {
+                    strings += StringColumn.stringBytes(value);
+                }
+            }
+        }
+        int table = database.isEmpty() ? 0 : Integer.highestOneBit((int) (database.size() / 0.75f)) << 1;
+        Map<String, Long> parts = new LinkedHashMap<>();
+        parts.put("table", StringColumn.arrayBytes(table, 4));
+        parts.put("rows", rows);
+        parts.put("strings", strings);
+        parts.put("total", parts.values().stream().mapToLong(Long::longValue).sum());
+        return parts;
+    }
 
+    @Override
+    public void delete(Person item) {
+        long start = METRICS.start();
+        List<CompletableFuture<Long>> logged = new ArrayList<>(1);
+        InMemoryPersistence log = persistence;
+        Lock writer = log != null ? log.writer() : null;
+        if (writer != null) {
+            writer.lock();
+        }
+        try {
+            DATABASE.computeIfPresent(item.getId(), (id, current) -> {
+                if (log != null) {
+                    logged.add(log.logDelete(id));
+                }
+                ENGINE.remove(id);
+                return null;
+            });
+        } finally {
+            if (writer != null) {
+                writer.unlock();
+            }
+        }
+        countCache.invalidate();
+        try {
+            awaitLogged(logged.isEmpty() ? null : logged.get(0));
+        } finally {
+            METRICS.stop(Operation.DELETE, start);
+        }
+        CHANGES.publish(PersonChange.deleted(item.getId()));
     }
 
-}
\ No newline at end of file
+}
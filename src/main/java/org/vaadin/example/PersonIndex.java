@@ -0,0 +1,153 @@
+package org.vaadin.example;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Secondary index over one {@link PersonField} of the in-memory store.
+ * <p>
+ * A trigram index answers case-insensitive substring lookups: every id whose
+ * value contains the needle appears in the posting set of each of the
+ * needle's trigrams, so intersecting those sets gives a small superset of the
+ * matches. A sorted map from value to ids serves ordered scans for the grid.
+ * <p>
+ * Lookups may briefly return ids that no longer match while a write is in
+ * flight, so callers always re-check candidates against the current row.
+ * The value last indexed per id is kept so an update can unindex the old
+ * value without reading the row it replaced.
+ */
+class PersonIndex {
+
+    static final int GRAM = 3;
+
+    private final PersonField field;
+    private final Map<String, Set<Integer>> grams = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Set<Integer>> sorted = new ConcurrentSkipListMap<>();
+    private final Set<Integer> nullValues = new ConcurrentSkipListSet<>();
+    private final Map<Integer, Indexed> indexed = new ConcurrentHashMap<>();
+
+    PersonIndex(PersonField field) {
+        this.field = field;
+    }
+
+    PersonField field() {
+        return field;
+    }
+
+    /**
+     * Indexes the current value of {@code person}, replacing what was indexed
+     * for its id before. Writers are serialized per index so emptied posting
+     * sets can be dropped safely; readers never block.
+     */
+    synchronized void update(Person person) {
+        Integer id = person.getId();
+        String value = field.textOf(person);
+        if (indexed.containsKey(id)) {
+            String previous = indexed.get(id).value;
+            if (previous == null ? value == null : previous.equals(value)) {
+                return;
+            }
+            unindex(id, previous);
+        }
+        index(id, value);
+        indexed.put(id, new Indexed(value));
+    }
+
+    synchronized void remove(Integer id) {
+        Indexed previous = indexed.remove(id);
+        if (previous != null) {
+            unindex(id, previous.value);
+        }
+    }
+
+    private void index(Integer id, String value) {
+        if (value == null) {
+            nullValues.add(id);
+            return;
+        }
+        sorted.computeIfAbsent(value, key -> new ConcurrentSkipListSet<>()).add(id);
+        gramsOf(value.toLowerCase(Locale.ROOT)).forEach(gram ->
+                grams.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id));
+    }
+
+    private void unindex(Integer id, String value) {
+        if (value == null) {
+            nullValues.remove(id);
+            return;
+        }
+        sorted.computeIfPresent(value, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+        gramsOf(value.toLowerCase(Locale.ROOT)).forEach(gram ->
+                grams.computeIfPresent(gram, (key, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                }));
+    }
+
+    /**
+     * Upper bound on the number of rows containing {@code lowerCaseNeedle},
+     * or -1 when the needle is too short for the trigram index.
+     */
+    int estimate(String lowerCaseNeedle) {
+        if (lowerCaseNeedle.length() < GRAM) {
+            return -1;
+        }
+        return gramsOf(lowerCaseNeedle)
+                .mapToInt(gram -> grams.getOrDefault(gram, Collections.emptySet()).size())
+                .min().orElse(0);
+    }
+
+    /**
+     * Ids that may contain {@code lowerCaseNeedle}: the intersection of the
+     * posting sets of its trigrams, starting from the smallest one.
+     */
+    Stream<Integer> candidates(String lowerCaseNeedle) {
+        Set<Integer>[] postings = gramsOf(lowerCaseNeedle).distinct()
+                .map(gram -> grams.getOrDefault(gram, Collections.emptySet()))
+                .sorted((a, b) -> Integer.compare(a.size(), b.size()))
+                .toArray(Set[]::new);
+        if (postings.length == 0) {
+            return Stream.empty();
+        }
+        Stream<Integer> ids = postings[0].stream();
+        for (int i = 1; i < postings.length; i++) {
+            Set<Integer> posting = postings[i];
+            ids = ids.filter(posting::contains);
+        }
+        return ids;
+    }
+
+    /**
+     * All indexed ids in value order, equal values by ascending id. Nulls come
+     * first, matching {@link PersonField#comparator}.
+     */
+    Iterator<Integer> ordered(boolean descending) {
+        NavigableMap<String, Set<Integer>> values = descending ? sorted.descendingMap() : sorted;
+        Stream<Integer> ids = values.values().stream().flatMap(Set::stream);
+        return descending
+                ? Stream.concat(ids, nullValues.stream()).iterator()
+                : Stream.concat(nullValues.stream(), ids).iterator();
+    }
+
+    private static Stream<String> gramsOf(String lowerCaseValue) {
+        int count = lowerCaseValue.length() - GRAM + 1;
+        if (count <= 0) {
+            return Stream.empty();
+        }
+        return Stream.iterate(0, i -> i < count, i -> i + 1)
+                .map(i -> lowerCaseValue.substring(i, i + GRAM));
+    }
+
+    private record Indexed(String value) {
+    }
+}
@@ -0,0 +1,350 @@
+package org.vaadin.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only operation log of {@link PersonDataProviderInMemory}, split in
+ * numbered segments {@code oplog-<n>.log}. Records are
+ * {@code [length][crc32][payload]} with the full contact after a save, or
+ * just the id after a delete, so replay needs no previous state.
+ * <p>
+ * Writers only enqueue: one background thread writes whatever has queued
+ * up, waiting up to {@code groupCommitMillis} for more, and fsyncs the
+ * whole group at once. Each write gets a future that completes once its
+ * record is on disk; a group that fails is cut off the segment again. A longer window trades write latency for fewer
+ * fsyncs under load.
+ * <p>
+ * {@link #rotate()} starts a new segment in queue order, so everything
+ * enqueued before it lands in the older segments. Snapshots use that to
+ * know which segments they cover.
+ */
+class PersonOpLog implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonOpLog.class);
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("oplog-(\\d+)\\.log");
+
+    /**
+     * A replayed write; {@code person} is null for a delete.
+     */
+    record Op(int id, Person person) {
+    }
+
+    /**
+     * A queued record, or a segment switch when {@code record} is null.
+     */
+    private record Pending(byte[] record, CompletableFuture<Long> done) {
+    }
+
+    private final Path directory;
+    private final long groupCommitNanos;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong groups = new AtomicLong();
+    private FileChannel channel;
+    private long segment;
+    /**
+     * Set under the queue's lock, which {@link #offer} also holds, so nothing
+     * is queued once the writer may have drained the queue for good.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Starts appending to a new segment {@code segment}.
+     */
+    PersonOpLog(Path directory, long segment, long groupCommitMillis) throws IOException {
+        this.directory = directory;
+        this.groupCommitNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+        this.segment = segment;
+        this.channel = open(segment);
+        writer = new Thread(this::writeLoop, "person-oplog");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    CompletableFuture<Long> put(Person stored) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+        try {
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(PUT);
+            PersonCodec.write(out, stored);
+        } catch (IOException e) {
+            // only writes to memory
+            throw new UncheckedIOException(e);
+        }
+        return enqueue(payload.toByteArray());
+    }
+
+    CompletableFuture<Long> delete(int id) {
+        return enqueue(ByteBuffer.allocate(5).put(DELETE).putInt(id).array());
+    }
+
+    /**
+     * Switches to the next segment after the records queued so far; the
+     * future completes with the new segment's number.
+     */
+    CompletableFuture<Long> rotate() {
+        return offer(null);
+    }
+
+    long records() {
+        return records.get();
+    }
+
+    long groupCommits() {
+        return groups.get();
+    }
+
+    int pending() {
+        return queue.size();
+    }
+
+    private CompletableFuture<Long> enqueue(byte[] payload) {
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        byte[] record = ByteBuffer.allocate(8 + payload.length)
+                .putInt(payload.length).putInt((int) checksum.getValue()).put(payload).array();
+        return offer(record);
+    }
+
+    private CompletableFuture<Long> offer(byte[] record) {
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        synchronized (queue) {
+            if (closed) {
+                throw new IllegalStateException("Operation log is closed");
+            }
+            queue.add(new Pending(record, done));
+        }
+        return done;
+    }
+
+    private void writeLoop() {
+        List<Pending> group = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + groupCommitNanos;
+                while (group.get(group.size() - 1).record() != null) {
+                    // take what is already queued, then wait out the window
+                    Pending next = queue.poll();
+                    long wait = deadline - System.nanoTime();
+                    if (next == null && wait > 0) {
+                        next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    }
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                group.forEach(pending -> pending.done().completeExceptionally(e));
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> group) {
+        Pending last = group.get(group.size() - 1);
+        List<Pending> writes = last.record() == null ? group.subList(0, group.size() - 1) : group;
+        long start = -1;
+        try {
+            if (!writes.isEmpty()) {
+                start = channel.size();
+                int size = 0;
+                for (Pending pending : writes) {
+                    size += pending.record().length;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                writes.forEach(pending -> buffer.put(pending.record()));
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                records.addAndGet(writes.size());
+                groups.incrementAndGet();
+            }
+            writes.forEach(pending -> pending.done().complete(segment));
+        } catch (IOException e) {
+            LOGGER.error("Writing the operation log failed", e);
+            writes.forEach(pending -> pending.done().completeExceptionally(e));
+            if (start >= 0) {
+                cutBack(start);
+            }
+        }
+        if (last.record() == null) {
+            try {
+                FileChannel next = open(segment + 1);
+                channel.close();
+                channel = next;
+                segment++;
+                last.done().complete(segment);
+            } catch (IOException e) {
+                last.done().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Drops what a failed group left in the segment, so its records can't
+     * replay although their writers were told they failed, and later groups
+     * don't follow a torn record. If the segment can't be cut, appending
+     * moves on to a fresh one.
+     */
+    private void cutBack(long position) {
+        try {
+            channel.truncate(position);
+            channel.force(true);
+        } catch (IOException e) {
+            LOGGER.error("Could not cut the failed group off operation log segment {}", segment, e);
+            try {
+                FileChannel next = open(segment + 1);
+                channel.close();
+                channel = next;
+                segment++;
+            } catch (IOException again) {
+                LOGGER.error("Could not start a new operation log segment", again);
+            }
+        }
+    }
+
+    private FileChannel open(long number) throws IOException {
+        FileChannel opened = FileChannel.open(segmentFile(directory, number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // make the new file itself durable
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // not every platform can fsync a directory
+        }
+        return opened;
+    }
+
+    /**
+     * Writes out what is queued and stops the writer thread. Anything the
+     * writer did not get to, because it was interrupted, fails rather than
+     * leaving its caller waiting.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (queue) {
+            closed = true;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        IOException notWritten = new IOException("Operation log closed before the record was written");
+        leftover.forEach(pending -> pending.done().completeExceptionally(notWritten));
+        channel.close();
+    }
+
+    // Reading
+
+    static Path segmentFile(Path directory, long number) {
+        return directory.resolve("oplog-" + number + ".log");
+    }
+
+    /**
+     * Segment numbers in {@code directory}, ascending.
+     */
+    static List<Long> segments(Path directory) throws IOException {
+        List<Long> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    found.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        found.sort(null);
+        return found;
+    }
+
+    /**
+     * The raw payloads of segment {@code number} up to its first torn or
+     * corrupt record, which is where the process stopped.
+     */
+    static List<byte[]> read(Path directory, long number) throws IOException {
+        List<byte[]> payloads = new ArrayList<>();
+        Path file = segmentFile(directory, number);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            CRC32 checksum = new CRC32();
+            while (true) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length <= 0 || length > 1 << 24) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                checksum.reset();
+                checksum.update(payload);
+                if ((int) checksum.getValue() != crc) {
+                    break;
+                }
+                payloads.add(payload);
+            }
+        } catch (EOFException e) {
+            // end of segment, or a record torn by the crash
+        }
+        return payloads;
+    }
+
+    /**
+     * The id a payload of {@link #read} is about, without decoding the rest.
+     */
+    static int idOf(byte[] payload) {
+        return ByteBuffer.wrap(payload, 1, 4).getInt();
+    }
+
+    static Op decode(byte[] payload) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        if (in.get() == DELETE) {
+            return new Op(in.getInt(), null);
+        }
+        Person person = PersonCodec.read(in);
+        return new Op(person.getId(), person);
+    }
+}
@@ -0,0 +1,156 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.SortDirection;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds parameterized SQL for the Person table out of a {@link CrudFilter}.
+ * Only fields listed in {@link PersonField} can be filtered or sorted on, so
+ * nothing coming from the client is ever concatenated into the statement.
+ */
+class PersonQueryBuilder {
+
+    private static final char LIKE_ESCAPE = '!';
+
+    private final StringBuilder sql = new StringBuilder();
+    private final List<Object> parameters = new ArrayList<>();
+
+    private PersonQueryBuilder(String select) {
+        sql.append(select);
+    }
+
+    static PersonQueryBuilder select(CrudFilter filter, int offset, int limit) {
+        PersonQueryBuilder builder = new PersonQueryBuilder("SELECT * FROM Person");
+        builder.where(filter);
+        builder.orderBy(filter);
+        builder.sql.append(" LIMIT ? OFFSET ?");
+        builder.parameters.add(limit);
+        builder.parameters.add(offset);
+        return builder;
+    }
+
+    /**
+     * Every matching row in the filter's order, for reading as a stream.
+     */
+    static PersonQueryBuilder selectAll(CrudFilter filter) {
+        PersonQueryBuilder builder = new PersonQueryBuilder("SELECT * FROM Person");
+        builder.where(filter);
+        builder.orderBy(filter);
+        return builder;
+    }
+
+    /**
+     * The page after {@code cursor}: rows strictly past the cursor's
+     * (sort value, id) in the query's order. Requires
+     * {@link KeysetCursors#supports}. Ascending sorts use a row value
+     * comparison; descending ones are spelled out because the id
+     * tie-breaker still runs ascending. NULLs sort first ascending and last
+     * descending on MySQL and H2, so a descending seek keeps them; a cursor
+     * is never taken on a NULL sort value.
+     */
+    static PersonQueryBuilder seek(CrudFilter filter, KeysetCursors.Cursor cursor, int limit) {
+        PersonQueryBuilder builder = new PersonQueryBuilder("SELECT * FROM Person");
+        builder.where(filter);
+        builder.sql.append(builder.parameters.isEmpty() ? " WHERE " : " AND ");
+        if (cursor.sortValue() == null) {
+            builder.sql.append("id > ?");
+            builder.parameters.add(cursor.id());
+        } else {
+            Map.Entry<String, SortDirection> sortOrder = filter.getSortOrders().entrySet().iterator().next();
+            String column = PersonField.of(sortOrder.getKey()).column();
+            if (sortOrder.getValue() == SortDirection.DESCENDING) {
+                builder.sql.append("(").append(column).append(" < ? OR (")
+                        .append(column).append(" = ? AND id > ?) OR ").append(column).append(" IS NULL)");
+                builder.parameters.add(cursor.sortValue());
+            } else {
+                builder.sql.append("(").append(column).append(", id) > (?, ?)");
+            }
+            builder.parameters.add(cursor.sortValue());
+            builder.parameters.add(cursor.id());
+        }
+        builder.orderBy(filter);
+        builder.sql.append(" LIMIT ?");
+        builder.parameters.add(limit);
+        return builder;
+    }
+
+    /**
+     * The list is padded to a power of two by repeating the last id, so a
+     * handful of statement texts cover every list size and stay cached.
+     */
+    static PersonQueryBuilder byIds(List<Integer> ids) {
+        PersonQueryBuilder builder = new PersonQueryBuilder("SELECT * FROM Person WHERE id IN (");
+        int slots = ids.size() <= 1 ? ids.size() : Integer.highestOneBit(ids.size() - 1) << 1;
+        for (int i = 0; i < slots; i++) {
+            builder.sql.append(i == 0 ? "?" : ", ?");
+            builder.parameters.add(ids.get(Math.min(i, ids.size() - 1)));
+        }
+        builder.sql.append(")");
+        return builder;
+    }
+
+    static PersonQueryBuilder count(CrudFilter filter) {
+        PersonQueryBuilder builder = new PersonQueryBuilder("SELECT COUNT(*) FROM Person");
+        builder.where(filter);
+        return builder;
+    }
+
+    private void where(CrudFilter filter) {
+        if (filter == null || filter.getConstraints().isEmpty()) {
+            return;
+        }
+        String separator = " WHERE ";
+        for (Map.Entry<String, String> constraint : filter.getConstraints().entrySet()) {
+            sql.append(separator).append("LOWER(").append(PersonField.of(constraint.getKey()).column())
+                    .append(") LIKE ? ESCAPE '").append(LIKE_ESCAPE).append('\'');
+            parameters.add("%" + escapeLike(constraint.getValue().toLowerCase(Locale.ROOT)) + "%");
+            separator = " AND ";
+        }
+    }
+
+    private void orderBy(CrudFilter filter) {
+        sql.append(" ORDER BY ");
+        if (filter != null) {
+            for (Map.Entry<String, SortDirection> sortOrder : filter.getSortOrders().entrySet()) {
+                sql.append(PersonField.of(sortOrder.getKey()).column())
+                        .append(sortOrder.getValue() == SortDirection.DESCENDING ? " DESC" : " ASC")
+                        .append(", ");
+            }
+        }
+        // id as the final key keeps pages stable when sort values repeat
+        sql.append("id ASC");
+    }
+
+    static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    String getSql() {
+        return sql.toString();
+    }
+
+    List<Object> getParameters() {
+        return parameters;
+    }
+
+    void bind(PreparedStatement statement) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+    }
+}
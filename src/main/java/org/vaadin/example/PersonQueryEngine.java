@@ -0,0 +1,253 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.SortDirection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Filtering, sorting, paging and counting for stores that only know how to
+ * look up and scan rows. The engine keeps the secondary indexes: a store
+ * calls {@link #update} and {@link #remove} after each write, and queries
+ * then pick the most selective index for a constraint, walk a sorted index
+ * for single-column sorts, and fall back to a scan otherwise.
+ * <p>
+ * Scans only rank the rows up to the end of the requested page, with a
+ * {@link TopK} heap, and run in parallel once they cover
+ * {@link #setParallelThreshold enough rows}.
+ */
+class PersonQueryEngine {
+
+    static final Set<PersonField> DEFAULT_INDEXES = Set.of(PersonField.FIRST_NAME, PersonField.LAST_NAME,
+            PersonField.PHONE_NUMBER, PersonField.EMAIL, PersonField.CITY);
+
+    /**
+     * Row access of the store being queried. Rows may be the stored
+     * instances; the engine copies what it returns.
+     */
+    interface Rows {
+        Person get(int id);
+
+        /**
+         * Every row, in any order. May be weakly consistent; pages are read
+         * into a snapshot before sorting.
+         */
+        Stream<Person> scan();
+
+        int size();
+    }
+
+    /**
+     * A top-K heap is used while the page end is at most this fraction of
+     * the rows; deeper pages are sorted.
+     */
+    private static final int TOP_K_RATIO = 4;
+
+    private final Rows rows;
+    private final Map<PersonField, PersonIndex> indexes = new EnumMap<>(PersonField.class);
+    private final PhoneNumberIndex phoneNumbers = new PhoneNumberIndex();
+    private volatile int parallelThreshold = 50_000;
+
+    PersonQueryEngine(Rows rows) {
+        this(rows, DEFAULT_INDEXES);
+    }
+
+    PersonQueryEngine(Rows rows, Set<PersonField> indexed) {
+        this.rows = rows;
+        indexed.forEach(field -> indexes.put(field, new PersonIndex(field)));
+    }
+
+    /**
+     * Row count from which scans filter and rank on every core of the
+     * common fork-join pool. Smaller sets stay on the calling thread, where
+     * forking would cost more than it saves.
+     */
+    void setParallelThreshold(int rows) {
+        this.parallelThreshold = rows;
+    }
+
+    private boolean parallel(int size) {
+        return size >= parallelThreshold && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    void update(Person stored) {
+        indexes.values().forEach(index -> index.update(stored));
+        phoneNumbers.update(stored);
+    }
+
+    void remove(Integer id) {
+        indexes.values().forEach(index -> index.remove(id));
+        phoneNumbers.remove(id);
+    }
+
+    /**
+     * Indexes every row from scratch, one thread per index, e.g. after a
+     * recovery filled the store behind the engine's back.
+     */
+    void rebuild() {
+        Stream.concat(indexes.values().stream().map(index -> (Runnable) () -> rows.scan().forEach(index::update)),
+                        Stream.of(() -> rows.scan().forEach(phoneNumbers::update)))
+                .parallel()
+                .forEach(Runnable::run);
+    }
+
+    boolean isIndexed(String property) {
+        return indexes.keySet().stream().anyMatch(field -> field.property().equals(property));
+    }
+
+    List<Person> page(CrudFilter filter, int offset, int limit) {
+        if (filter == null) {
+            filter = new CrudFilter();
+        }
+        Predicate<Person> predicate = PersonField.predicate(filter);
+
+        Stream<Integer> candidates = candidates(filter);
+        PersonIndex sortIndex = sortIndex(filter);
+        if (candidates == null && sortIndex != null) {
+            // Walk the sorted index and stop once the page is full
+            boolean descending = filter.getSortOrders().values().iterator().next() == SortDirection.DESCENDING;
+            Iterable<Integer> ordered = () -> sortIndex.ordered(descending);
+            return StreamSupport.stream(ordered.spliterator(), false)
+                    .map(rows::get)
+                    .filter(Objects::nonNull)
+                    .filter(predicate)
+                    .skip(offset).limit(limit)
+                    .map(Person::new)
+                    .toList();
+        }
+
+        // Stored rows are replaced, never modified, so each row is seen in one state
+        Stream<Person> source;
+        int size;
+        if (candidates == null) {
+            source = rows.scan();
+            size = rows.size();
+        } else {
+            List<Person> candidateRows = candidates.map(rows::get).filter(Objects::nonNull).toList();
+            source = candidateRows.stream();
+            size = candidateRows.size();
+        }
+        boolean parallel = parallel(size);
+        Stream<Person> matching = (parallel ? source.parallel() : source).filter(predicate);
+        Comparator<Person> order = PersonField.comparator(filter);
+
+        long wanted = (long) offset + limit;
+        List<Person> ranked;
+        if (wanted * TOP_K_RATIO <= size) {
+            ranked = matching.collect(TopK.collector((int) wanted, order));
+        } else {
+            // a deep page needs most rows ranked anyway, sorting is cheaper than a huge heap
+            Person[] all = matching.toArray(Person[]::new);
+            if (parallel) {
+                Arrays.parallelSort(all, order);
+            } else {
+                Arrays.sort(all, order);
+            }
+            ranked = Arrays.asList(all);
+        }
+        return ranked.stream()
+                .skip(offset).limit(limit)
+                .map(Person::new)
+                .toList();
+    }
+
+    /**
+     * Every row matching {@code filter} in its order, ranked once up front
+     * instead of page by page. The rows are those stored when this is
+     * called, so writes meanwhile neither skip nor repeat any; they are
+     * copied as the stream is consumed.
+     */
+    Stream<Person> stream(CrudFilter filter) {
+        if (filter == null) {
+            filter = new CrudFilter();
+        }
+        Stream<Integer> candidates = candidates(filter);
+        Stream<Person> source = candidates == null
+                ? rows.scan()
+                : candidates.map(rows::get).filter(Objects::nonNull);
+        boolean parallel = candidates == null && parallel(rows.size());
+        Person[] all = (parallel ? source.parallel() : source).filter(PersonField.predicate(filter)).toArray(Person[]::new);
+        Comparator<Person> order = PersonField.comparator(filter);
+        if (parallel) {
+            Arrays.parallelSort(all, order);
+        } else {
+            Arrays.sort(all, order);
+        }
+        return Arrays.stream(all).map(Person::new);
+    }
+
+    int count(CrudFilter filter) {
+        if (filter == null || filter.getConstraints().isEmpty()) {
+            return rows.size();
+        }
+        Stream<Integer> candidates = candidates(filter);
+        Stream<Person> matching = candidates == null
+                ? rows.scan()
+                : candidates.map(rows::get).filter(Objects::nonNull);
+        if (candidates == null && parallel(rows.size())) {
+            matching = matching.parallel();
+        }
+        return (int) matching.filter(PersonField.predicate(filter)).count();
+    }
+
+    boolean existsByPhoneNumber(String normalizedPhone, Integer excludeId) {
+        return normalizedPhone != null && phoneNumbers.exists(normalizedPhone, excludeId);
+    }
+
+    /**
+     * Picks the constraint whose index promises the fewest rows and returns
+     * its candidate ids, or null when no constraint can use an index.
+     */
+    private Stream<Integer> candidates(CrudFilter filter) {
+        PersonIndex best = null;
+        String bestNeedle = null;
+        int bestEstimate = Integer.MAX_VALUE;
+        for (Map.Entry<String, String> constraint : filter.getConstraints().entrySet()) {
+            PersonIndex index = indexes.get(PersonField.of(constraint.getKey()));
+            if (index == null) {
+                continue;
+            }
+            String needle = constraint.getValue().toLowerCase(Locale.ROOT);
+            int estimate = index.estimate(needle);
+            if (estimate >= 0 && estimate < bestEstimate) {
+                best = index;
+                bestNeedle = needle;
+                bestEstimate = estimate;
+            }
+        }
+        return best == null ? null : best.candidates(bestNeedle);
+    }
+
+    private PersonIndex sortIndex(CrudFilter filter) {
+        if (filter.getSortOrders().size() != 1) {
+            return null;
+        }
+        return indexes.get(PersonField.of(filter.getSortOrders().keySet().iterator().next()));
+    }
+
+    /**
+     * The rows of {@code ids} that exist, copied, in the given order.
+     */
+    List<Person> findAll(List<Integer> ids) {
+        List<Person> found = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Person person = rows.get(id);
+            if (person != null) {
+                found.add(new Person(person));
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,101 @@
+package org.vaadin.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Pulls contacts from a forward-only, read-only result set one row at a
+ * time. The query runs on the first {@link #tryAdvance}; the connection is
+ * given back as soon as the rows run out or the stream is closed, whichever
+ * comes first. With MySQL the fetch size only bounds memory when the URL
+ * sets {@code useCursorFetch=true}; without it the driver reads the whole
+ * result before returning the first row.
+ */
+class PersonResultSpliterator extends Spliterators.AbstractSpliterator<Person> implements AutoCloseable {
+
+    /**
+     * Opens connections; lets the provider time acquisition.
+     */
+    interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    private final ConnectionSource connections;
+    private final PersonQueryBuilder sql;
+    private final int fetchSize;
+    private final IntConsumer onDone;
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private PersonRowMapper mapper;
+    private int rows;
+    private boolean done;
+
+    PersonResultSpliterator(ConnectionSource connections, PersonQueryBuilder sql, int fetchSize, IntConsumer onDone) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.connections = connections;
+        this.sql = sql;
+        this.fetchSize = fetchSize;
+        this.onDone = onDone;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Person> action) {
+        if (done) {
+            return false;
+        }
+        try {
+            if (resultSet == null) {
+                open();
+            }
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+            rows++;
+            action.accept(mapper.map(resultSet));
+            return true;
+        } catch (SQLException e) {
+            close();
+            throw new RuntimeException("Reading contacts failed", e);
+        }
+    }
+
+    private void open() throws SQLException {
+        connection = connections.get();
+        statement = connection.prepareStatement(sql.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        sql.bind(statement);
+        resultSet = statement.executeQuery();
+        mapper = PersonRowMapper.of(resultSet);
+    }
+
+    @Override
+    public void close() {
+        if (done) {
+            return;
+        }
+        done = true;
+        // closing the connection alone would leave the pool holding an open cursor
+        closeQuietly(resultSet);
+        closeQuietly(statement);
+        closeQuietly(connection);
+        onDone.accept(rows);
+    }
+
+    private static void closeQuietly(AutoCloseable resource) {
+        if (resource == null) {
+            return;
+        }
+        try {
+            resource.close();
+        } catch (Exception ignored) {
+        }
+    }
+}
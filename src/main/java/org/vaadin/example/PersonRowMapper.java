@@ -0,0 +1,52 @@
+package org.vaadin.example;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps rows of {@code SELECT * FROM Person} to contacts. Column positions are
+ * looked up once per result set rather than by name on every row, which the
+ * drivers otherwise do with a case-insensitive search per call.
+ */
+final class PersonRowMapper {
+
+    private final int id;
+    private final int firstName;
+    private final int lastName;
+    private final int street;
+    private final int city;
+    private final int country;
+    private final int phoneNumber;
+    private final int email;
+    private final int version;
+
+    private PersonRowMapper(ResultSet resultSet) throws SQLException {
+        id = resultSet.findColumn("id");
+        firstName = resultSet.findColumn("name");
+        lastName = resultSet.findColumn("lname");
+        street = resultSet.findColumn("street");
+        city = resultSet.findColumn("city");
+        country = resultSet.findColumn("country");
+        phoneNumber = resultSet.findColumn("phoneNumber");
+        email = resultSet.findColumn("email");
+        version = resultSet.findColumn("version");
+    }
+
+    static PersonRowMapper of(ResultSet resultSet) throws SQLException {
+        return new PersonRowMapper(resultSet);
+    }
+
+    Person map(ResultSet resultSet) throws SQLException {
+        Person person = new Person();
+        person.setId(resultSet.getInt(id));
+        person.setFirstName(resultSet.getString(firstName));
+        person.setLastName(resultSet.getString(lastName));
+        person.setStreet(resultSet.getString(street));
+        person.setCity(resultSet.getString(city));
+        person.setCountry(resultSet.getString(country));
+        person.setPhoneNumber(resultSet.getString(phoneNumber));
+        person.setEmail(resultSet.getString(email));
+        person.setVersion(resultSet.getInt(version));
+        return person;
+    }
+}
@@ -0,0 +1,148 @@
+package org.vaadin.example;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary copy of every contact, so recovery replays only the
+ * operation log written after it.
+ * <p>
+ * After a header naming the first log segment not covered, the file is a
+ * run of independent blocks of up to {@value #BLOCK_ROWS} contacts, each
+ * {@code [rows][length][crc32][payload]}, closed by an empty block and the
+ * total row count. Blocks are checksummed separately so loading can decode
+ * them in parallel. Snapshots are written to a temporary file and moved
+ * into place, so a file with this name is always complete.
+ */
+final class PersonSnapshot {
+
+    private static final int MAGIC = 0x5042534E; // "PBSN"
+    private static final int FORMAT = 1;
+    private static final int HEADER = 16;
+    private static final int BLOCK_ROWS = 16384;
+
+    private PersonSnapshot() {
+    }
+
+    private record Block(long position, int rows, int length, int crc) {
+    }
+
+    /**
+     * Writes {@code people} to {@code file}. The iterator may be weakly
+     * consistent: the log from {@code segment} on is replayed over the
+     * snapshot and repairs whatever changed while it was written.
+     */
+    static long write(Path file, long segment, Iterator<Person> people) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        long total = 0;
+        try (OutputStream stream = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(segment);
+            ByteArrayOutputStream block = new ByteArrayOutputStream(1 << 20);
+            CRC32 checksum = new CRC32();
+            DataOutputStream rows = new DataOutputStream(new CheckedOutputStream(block, checksum));
+            int count = 0;
+            while (people.hasNext()) {
+                PersonCodec.write(rows, people.next());
+                total++;
+                if (++count == BLOCK_ROWS || !people.hasNext()) {
+                    out.writeInt(count);
+                    out.writeInt(block.size());
+                    out.writeInt((int) checksum.getValue());
+                    block.writeTo(out);
+                    block.reset();
+                    checksum.reset();
+                    count = 0;
+                }
+            }
+            out.writeInt(0);
+            out.writeLong(total);
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return total;
+    }
+
+    /**
+     * Puts every contact of {@code file} into {@code database}, decoding
+     * blocks in parallel, and returns the first log segment to replay.
+     */
+    static long load(Path file, ConcurrentMap<Integer, Person> database) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, 0, HEADER);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT) {
+                throw new IOException("Not a contact snapshot: " + file);
+            }
+            long segment = header.getLong();
+
+            List<Block> blocks = new ArrayList<>();
+            long position = HEADER;
+            long total = 0;
+            while (true) {
+                ByteBuffer blockHeader = readFully(channel, position, 4);
+                int rows = blockHeader.getInt();
+                if (rows == 0) {
+                    break;
+                }
+                blockHeader = readFully(channel, position + 4, 8);
+                Block block = new Block(position + 12, rows, blockHeader.getInt(), blockHeader.getInt());
+                blocks.add(block);
+                total += rows;
+                position = block.position() + block.length();
+            }
+            if (readFully(channel, position + 4, 8).getLong() != total) {
+                throw new IOException("Contact snapshot " + file + " is incomplete");
+            }
+
+            blocks.parallelStream().forEach(block -> {
+                try {
+                    ByteBuffer payload = readFully(channel, block.position(), block.length());
+                    CRC32 checksum = new CRC32();
+                    checksum.update(payload.array());
+                    if ((int) checksum.getValue() != block.crc()) {
+                        throw new IOException("Contact snapshot " + file + " is corrupt at " + block.position());
+                    }
+                    for (int i = 0; i < block.rows(); i++) {
+                        Person person = PersonCodec.read(payload);
+                        database.put(person.getId(), person);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return segment;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Contact snapshot ends early");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,104 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Where contacts live. The UI only talks to this interface (through
+ * {@link PersonDataProvider}), so a backend can be swapped by configuration.
+ * Implementations are found with {@link java.util.ServiceLoader} through
+ * {@link PersonStoreProvider}.
+ * <p>
+ * Filters and sort orders use the {@link CrudFilter} property names of
+ * {@link Person}. Backends without a query language of their own can hand
+ * {@link #page} and {@link #count} to {@link PersonQueryEngine}.
+ */
+public interface PersonStore {
+
+    /**
+     * What a backend does well, so callers and benchmarks can tell them apart.
+     */
+    enum Capability {
+        /** Filtering and sorting run inside the backend, e.g. as SQL. */
+        NATIVE_QUERY,
+        /** Contacts survive a restart. */
+        DURABLE,
+        /** {@link #stream} reads one cursor instead of paging. */
+        STREAMING,
+        /** {@link #persistAll} writes a batch in one round trip. */
+        BATCH_WRITES
+    }
+
+    Optional<Person> find(int id);
+
+    /**
+     * The contacts with the given ids in the given order; ids that no
+     * longer exist are skipped.
+     */
+    List<Person> findAllById(List<Integer> ids);
+
+    /**
+     * Contacts matching {@code filter} (null for all) in its sort order,
+     * ties broken by id.
+     */
+    List<Person> page(CrudFilter filter, int offset, int limit);
+
+    int count(CrudFilter filter);
+
+    /**
+     * Every contact matching {@code filter}; close the stream when done.
+     * By default read page by page.
+     */
+    default Stream<Person> stream(CrudFilter filter) {
+        int pageSize = 1000;
+        return Stream.iterate(0, offset -> offset + pageSize)
+                .map(offset -> page(filter, offset, pageSize))
+                .takeWhile(page -> !page.isEmpty())
+                .flatMap(List::stream);
+    }
+
+    /**
+     * Inserts {@code item} when it has no id, otherwise updates it. Assigns
+     * the id and new version to {@code item}. An item carrying a version
+     * that is no longer current fails with {@link OptimisticLockException};
+     * a backend failure, such as a duplicate phone number in the database,
+     * is thrown as well and the item counts as not saved.
+     */
+    void persist(Person item);
+
+    void delete(Person item);
+
+    default void persistAll(List<Person> items) {
+        items.forEach(this::persist);
+    }
+
+    default void deleteAll(List<Person> items) {
+        new ArrayList<>(items).forEach(this::delete);
+    }
+
+    /**
+     * Whether a contact other than {@code excludeId} already uses the phone
+     * number; {@code normalizedPhone} must come from {@link PhoneNumbers#normalize}.
+     */
+    boolean existsByPhoneNumber(String normalizedPhone, Integer excludeId);
+
+    /**
+     * Committed inserts, updates and deletes.
+     */
+    PersonChangeBus getChangeBus();
+
+    Set<Capability> capabilities();
+
+    /**
+     * Whether filtering on {@code property} can use an index rather than a
+     * scan.
+     */
+    default boolean isIndexed(String property) {
+        return false;
+    }
+}
@@ -0,0 +1,19 @@
+package org.vaadin.example;
+
+import org.vaadin.example.utility.AppConfig;
+
+/**
+ * Service provider for a {@link PersonStore} backend, registered in
+ * {@code META-INF/services/org.vaadin.example.PersonStoreProvider}. The
+ * {@code dbType} setting of {@code application.yaml} picks one by
+ * {@link #name()}.
+ */
+public interface PersonStoreProvider {
+
+    /**
+     * The {@code dbType} this backend answers to, compared ignoring case.
+     */
+    String name();
+
+    PersonDataProvider create(AppConfig config);
+}
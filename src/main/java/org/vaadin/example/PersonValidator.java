@@ -0,0 +1,64 @@
+package org.vaadin.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Field rules shared by the editor in {@link MainView} and the CSV import.
+ */
+public final class PersonValidator {
+
+    private static final Pattern PHONE_NUMBER = Pattern.compile("\\d{11}");
+    private static final Pattern EMAIL = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+
+    private PersonValidator() {
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && name.length() >= 3;
+    }
+
+    public static boolean isValidPhoneNumber(String phoneNumber) {
+        return phoneNumber != null && PHONE_NUMBER.matcher(phoneNumber).matches();
+    }
+
+    public static boolean isValidEmail(String email) {
+        return email != null && EMAIL.matcher(email).matches();
+    }
+
+    /**
+     * All rule violations for {@code person}; empty when it is valid.
+     * Uniqueness of the phone number needs the data provider and is checked
+     * by the caller.
+     */
+    public static List<String> validate(Person person) {
+        List<String> errors = new ArrayList<>();
+        if (!isValidName(person.getFirstName())) {
+            errors.add("First name must be at least 3 characters long");
+        }
+        if (!isValidName(person.getLastName())) {
+            errors.add("Last name must be at least 3 characters long");
+        }
+        if (isBlank(person.getStreet())) {
+            errors.add("Street is required");
+        }
+        if (isBlank(person.getCity())) {
+            errors.add("City is required");
+        }
+        if (isBlank(person.getCountry())) {
+            errors.add("Country is required");
+        }
+        if (!isValidPhoneNumber(person.getPhoneNumber())) {
+            errors.add("Phone number must be 11 digits");
+        }
+        if (!isValidEmail(person.getEmail())) {
+            errors.add("Please enter a valid email address");
+        }
+        return errors;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,52 @@
+package org.vaadin.example;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash index from normalized phone number to the ids using it, for O(1)
+ * uniqueness checks. Writers are serialized, lookups never block.
+ */
+class PhoneNumberIndex {
+
+    private final Map<String, Set<Integer>> idsByPhone = new ConcurrentHashMap<>();
+    private final Map<Integer, String> phoneById = new ConcurrentHashMap<>();
+
+    synchronized void update(Person person) {
+        String phone = PhoneNumbers.normalize(person.getPhoneNumber());
+        String previous = phoneById.get(person.getId());
+        if (Objects.equals(previous, phone)) {
+            return;
+        }
+        remove(person.getId());
+        if (phone != null) {
+            idsByPhone.computeIfAbsent(phone, key -> ConcurrentHashMap.newKeySet()).add(person.getId());
+            phoneById.put(person.getId(), phone);
+        }
+    }
+
+    synchronized void remove(Integer id) {
+        String previous = phoneById.remove(id);
+        if (previous != null) {
+            idsByPhone.computeIfPresent(previous, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    boolean exists(String normalizedPhone, Integer excludeId) {
+        Set<Integer> ids = idsByPhone.get(normalizedPhone);
+        if (ids == null) {
+            return false;
+        }
+        for (Integer id : ids) {
+            if (!id.equals(excludeId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
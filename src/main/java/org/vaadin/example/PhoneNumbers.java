@@ -0,0 +1,37 @@
+package org.vaadin.example;
+
+public final class PhoneNumbers {
+
+    private PhoneNumbers() {
+    }
+
+    /**
+     * Canonical form used for uniqueness checks: digits only, with a leading
+     * {@code +} kept for international numbers ({@code 00} is read as
+     * {@code +}). Spaces, dashes, dots and brackets are dropped. Returns null
+     * for a null or digit-less input.
+     */
+    public static String normalize(String phoneNumber) {
+        if (phoneNumber == null) {
+            return null;
+        }
+        StringBuilder normalized = new StringBuilder(phoneNumber.length());
+        boolean international = false;
+        for (int i = 0; i < phoneNumber.length(); i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                normalized.append(c);
+            } else if (c == '+' && normalized.length() == 0) {
+                international = true;
+            }
+        }
+        if (!international && normalized.length() > 2 && normalized.charAt(0) == '0' && normalized.charAt(1) == '0') {
+            normalized.delete(0, 2);
+            international = true;
+        }
+        if (normalized.length() == 0) {
+            return null;
+        }
+        return international ? "+" + normalized : normalized.toString();
+    }
+}
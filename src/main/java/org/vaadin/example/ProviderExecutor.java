@@ -0,0 +1,181 @@
+package org.vaadin.example;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking backend calls off the caller's thread, at most
+ * {@code maxConcurrent} at a time, so a slow query holds neither the
+ * Vaadin session lock nor a servlet thread and a busy backend is not
+ * flooded.
+ * <p>
+ * On a JVM with virtual threads every call gets one and waits for a free
+ * slot there, so thousands of waiting calls cost no platform threads. Older
+ * JVMs get a pool of {@code maxConcurrent} daemon threads with a queue in
+ * front. Either way {@code io_queued} and {@code io_running} are exported as
+ * gauges and the wait for a slot as the {@code queued} latency.
+ * <p>
+ * Cancelling a returned future drops the call if it has not started and
+ * interrupts it otherwise.
+ */
+final class ProviderExecutor implements AutoCloseable {
+
+    // Executors.newVirtualThreadPerTaskExecutor(), only there from Java 21 on
+    private static final MethodHandle VIRTUAL_THREADS = findVirtualThreads();
+
+    private final ExecutorService threads;
+    private final Semaphore slots;
+    private final ProviderMetrics metrics;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+
+    ProviderExecutor(String name, int maxConcurrent, ProviderMetrics metrics) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        }
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.metrics = metrics;
+        this.threads = VIRTUAL_THREADS != null ? newVirtualThreadExecutor() : newPlatformPool(name, maxConcurrent);
+        metrics.gauge("io_queued", queued::get);
+        metrics.gauge("io_running", running::get);
+        metrics.gauge("io_slots", () -> maxConcurrent);
+    }
+
+    static boolean hasVirtualThreads() {
+        return VIRTUAL_THREADS != null;
+    }
+
+    <T> CompletableFuture<T> submit(Callable<T> work) {
+        Call<T> call = new Call<>(work, metrics.start());
+        queued.incrementAndGet();
+        try {
+            call.task = threads.submit(call);
+        } catch (RejectedExecutionException e) {
+            call.leaveQueue();
+            call.completeExceptionally(e);
+        }
+        return call;
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    int running() {
+        return running.get();
+    }
+
+    /**
+     * Lets queued calls finish but takes no new ones.
+     */
+    @Override
+    public void close() {
+        threads.shutdown();
+    }
+
+    private final class Call<T> extends CompletableFuture<T> implements Runnable {
+        private final Callable<T> work;
+        private final long submitted;
+        private final AtomicBoolean dequeued = new AtomicBoolean();
+        private volatile Future<?> task;
+
+        private Call(Callable<T> work, long submitted) {
+            this.work = work;
+            this.submitted = submitted;
+        }
+
+        @Override
+        public void run() {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                // cancelled while waiting for a slot
+                leaveQueue();
+                return;
+            }
+            try {
+                if (!leaveQueue()) {
+                    return;
+                }
+                metrics.stop(ProviderMetrics.Operation.QUEUED, submitted);
+                running.incrementAndGet();
+                try {
+                    complete(work.call());
+                } finally {
+                    running.decrementAndGet();
+                }
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            } finally {
+                slots.release();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                leaveQueue();
+                Future<?> started = task;
+                if (started != null) {
+                    started.cancel(true);
+                }
+            }
+            return cancelled;
+        }
+
+        /**
+         * Takes the call out of the queue count once, whether it starts or
+         * is cancelled first; false if it already left.
+         */
+        private boolean leaveQueue() {
+            if (dequeued.compareAndSet(false, true)) {
+                queued.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static MethodHandle findVirtualThreads() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) VIRTUAL_THREADS.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not create a virtual thread executor", e);
+        }
+    }
+
+    private static ExecutorService newPlatformPool(String name, int size) {
+        AtomicInteger number = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-io-" + number.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -0,0 +1,284 @@
+package org.vaadin.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.example.utility.MetricsConfig;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Timings and counters for one data provider. Callers bracket an operation
+ * with {@link #start()} and {@link #stop}; while disabled {@code start()}
+ * returns 0 and {@code stop} returns at once, so the cost is one volatile
+ * read. Latencies are kept in microseconds.
+ * <p>
+ * Queries slower than {@code slowQueryMillis} are logged with their SQL and
+ * parameters and the last {@value #SLOW_QUERIES_KEPT} are kept for JMX.
+ * Every instance is listed in {@link #all()} for the {@code /metrics}
+ * endpoint and registered as an MXBean.
+ */
+public class ProviderMetrics implements ProviderMetricsMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProviderMetrics.class);
+    private static final int SLOW_QUERIES_KEPT = 50;
+    private static final Map<String, ProviderMetrics> ALL = new ConcurrentHashMap<>();
+
+    public enum Operation {
+        FETCH, SIZE, PERSIST, DELETE, FIND_BY_ID, ACQUIRE_CONNECTION, QUEUED
+    }
+
+    private final String name;
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final LongAdder rowsFetched = new LongAdder();
+    private final LongAdder rowsReturned = new LongAdder();
+    private final ArrayDeque<String> slowQueries = new ArrayDeque<>();
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+    private volatile boolean enabled = true;
+    private volatile long slowQueryMillis = 200;
+
+    private ProviderMetrics(String name) {
+        this.name = name;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Creates the metrics for provider {@code name}, replacing an earlier
+     * instance of the same name.
+     */
+    static ProviderMetrics create(String name) {
+        ProviderMetrics metrics = new ProviderMetrics(name);
+        ALL.put(name, metrics);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("org.vaadin.example:type=ProviderMetrics,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(metrics, objectName);
+        } catch (JMException e) {
+            LOGGER.warn("Could not register metrics for {} with JMX: {}", name, e.getMessage());
+        }
+        return metrics;
+    }
+
+    public static Collection<ProviderMetrics> all() {
+        return ALL.values();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void configure(MetricsConfig config) {
+        enabled = config.isEnabled();
+        slowQueryMillis = config.getSlowQueryMillis();
+    }
+
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void stop(Operation operation, long start) {
+        if (start != 0) {
+            latencies.get(operation).record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    /**
+     * Logs the statement if it ran for {@code slowQueryMillis} or longer
+     * since {@code start}.
+     */
+    void checkSlow(long start, PersonQueryBuilder sql) {
+        checkSlow(start, sql.getSql(), sql.getParameters());
+    }
+
+    void checkSlow(long start, String sql, List<?> parameters) {
+        if (start == 0) {
+            return;
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        if (millis >= slowQueryMillis) {
+            String entry = Instant.now() + " " + millis + " ms: " + sql + " " + parameters;
+            LOGGER.warn("Slow query: {}", entry);
+            synchronized (slowQueries) {
+                if (slowQueries.size() == SLOW_QUERIES_KEPT) {
+                    slowQueries.removeFirst();
+                }
+                slowQueries.addLast(entry);
+            }
+        }
+    }
+
+    /**
+     * Counts a failure; counted even while disabled, errors are rare.
+     */
+    void error(Operation operation) {
+        errors.get(operation).increment();
+    }
+
+    void rowsFetched(int rows) {
+        if (enabled) {
+            rowsFetched.add(rows);
+        }
+    }
+
+    void rowsReturned(int rows) {
+        if (enabled) {
+            rowsReturned.add(rows);
+        }
+    }
+
+    /**
+     * A value read when metrics are exported, e.g. pool occupancy.
+     */
+    void gauge(String gaugeName, LongSupplier value) {
+        synchronized (gauges) {
+            gauges.put(gaugeName, value);
+        }
+    }
+
+    Map<String, Long> gauges() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        synchronized (gauges) {
+            gauges.forEach((gaugeName, value) -> values.put(gaugeName, value.getAsLong()));
+        }
+        return values;
+    }
+
+    LatencyHistogram latency(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    long errors(Operation operation) {
+        return errors.get(operation).sum();
+    }
+
+    // MXBean
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getSlowQueryMillis() {
+        return slowQueryMillis;
+    }
+
+    @Override
+    public void setSlowQueryMillis(long slowQueryMillis) {
+        this.slowQueryMillis = slowQueryMillis;
+    }
+
+    @Override
+    public List<OperationStats> getOperations() {
+        List<OperationStats> stats = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            stats.add(new OperationStats(operation, latencies.get(operation), errors(operation)));
+        }
+        return stats;
+    }
+
+    @Override
+    public long getRowsFetched() {
+        return rowsFetched.sum();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rowsReturned.sum();
+    }
+
+    @Override
+    public List<String> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    @Override
+    public void reset() {
+        latencies.values().forEach(LatencyHistogram::reset);
+        errors.values().forEach(LongAdder::reset);
+        rowsFetched.reset();
+        rowsReturned.reset();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    /**
+     * Summary of one operation; a plain bean so JMX can show it.
+     */
+    public static class OperationStats {
+        private final String name;
+        private final long count;
+        private final long errors;
+        private final double meanMicros;
+        private final long p50Micros;
+        private final long p99Micros;
+        private final long maxMicros;
+
+        OperationStats(Operation operation, LatencyHistogram histogram, long errors) {
+            this.name = operation.name().toLowerCase(Locale.ROOT);
+            this.count = histogram.count();
+            this.errors = errors;
+            this.meanMicros = histogram.mean();
+            this.p50Micros = histogram.percentile(0.5);
+            this.p99Micros = histogram.percentile(0.99);
+            this.maxMicros = histogram.max();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getMeanMicros() {
+            return meanMicros;
+        }
+
+        public long getP50Micros() {
+            return p50Micros;
+        }
+
+        public long getP99Micros() {
+            return p99Micros;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+    }
+}
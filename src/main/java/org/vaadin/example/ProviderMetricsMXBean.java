@@ -0,0 +1,28 @@
+package org.vaadin.example;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link ProviderMetrics}, registered as
+ * {@code org.vaadin.example:type=ProviderMetrics,name=<provider>}.
+ */
+public interface ProviderMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSlowQueryMillis();
+
+    void setSlowQueryMillis(long slowQueryMillis);
+
+    List<ProviderMetrics.OperationStats> getOperations();
+
+    long getRowsFetched();
+
+    long getRowsReturned();
+
+    List<String> getSlowQueries();
+
+    void reset();
+}
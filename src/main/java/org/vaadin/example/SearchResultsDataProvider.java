@@ -0,0 +1,63 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.AbstractBackEndDataProvider;
+import com.vaadin.flow.data.provider.Query;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Shows a ranked search result in the Crud grid. Rows stay in rank order
+ * unless the user sorts a column; the grid's column filters narrow the
+ * result further.
+ */
+class SearchResultsDataProvider extends AbstractBackEndDataProvider<Person, CrudFilter> {
+
+    private volatile List<Person> ranked;
+    private volatile Set<Integer> ids;
+
+    SearchResultsDataProvider(List<Person> ranked) {
+        replace(ranked);
+    }
+
+    /**
+     * Swaps in a fresh result of the same search. The grid re-fetches but
+     * keeps its scroll position and selection, unlike a new provider.
+     */
+    void replace(List<Person> ranked) {
+        this.ranked = ranked;
+        this.ids = ranked.stream().map(Person::getId).collect(Collectors.toUnmodifiableSet());
+        refreshAll();
+    }
+
+    boolean shows(Integer id) {
+        return id != null && ids.contains(id);
+    }
+
+    @Override
+    protected Stream<Person> fetchFromBackEnd(Query<Person, CrudFilter> query) {
+        return matching(query.getFilter().orElse(null))
+                .skip(query.getOffset()).limit(query.getLimit());
+    }
+
+    @Override
+    protected int sizeInBackEnd(Query<Person, CrudFilter> query) {
+        return (int) matching(query.getFilter().orElse(null)).count();
+    }
+
+    private Stream<Person> matching(CrudFilter filter) {
+        if (filter == null) {
+            return ranked.stream();
+        }
+        Stream<Person> rows = ranked.stream().filter(PersonField.predicate(filter));
+        return filter.getSortOrders().isEmpty() ? rows : rows.sorted(PersonField.comparator(filter));
+    }
+
+    @Override
+    public Object getId(Person item) {
+        return item.getId();
+    }
+}
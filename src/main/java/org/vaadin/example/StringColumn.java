@@ -0,0 +1,54 @@
+package org.vaadin.example;
+
+import java.util.Comparator;
+import java.util.function.IntPredicate;
+
+/**
+ * One text property of {@link ColumnarPersonStore}, addressed by row slot.
+ * Callers synchronize; a column is never read while it is written.
+ */
+abstract class StringColumn {
+
+    abstract String get(int slot);
+
+    abstract void set(int slot, String value);
+
+    abstract void clear(int slot);
+
+    /**
+     * Grows per-slot storage to at least {@code capacity} slots.
+     */
+    abstract void ensureCapacity(int capacity);
+
+    /**
+     * Slots whose value contains {@code lowerCaseNeedle} ignoring case, with
+     * the same result as {@link PersonField#containsIgnoreCase}.
+     */
+    abstract IntPredicate contains(String lowerCaseNeedle);
+
+    /**
+     * Orders slots by value, nulls first, like {@link String#compareTo}.
+     * {@code slots} are the rows about to be sorted, so implementations can
+     * prepare keys for just those.
+     */
+    abstract Comparator<Integer> order(int[] slots, int count);
+
+    /**
+     * Approximate bytes held, for {@link ColumnarPersonStore#footprint()}.
+     */
+    abstract long footprint();
+
+    static long arrayBytes(int length, int elementSize) {
+        return align(16 + (long) length * elementSize);
+    }
+
+    static long stringBytes(String value) {
+        // String object plus its Latin-1 or UTF-16 byte[]
+        boolean latin1 = value.chars().allMatch(c -> c < 256);
+        return 24 + arrayBytes(latin1 ? value.length() : value.length() * 2, 1);
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
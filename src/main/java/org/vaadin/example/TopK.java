@@ -0,0 +1,60 @@
+package org.vaadin.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collector;
+
+/**
+ * Collects the first {@code k} elements of a stream in a given order
+ * without sorting the rest: each thread of a parallel stream keeps a
+ * bounded max-heap of its best {@code k}, and heaps are merged pairwise.
+ * That is O(n log k) instead of O(n log n), and a page of 50 rows out of a
+ * million keeps 50 rows per thread alive instead of a million.
+ */
+final class TopK<T> {
+
+    private final int k;
+    private final Comparator<? super T> order;
+    // the worst of the kept elements on top, so it is the one to evict
+    private final PriorityQueue<T> heap;
+
+    private TopK(int k, Comparator<? super T> order) {
+        this.k = k;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.min(k, 1024) + 1, order.reversed());
+    }
+
+    /**
+     * The {@code k} smallest elements by {@code order}, sorted. Equal
+     * elements may come in any order, so {@code order} should be total.
+     */
+    static <T> Collector<T, ?, List<T>> collector(int k, Comparator<? super T> order) {
+        return Collector.of(() -> new TopK<T>(k, order), TopK::add, TopK::merge, TopK::sorted);
+    }
+
+    private void add(T element) {
+        if (heap.size() < k) {
+            heap.add(element);
+        } else if (k > 0 && order.compare(element, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    private TopK<T> merge(TopK<T> other) {
+        if (other.heap.size() > heap.size()) {
+            return other.merge(this);
+        }
+        other.heap.forEach(this::add);
+        return this;
+    }
+
+    private List<T> sorted() {
+        List<T> sorted = new ArrayList<>(heap);
+        sorted.sort(order);
+        return Collections.unmodifiableList(sorted);
+    }
+}
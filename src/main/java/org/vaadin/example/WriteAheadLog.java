@@ -0,0 +1,192 @@
+package org.vaadin.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Redo log of {@link MappedPersonStore}. Every write is logged as the full
+ * after-image of the slot it changes, so replaying a record twice is
+ * harmless and recovery just applies the log in order.
+ * <p>
+ * Records are {@code [length][crc32][payload]}. Writes are collected with
+ * {@link #put}/{@link #delete} and reach the file, fsynced when
+ * {@code sync} is set, on {@link #commit()}. Replay stops at the first
+ * torn or corrupt record: that write never committed.
+ */
+class WriteAheadLog implements Closeable {
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    /**
+     * One logged write; {@code person} is null for a delete.
+     */
+    record Entry(int slot, int id, Person person) {
+    }
+
+    private final FileChannel channel;
+    private final boolean sync;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    // set when a failed commit could not be cut back off the file
+    private IOException broken;
+
+    WriteAheadLog(Path file, boolean sync) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.sync = sync;
+    }
+
+    /**
+     * The committed records. The file is cut after the last good one so new
+     * records don't follow a torn tail.
+     */
+    List<Entry> replay() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        int good = 0;
+        while (file.remaining() >= 8) {
+            int length = file.getInt();
+            int crc = file.getInt();
+            if (length <= 0 || length > file.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            file.get(payload);
+            CRC32 checksum = new CRC32();
+            checksum.update(payload);
+            if ((int) checksum.getValue() != crc) {
+                break;
+            }
+            entries.add(decode(ByteBuffer.wrap(payload)));
+            good = file.position();
+        }
+        channel.truncate(good);
+        channel.position(good);
+        return entries;
+    }
+
+    void put(int slot, Person person) {
+        try {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(record);
+            out.writeByte(PUT);
+            out.writeInt(slot);
+            PersonCodec.write(out, person);
+            append(record.toByteArray());
+        } catch (IOException e) {
+            // only writes to memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void delete(int slot, int id) {
+        try {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(record);
+            out.writeByte(DELETE);
+            out.writeInt(slot);
+            out.writeInt(id);
+            append(record.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the records collected since the last commit; once this returns
+     * (and with {@code sync}, once it's on disk) they survive a crash. If
+     * the write or fsync fails, the file is cut back to where the commit
+     * started, so the failed records can't replay and later ones don't
+     * follow a torn tail. If even that fails, the log refuses every further
+     * commit.
+     */
+    void commit() throws IOException {
+        if (broken != null) {
+            pending.reset();
+            throw new IOException("Write-ahead log failed earlier and needs a restart", broken);
+        }
+        if (pending.size() == 0) {
+            return;
+        }
+        ByteBuffer records = ByteBuffer.wrap(pending.toByteArray());
+        pending.reset();
+        long start = channel.position();
+        try {
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            cutBack(start, e);
+            throw e;
+        }
+    }
+
+    private void cutBack(long position, IOException cause) {
+        try {
+            channel.truncate(position);
+            channel.position(position);
+            if (sync) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            broken = cause;
+        }
+    }
+
+    /**
+     * Drops records not committed yet, after a failed write.
+     */
+    void rollback() {
+        pending.reset();
+    }
+
+    /**
+     * Empties the log once the store files hold everything in it.
+     */
+    void truncate() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(byte[] payload) throws IOException {
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        DataOutputStream out = new DataOutputStream(pending);
+        out.writeInt(payload.length);
+        out.writeInt((int) checksum.getValue());
+        out.write(payload);
+    }
+
+    private static Entry decode(ByteBuffer in) {
+        byte type = in.get();
+        int slot = in.getInt();
+        if (type == DELETE) {
+            return new Entry(slot, in.getInt(), null);
+        }
+        Person person = PersonCodec.read(in);
+        return new Entry(slot, person.getId(), person);
+    }
+}
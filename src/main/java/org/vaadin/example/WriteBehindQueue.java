@@ -0,0 +1,247 @@
+package org.vaadin.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.example.utility.WriteBehindConfig;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Buffers writes and hands them to a {@link BatchWriter} from a background
+ * thread, either once {@code batchSize} writes are pending or
+ * {@code maxDelayMillis} after the oldest one arrived. Pending writes to the
+ * same id are coalesced: only the latest operation is written, in the place
+ * of the latest enqueue, and every caller is acknowledged when it lands. A
+ * delete is final, so saving a contact with a pending delete fails at once.
+ * A save carrying a version is never merged into another pending save: that
+ * one bumps the version when it lands, so the version was read before it and
+ * the save fails at once with {@link OptimisticLockException}, as it would
+ * in the database.
+ * Writes to different ids land in the order they were enqueued. Callers
+ * block once {@code queueCapacity} writes are pending.
+ */
+class WriteBehindQueue implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    interface BatchWriter {
+        /**
+         * Writes one batch atomically; throwing fails every write in it.
+         */
+        void write(List<Person> inserts, List<Person> updates, List<Integer> deletes) throws SQLException;
+    }
+
+    private final WriteBehindConfig config;
+    private final BatchWriter writer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Map<Object, Pending> pending = new LinkedHashMap<>();
+    private final Thread thread;
+    private long oldestPendingAt;
+    private volatile boolean closed;
+
+    WriteBehindQueue(WriteBehindConfig config, BatchWriter writer) {
+        this.config = config;
+        this.writer = writer;
+        this.thread = new Thread(this::run, "person-write-behind");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Completes with a copy of the contact as written, with its id and new
+     * version, or with null if a later delete replaced the save.
+     */
+    CompletableFuture<Person> upsert(Person person) {
+        Person snapshot = new Person(person);
+        // inserts have no id yet, so each one gets its own slot
+        Object key = snapshot.getId() != null ? snapshot.getId() : new Object();
+        return enqueue(key, new Pending(snapshot.getId(), snapshot));
+    }
+
+    CompletableFuture<Void> delete(Integer id) {
+        return enqueue(id, new Pending(id, null)).thenApply(ignored -> null);
+    }
+
+    private CompletableFuture<Person> enqueue(Object key, Pending write) {
+        lock.lock();
+        try {
+            while (!closed && pending.size() >= config.getQueueCapacity() && !pending.containsKey(key)) {
+                notFull.awaitUninterruptibly();
+            }
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Write-behind queue is closed"));
+            }
+            Pending previous = pending.get(key);
+            if (previous != null && previous.person == null && write.person != null) {
+                // like saving a row that is already deleted
+                return CompletableFuture.failedFuture(new OptimisticLockException(write.id, write.person.getVersion()));
+            }
+            if (previous != null && previous.person != null && write.person != null) {
+                if (write.person.getVersion() != null) {
+                    return CompletableFuture.failedFuture(new OptimisticLockException(write.id, write.person.getVersion()));
+                }
+                // an unchecked save replaces the state but keeps the pending save's version check
+                write.person.setVersion(previous.person.getVersion());
+            }
+            if (previous != null) {
+                write.acks.addAll(previous.acks);
+                // the latest operation takes the latest place in the order
+                pending.remove(key);
+            }
+            if (pending.isEmpty()) {
+                oldestPendingAt = System.currentTimeMillis();
+            }
+            pending.put(key, write);
+            CompletableFuture<Person> ack = new CompletableFuture<>();
+            write.acks.add(ack);
+            if (pending.size() == 1 || pending.size() >= config.getBatchSize()) {
+                notEmpty.signal();
+            }
+            return ack;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<Pending> batch = nextBatch();
+            if (batch == null) {
+                return;
+            }
+            flush(batch);
+        }
+    }
+
+    private List<Pending> nextBatch() {
+        lock.lock();
+        try {
+            while (!closed && pending.isEmpty()) {
+                notEmpty.awaitUninterruptibly();
+            }
+            while (!closed && pending.size() < config.getBatchSize()) {
+                long remaining = oldestPendingAt + config.getMaxDelayMillis() - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    notEmpty.await(remaining, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            if (pending.isEmpty()) {
+                return null;
+            }
+            List<Pending> batch = new ArrayList<>(Math.min(pending.size(), config.getBatchSize()));
+            Iterator<Pending> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < config.getBatchSize()) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            oldestPendingAt = System.currentTimeMillis();
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A batch is written as inserts, then updates, then deletes, so it is cut
+     * into runs that are already in that order to keep the enqueue order.
+     */
+    private void flush(List<Pending> batch) {
+        int from = 0;
+        for (int i = 1; i <= batch.size(); i++) {
+            if (i == batch.size() || kind(batch.get(i)) < kind(batch.get(i - 1))) {
+                write(batch.subList(from, i));
+                from = i;
+            }
+        }
+    }
+
+    private static int kind(Pending write) {
+        if (write.person == null) {
+            return 2;
+        }
+        return write.person.getId() == null ? 0 : 1;
+    }
+
+    private void write(List<Pending> batch) {
+        List<Person> inserts = new ArrayList<>();
+        List<Person> updates = new ArrayList<>();
+        List<Integer> deletes = new ArrayList<>();
+        for (Pending write : batch) {
+            if (write.person == null) {
+                deletes.add(write.id);
+            } else if (write.person.getId() == null) {
+                inserts.add(write.person);
+            } else {
+                updates.add(write.person);
+            }
+        }
+        try {
+            writer.write(inserts, updates, deletes);
+            batch.forEach(write -> write.acks.forEach(ack -> ack.complete(write.person == null ? null : new Person(write.person))));
+        } catch (SQLException | RuntimeException e) {
+            if (batch.size() > 1) {
+                // retry one by one so a single conflict only fails its own writers
+                batch.forEach(write -> write(List.of(write)));
+                return;
+            }
+            LOGGER.error("Write-behind batch of {} writes failed", batch.size(), e);
+            batch.forEach(write -> write.acks.forEach(ack -> ack.completeExceptionally(e)));
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting writes and flushes what is pending.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        thread.join();
+    }
+
+    /**
+     * The latest state for one key; a null person means delete.
+     */
+    private static class Pending {
+        final Integer id;
+        final Person person;
+        final List<CompletableFuture<Person>> acks = new ArrayList<>(1);
+
+        Pending(Integer id, Person person) {
+            this.id = id;
+            this.person = person;
+        }
+    }
+}
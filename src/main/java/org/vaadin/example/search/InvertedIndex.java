@@ -0,0 +1,336 @@
+package org.vaadin.example.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory inverted index with BM25 ranking.
+ * <p>
+ * The term dictionary is sorted so a prefix is a sub-map. Typo tolerance
+ * uses a deletion dictionary: every term of three or more characters is
+ * also filed under each string obtained by deleting one of its characters.
+ * A query word and its own one-character deletions then find every term
+ * within edit distance 1 with a handful of lookups, which are confirmed by
+ * {@link #withinOneEdit}.
+ * <p>
+ * Like {@code PersonIndex}, writers are serialized and readers never block,
+ * so a search running during a write may see it half applied.
+ */
+class InvertedIndex {
+
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    static final double PREFIX_WEIGHT = 0.75;
+    static final double FUZZY_WEIGHT = 0.5;
+    static final int MAX_EXPANSIONS = 64;
+
+    /**
+     * One indexed contact: its weighted term frequencies and the version
+     * they were taken from, or -1 when the version is unknown.
+     */
+    record Doc(int version, Map<String, Integer> terms, int length) {
+        static Doc of(int version, Map<String, Integer> terms) {
+            return new Doc(version, Map.copyOf(terms), terms.values().stream().mapToInt(Integer::intValue).sum());
+        }
+    }
+
+    private final ConcurrentSkipListMap<String, Map<Integer, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<String>> deletions = new ConcurrentHashMap<>();
+    private final Map<Integer, Doc> docs = new ConcurrentHashMap<>();
+    private final AtomicLong totalLength = new AtomicLong();
+
+    /**
+     * Indexes {@code doc} for {@code id}, replacing what was there, unless
+     * the indexed version is newer. Returns whether anything changed.
+     */
+    synchronized boolean put(int id, Doc doc) {
+        Doc previous = docs.get(id);
+        if (previous != null) {
+            if (doc.version() >= 0 && previous.version() > doc.version()) {
+                return false;
+            }
+            unindex(id, previous);
+        }
+        docs.put(id, doc);
+        totalLength.addAndGet(doc.length());
+        doc.terms().forEach((term, frequency) -> {
+            postings.computeIfAbsent(term, key -> {
+                fileDeletions(key);
+                return new ConcurrentHashMap<>();
+            }).put(id, frequency);
+        });
+        return true;
+    }
+
+    synchronized boolean remove(int id) {
+        Doc previous = docs.remove(id);
+        if (previous == null) {
+            return false;
+        }
+        unindex(id, previous);
+        return true;
+    }
+
+    private void unindex(int id, Doc doc) {
+        totalLength.addAndGet(-doc.length());
+        doc.terms().keySet().forEach(term -> postings.computeIfPresent(term, (key, ids) -> {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                unfileDeletions(key);
+                return null;
+            }
+            return ids;
+        }));
+    }
+
+    private void fileDeletions(String term) {
+        if (isFuzzyCandidate(term)) {
+            for (String deletion : deletionsOf(term)) {
+                deletions.computeIfAbsent(deletion, key -> ConcurrentHashMap.newKeySet()).add(term);
+            }
+        }
+    }
+
+    private void unfileDeletions(String term) {
+        if (isFuzzyCandidate(term)) {
+            for (String deletion : deletionsOf(term)) {
+                deletions.computeIfPresent(deletion, (key, terms) -> {
+                    terms.remove(term);
+                    return terms.isEmpty() ? null : terms;
+                });
+            }
+        }
+    }
+
+    private static boolean isFuzzyCandidate(String term) {
+        return term.length() >= 3 && term.charAt(0) != PersonAnalyzer.PHONE_PREFIX;
+    }
+
+    int size() {
+        return docs.size();
+    }
+
+    int terms() {
+        return postings.size();
+    }
+
+    Doc doc(int id) {
+        return docs.get(id);
+    }
+
+    /**
+     * A point-in-time copy of the indexed documents for writing a segment.
+     * Writers are held off only while the map is copied.
+     */
+    synchronized Map<Integer, Doc> snapshot() {
+        return new HashMap<>(docs);
+    }
+
+    synchronized void clear() {
+        postings.clear();
+        deletions.clear();
+        docs.clear();
+        totalLength.set(0);
+    }
+
+    /**
+     * Ranks contacts matching every word of the query. Each word matches
+     * exactly, as a prefix of a term, or within one typo, in decreasing
+     * weight; digit runs also match phone numbers containing them.
+     */
+    List<SearchHit> search(List<String> words, int limit) {
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Map<Integer, Double> scores = null;
+        for (String word : words) {
+            Map<Integer, Double> wordScores = score(word);
+            if (scores == null) {
+                scores = wordScores;
+            } else {
+                Map<Integer, Double> previous = scores;
+                scores = new HashMap<>();
+                for (Map.Entry<Integer, Double> entry : wordScores.entrySet()) {
+                    Double score = previous.get(entry.getKey());
+                    if (score != null) {
+                        scores.put(entry.getKey(), score + entry.getValue());
+                    }
+                }
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+        return top(scores, limit);
+    }
+
+    private Map<Integer, Double> score(String word) {
+        Map<Integer, Double> scores = new HashMap<>();
+        Map<Integer, Integer> exact = postings.get(word);
+        if (exact != null) {
+            accumulate(scores, exact, 1.0);
+        }
+        if (word.length() >= 2) {
+            int expansions = 0;
+            for (Map.Entry<String, Map<Integer, Integer>> entry
+                    : postings.subMap(word, false, word + Character.MAX_VALUE, false).entrySet()) {
+                if (++expansions > MAX_EXPANSIONS) {
+                    break;
+                }
+                accumulate(scores, entry.getValue(), PREFIX_WEIGHT);
+            }
+        }
+        if (word.length() >= 4) {
+            for (String term : fuzzyTerms(word)) {
+                Map<Integer, Integer> ids = postings.get(term);
+                if (ids != null) {
+                    accumulate(scores, ids, FUZZY_WEIGHT);
+                }
+            }
+        }
+        if (word.length() >= PersonAnalyzer.GRAM && PersonAnalyzer.isDigits(word)) {
+            scorePhone(word, scores);
+        }
+        return scores;
+    }
+
+    /**
+     * Contacts whose phone number holds every trigram of {@code digits},
+     * scored by the average of the trigram scores.
+     */
+    private void scorePhone(String digits, Map<Integer, Double> scores) {
+        List<String> grams = PersonAnalyzer.phoneGrams(digits);
+        List<Map<Integer, Integer>> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Map<Integer, Integer> ids = postings.get(gram);
+            if (ids == null) {
+                return;
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Map::size));
+        double[] idfs = lists.stream().mapToDouble(ids -> idf(ids.size())).toArray();
+        for (Map.Entry<Integer, Integer> entry : lists.get(0).entrySet()) {
+            Integer id = entry.getKey();
+            Doc doc = docs.get(id);
+            if (doc == null) {
+                continue;
+            }
+            double score = 0;
+            boolean all = true;
+            for (int i = 0; i < lists.size() && all; i++) {
+                Integer frequency = lists.get(i).get(id);
+                all = frequency != null;
+                if (all) {
+                    score += idfs[i] * saturate(frequency, doc.length());
+                }
+            }
+            if (all) {
+                scores.merge(id, score / lists.size(), Math::max);
+            }
+        }
+    }
+
+    private void accumulate(Map<Integer, Double> scores, Map<Integer, Integer> ids, double weight) {
+        double idf = idf(ids.size());
+        for (Map.Entry<Integer, Integer> entry : ids.entrySet()) {
+            Doc doc = docs.get(entry.getKey());
+            if (doc != null) {
+                double score = weight * idf * saturate(entry.getValue(), doc.length());
+                scores.merge(entry.getKey(), score, Math::max);
+            }
+        }
+    }
+
+    private double idf(int documentFrequency) {
+        int n = docs.size();
+        return Math.log(1 + (n - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private double saturate(int frequency, int length) {
+        int n = Math.max(1, docs.size());
+        double averageLength = Math.max(1, (double) totalLength.get() / n);
+        return frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+    }
+
+    private static List<SearchHit> top(Map<Integer, Double> scores, int limit) {
+        Comparator<SearchHit> worstFirst = Comparator.comparingDouble(SearchHit::score)
+                .thenComparing(SearchHit::id, Comparator.reverseOrder());
+        PriorityQueue<SearchHit> heap = new PriorityQueue<>(Math.min(limit, scores.size()) + 1, worstFirst);
+        scores.forEach((id, score) -> {
+            SearchHit hit = new SearchHit(id, score);
+            if (heap.size() < limit) {
+                heap.add(hit);
+            } else if (worstFirst.compare(hit, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(hit);
+            }
+        });
+        List<SearchHit> hits = new ArrayList<>(heap);
+        hits.sort(worstFirst.reversed());
+        return hits;
+    }
+
+    /**
+     * Indexed terms other than {@code word} itself within one insertion,
+     * deletion, substitution or adjacent transposition of it.
+     */
+    Set<String> fuzzyTerms(String word) {
+        Set<String> candidates = new HashSet<>(deletions.getOrDefault(word, Set.of()));
+        for (String deletion : deletionsOf(word)) {
+            if (postings.containsKey(deletion)) {
+                candidates.add(deletion);
+            }
+            candidates.addAll(deletions.getOrDefault(deletion, Set.of()));
+        }
+        candidates.remove(word);
+        candidates.removeIf(term -> !withinOneEdit(word, term));
+        return candidates;
+    }
+
+    private static Set<String> deletionsOf(String term) {
+        Set<String> result = new HashSet<>(term.length());
+        for (int i = 0; i < term.length(); i++) {
+            result.add(term.substring(0, i) + term.substring(i + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Optimal string alignment distance of at most one.
+     */
+    static boolean withinOneEdit(String a, String b) {
+        int la = a.length();
+        int lb = b.length();
+        if (Math.abs(la - lb) > 1) {
+            return false;
+        }
+        int i = 0;
+        while (i < la && i < lb && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        if (la == lb) {
+            if (i == la) {
+                return true;
+            }
+            // substitution, or transposition of i and i + 1
+            if (a.regionMatches(i + 1, b, i + 1, la - i - 1)) {
+                return true;
+            }
+            return i + 1 < la && a.charAt(i) == b.charAt(i + 1) && a.charAt(i + 1) == b.charAt(i)
+                    && a.regionMatches(i + 2, b, i + 2, la - i - 2);
+        }
+        return la > lb
+                ? a.regionMatches(i + 1, b, i, lb - i)
+                : b.regionMatches(i + 1, a, i, la - i);
+    }
+}
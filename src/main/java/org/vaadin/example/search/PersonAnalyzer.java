@@ -0,0 +1,128 @@
+package org.vaadin.example.search;
+
+import org.vaadin.example.Person;
+import org.vaadin.example.PhoneNumbers;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Turns contacts and queries into index terms. Text is split on anything
+ * that is not a letter or digit, lower-cased and stripped of accents, so
+ * "Jean-Luc O'Brien" yields {@code jean}, {@code luc}, {@code o} and
+ * {@code brien}. Names weigh more than address fields. Phone numbers are
+ * indexed as digit trigrams prefixed with {@code #}, which lets any 3+
+ * digit fragment of a number find it.
+ */
+final class PersonAnalyzer {
+
+    static final char PHONE_PREFIX = '#';
+    static final int GRAM = 3;
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int EMAIL_WEIGHT = 2;
+    private static final int ADDRESS_WEIGHT = 1;
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private PersonAnalyzer() {
+    }
+
+    /**
+     * Weighted term frequencies of one contact.
+     */
+    static Map<String, Integer> analyze(Person person) {
+        Map<String, Integer> terms = new HashMap<>();
+        add(terms, person.getFirstName(), NAME_WEIGHT);
+        add(terms, person.getLastName(), NAME_WEIGHT);
+        add(terms, person.getStreet(), ADDRESS_WEIGHT);
+        add(terms, person.getCity(), ADDRESS_WEIGHT);
+        add(terms, person.getCountry(), ADDRESS_WEIGHT);
+        add(terms, localPart(person.getEmail()), EMAIL_WEIGHT);
+        for (String gram : phoneGrams(person.getPhoneNumber())) {
+            terms.putIfAbsent(gram, 1);
+        }
+        return terms;
+    }
+
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return words;
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String word : SEPARATORS.split(folded)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Query words; runs of digit-only words are joined, since a phone number
+     * is usually typed in groups like "040 123 45".
+     */
+    static List<String> queryWords(String query) {
+        List<String> words = new ArrayList<>();
+        for (String word : words(query)) {
+            int last = words.size() - 1;
+            if (last >= 0 && isDigits(word) && isDigits(words.get(last))) {
+                words.set(last, words.get(last) + word);
+            } else {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * The distinct {@code #}-prefixed digit trigrams of a phone number or
+     * digit fragment.
+     */
+    static List<String> phoneGrams(String phoneNumber) {
+        String normalized = PhoneNumbers.normalize(phoneNumber);
+        List<String> grams = new ArrayList<>();
+        if (normalized == null) {
+            return grams;
+        }
+        String digits = normalized.startsWith("+") ? normalized.substring(1) : normalized;
+        for (int i = 0; i + GRAM <= digits.length(); i++) {
+            String gram = PHONE_PREFIX + digits.substring(i, i + GRAM);
+            if (!grams.contains(gram)) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+
+    static boolean isDigits(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isDigit(word.charAt(i))) {
+                return false;
+            }
+        }
+        return !word.isEmpty();
+    }
+
+    private static void add(Map<String, Integer> terms, String text, int weight) {
+        for (String word : words(text)) {
+            terms.merge(word, weight, Integer::sum);
+        }
+    }
+
+    private static String localPart(String email) {
+        if (email == null) {
+            return null;
+        }
+        int at = email.indexOf('@');
+        return at < 0 ? email : email.substring(0, at);
+    }
+}
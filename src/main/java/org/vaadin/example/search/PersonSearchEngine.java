@@ -0,0 +1,278 @@
+package org.vaadin.example.search;
+
+import com.vaadin.flow.shared.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.example.Person;
+import org.vaadin.example.PersonChange;
+import org.vaadin.example.PersonChangeBus;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Free-text contact search. Queries match names, address, the local part of
+ * the email and any 3+ digit run of the phone number, tolerate one typo per
+ * word and treat the last characters of a word as a prefix. Results are
+ * ranked with BM25.
+ * <p>
+ * The index follows a {@link PersonChangeBus}, so saves and deletes are
+ * searchable as soon as they commit. With a directory it persists itself
+ * as a segment plus delta log (see {@link SegmentStore}) and only rebuilds
+ * from the database when no usable segment exists.
+ */
+public class PersonSearchEngine implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonSearchEngine.class);
+
+    private final InvertedIndex index = new InvertedIndex();
+    private final SegmentStore store;
+    private final ScheduledThreadPoolExecutor background = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "person-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Integer> removedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean checkpointQueued = new AtomicBoolean();
+    private volatile boolean rebuilding;
+    private volatile boolean ready;
+    private volatile int checkpointEvery = 50_000;
+    private volatile long retryDelayMillis = 1000;
+
+    private PersonSearchEngine(SegmentStore store) {
+        this.store = store;
+        // a pending rebuild retry must not hold up close()
+        background.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * An index kept only in memory, e.g. for tests.
+     */
+    public static PersonSearchEngine inMemory() {
+        PersonSearchEngine engine = new PersonSearchEngine(null);
+        engine.ready = true;
+        return engine;
+    }
+
+    /**
+     * An index kept only in memory that follows {@code changes} and is
+     * built from {@code source} in the background, for stores that forget
+     * their contacts on restart.
+     */
+    public static PersonSearchEngine inMemory(PersonChangeBus changes, Supplier<Stream<Person>> source) {
+        PersonSearchEngine engine = new PersonSearchEngine(null);
+        engine.follow(changes);
+        engine.rebuildInBackground(source, 0);
+        return engine;
+    }
+
+    /**
+     * Loads the index stored in {@code directory}. When there is none, or
+     * it is unreadable, the index is rebuilt from {@code source} in the
+     * background, retrying with a growing delay if that fails; until then
+     * searches see only what has changed since.
+     * Follows {@code changes} either way.
+     */
+    public static PersonSearchEngine open(Path directory, PersonChangeBus changes, Supplier<Stream<Person>> source) {
+        PersonSearchEngine engine;
+        boolean loaded = false;
+        try {
+            SegmentStore store = new SegmentStore(directory);
+            engine = new PersonSearchEngine(store);
+            loaded = store.load(engine.index);
+        } catch (IOException e) {
+            LOGGER.warn("Search index in {} unavailable, keeping it in memory: {}", directory, e.getMessage());
+            engine = new PersonSearchEngine(null);
+        }
+        engine.follow(changes);
+        if (loaded) {
+            engine.ready = true;
+            LOGGER.info("Loaded search index of {} contacts", engine.size());
+        } else {
+            engine.rebuildInBackground(source, 0);
+        }
+        return engine;
+    }
+
+    private void rebuildInBackground(Supplier<Stream<Person>> source, long delayMillis) {
+        try {
+            background.schedule(() -> {
+                try {
+                    rebuild(source.get());
+                } catch (RuntimeException e) {
+                    long retry = Math.min(Math.max(delayMillis * 2, retryDelayMillis), TimeUnit.MINUTES.toMillis(1));
+                    LOGGER.warn("Retrying the search index build in {} ms", retry);
+                    rebuildInBackground(source, retry);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed meanwhile
+        }
+    }
+
+    public Registration follow(PersonChangeBus changes) {
+        return changes.subscribe(batch -> batch.forEach(this::apply));
+    }
+
+    private void apply(PersonChange change) {
+        switch (change.type()) {
+            case INSERTED, UPDATED -> {
+                if (change.person() != null) {
+                    index(change.person());
+                }
+            }
+            case DELETED -> remove(change.id());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces one contact. Contacts without an id are ignored.
+     */
+    public void index(Person person) {
+        if (person.getId() == null) {
+            return;
+        }
+        int version = person.getVersion() == null ? -1 : person.getVersion();
+        InvertedIndex.Doc doc = InvertedIndex.Doc.of(version, PersonAnalyzer.analyze(person));
+        synchronized (this) {
+            if (index.put(person.getId(), doc) && store != null) {
+                try {
+                    store.logPut(person.getId(), doc);
+                } catch (IOException e) {
+                    LOGGER.warn("Could not log search index update: {}", e.getMessage());
+                }
+            }
+        }
+        checkpointIfDue();
+    }
+
+    public void remove(int id) {
+        if (rebuilding) {
+            removedDuringRebuild.add(id);
+        }
+        synchronized (this) {
+            if (index.remove(id) && store != null) {
+                try {
+                    store.logRemove(id);
+                } catch (IOException e) {
+                    LOGGER.warn("Could not log search index update: {}", e.getMessage());
+                }
+            }
+        }
+        checkpointIfDue();
+    }
+
+    /**
+     * Indexes every contact of {@code people} and writes a segment. Changes
+     * that arrive meanwhile win over the rows being read. A failed build is
+     * rethrown and neither persisted nor marks the index ready.
+     */
+    public void rebuild(Stream<Person> people) {
+        long start = System.currentTimeMillis();
+        rebuilding = true;
+        try (people) {
+            people.forEach(person -> {
+                if (person.getId() != null && !removedDuringRebuild.contains(person.getId())) {
+                    int version = person.getVersion() == null ? -1 : person.getVersion();
+                    index.put(person.getId(), InvertedIndex.Doc.of(version, PersonAnalyzer.analyze(person)));
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.error("Rebuilding the search index failed", e);
+            throw e;
+        } finally {
+            rebuilding = false;
+            removedDuringRebuild.clear();
+        }
+        ready = true;
+        LOGGER.info("Indexed {} contacts in {} ms", size(), System.currentTimeMillis() - start);
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            LOGGER.warn("Could not write search segment: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The best {@code limit} matches for {@code query}, best first.
+     */
+    public List<SearchHit> search(String query, int limit) {
+        return index.search(PersonAnalyzer.queryWords(query), limit);
+    }
+
+    /**
+     * Whether the initial load or rebuild has finished.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public void setCheckpointEvery(int logRecords) {
+        this.checkpointEvery = logRecords;
+    }
+
+    void setRetryDelayMillis(long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * Writes the current index as a new segment so startup doesn't have to
+     * replay a long delta log. Writers are paused only while the documents
+     * are copied.
+     */
+    public void checkpoint() throws IOException {
+        if (store == null) {
+            return;
+        }
+        Map<Integer, InvertedIndex.Doc> snapshot;
+        long generation;
+        synchronized (this) {
+            snapshot = index.snapshot();
+            generation = store.rotate();
+        }
+        store.writeSegment(generation, snapshot);
+    }
+
+    private void checkpointIfDue() {
+        if (store != null && !rebuilding && store.pendingRecords() >= checkpointEvery
+                && checkpointQueued.compareAndSet(false, true)) {
+            background.execute(() -> {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    LOGGER.warn("Could not write search segment: {}", e.getMessage());
+                } finally {
+                    checkpointQueued.set(false);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        background.shutdown();
+        background.awaitTermination(1, TimeUnit.MINUTES);
+        if (store != null) {
+            if (store.pendingRecords() > 0) {
+                checkpoint();
+            }
+            store.close();
+        }
+    }
+}
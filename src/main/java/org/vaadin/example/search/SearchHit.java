@@ -0,0 +1,7 @@
+package org.vaadin.example.search;
+
+/**
+ * A matching contact id and its relevance; higher scores rank first.
+ */
+public record SearchHit(int id, double score) {
+}
@@ -0,0 +1,325 @@
+package org.vaadin.example.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Keeps an {@link InvertedIndex} on disk as one immutable segment plus a
+ * delta log of the changes made since.
+ * <p>
+ * {@code segment.bin} holds a sorted term dictionary followed by every
+ * document as (id, version, term ordinal, frequency) tuples, and ends with a
+ * CRC32 of everything before it. Each segment has a generation; changes made
+ * after it go to {@code delta-<generation>.log} as length-prefixed,
+ * checksummed records. Loading reads the segment and replays the logs of its
+ * generation and later, stopping at the first torn record. A checkpoint
+ * starts a new log generation, writes a fresh segment next to the old one,
+ * swaps it in atomically and deletes the logs it covers.
+ * <p>
+ * Log appends are not fsynced: the index can always be rebuilt from the
+ * database, so a lost tail only costs a few stale search results.
+ */
+class SegmentStore implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentStore.class);
+
+    private static final int MAGIC = 0x50534958; // "PSIX"
+    private static final int FORMAT = 1;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final String SEGMENT = "segment.bin";
+    private static final Pattern LOG_NAME = Pattern.compile("delta-(\\d+)\\.log");
+
+    private final Path directory;
+    private long generation;
+    private FileChannel log;
+    private int logRecords;
+
+    SegmentStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Fills {@code index} from disk and opens the delta log for appending.
+     * Returns false when there was no usable segment, i.e. the caller has
+     * to rebuild the index from the database.
+     */
+    synchronized boolean load(InvertedIndex index) throws IOException {
+        Files.createDirectories(directory);
+        boolean loaded = false;
+        Path segment = directory.resolve(SEGMENT);
+        if (Files.exists(segment)) {
+            try {
+                generation = readSegment(segment, index);
+                loaded = true;
+            } catch (IOException e) {
+                LOGGER.warn("Search segment {} is unreadable, rebuilding: {}", segment, e.getMessage());
+                index.clear();
+                generation = 0;
+            }
+        }
+        TreeMap<Long, Path> logs = logs();
+        if (loaded) {
+            for (Map.Entry<Long, Path> entry : logs.entrySet()) {
+                if (entry.getKey() >= generation) {
+                    logRecords += replay(entry.getValue(), index);
+                }
+            }
+        }
+        if (!logs.isEmpty()) {
+            generation = Math.max(generation, logs.lastKey());
+        }
+        // a rebuild supersedes any logs a previous incomplete build left behind
+        for (Map.Entry<Long, Path> entry : logs.entrySet()) {
+            if (!loaded || entry.getKey() < generation) {
+                Files.deleteIfExists(entry.getValue());
+            }
+        }
+        log = openLog(generation);
+        return loaded;
+    }
+
+    synchronized void logPut(int id, InvertedIndex.Doc doc) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(PUT);
+        out.writeInt(id);
+        out.writeInt(doc.version());
+        out.writeInt(doc.terms().size());
+        for (Map.Entry<String, Integer> term : doc.terms().entrySet()) {
+            out.writeUTF(term.getKey());
+            out.writeInt(term.getValue());
+        }
+        append(bytes.toByteArray());
+    }
+
+    synchronized void logRemove(int id) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(5);
+        payload.put(REMOVE).putInt(id);
+        append(payload.array());
+    }
+
+    private void append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (record.hasRemaining()) {
+            log.write(record);
+        }
+        logRecords++;
+    }
+
+    synchronized int pendingRecords() {
+        return logRecords;
+    }
+
+    /**
+     * Switches appends to a new log generation and returns it. Changes
+     * logged before this call must be part of the next segment written
+     * with {@link #writeSegment}.
+     */
+    synchronized long rotate() throws IOException {
+        log.close();
+        generation++;
+        log = openLog(generation);
+        logRecords = 0;
+        return generation;
+    }
+
+    /**
+     * Writes the documents as the segment of {@code newGeneration} and
+     * drops the logs it supersedes. Runs without holding the store lock so
+     * appends continue meanwhile.
+     */
+    void writeSegment(long newGeneration, Map<Integer, InvertedIndex.Doc> docs) throws IOException {
+        TreeMap<String, Integer> dictionary = new TreeMap<>();
+        docs.values().forEach(doc -> doc.terms().keySet().forEach(term -> dictionary.putIfAbsent(term, 0)));
+        int ordinal = 0;
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            entry.setValue(ordinal++);
+        }
+
+        Path temporary = directory.resolve(SEGMENT + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(newGeneration);
+            out.writeInt(dictionary.size());
+            for (String term : dictionary.keySet()) {
+                out.writeUTF(term);
+            }
+            out.writeInt(docs.size());
+            for (Map.Entry<Integer, InvertedIndex.Doc> entry : docs.entrySet()) {
+                InvertedIndex.Doc doc = entry.getValue();
+                out.writeInt(entry.getKey());
+                out.writeInt(doc.version());
+                out.writeInt(doc.terms().size());
+                for (Map.Entry<String, Integer> term : doc.terms().entrySet()) {
+                    out.writeInt(dictionary.get(term.getKey()));
+                    out.writeInt(term.getValue());
+                }
+            }
+            out.flush();
+            // the checksum covers everything above and is written unchecked
+            new DataOutputStream(file).writeLong(crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SEGMENT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Map.Entry<Long, Path> entry : logs().entrySet()) {
+            if (entry.getKey() < newGeneration) {
+                Files.deleteIfExists(entry.getValue());
+            }
+        }
+    }
+
+    private static long readSegment(Path segment, InvertedIndex index) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(segment), 1 << 16)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException("not a search segment");
+            }
+            long generation = in.readLong();
+            String[] dictionary = new String[in.readInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = in.readUTF();
+            }
+            int docCount = in.readInt();
+            List<Map.Entry<Integer, InvertedIndex.Doc>> docs = new ArrayList<>(docCount);
+            for (int i = 0; i < docCount; i++) {
+                int id = in.readInt();
+                int version = in.readInt();
+                int termCount = in.readInt();
+                Map<String, Integer> terms = new HashMap<>(termCount * 2);
+                for (int t = 0; t < termCount; t++) {
+                    terms.put(dictionary[in.readInt()], in.readInt());
+                }
+                docs.add(Map.entry(id, InvertedIndex.Doc.of(version, terms)));
+            }
+            long expected = crc.getValue();
+            if (new DataInputStream(file).readLong() != expected) {
+                throw new IOException("checksum mismatch");
+            }
+            docs.forEach(entry -> index.put(entry.getKey(), entry.getValue()));
+            return generation;
+        }
+    }
+
+    /**
+     * Applies the intact records of one log and cuts off a torn tail so
+     * later appends stay readable. Returns the number of records applied.
+     */
+    private static int replay(Path file, InvertedIndex index) throws IOException {
+        int applied = 0;
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException end) {
+                    break;
+                }
+                int checksum = in.readInt();
+                if (length <= 0 || length > (1 << 20)) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(payload, index);
+                applied++;
+                valid += 8 + length;
+            }
+        } catch (EOFException torn) {
+            // partial record at the end
+        }
+        if (valid < Files.size(file)) {
+            LOGGER.warn("Dropping torn tail of search log {} at byte {}", file, valid);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(byte[] payload, InvertedIndex index) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        int id = in.readInt();
+        if (op == REMOVE) {
+            index.remove(id);
+            return;
+        }
+        int version = in.readInt();
+        int termCount = in.readInt();
+        Map<String, Integer> terms = new HashMap<>(termCount * 2);
+        for (int t = 0; t < termCount; t++) {
+            terms.put(in.readUTF(), in.readInt());
+        }
+        index.put(id, InvertedIndex.Doc.of(version, terms));
+    }
+
+    private FileChannel openLog(long logGeneration) throws IOException {
+        return FileChannel.open(directory.resolve("delta-" + logGeneration + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private TreeMap<Long, Path> logs() throws IOException {
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = LOG_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    logs.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+        return logs;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+}
@@ -5,6 +5,19 @@ import java.util.Map;
 public class AppConfig {
     private String dbType;
     private Map<String, String> dbCredentials;
+    private long countCacheTtlMillis;
+    private PoolConfig pool = new PoolConfig();
+    private WriteBehindConfig writeBehind = new WriteBehindConfig();
+    private CacheConfig cache = new CacheConfig();
+    private CacheConfig pageCache = new CacheConfig();
+    private long changeFeedFrameMillis = 100;
+    private String searchIndexDirectory = "search-index";
+    private MetricsConfig metrics = new MetricsConfig();
+    private int streamFetchSize = 1000;
+    private int parallelQueryThreshold = 50_000;
+    private int ioConcurrency;
+    private MappedStoreConfig mapped = new MappedStoreConfig();
+    private OpLogConfig opLog = new OpLogConfig();
 
     // Getters and setters
     public String getDbType() {
@@ -22,4 +35,108 @@ public class AppConfig {
     public void setDbCredentials(Map<String, String> dbCredentials) {
         this.dbCredentials = dbCredentials;
     }
-}
\ No newline at end of file
+
+    public long getCountCacheTtlMillis() {
+        return countCacheTtlMillis;
+    }
+
+    public void setCountCacheTtlMillis(long countCacheTtlMillis) {
+        this.countCacheTtlMillis = countCacheTtlMillis;
+    }
+
+    public PoolConfig getPool() {
+        return pool;
+    }
+
+    public void setPool(PoolConfig pool) {
+        this.pool = pool;
+    }
+
+    public WriteBehindConfig getWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(WriteBehindConfig writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public CacheConfig getCache() {
+        return cache;
+    }
+
+    public void setCache(CacheConfig cache) {
+        this.cache = cache;
+    }
+
+    public CacheConfig getPageCache() {
+        return pageCache;
+    }
+
+    public void setPageCache(CacheConfig pageCache) {
+        this.pageCache = pageCache;
+    }
+
+    public long getChangeFeedFrameMillis() {
+        return changeFeedFrameMillis;
+    }
+
+    public void setChangeFeedFrameMillis(long changeFeedFrameMillis) {
+        this.changeFeedFrameMillis = changeFeedFrameMillis;
+    }
+
+    public String getSearchIndexDirectory() {
+        return searchIndexDirectory;
+    }
+
+    public void setSearchIndexDirectory(String searchIndexDirectory) {
+        this.searchIndexDirectory = searchIndexDirectory;
+    }
+
+    public MetricsConfig getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsConfig metrics) {
+        this.metrics = metrics;
+    }
+
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    public void setStreamFetchSize(int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    public int getParallelQueryThreshold() {
+        return parallelQueryThreshold;
+    }
+
+    public void setParallelQueryThreshold(int parallelQueryThreshold) {
+        this.parallelQueryThreshold = parallelQueryThreshold;
+    }
+
+    public int getIoConcurrency() {
+        return ioConcurrency;
+    }
+
+    public void setIoConcurrency(int ioConcurrency) {
+        this.ioConcurrency = ioConcurrency;
+    }
+
+    public MappedStoreConfig getMapped() {
+        return mapped;
+    }
+
+    public void setMapped(MappedStoreConfig mapped) {
+        this.mapped = mapped;
+    }
+
+    public OpLogConfig getOpLog() {
+        return opLog;
+    }
+
+    public void setOpLog(OpLogConfig opLog) {
+        this.opLog = opLog;
+    }
+}
@@ -0,0 +1,23 @@
+package org.vaadin.example.utility;
+
+public class CacheConfig {
+    private boolean enabled = true;
+    private int maxSize = 10000;
+
+    // Getters and setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+}
@@ -0,0 +1,30 @@
+package org.vaadin.example.utility;
+
+import org.vaadin.example.ColumnarPersonStore;
+import org.vaadin.example.PersonDataProvider;
+import org.vaadin.example.PersonStoreProvider;
+
+/**
+ * {@code dbType: columnar}, the in-memory store with a compact column
+ * layout. One store is shared by every view, like the {@code inmemory} one.
+ */
+public class ColumnarStoreProvider implements PersonStoreProvider {
+
+    private static ColumnarPersonStore store;
+
+    @Override
+    public String name() {
+        return "columnar";
+    }
+
+    @Override
+    public synchronized PersonDataProvider create(AppConfig config) {
+        if (store == null) {
+            store = new ColumnarPersonStore();
+            store.setCountCacheTtl(config.getCountCacheTtlMillis());
+            store.getChangeBus().setFrameMillis(config.getChangeFeedFrameMillis());
+            store.setMetrics(config.getMetrics());
+        }
+        return store;
+    }
+}
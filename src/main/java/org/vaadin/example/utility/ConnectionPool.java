@@ -0,0 +1,472 @@
+package org.vaadin.example.utility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded JDBC connection pool. Connections handed out are proxies whose
+ * {@code close()} returns the physical connection to the pool instead of
+ * closing it. A background thread evicts connections idle for longer than
+ * the idle timeout (keeping at least {@code minSize}) and reports
+ * connections that were borrowed longer than the leak detection threshold.
+ * Each physical connection keeps up to {@code statementCacheSize} prepared
+ * statements open across borrows (see {@link StatementCache}).
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final String jdbcUrl;
+    private final String jdbcUser;
+    private final String jdbcPassword;
+    private final PoolConfig config;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+    private volatile boolean closed;
+
+    public ConnectionPool(String jdbcUrl, String jdbcUser, String jdbcPassword, PoolConfig config) {
+        if (config.getMaxSize() < 1 || config.getMinSize() > config.getMaxSize()) {
+            throw new IllegalArgumentException("Pool requires 0 <= minSize <= maxSize and maxSize >= 1");
+        }
+        this.jdbcUrl = jdbcUrl;
+        this.jdbcUser = jdbcUser;
+        this.jdbcPassword = jdbcPassword;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(config.getIdleTimeoutMillis(), config.getLeakDetectionThresholdMillis()) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + config.getAcquireTimeoutMillis()
+                        + " ms waiting for a connection (" + borrowed.size() + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdleConnection();
+            if (pooled == null) {
+                pooled = new PooledConnection(DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword));
+            }
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowSite = config.getLeakDetectionThresholdMillis() > 0 ? new Exception("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            recordWait(System.nanoTime() - start);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeValidIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            try {
+                if (pooled.physical.isValid(config.getValidationTimeoutSeconds())) {
+                    return pooled;
+                }
+            } catch (SQLException ignored) {
+                // treated as invalid below
+            }
+            closePhysical(pooled);
+        }
+        return null;
+    }
+
+    private void recordWait(long waitNanos) {
+        acquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            if (closed || pooled.physical.isClosed()) {
+                closePhysical(pooled);
+            } else {
+                if (!pooled.physical.getAutoCommit()) {
+                    pooled.physical.rollback();
+                    pooled.physical.setAutoCommit(true);
+                }
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            closePhysical(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<PooledConnection> iterator = idle.descendingIterator();
+            while (iterator.hasNext() && idle.size() > config.getMinSize()) {
+                PooledConnection pooled = iterator.next();
+                if (now - pooled.lastUsed > config.getIdleTimeoutMillis() && idle.remove(pooled)) {
+                    closePhysical(pooled);
+                }
+            }
+
+            long leakThreshold = config.getLeakDetectionThresholdMillis();
+            if (leakThreshold > 0) {
+                for (PooledConnection pooled : borrowed) {
+                    if (!pooled.leakReported && now - pooled.borrowedAt > leakThreshold) {
+                        pooled.leakReported = true;
+                        LOGGER.warn("Connection held for {} ms, possible leak", now - pooled.borrowedAt, pooled.borrowSite);
+                    }
+                }
+            }
+
+            while (!closed && idle.size() + borrowed.size() < config.getMinSize() && permits.tryAcquire()) {
+                try {
+                    PooledConnection pooled = new PooledConnection(DriverManager.getConnection(jdbcUrl, jdbcUser, jdbcPassword));
+                    pooled.lastUsed = now;
+                    idle.offerLast(pooled);
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Could not top up connection pool: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.error("Connection pool housekeeping failed", e);
+        }
+    }
+
+    private static void closePhysical(PooledConnection pooled) {
+        if (pooled.statements != null) {
+            pooled.statements.clear();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException ignored) {
+            // already broken
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            closePhysical(pooled);
+        }
+    }
+
+    // Metrics
+
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getThreadsAwaitingConnection() {
+        return permits.getQueueLength();
+    }
+
+    public long getAcquisitionCount() {
+        return acquisitions.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = acquisitions.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public long getAcquisitionTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getStatementCacheHits() {
+        return statementStats.hits.get();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementStats.misses.get();
+    }
+
+    public long getStatementCacheEvictions() {
+        return statementStats.evictions.get();
+    }
+
+    public double getStatementCacheHitRate() {
+        long hits = statementStats.hits.get();
+        long total = hits + statementStats.misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    // Remaining DataSource contract
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the configured credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        volatile long lastUsed;
+        volatile long borrowedAt;
+        volatile Exception borrowSite;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = config.getStatementCacheSize() > 0
+                    ? new StatementCache(config.getStatementCacheSize(), statementStats)
+                    : null;
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    /**
+     * The connection given to callers. Each borrow gets its own handle so a
+     * late second {@code close()} can't return someone else's connection.
+     * Statements it creates are wrapped as well: they report the handle as
+     * their connection and are closed, or returned to the statement cache,
+     * when the handle is.
+     */
+    private class Handle implements InvocationHandler, StatementCache.Owner {
+        private final PooledConnection pooled;
+        private final List<Statement> opened = new ArrayList<>();
+        private volatile boolean released;
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        closeOpened();
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pooled.physical + "]";
+                default:
+                    if (released) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                    if (pooled.statements != null && method.getName().equals("prepareStatement")
+                            && method.getParameterTypes()[0] == String.class) {
+                        PreparedStatement lease = pooled.statements.prepare((Connection) proxy, this, pooled.physical, method, args);
+                        synchronized (opened) {
+                            opened.add(lease);
+                        }
+                        return lease;
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                        return open((Connection) proxy, method.getReturnType(), statement);
+                    }
+                    return result;
+            }
+        }
+
+        private Object open(Connection handle, Class<?> type, Statement statement) {
+            synchronized (opened) {
+                opened.add(statement);
+            }
+            return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandle(this, handle, statement));
+        }
+
+        @Override
+        public boolean isReleased() {
+            return released;
+        }
+
+        @Override
+        public void closed(Statement statement) {
+            synchronized (opened) {
+                opened.remove(statement);
+            }
+        }
+
+        private void closeOpened() {
+            List<Statement> statements;
+            synchronized (opened) {
+                statements = new ArrayList<>(opened);
+                opened.clear();
+            }
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    // the connection is reused or dropped either way
+                }
+            }
+        }
+    }
+
+    /**
+     * A statement not taken from the {@link StatementCache}. It stops
+     * working once it or its handle is closed.
+     */
+    private static class StatementHandle implements InvocationHandler {
+        private final Handle owner;
+        private final Connection handle;
+        private final Statement statement;
+        private boolean closed;
+
+        StatementHandle(Handle owner, Connection handle, Statement statement) {
+            this.owner = owner;
+            this.handle = handle;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        owner.closed(statement);
+                        statement.close();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || owner.released || statement.isClosed();
+                case "getConnection":
+                    return handle;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + statement + "]";
+                default:
+                    if (closed || owner.released) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.vaadin.example.utility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.example.PersonDataProvider;
+import org.vaadin.example.PersonDataProviderDb;
+import org.vaadin.example.PersonStoreProvider;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * {@code dbType: db}, the MySQL-backed store. The {@code Person} table is
+ * brought up to date with {@link SchemaMigrations} first.
+ */
+public class DbStoreProvider implements PersonStoreProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DbStoreProvider.class);
+
+    @Override
+    public String name() {
+        return "db";
+    }
+
+    @Override
+    public PersonDataProvider create(AppConfig config) {
+        Map<String, String> dbCredentials = config.getDbCredentials();
+        ConnectionPool pool = new ConnectionPool(
+            dbCredentials.get("url"),
+            dbCredentials.get("user"),
+            dbCredentials.get("password"),
+            config.getPool()
+        );
+        try {
+            SchemaMigrations.migrate(pool);
+        } catch (SQLException e) {
+            // reads may still work, writes will report the problem
+            LOGGER.error("Migrating the contact table failed", e);
+        }
+        PersonDataProviderDb dbProvider = new PersonDataProviderDb(pool);
+        dbProvider.setCountCacheTtl(config.getCountCacheTtlMillis());
+        dbProvider.setWriteBehind(config.getWriteBehind());
+        dbProvider.setEntityCache(config.getCache());
+        dbProvider.setPageCache(config.getPageCache());
+        dbProvider.getChangeBus().setFrameMillis(config.getChangeFeedFrameMillis());
+        dbProvider.setMetrics(config.getMetrics());
+        dbProvider.setStreamFetchSize(config.getStreamFetchSize());
+        return dbProvider;
+    }
+}
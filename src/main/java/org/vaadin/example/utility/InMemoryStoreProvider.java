@@ -0,0 +1,39 @@
+package org.vaadin.example.utility;
+
+import org.vaadin.example.PersonDataProvider;
+import org.vaadin.example.PersonDataProviderInMemory;
+import org.vaadin.example.PersonStoreProvider;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * {@code dbType: inmemory}, a process-local store for development and tests,
+ * optionally made durable with {@code opLog}.
+ */
+public class InMemoryStoreProvider implements PersonStoreProvider {
+
+    @Override
+    public String name() {
+        return "inmemory";
+    }
+
+    @Override
+    public PersonDataProvider create(AppConfig config) {
+        OpLogConfig opLog = config.getOpLog();
+        if (opLog.isEnabled()) {
+            try {
+                PersonDataProviderInMemory.persistTo(Path.of(opLog.getDirectory()), opLog);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not recover contacts from " + opLog.getDirectory(), e);
+            }
+        }
+        PersonDataProviderInMemory inMemoryProvider = new PersonDataProviderInMemory();
+        inMemoryProvider.setCountCacheTtl(config.getCountCacheTtlMillis());
+        inMemoryProvider.getChangeBus().setFrameMillis(config.getChangeFeedFrameMillis());
+        inMemoryProvider.setMetrics(config.getMetrics());
+        inMemoryProvider.setParallelQueryThreshold(config.getParallelQueryThreshold());
+        return inMemoryProvider;
+    }
+}
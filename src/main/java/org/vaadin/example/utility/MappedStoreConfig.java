@@ -0,0 +1,41 @@
+package org.vaadin.example.utility;
+
+public class MappedStoreConfig {
+    private String directory = "contacts";
+    private int initialSlots = 65536;
+    private boolean syncWrites = true;
+    private long checkpointBytes = 8 * 1024 * 1024;
+
+    // Getters and setters
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getInitialSlots() {
+        return initialSlots;
+    }
+
+    public void setInitialSlots(int initialSlots) {
+        this.initialSlots = initialSlots;
+    }
+
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    public void setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+    }
+
+    public long getCheckpointBytes() {
+        return checkpointBytes;
+    }
+
+    public void setCheckpointBytes(long checkpointBytes) {
+        this.checkpointBytes = checkpointBytes;
+    }
+}
@@ -0,0 +1,50 @@
+package org.vaadin.example.utility;
+
+import org.vaadin.example.MappedPersonStore;
+import org.vaadin.example.PersonDataProvider;
+import org.vaadin.example.PersonStoreProvider;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * {@code dbType: mapped}, contacts in memory-mapped files under
+ * {@code mapped.directory}, durable without a database server. The files
+ * are opened once and shared by every view.
+ */
+public class MappedStoreProvider implements PersonStoreProvider {
+
+    private static MappedPersonStore store;
+
+    @Override
+    public String name() {
+        return "mapped";
+    }
+
+    @Override
+    public synchronized PersonDataProvider create(AppConfig config) {
+        if (store == null) {
+            MappedStoreConfig mapped = config.getMapped();
+            try {
+                store = new MappedPersonStore(Path.of(mapped.getDirectory()), mapped.getInitialSlots(), mapped.isSyncWrites());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open the contact store in " + mapped.getDirectory(), e);
+            }
+            store.setCheckpointBytes(mapped.getCheckpointBytes());
+            store.setCountCacheTtl(config.getCountCacheTtlMillis());
+            store.getChangeBus().setFrameMillis(config.getChangeFeedFrameMillis());
+            store.setMetrics(config.getMetrics());
+            store.setParallelQueryThreshold(config.getParallelQueryThreshold());
+            MappedPersonStore opened = store;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    opened.close();
+                } catch (IOException e) {
+                    // the log is replayed on the next start
+                }
+            }, "mapped-store-close"));
+        }
+        return store;
+    }
+}
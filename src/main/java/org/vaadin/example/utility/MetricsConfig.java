@@ -0,0 +1,23 @@
+package org.vaadin.example.utility;
+
+public class MetricsConfig {
+    private boolean enabled = true;
+    private long slowQueryMillis = 200;
+
+    // Getters and setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getSlowQueryMillis() {
+        return slowQueryMillis;
+    }
+
+    public void setSlowQueryMillis(long slowQueryMillis) {
+        this.slowQueryMillis = slowQueryMillis;
+    }
+}
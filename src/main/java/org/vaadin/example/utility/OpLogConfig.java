@@ -0,0 +1,41 @@
+package org.vaadin.example.utility;
+
+public class OpLogConfig {
+    private boolean enabled = false;
+    private String directory = "inmemory-data";
+    private long groupCommitMillis = 2;
+    private long snapshotIntervalSeconds = 300;
+
+    // Getters and setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getGroupCommitMillis() {
+        return groupCommitMillis;
+    }
+
+    public void setGroupCommitMillis(long groupCommitMillis) {
+        this.groupCommitMillis = groupCommitMillis;
+    }
+
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+}
@@ -1,34 +1,53 @@
 package org.vaadin.example.utility;
 
-import com.vaadin.flow.component.crud.CrudFilter;
-import com.vaadin.flow.data.provider.AbstractBackEndDataProvider;
-import org.vaadin.example.Person;
-import org.vaadin.example.PersonDataProviderDb;
-import org.vaadin.example.PersonDataProviderInMemory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.example.PersonDataProvider;
+import org.vaadin.example.PersonStoreProvider;
 
-import java.util.Map;
+import java.util.List;
+import java.util.ServiceLoader;
 
+/**
+ * Creates the store named by {@code dbType} from the {@link PersonStoreProvider}s
+ * on the class path, so a new backend only needs a service registration.
+ */
 public class PersonDataProviderFactory {
 
-    public static AbstractBackEndDataProvider<Person, CrudFilter> createDataProvider() {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonDataProviderFactory.class);
+    private static final String FALLBACK = "inmemory";
+
+    public static PersonDataProvider createDataProvider() {
         AppConfig config = ConfigLoader.loadConfig();
         if (config == null) {
             throw new RuntimeException("Failed to load configuration");
         }
+        return createDataProvider(config.getDbType(), config);
+    }
 
-        String dbType = config.getDbType();
-        Map<String, String> dbCredentials = config.getDbCredentials();
-
-        switch (dbType.toLowerCase()) {
-            case "db":
-                return new PersonDataProviderDb(
-                    dbCredentials.get("url"),
-                    dbCredentials.get("user"),
-                    dbCredentials.get("password")
-                );
-            case "inmemory":
-            default:
-                return new PersonDataProviderInMemory();
+    public static PersonDataProvider createDataProvider(String dbType, AppConfig config) {
+        for (PersonStoreProvider provider : ServiceLoader.load(PersonStoreProvider.class)) {
+            if (provider.name().equalsIgnoreCase(dbType)) {
+                PersonDataProvider dataProvider = provider.create(config);
+                if (config.getIoConcurrency() > 0) {
+                    dataProvider.setIoConcurrency(config.getIoConcurrency());
+                }
+                return dataProvider;
+            }
         }
+        if (dbType.equalsIgnoreCase(FALLBACK)) {
+            throw new IllegalStateException("No store named '" + FALLBACK + "' is registered");
+        }
+        LOGGER.warn("No store named '{}' (available: {}), using {}", dbType, available(), FALLBACK);
+        return createDataProvider(FALLBACK, config);
+    }
+
+    /**
+     * Names of every registered store.
+     */
+    public static List<String> available() {
+        return ServiceLoader.load(PersonStoreProvider.class).stream()
+                .map(provider -> provider.get().name())
+                .toList();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,144 @@
+package org.vaadin.example.utility;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vaadin.example.PhoneNumbers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Brings an existing {@code Person} table up to the columns and indexes
+ * {@link org.vaadin.example.PersonDataProviderDb} expects. Applied steps are
+ * recorded in {@code schema_version}. MySQL commits DDL at once, so each step
+ * checks what is already there and an interrupted step can simply run again.
+ */
+public final class SchemaMigrations {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    private SchemaMigrations() {
+    }
+
+    private interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "normalized phone number with a unique index", SchemaMigrations::normalizedPhone),
+            new Migration(2, "row version for optimistic locking", SchemaMigrations::rowVersion)
+    );
+
+    public static void migrate(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version INT PRIMARY KEY, description VARCHAR(255) NOT NULL)");
+            }
+            Set<Integer> applied = new HashSet<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT version FROM schema_version")) {
+                while (resultSet.next()) {
+                    applied.add(resultSet.getInt(1));
+                }
+            }
+            for (Migration migration : MIGRATIONS) {
+                if (applied.contains(migration.version())) {
+                    continue;
+                }
+                LOGGER.info("Migrating the contact table to version {}: {}", migration.version(), migration.description());
+                migration.step().apply(connection);
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                    statement.setInt(1, migration.version());
+                    statement.setString(2, migration.description());
+                    statement.executeUpdate();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds {@code phoneNormalized}, fills it from {@code phoneNumber} with
+     * {@link PhoneNumbers#normalize} and makes it unique. Fails if existing
+     * contacts share a number in different spellings; those have to be
+     * merged first.
+     */
+    private static void normalizedPhone(Connection connection) throws SQLException {
+        if (!hasColumn(connection, "phoneNormalized")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE Person ADD COLUMN phoneNormalized VARCHAR(64)");
+            }
+        }
+        try (Statement select = connection.createStatement();
+             ResultSet resultSet = select.executeQuery(
+                     "SELECT id, phoneNumber FROM Person WHERE phoneNormalized IS NULL AND phoneNumber IS NOT NULL");
+             PreparedStatement update = connection.prepareStatement("UPDATE Person SET phoneNormalized = ? WHERE id = ?")) {
+            int pending = 0;
+            while (resultSet.next()) {
+                update.setString(1, PhoneNumbers.normalize(resultSet.getString(2)));
+                update.setInt(2, resultSet.getInt(1));
+                update.addBatch();
+                if (++pending == 1000) {
+                    update.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                update.executeBatch();
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE UNIQUE INDEX ux_person_phone_normalized ON Person (phoneNormalized)");
+        } catch (SQLException e) {
+            if (!hasIndexOnNormalizedPhone(connection)) {
+                throw new SQLException("Could not make phone numbers unique, some contacts probably share a number: "
+                        + e.getMessage(), e.getSQLState(), e);
+            }
+        }
+    }
+
+    /**
+     * Adds the {@code version} column saves are checked against. Existing
+     * rows start at 0.
+     */
+    private static void rowVersion(Connection connection) throws SQLException {
+        if (!hasColumn(connection, "version")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE Person ADD COLUMN version INT DEFAULT 0 NOT NULL");
+            }
+        }
+    }
+
+    private static boolean hasColumn(Connection connection, String column) {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeQuery("SELECT " + column + " FROM Person WHERE 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasIndexOnNormalizedPhone(Connection connection) throws SQLException {
+        for (String table : new String[]{"Person", "PERSON"}) {
+            try (ResultSet indexes = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, true, false)) {
+                while (indexes.next()) {
+                    if ("phoneNormalized".equalsIgnoreCase(indexes.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
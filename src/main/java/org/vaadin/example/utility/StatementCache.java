@@ -0,0 +1,197 @@
+package org.vaadin.example.utility;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepared statements of one physical connection, kept open between borrows
+ * and keyed by SQL text plus the {@code prepareStatement} options. Queries
+ * are built per shape with every value bound as a parameter, so the text is
+ * a shape key and a grid scrolling a filtered view reuses one statement.
+ * <p>
+ * A statement is taken out of the cache while in use, so two borrows of the
+ * same shape on one connection never share it, and goes back on
+ * {@code close()} with its parameters cleared and its result set closed.
+ * Closing the borrowing connection returns whatever the caller left open.
+ * Beyond {@code maxSize} the least recently used statements are closed
+ * for real.
+ */
+class StatementCache {
+
+    private final int maxSize;
+    private final Stats stats;
+    private final LinkedHashMap<Key, PreparedStatement> idle = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(int maxSize, Stats stats) {
+        this.maxSize = maxSize;
+        this.stats = stats;
+    }
+
+    /**
+     * Counters shared by every connection of a pool.
+     */
+    static class Stats {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+    }
+
+    private record Key(String sql, List<Object> options) {
+    }
+
+    /**
+     * The borrow a statement is leased to.
+     */
+    interface Owner {
+        boolean isReleased();
+
+        /**
+         * The caller closed {@code statement} before the borrow ended.
+         */
+        void closed(Statement statement);
+    }
+
+    /**
+     * Handles {@code prepareStatement} for {@code handle}, a caller's view
+     * of {@code physical} borrowed by {@code owner}. The lease stops
+     * working once the borrow ends; {@code owner} is expected to close
+     * leases still open then.
+     */
+    PreparedStatement prepare(Connection handle, Owner owner, Connection physical, Method method, Object[] args)
+            throws Throwable {
+        Key key = new Key((String) args[0], List.of(Arrays.copyOfRange(args, 1, args.length)));
+        PreparedStatement statement;
+        synchronized (this) {
+            statement = idle.remove(key);
+        }
+        if (statement != null) {
+            stats.hits.incrementAndGet();
+        } else {
+            stats.misses.incrementAndGet();
+            try {
+                statement = (PreparedStatement) method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new Lease(key, statement, handle, owner));
+    }
+
+    private void giveBack(Key key, PreparedStatement statement) {
+        try {
+            ResultSet open = statement.getResultSet();
+            if (open != null) {
+                open.close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        List<PreparedStatement> evicted = new ArrayList<>();
+        synchronized (this) {
+            PreparedStatement previous = idle.put(key, statement);
+            if (previous != null) {
+                evicted.add(previous);
+            }
+            Iterator<PreparedStatement> eldest = idle.values().iterator();
+            while (idle.size() > maxSize) {
+                evicted.add(eldest.next());
+                eldest.remove();
+            }
+        }
+        stats.evictions.addAndGet(evicted.size());
+        evicted.forEach(StatementCache::closeQuietly);
+    }
+
+    /**
+     * Closes every cached statement; the physical connection is going away.
+     */
+    void clear() {
+        List<PreparedStatement> statements;
+        synchronized (this) {
+            statements = new ArrayList<>(idle.values());
+            idle.clear();
+        }
+        statements.forEach(StatementCache::closeQuietly);
+    }
+
+    synchronized int size() {
+        return idle.size();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // the connection is probably broken, it will be dropped as well
+        }
+    }
+
+    /**
+     * The statement as seen by one caller: {@code close()} returns it to
+     * the cache and later calls fail like on a closed statement.
+     */
+    private class Lease implements InvocationHandler {
+        private final Key key;
+        private final PreparedStatement statement;
+        private final Connection handle;
+        private final Owner owner;
+        private boolean returned;
+
+        Lease(Key key, PreparedStatement statement, Connection handle, Owner owner) {
+            this.key = key;
+            this.statement = statement;
+            this.handle = handle;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        owner.closed((Statement) proxy);
+                        giveBack(key, statement);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || owner.isReleased() || statement.isClosed();
+                case "getConnection":
+                    return handle;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + statement + "]";
+                default:
+                    if (returned || owner.isReleased()) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.SortDirection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarPersonStoreTest {
+
+    private ColumnarPersonStore store;
+    private List<Person> people;
+
+    @BeforeEach
+    public void setup() {
+        store = new ColumnarPersonStore();
+        people = DataService.getPeople(2000, 7);
+        store.persistAll(people);
+    }
+
+    private List<Integer> expected(CrudFilter filter) {
+        return people.stream()
+                .filter(PersonField.predicate(filter))
+                .sorted(PersonField.comparator(filter))
+                .map(Person::getId)
+                .toList();
+    }
+
+    @Test
+    public void testPagesMatchRowWiseEvaluation() {
+        List<CrudFilter> filters = new ArrayList<>();
+        for (String property : List.of("lastName", "street", "id")) {
+            for (SortDirection direction : SortDirection.values()) {
+                CrudFilter filter = new CrudFilter();
+                filter.getConstraints().put("city", "ERL");
+                filter.getSortOrders().put(property, direction);
+                filters.add(filter);
+            }
+        }
+        CrudFilter unsorted = new CrudFilter();
+        unsorted.getConstraints().put("email", "1");
+        unsorted.getConstraints().put("firstName", "A");
+        filters.add(unsorted);
+
+        for (CrudFilter filter : filters) {
+            List<Integer> expected = expected(filter);
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, store.page(filter, 0, Integer.MAX_VALUE).stream().map(Person::getId).toList());
+            assertEquals(expected.subList(3, 8), store.page(filter, 3, 5).stream().map(Person::getId).toList());
+            assertEquals(expected.size(), store.count(filter));
+            assertEquals(expected, store.stream(filter).map(Person::getId).toList());
+        }
+    }
+
+    @Test
+    public void testUpdatesAndDeletesReuseSlots() {
+        Person person = store.find(people.get(0).getId()).orElseThrow();
+        person.setLastName("Zyxwv");
+        person.setPhoneNumber("+1 555 0100");
+        store.persist(person);
+        assertEquals(1, person.getVersion());
+        assertThrows(OptimisticLockException.class, () -> {
+            Person stale = new Person(person);
+            stale.setVersion(0);
+            store.persist(stale);
+        });
+
+        CrudFilter filter = new CrudFilter();
+        filter.getConstraints().put("lastName", "xwv");
+        assertEquals(List.of(person.getId()), store.page(filter, 0, 10).stream().map(Person::getId).toList());
+        assertTrue(store.existsByPhoneNumber(PhoneNumbers.normalize("+1 555 0100"), null));
+        assertFalse(store.existsByPhoneNumber(PhoneNumbers.normalize("+1 555 0100"), person.getId()));
+
+        long before = store.footprint().get("ids");
+        store.delete(person);
+        assertEquals(0, store.count(filter));
+        assertFalse(store.existsByPhoneNumber(PhoneNumbers.normalize("+1 555 0100"), null));
+        store.persist(DataService.getPeople(1, 99).get(0));
+        assertEquals(people.size(), store.count(new CrudFilter()));
+        assertEquals(before, store.footprint().get("ids"));
+    }
+
+    @Test
+    public void testSmallerThanRowObjects() {
+        // both layouts hold the same rows, and neither touches the shared in-memory store
+        Map<Integer, Person> rows = new HashMap<>();
+        people.forEach(person -> rows.put(person.getId(), person));
+
+        assertEquals(people.size(), rows.size());
+        assertTrue(store.footprint().get("total") < PersonDataProviderInMemory.footprint(rows).get("total"));
+    }
+}
@@ -0,0 +1,40 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CountCacheTest {
+
+    @Test
+    public void testFailuresAreNotCached() throws Exception {
+        CountCache cache = new CountCache(60_000);
+        CrudFilter filter = new CrudFilter();
+
+        assertThrows(SQLException.class, () -> cache.get(filter, f -> {
+            throw new SQLException("connection refused");
+        }));
+        assertEquals(42, cache.get(filter, f -> 42));
+        assertEquals(42, cache.get(filter, f -> 7));
+    }
+
+    @Test
+    public void testCountLoadedDuringInvalidateIsNotCached() {
+        CountCache cache = new CountCache(60_000);
+        CrudFilter filter = new CrudFilter();
+        AtomicInteger loads = new AtomicInteger();
+
+        int stale = cache.get(filter, f -> {
+            // a write lands while the count query runs
+            cache.invalidate();
+            return loads.incrementAndGet();
+        });
+        assertEquals(1, stale);
+        assertEquals(2, cache.get(filter, f -> loads.incrementAndGet()));
+        assertEquals(2, cache.get(filter, f -> loads.incrementAndGet()));
+    }
+}
@@ -0,0 +1,140 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.vaadin.example.utility.OpLogConfig;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryPersistenceTest {
+
+    private final PersonDataProviderInMemory dataProvider = new PersonDataProviderInMemory();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        PersonDataProviderInMemory.stopPersisting();
+        new ArrayList<>(PersonDataProviderInMemory.DATABASE.values()).forEach(dataProvider::delete);
+    }
+
+    private static Map<Integer, String> contents() {
+        Map<Integer, String> contents = new TreeMap<>();
+        PersonDataProviderInMemory.DATABASE.forEach((id, person) ->
+                contents.put(id, person.getVersion() + " " + person.getLastName() + " " + person.getEmail()));
+        return contents;
+    }
+
+    /**
+     * Drops the in-memory state as a restart would and recovers from disk.
+     */
+    private Map<Integer, String> restart(Path directory) throws Exception {
+        Map<Integer, String> before = contents();
+        PersonDataProviderInMemory.stopPersisting();
+        new ArrayList<>(PersonDataProviderInMemory.DATABASE.values()).forEach(dataProvider::delete);
+        assertTrue(PersonDataProviderInMemory.DATABASE.isEmpty());
+        PersonDataProviderInMemory.resetSequence();
+        PersonDataProviderInMemory.persistTo(directory, new OpLogConfig());
+        return before;
+    }
+
+    @Test
+    public void testSnapshotPlusLogTailRestoresEveryWrite(@TempDir Path directory) throws Exception {
+        PersonDataProviderInMemory.persistTo(directory, new OpLogConfig());
+        List<Person> people = DataService.getPeople(40_000, 3);
+        dataProvider.persistAll(people);
+        PersonDataProviderInMemory.persistence().snapshot();
+
+        for (int i = 0; i < 100; i++) {
+            Person person = people.get(i * 7);
+            person.setLastName("After " + i);
+            dataProvider.persist(person);
+            dataProvider.delete(people.get(i * 7 + 1));
+        }
+        dataProvider.persist(DataService.getPeople(1, 4).get(0));
+
+        Map<Integer, String> before = restart(directory);
+        assertEquals(before, contents());
+        assertTrue(dataProvider.capabilities().contains(PersonStore.Capability.DURABLE));
+
+        // the index and sequence follow the recovered rows
+        CrudFilter filter = new CrudFilter();
+        filter.getConstraints().put("lastName", "after 9");
+        assertEquals(11, dataProvider.count(filter));
+        // ids of earlier tests' rows may come first, so count from the highest recovered one
+        Person added = DataService.getPeople(1, 5).get(0);
+        dataProvider.persist(added);
+        assertEquals(Collections.max(before.keySet()) + 1, added.getId());
+    }
+
+    @Test
+    public void testTornLogTailIsIgnored(@TempDir Path directory) throws Exception {
+        PersonDataProviderInMemory.persistTo(directory, new OpLogConfig());
+        dataProvider.persistAll(DataService.getPeople(10, 3));
+        PersonDataProviderInMemory.stopPersisting();
+        Path segment = PersonOpLog.segmentFile(directory, PersonOpLog.segments(directory).get(0));
+        Files.write(segment, new byte[]{0, 0, 1, 0, 7, 7}, StandardOpenOption.APPEND);
+
+        PersonDataProviderInMemory.persistTo(directory, new OpLogConfig());
+        Map<Integer, String> before = restart(directory);
+        assertEquals(10, before.size());
+        assertEquals(before, contents());
+    }
+
+    @Test
+    public void testWritesDuringSnapshotsSurviveRecovery(@TempDir Path directory) throws Exception {
+        PersonDataProviderInMemory.persistTo(directory, new OpLogConfig());
+        List<Person> people = DataService.getPeople(2000, 3);
+        Thread writer = new Thread(() -> people.forEach(dataProvider::persist));
+        writer.start();
+        while (writer.isAlive()) {
+            PersonDataProviderInMemory.persistence().snapshot();
+        }
+        writer.join();
+
+        Map<Integer, String> before = restart(directory);
+        assertEquals(people.size(), before.size());
+        assertEquals(before, contents());
+    }
+
+    @Test
+    public void testWritesRacingCloseNeverHang(@TempDir Path directory) throws Exception {
+        PersonOpLog log = new PersonOpLog(directory, 1, 0);
+        List<Person> people = DataService.getPeople(2000, 5);
+        for (int i = 0; i < people.size(); i++) {
+            people.get(i).setId(i + 1);
+        }
+        List<CompletableFuture<Long>> logged = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try {
+                people.forEach(person -> {
+                    logged.add(log.put(person));
+                    started.countDown();
+                });
+            } catch (IllegalStateException e) {
+                // closed underneath
+            }
+        });
+        writer.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        log.close();
+        writer.join();
+
+        for (CompletableFuture<Long> future : new ArrayList<>(logged)) {
+            assertTrue(future.isDone());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.vaadin.example;
+
+import org.openjdk.jmh.annotations.*;
+import org.vaadin.example.utility.OpLogConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time of {@link PersonDataProviderInMemory} with persistence: a
+ * snapshot of {@code size} contacts plus a log tail of 1% updates. The
+ * files are generated once under {@code target/recovery-benchmark} and
+ * reused. Every fork measures one cold recovery; 10M contacts need a heap
+ * of about 8 GB.
+ * Run with {@code mvn -Pbenchmark verify -DskipTests -Djmh.includes=InMemoryRecoveryBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 3, jvmArgsAppend = "-Xmx12g")
+public class InMemoryRecoveryBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Path.of("target", "recovery-benchmark", Integer.toString(size));
+        if (Files.exists(directory.resolve("snapshot-1.bin"))) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Person> people = DataService.getPeople(size, 42);
+        for (int i = 0; i < people.size(); i++) {
+            people.get(i).setId(i + 1);
+            people.get(i).setVersion(0);
+        }
+        PersonSnapshot.write(directory.resolve("snapshot-1.bin"), 1, people.iterator());
+        Random random = new Random(42);
+        try (PersonOpLog log = new PersonOpLog(directory, 1, 0)) {
+            for (int i = 0; i < size / 100; i++) {
+                Person person = people.get(random.nextInt(size));
+                person.setStreet(random.nextInt(1000) + " Side St");
+                person.setVersion(person.getVersion() + 1);
+                log.put(new Person(person));
+            }
+        }
+    }
+
+    /**
+     * Snapshot load and log replay into a map, without the query indexes.
+     */
+    @Benchmark
+    public Map<Integer, Person> recoverRows() throws IOException {
+        ConcurrentHashMap<Integer, Person> database = new ConcurrentHashMap<>(size * 2);
+        InMemoryPersistence.recover(directory, database);
+        return database;
+    }
+
+    /**
+     * What a restart costs: recovery plus rebuilding the query indexes.
+     */
+    @Benchmark
+    public int recoverAndIndex() throws IOException {
+        OpLogConfig config = new OpLogConfig();
+        config.setSnapshotIntervalSeconds(0);
+        PersonDataProviderInMemory.persistTo(directory, config);
+        int recovered = PersonDataProviderInMemory.DATABASE.size();
+        PersonDataProviderInMemory.stopPersisting();
+        return recovered;
+    }
+}
@@ -0,0 +1,39 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeysetCursorsTest {
+
+    private static Person row(int id) {
+        Person person = new Person();
+        person.setId(id);
+        return person;
+    }
+
+    @Test
+    public void testPagesEndAtCursors() {
+        KeysetCursors cursors = new KeysetCursors(10);
+        CrudFilter filter = new CrudFilter();
+
+        cursors.remember(filter, 50, row(50), cursors.generation());
+
+        assertEquals(new KeysetCursors.Cursor(null, 50), cursors.find(filter, 50));
+        assertNull(cursors.find(filter, 100));
+    }
+
+    @Test
+    public void testPageReadDuringWriteIsNotRemembered() {
+        KeysetCursors cursors = new KeysetCursors(10);
+        CrudFilter filter = new CrudFilter();
+
+        long readAt = cursors.generation();
+        // a write lands while the page query runs
+        cursors.invalidate();
+        cursors.remember(filter, 50, row(50), readAt);
+
+        assertNull(cursors.find(filter, 50));
+    }
+}
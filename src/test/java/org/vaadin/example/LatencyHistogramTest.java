@@ -0,0 +1,37 @@
+package org.vaadin.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789L, 1L << 62}) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.lowerBound(index) <= value, "lower bound of " + value);
+            if (index + 1 < 64 * 16) {
+                assertTrue(LatencyHistogram.lowerBound(index + 1) > value, "upper bound of " + value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(500.5, histogram.mean(), 0.001);
+        assertEquals(1000, histogram.max());
+        assertEquals(500, histogram.percentile(0.5), 500 * 0.07);
+        assertEquals(990, histogram.percentile(0.99), 990 * 0.07);
+        assertEquals(1000, histogram.percentile(1.0));
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(0.5));
+    }
+}
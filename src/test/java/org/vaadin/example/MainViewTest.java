@@ -5,12 +5,14 @@ import org.h2.jdbcx.JdbcDataSource;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
+import org.vaadin.example.utility.SchemaMigrations;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -51,6 +53,7 @@ public class MainViewTest {
             statement.execute("INSERT INTO Person (name, lname, street, city, country, phoneNumber, email, flag) VALUES " +
                     "('John', 'Doe', '123 Main St', 'Springfield', 'USA', '555-1234', 'john.doe@example.com', FALSE)");
         }
+        SchemaMigrations.migrate(dataSource);
     }
 
     @Test
@@ -125,4 +128,28 @@ public class MainViewTest {
         assertNotNull(person);
         assertEquals("Jane Smith", person.getFirstName());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStreamMatchesFetch() {
+        List<Integer> fetched = dataProvider.fetchFromBackEnd(new Query<>()).map(Person::getId).toList();
+        List<Integer> streamed;
+        try (Stream<Person> people = dataProvider.stream(null)) {
+            streamed = people.map(Person::getId).toList();
+        }
+        assertEquals(fetched, streamed);
+    }
+
+    @Test
+    public void testPhoneNumberSpellingsAreOneNumber() {
+        Person person = new Person();
+        person.setFirstName("Ada Lovelace");
+        person.setPhoneNumber("+44 20 7946 0000");
+        person.setEmail("ada@example.com");
+        dataProvider.persist(person);
+
+        assertTrue(dataProvider.existsByPhoneNumber(PhoneNumbers.normalize("0044-20-7946-0000"), null));
+        assertFalse(dataProvider.existsByPhoneNumber(PhoneNumbers.normalize("0044-20-7946-0000"), person.getId()));
+        // the other tests count the rows
+        dataProvider.delete(person);
+    }
+}
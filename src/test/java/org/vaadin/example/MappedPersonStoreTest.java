@@ -0,0 +1,78 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.SortDirection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedPersonStoreTest {
+
+    @Test
+    public void testContactsSurviveReopen(@TempDir Path directory) throws Exception {
+        List<Person> people = DataService.getPeople(300, 5);
+        try (MappedPersonStore store = new MappedPersonStore(directory, 16, false)) {
+            store.persistAll(people);
+            Person first = store.find(people.get(0).getId()).orElseThrow();
+            first.setCity("Zürich");
+            store.persist(first);
+            store.delete(people.get(1));
+            assertThrows(OptimisticLockException.class, () -> store.persist(people.get(0)));
+        }
+
+        try (MappedPersonStore store = new MappedPersonStore(directory, 16, false)) {
+            assertEquals(299, store.count(new CrudFilter()));
+            Person first = store.find(people.get(0).getId()).orElseThrow();
+            assertEquals("Zürich", first.getCity());
+            assertEquals(1, first.getVersion());
+            assertTrue(store.find(people.get(1).getId()).isEmpty());
+            assertTrue(store.existsByPhoneNumber(PhoneNumbers.normalize(people.get(2).getPhoneNumber()), null));
+
+            CrudFilter filter = new CrudFilter();
+            filter.getConstraints().put("lastName", "a");
+            filter.getSortOrders().put("email", SortDirection.DESCENDING);
+            List<Integer> expected = people.subList(2, people.size()).stream()
+                    .filter(PersonField.predicate(filter))
+                    .sorted(PersonField.comparator(filter))
+                    .map(Person::getId)
+                    .toList();
+            assertEquals(expected, store.page(filter, 0, 1000).stream().map(Person::getId).toList());
+            assertEquals(expected, store.stream(filter).map(Person::getId).toList());
+
+            Person added = DataService.getPeople(1, 6).get(0);
+            store.persist(added);
+            assertEquals(people.size() + 1, added.getId());
+        }
+    }
+
+    @Test
+    public void testCommittedLogIsReplayedAndTornTailIgnored(@TempDir Path directory) throws Exception {
+        MappedPersonStore store = new MappedPersonStore(directory, 16, false);
+        store.persistAll(DataService.getPeople(3, 5));
+        store.release();
+
+        // a write that was committed to the log but never reached the slot file
+        Person logged = DataService.getPeople(1, 9).get(0);
+        logged.setId(42);
+        logged.setVersion(0);
+        try (WriteAheadLog wal = new WriteAheadLog(directory.resolve("wal.log"), false)) {
+            wal.put(3, logged);
+            wal.commit();
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve("wal.log"), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 100, 1, 2, 3}));
+        }
+
+        try (MappedPersonStore reopened = new MappedPersonStore(directory, 16, false)) {
+            assertEquals(4, reopened.count(new CrudFilter()));
+            assertEquals(logged.getEmail(), reopened.find(42).orElseThrow().getEmail());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private List<Person> page(int offset, int limit) {
+        loads.incrementAndGet();
+        List<Person> rows = new ArrayList<>();
+        for (int id = offset + 1; id <= offset + limit; id++) {
+            Person person = new Person();
+            person.setId(id);
+            person.setFirstName("Person " + id);
+            rows.add(person);
+        }
+        return rows;
+    }
+
+    @Test
+    public void testRepeatedPagesHitTheCache() throws SQLException {
+        PageCache cache = new PageCache(100);
+        CrudFilter filter = new CrudFilter();
+
+        cache.get(filter, 0, 10, () -> page(0, 10));
+        List<Person> cached = cache.get(filter, 0, 10, () -> page(0, 10));
+        cached.get(0).setFirstName("Edited in place");
+
+        assertEquals(1, loads.get());
+        assertEquals("Person 1", cache.get(filter, 0, 10, () -> page(0, 10)).get(0).getFirstName());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testInvalidateRetiresEveryPage() throws SQLException {
+        PageCache cache = new PageCache(100);
+        CrudFilter filter = new CrudFilter();
+        cache.get(filter, 0, 10, () -> page(0, 10));
+        cache.get(filter, 10, 10, () -> page(10, 10));
+
+        cache.invalidate();
+
+        assertEquals(0, cache.getCachedPages());
+        assertEquals(0, cache.getCachedRows());
+        cache.get(filter, 0, 10, () -> page(0, 10));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testPageLoadedDuringWriteIsNotCached() throws SQLException {
+        PageCache cache = new PageCache(100);
+        CrudFilter filter = new CrudFilter();
+
+        cache.get(filter, 0, 10, () -> {
+            // a write lands while the query runs
+            cache.invalidate();
+            return page(0, 10);
+        });
+
+        assertEquals(0, cache.getCachedPages());
+        cache.get(filter, 0, 10, () -> page(0, 10));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getCachedPages());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPagesAreEvictedBeyondMaxRows() throws SQLException {
+        PageCache cache = new PageCache(25);
+        CrudFilter filter = new CrudFilter();
+
+        cache.get(filter, 0, 10, () -> page(0, 10));
+        cache.get(filter, 10, 10, () -> page(10, 10));
+        // touch the first page so the second is the eldest
+        cache.get(filter, 0, 10, () -> page(0, 10));
+        cache.get(filter, 20, 10, () -> page(20, 10));
+
+        assertEquals(2, cache.getCachedPages());
+        assertEquals(20, cache.getCachedRows());
+        assertEquals(1, cache.getEvictionCount());
+        cache.get(filter, 0, 10, () -> page(0, 10));
+        assertEquals(3, loads.get());
+        cache.get(filter, 10, 10, () -> page(10, 10));
+        assertEquals(4, loads.get());
+    }
+}
@@ -0,0 +1,72 @@
+package org.vaadin.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersonCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Person load(int id) {
+        loads.incrementAndGet();
+        Person person = new Person();
+        person.setId(id);
+        person.setFirstName("Person " + id);
+        return person;
+    }
+
+    @Test
+    public void testRepeatedLookupsHitTheCache() {
+        PersonCache cache = new PersonCache(10);
+
+        cache.get(1, this::load);
+        Person person = cache.get(1, this::load);
+        person.setFirstName("Edited in place");
+
+        assertEquals(1, loads.get());
+        assertEquals("Person 1", cache.get(1, this::load).getFirstName());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        PersonCache cache = new PersonCache(2);
+
+        cache.get(1, this::load);
+        cache.get(2, this::load);
+        cache.get(1, this::load);
+        cache.get(3, this::load);
+        cache.get(1, this::load);
+        cache.get(2, this::load);
+
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testInvalidationForcesReload() {
+        PersonCache cache = new PersonCache(10);
+
+        cache.get(1, this::load);
+        cache.invalidate(1);
+        cache.get(1, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testLoadRacingWithInvalidationIsNotCached() {
+        PersonCache cache = new PersonCache(10);
+
+        cache.get(1, id -> {
+            cache.invalidate(id);
+            return load(id);
+        });
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,51 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.shared.Registration;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersonChangeBusTest {
+
+    @Test
+    public void testBurstIsDeliveredAsOneFrame() throws Exception {
+        PersonChangeBus bus = new PersonChangeBus();
+        CompletableFuture<List<PersonChange>> delivered = new CompletableFuture<>();
+        Registration registration = bus.subscribeCoalesced(delivered::complete);
+
+        Person person = new Person();
+        person.setId(3);
+        person.setFirstName("First");
+        bus.publish(PersonChange.updated(person));
+        person.setFirstName("Second");
+        bus.publish(PersonChange.updated(person));
+        bus.publish(PersonChange.deleted(4));
+
+        List<PersonChange> frame = delivered.get(5, TimeUnit.SECONDS);
+        assertEquals(2, frame.size());
+        assertEquals("Second", frame.get(0).person().getFirstName());
+        assertEquals(PersonChange.Type.DELETED, frame.get(1).type());
+
+        registration.remove();
+        assertEquals(0, bus.subscriberCount());
+    }
+
+    @Test
+    public void testOversizedFrameCollapsesToReset() throws Exception {
+        PersonChangeBus bus = new PersonChangeBus();
+        bus.setMaxFrameSize(10);
+        CompletableFuture<List<PersonChange>> delivered = new CompletableFuture<>();
+        bus.subscribeCoalesced(delivered::complete);
+
+        for (int id = 0; id < 50; id++) {
+            bus.publish(PersonChange.deleted(id));
+        }
+
+        List<PersonChange> frame = delivered.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(PersonChange.reset()), frame);
+    }
+}
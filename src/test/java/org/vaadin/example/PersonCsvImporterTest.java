@@ -0,0 +1,99 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersonCsvImporterTest {
+
+    private final PersonDataProviderInMemory dataProvider = new PersonDataProviderInMemory();
+
+    @AfterEach
+    public void tearDown() {
+        new ArrayList<>(PersonDataProviderInMemory.DATABASE.values()).forEach(dataProvider::delete);
+    }
+
+    @Test
+    public void testExportThenImportRoundTrip() throws IOException {
+        List<Person> people = DataService.getPeople(2500, 3);
+        people.get(0).setStreet("1, \"Quoted\"\nStreet");
+        people.forEach(dataProvider::persist);
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertEquals(2500, PersonCsvExporter.export(dataProvider, new CrudFilter(), Channels.newChannel(csv), written -> {
+        }));
+        tearDown();
+
+        PersonCsvImporter.Result result = PersonCsvImporter.into(dataProvider)
+                .importFrom(Channels.newChannel(new ByteArrayInputStream(csv.toByteArray())), progress -> {
+                });
+
+        assertEquals(2500, result.imported());
+        assertEquals(0, result.rejected());
+        assertTrue(PersonDataProviderInMemory.DATABASE.values().stream()
+                .anyMatch(person -> "1, \"Quoted\"\nStreet".equals(person.getStreet())));
+    }
+
+    @Test
+    public void testInvalidAndDuplicateRowsAreRejected() throws IOException {
+        String csv = String.join(",", PersonCsv.HEADER) + "\n"
+                + "John,Smith,Main St,London,UK,12345678901,john@example.com\n"
+                + "Al,Smith,Main St,London,UK,12345678902,al@example.com\n"
+                + "Jane,Smith,Main St,London,UK,12345678901,jane@example.com\n";
+
+        PersonCsvImporter.Result result = PersonCsvImporter.into(dataProvider).importFrom(
+                Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))), progress -> {
+                });
+
+        assertEquals(1, result.imported());
+        assertEquals(2, result.rejected());
+        assertEquals(List.of("Line 3: First name must be at least 3 characters long",
+                "Line 4: Phone number must be unique"), result.errors());
+    }
+
+    @Test
+    public void testDuplicateInLaterBatchIsRejected() throws IOException {
+        StringBuilder csv = new StringBuilder(String.join(",", PersonCsv.HEADER)).append('\n');
+        for (int i = 0; i <= PersonCsvImporter.BATCH_SIZE; i++) {
+            csv.append("Person").append(i).append(",Smith,Main St,London,UK,")
+                    .append(String.format("%011d", 20_000_000_000L + i)).append(",p").append(i).append("@example.com\n");
+        }
+        // same number as the first row, written one batch earlier
+        csv.append("Other,Smith,Main St,London,UK,20000000000,other@example.com\n");
+
+        PersonCsvImporter.Result result = PersonCsvImporter.into(dataProvider).importFrom(
+                Channels.newChannel(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8))), progress -> {
+                });
+
+        assertEquals(PersonCsvImporter.BATCH_SIZE + 1, result.imported());
+        assertEquals(List.of("Line " + (PersonCsvImporter.BATCH_SIZE + 3) + ": Phone number must be unique"), result.errors());
+    }
+
+    @Test
+    public void testPartlyFailedBatchCountsWrittenRows() throws IOException {
+        String csv = String.join(",", PersonCsv.HEADER) + "\n"
+                + "John,Smith,Main St,London,UK,12345678901,john@example.com\n"
+                + "Jane,Smith,Main St,London,UK,12345678902,jane@example.com\n";
+        PersonCsvImporter importer = new PersonCsvImporter(phone -> false, batch -> {
+            throw new BatchWriteException(1, batch.size(), new IllegalStateException("duplicate key"));
+        });
+
+        PersonCsvImporter.Result result = importer.importFrom(
+                Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))), progress -> {
+                });
+
+        assertEquals(1, result.imported());
+        assertEquals(1, result.rejected());
+        assertEquals(List.of("Batch of 2 rows: 1 of 2 writes failed: duplicate key"), result.errors());
+    }
+}
@@ -0,0 +1,150 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.provider.SortDirection;
+import org.openjdk.jmh.annotations.*;
+import org.vaadin.example.utility.ConnectionPool;
+import org.vaadin.example.utility.PoolConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The grid and editor paths of {@link PersonDataProviderDb} against an H2
+ * in-memory database, with every cache off so the numbers show the SQL.
+ * Run with {@code mvn -Pbenchmark verify -DskipTests -Djmh.includes=PersonDataProviderDbBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonDataProviderDbBenchmark {
+
+    private static final int PAGE = 50;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private ConnectionPool pool;
+    private PersonDataProviderDb dataProvider;
+    private CrudFilter filtered;
+    private CrudFilter sorted;
+    // phone numbers above the generated range, so inserts never collide
+    private final AtomicLong nextPhone = new AtomicLong(90_000_000_000L);
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, IOException {
+        pool = new ConnectionPool("jdbc:h2:mem:bench" + size + ";DB_CLOSE_DELAY=-1", "sa", "sa", new PoolConfig());
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS Person");
+            for (String sql : schema().split(";")) {
+                if (!sql.isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+        dataProvider = new PersonDataProviderDb(pool);
+        List<Person> people = DataService.getPeople(size, 42);
+        for (int from = 0; from < people.size(); from += 10_000) {
+            dataProvider.persistAll(people.subList(from, Math.min(people.size(), from + 10_000)));
+        }
+
+        filtered = new CrudFilter();
+        filtered.getConstraints().put("city", "lon");
+        filtered.getConstraints().put("firstName", "1");
+        sorted = new CrudFilter();
+        sorted.getSortOrders().put("lastName", SortDirection.ASCENDING);
+    }
+
+    private static String schema() throws IOException {
+        try (InputStream in = PersonDataProviderDbBenchmark.class.getResourceAsStream("/schema.sql")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE Person");
+        }
+        pool.close();
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(size) + 1;
+    }
+
+    @Benchmark
+    public List<Person> fetchFirstPage() {
+        return dataProvider.fetch(new Query<>(0, PAGE, List.of(), null, null)).toList();
+    }
+
+    @Benchmark
+    public List<Person> fetchFiltered() {
+        return dataProvider.fetch(new Query<>(0, PAGE, List.of(), null, filtered)).toList();
+    }
+
+    @Benchmark
+    public List<Person> fetchSorted() {
+        return dataProvider.fetch(new Query<>(0, PAGE, List.of(), null, sorted)).toList();
+    }
+
+    @Benchmark
+    public List<Person> fetchDeepOffset() {
+        return dataProvider.fetch(new Query<>(size - size / 10, PAGE, List.of(), null, sorted)).toList();
+    }
+
+    @Benchmark
+    public int size() {
+        return dataProvider.size(new Query<>());
+    }
+
+    @Benchmark
+    public int sizeFiltered() {
+        return dataProvider.size(new Query<>(filtered));
+    }
+
+    @Benchmark
+    public Person findById() {
+        return dataProvider.findById(randomId());
+    }
+
+    @Benchmark
+    public boolean phoneNumberLookup() {
+        String phone = String.format("%011d", 10_000_000_000L + ThreadLocalRandom.current().nextInt(size));
+        return dataProvider.existsByPhoneNumber(PhoneNumbers.normalize(phone), null);
+    }
+
+    @Benchmark
+    public Person persistUpdate() {
+        Person person = dataProvider.findById(randomId());
+        person.setStreet(ThreadLocalRandom.current().nextInt(1000) + " Main St");
+        dataProvider.persist(person);
+        return person;
+    }
+
+    /**
+     * Insert and delete one contact, which keeps the table size stable.
+     */
+    @Benchmark
+    public Person persistAndDelete() {
+        Person person = DataService.getPeople(1, ThreadLocalRandom.current().nextLong()).get(0);
+        person.setPhoneNumber(Long.toString(nextPhone.incrementAndGet()));
+        dataProvider.persist(person);
+        dataProvider.delete(person);
+        return person;
+    }
+}
@@ -0,0 +1,119 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.provider.SortDirection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The same paths as {@link PersonDataProviderDbBenchmark} for
+ * {@link PersonDataProviderInMemory}, including its secondary indexes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonDataProviderInMemoryBenchmark {
+
+    private static final int PAGE = 50;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private PersonDataProviderInMemory dataProvider;
+    private CrudFilter filtered;
+    private CrudFilter sorted;
+    private final AtomicLong nextPhone = new AtomicLong(90_000_000_000L);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dataProvider = new PersonDataProviderInMemory();
+        new ArrayList<>(PersonDataProviderInMemory.DATABASE.values()).forEach(dataProvider::delete);
+        List<Person> people = DataService.getPeople(size, 42);
+        for (int i = 0; i < people.size(); i++) {
+            people.get(i).setId(i + 1);
+        }
+        dataProvider.persistAll(people);
+
+        filtered = new CrudFilter();
+        filtered.getConstraints().put("city", "lon");
+        filtered.getConstraints().put("firstName", "1");
+        sorted = new CrudFilter();
+        sorted.getSortOrders().put("lastName", SortDirection.ASCENDING);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        new ArrayList<>(PersonDataProviderInMemory.DATABASE.values()).forEach(dataProvider::delete);
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(size) + 1;
+    }
+
+    @Benchmark
+    public List<Person> fetchFirstPage() {
+        return dataProvider.fetch(new Query<>(0, PAGE, List.of(), null, null)).toList();
+    }
+
+    @Benchmark
+    public List<Person> fetchFiltered() {
+        return dataProvider.fetch(new Query<>(0, PAGE, List.of(), null, filtered)).toList();
+    }
+
+    @Benchmark
+    public List<Person> fetchSorted() {
+        return dataProvider.fetch(new Query<>(0, PAGE, List.of(), null, sorted)).toList();
+    }
+
+    @Benchmark
+    public List<Person> fetchDeepOffset() {
+        return dataProvider.fetch(new Query<>(size - size / 10, PAGE, List.of(), null, sorted)).toList();
+    }
+
+    @Benchmark
+    public int size() {
+        return dataProvider.size(new Query<>());
+    }
+
+    @Benchmark
+    public int sizeFiltered() {
+        return dataProvider.size(new Query<>(filtered));
+    }
+
+    @Benchmark
+    public Person findById() {
+        return dataProvider.find(randomId()).orElse(null);
+    }
+
+    @Benchmark
+    public boolean phoneNumberLookup() {
+        String phone = String.format("%011d", 10_000_000_000L + ThreadLocalRandom.current().nextInt(size));
+        return dataProvider.existsByPhoneNumber(PhoneNumbers.normalize(phone), null);
+    }
+
+    @Benchmark
+    public Person persistUpdate() {
+        Person person = dataProvider.find(randomId()).orElseThrow();
+        person.setStreet(ThreadLocalRandom.current().nextInt(1000) + " Main St");
+        dataProvider.persist(person);
+        return person;
+    }
+
+    @Benchmark
+    public Person persistAndDelete() {
+        Person person = DataService.getPeople(1, ThreadLocalRandom.current().nextLong()).get(0);
+        person.setPhoneNumber(Long.toString(nextPhone.incrementAndGet()));
+        dataProvider.persist(person);
+        dataProvider.delete(person);
+        return person;
+    }
+}
@@ -0,0 +1,192 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.provider.SortDirection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersonDataProviderInMemoryTest {
+
+    private PersonDataProviderInMemory dataProvider;
+
+    @BeforeEach
+    public void setup() {
+        dataProvider = new PersonDataProviderInMemory();
+        DataService.getPeople(500, 7).forEach(dataProvider::persist);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        new ArrayList<>(PersonDataProviderInMemory.DATABASE.values()).forEach(dataProvider::delete);
+    }
+
+    @Test
+    public void testIndexedFilterMatchesFullScan() {
+        CrudFilter filter = new CrudFilter();
+        filter.getConstraints().put("city", "ERL");
+        filter.getConstraints().put("firstName", "1");
+
+        List<Integer> expected = PersonDataProviderInMemory.DATABASE.values().stream()
+                .filter(PersonField.predicate(filter))
+                .sorted(PersonField.comparator(filter))
+                .map(Person::getId)
+                .toList();
+
+        List<Integer> persons = dataProvider.fetchFromBackEnd(new Query<>(filter)).map(Person::getId).toList();
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, persons);
+        assertEquals(expected.size(), dataProvider.sizeInBackEnd(new Query<>(filter)));
+        assertEquals(expected, dataProvider.stream(filter).map(Person::getId).toList());
+    }
+
+    @Test
+    public void testIndexFollowsUpdatesAndDeletes() {
+        Integer id = PersonDataProviderInMemory.DATABASE.keySet().iterator().next();
+        Person person = dataProvider.find(id).orElseThrow();
+        person.setLastName("Zyxwv");
+        dataProvider.persist(person);
+
+        CrudFilter filter = new CrudFilter();
+        filter.getConstraints().put("lastName", "xwv");
+        assertEquals(List.of(id), dataProvider.fetchFromBackEnd(new Query<>(filter)).map(Person::getId).toList());
+
+        dataProvider.delete(person);
+        assertEquals(0, dataProvider.sizeInBackEnd(new Query<>(filter)));
+    }
+
+    @Test
+    public void testSortedIndexPage() {
+        CrudFilter filter = new CrudFilter();
+        filter.getSortOrders().put("lastName", SortDirection.DESCENDING);
+
+        List<Integer> expected = PersonDataProviderInMemory.DATABASE.values().stream()
+                .sorted(PersonField.comparator(filter))
+                .skip(100).limit(20)
+                .map(Person::getId)
+                .toList();
+
+        Query<Person, CrudFilter> query = new Query<>(100, 20, List.of(), null, filter);
+        assertEquals(expected, dataProvider.fetchFromBackEnd(query).map(Person::getId).toList());
+    }
+
+    @Test
+    public void testStaleVersionIsRejected() {
+        Integer id = PersonDataProviderInMemory.DATABASE.keySet().iterator().next();
+        Person first = dataProvider.find(id).orElseThrow();
+        Person second = dataProvider.find(id).orElseThrow();
+
+        first.setStreet("First street");
+        dataProvider.persist(first);
+        assertEquals(second.getVersion() + 1, first.getVersion());
+
+        second.setStreet("Second street");
+        assertThrows(OptimisticLockException.class, () -> dataProvider.persist(second));
+        assertEquals("First street", dataProvider.find(id).orElseThrow().getStreet());
+    }
+
+    @Test
+    public void testAsyncWritesRunOffTheCallingThread() throws Exception {
+        Integer id = PersonDataProviderInMemory.DATABASE.keySet().iterator().next();
+        Person first = dataProvider.find(id).orElseThrow();
+        Person second = dataProvider.find(id).orElseThrow();
+        dataProvider.setIoConcurrency(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> busy = dataProvider.callAsync(() -> release.await(5, TimeUnit.SECONDS));
+
+        // queued behind the busy slot rather than saved on this thread
+        first.setStreet("First street");
+        CompletableFuture<Person> saving = dataProvider.persistAsync(first);
+        assertFalse(saving.isDone());
+        assertNotEquals("First street", dataProvider.find(id).orElseThrow().getStreet());
+        release.countDown();
+        assertTrue(busy.get(5, TimeUnit.SECONDS));
+        Person saved = saving.get(5, TimeUnit.SECONDS);
+        assertEquals(first.getVersion() + 1, saved.getVersion());
+
+        // the stale save fails through the future instead of throwing here
+        second.setStreet("Second street");
+        ExecutionException failed = assertThrows(ExecutionException.class,
+                () -> dataProvider.persistAsync(second).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(OptimisticLockException.class, failed.getCause());
+
+        dataProvider.deleteAsync(saved).get(5, TimeUnit.SECONDS);
+        assertTrue(dataProvider.find(id).isEmpty());
+    }
+
+    @Test
+    public void testExistsByPhoneNumber() {
+        Person person = PersonDataProviderInMemory.DATABASE.values().iterator().next();
+        String phone = PhoneNumbers.normalize(person.getPhoneNumber());
+
+        assertTrue(dataProvider.existsByPhoneNumber(phone, null));
+        assertFalse(dataProvider.existsByPhoneNumber(phone, person.getId()));
+        assertFalse(dataProvider.existsByPhoneNumber(PhoneNumbers.normalize("999-999-999-99"), null));
+        assertEquals("+44201234567", PhoneNumbers.normalize("0044 (20) 123-4567"));
+    }
+
+    @Test
+    public void testRacingSavesLeaveTheIndexOnTheStoredRow() throws Exception {
+        Integer id = PersonDataProviderInMemory.DATABASE.keySet().iterator().next();
+        List<Thread> writers = new ArrayList<>();
+        for (int writer = 0; writer < 4; writer++) {
+            int number = writer;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    Person person = dataProvider.find(id).orElseThrow();
+                    person.setVersion(null);
+                    person.setPhoneNumber("0401" + number + String.format("%05d", i));
+                    dataProvider.persist(person);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        Person stored = PersonDataProviderInMemory.DATABASE.get(id);
+        assertTrue(dataProvider.existsByPhoneNumber(PhoneNumbers.normalize(stored.getPhoneNumber()), null));
+        for (int writer = 0; writer < 4; writer++) {
+            String last = "0401" + writer + "00499";
+            if (!last.equals(stored.getPhoneNumber())) {
+                assertFalse(dataProvider.existsByPhoneNumber(PhoneNumbers.normalize(last), null));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelTopKPagesMatchFullSort() {
+        CrudFilter filter = new CrudFilter();
+        filter.getConstraints().put("country", "a");
+        filter.getSortOrders().put("street", SortDirection.DESCENDING);
+        List<Integer> expected = PersonDataProviderInMemory.DATABASE.values().stream()
+                .filter(PersonField.predicate(filter))
+                .sorted(PersonField.comparator(filter))
+                .map(Person::getId)
+                .toList();
+
+        dataProvider.setParallelQueryThreshold(0);
+        try {
+            // shallow pages are ranked with a heap, deep ones sorted
+            for (int offset : new int[]{0, 20, expected.size() - 10}) {
+                List<Integer> page = dataProvider.fetch(new Query<>(offset, 10, List.of(), null, filter))
+                        .map(Person::getId).toList();
+                assertEquals(expected.subList(offset, offset + 10), page);
+            }
+            assertEquals(expected.size(), dataProvider.size(new Query<>(filter)));
+        } finally {
+            dataProvider.setParallelQueryThreshold(50_000);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.SortDirection;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Filter + sort over synthetic contacts, comparing the reflective
+ * {@code valueOf} lookups the providers used to do with {@link PersonField}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonFieldBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    private List<Person> people;
+    private CrudFilter filter;
+
+    @Setup
+    public void setup() {
+        people = DataService.getPeople(size, 42);
+        filter = new CrudFilter();
+        filter.getConstraints().put("city", "lon");
+        filter.getSortOrders().put("lastName", SortDirection.ASCENDING);
+    }
+
+    @Benchmark
+    public List<Person> reflective() {
+        return people.stream()
+                .filter(ReflectiveAccess.predicate(filter))
+                .sorted(ReflectiveAccess.comparator(filter))
+                .toList();
+    }
+
+    @Benchmark
+    public List<Person> personField() {
+        return people.stream()
+                .filter(PersonField.predicate(filter))
+                .sorted(PersonField.comparator(filter))
+                .toList();
+    }
+
+    /**
+     * The previous implementation, kept here as the baseline.
+     */
+    static class ReflectiveAccess {
+
+        static Predicate<Person> predicate(CrudFilter filter) {
+            return filter.getConstraints().entrySet().stream()
+                    .map(constraint -> (Predicate<Person>) person -> {
+                        Object value = valueOf(constraint.getKey(), person);
+                        return value != null && value.toString().toLowerCase()
+                                .contains(constraint.getValue().toLowerCase());
+                    }).reduce(Predicate::and).orElse(e -> true);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        static Comparator<Person> comparator(CrudFilter filter) {
+            return filter.getSortOrders().entrySet().stream().map(sortClause -> {
+                Comparator<Person> comparator = Comparator.comparing(
+                        person -> (Comparable) valueOf(sortClause.getKey(), person));
+                return sortClause.getValue() == SortDirection.DESCENDING ? comparator.reversed() : comparator;
+            }).reduce(Comparator::thenComparing).orElse((o1, o2) -> 0);
+        }
+
+        static Object valueOf(String fieldName, Person person) {
+            try {
+                Field field = Person.class.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field.get(person);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+}
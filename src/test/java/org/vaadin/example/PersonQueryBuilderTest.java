@@ -0,0 +1,75 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.SortDirection;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersonQueryBuilderTest {
+
+    @Test
+    public void testUnfilteredPage() {
+        PersonQueryBuilder builder = PersonQueryBuilder.select(null, 50, 25);
+        assertEquals("SELECT * FROM Person ORDER BY id ASC LIMIT ? OFFSET ?", builder.getSql());
+        assertEquals(List.of(25, 50), builder.getParameters());
+    }
+
+    @Test
+    public void testFilterAndSortUseMappedColumns() {
+        CrudFilter filter = new CrudFilter();
+        filter.getConstraints().put("lastName", "Do_e");
+        filter.getSortOrders().put("firstName", SortDirection.DESCENDING);
+
+        PersonQueryBuilder builder = PersonQueryBuilder.select(filter, 0, 10);
+
+        assertEquals("SELECT * FROM Person WHERE LOWER(lname) LIKE ? ESCAPE '!'"
+                + " ORDER BY name DESC, id ASC LIMIT ? OFFSET ?", builder.getSql());
+        assertEquals(List.of("%do!_e%", 10, 0), builder.getParameters());
+    }
+
+    @Test
+    public void testCountIgnoresSortAndPaging() {
+        CrudFilter filter = new CrudFilter();
+        filter.getConstraints().put("city", "London");
+        filter.getSortOrders().put("email", SortDirection.ASCENDING);
+
+        PersonQueryBuilder builder = PersonQueryBuilder.count(filter);
+
+        assertEquals("SELECT COUNT(*) FROM Person WHERE LOWER(city) LIKE ? ESCAPE '!'", builder.getSql());
+        assertEquals(List.of("%london%"), builder.getParameters());
+    }
+
+    @Test
+    public void testSeekAfterCursor() {
+        CrudFilter filter = new CrudFilter();
+        filter.getConstraints().put("city", "London");
+        filter.getSortOrders().put("lastName", SortDirection.ASCENDING);
+
+        PersonQueryBuilder builder = PersonQueryBuilder.seek(filter, new KeysetCursors.Cursor("Smith", 42), 50);
+
+        assertEquals("SELECT * FROM Person WHERE LOWER(city) LIKE ? ESCAPE '!' AND (lname, id) > (?, ?)"
+                + " ORDER BY lname ASC, id ASC LIMIT ?", builder.getSql());
+        assertEquals(List.of("%london%", "Smith", 42, 50), builder.getParameters());
+
+        filter.getSortOrders().put("lastName", SortDirection.DESCENDING);
+        builder = PersonQueryBuilder.seek(filter, new KeysetCursors.Cursor("Smith", 42), 50);
+
+        assertEquals("SELECT * FROM Person WHERE LOWER(city) LIKE ? ESCAPE '!' AND (lname < ? OR (lname = ? AND id > ?) OR lname IS NULL)"
+                + " ORDER BY lname DESC, id ASC LIMIT ?", builder.getSql());
+        assertEquals(List.of("%london%", "Smith", "Smith", 42, 50), builder.getParameters());
+
+        builder = PersonQueryBuilder.seek(null, new KeysetCursors.Cursor(null, 42), 50);
+        assertEquals("SELECT * FROM Person WHERE id > ? ORDER BY id ASC LIMIT ?", builder.getSql());
+    }
+
+    @Test
+    public void testUnknownFieldIsRejected() {
+        CrudFilter filter = new CrudFilter();
+        filter.getSortOrders().put("name; DROP TABLE Person", SortDirection.ASCENDING);
+
+        assertThrows(IllegalArgumentException.class, () -> PersonQueryBuilder.select(filter, 0, 10));
+    }
+}
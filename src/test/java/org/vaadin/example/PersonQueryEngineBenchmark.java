@@ -0,0 +1,98 @@
+package org.vaadin.example;
+
+import com.vaadin.flow.component.crud.CrudFilter;
+import com.vaadin.flow.data.provider.SortDirection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Scans of {@link PersonQueryEngine} on the calling thread
+ * ({@code threshold} {@value Integer#MAX_VALUE}) against the fork-join pool.
+ * The difference only shows with several cores, e.g.
+ * {@code -Djava.util.concurrent.ForkJoinPool.common.parallelism=8} on an
+ * 8-core machine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class PersonQueryEngineBenchmark {
+
+    private static final int PAGE = 50;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"2147483647", "50000"})
+    public int threshold;
+
+    private PersonQueryEngine engine;
+    private CrudFilter filteredSorted;
+    private CrudFilter byStreet;
+    private CrudFilter filtered;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Map<Integer, Person> rows = new HashMap<>();
+        List<Person> people = DataService.getPeople(size, 42);
+        for (int i = 0; i < people.size(); i++) {
+            people.get(i).setId(i + 1);
+            rows.put(i + 1, people.get(i));
+        }
+        engine = new PersonQueryEngine(new PersonQueryEngine.Rows() {
+            @Override
+            public Person get(int id) {
+                return rows.get(id);
+            }
+
+            @Override
+            public Stream<Person> scan() {
+                return rows.values().stream();
+            }
+
+            @Override
+            public int size() {
+                return rows.size();
+            }
+        }, Set.of());
+        engine.setParallelThreshold(threshold);
+
+        filteredSorted = new CrudFilter();
+        filteredSorted.getConstraints().put("email", "e");
+        filteredSorted.getSortOrders().put("lastName", SortDirection.ASCENDING);
+        filteredSorted.getSortOrders().put("firstName", SortDirection.ASCENDING);
+        byStreet = new CrudFilter();
+        byStreet.getSortOrders().put("street", SortDirection.DESCENDING);
+        filtered = new CrudFilter();
+        filtered.getConstraints().put("city", "lon");
+        filtered.getConstraints().put("firstName", "1");
+    }
+
+    @Benchmark
+    public List<Person> filteredSortedFirstPage() {
+        return engine.page(filteredSorted, 0, PAGE);
+    }
+
+    @Benchmark
+    public List<Person> sortedFirstPage() {
+        return engine.page(byStreet, 0, PAGE);
+    }
+
+    @Benchmark
+    public List<Person> sortedDeepPage() {
+        return engine.page(byStreet, size - size / 10, PAGE);
+    }
+
+    @Benchmark
+    public int filteredCount() {
+        return engine.count(filtered);
+    }
+}
@@ -0,0 +1,62 @@
+package org.vaadin.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProviderExecutorTest {
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        try (ProviderExecutor executor = new ProviderExecutor("bounded", 2, ProviderMetrics.create("io-bounded"))) {
+            List<CompletableFuture<Integer>> calls = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                int value = i;
+                calls.add(executor.submit(() -> {
+                    mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    return value;
+                }));
+            }
+            for (int i = 0; i < calls.size(); i++) {
+                assertEquals(i, calls.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(2, mostRunning.get());
+            assertEquals(0, executor.queued());
+        }
+    }
+
+    @Test
+    public void testCancelledCallsNeverRun() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        try (ProviderExecutor executor = new ProviderExecutor("cancel", 1, ProviderMetrics.create("io-cancel"))) {
+            CompletableFuture<Boolean> blocking = executor.submit(() -> {
+                started.countDown();
+                return release.await(5, TimeUnit.SECONDS);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> waiting = executor.submit(() -> ran.getAndSet(true));
+            assertEquals(1, executor.queued());
+
+            assertTrue(waiting.cancel(true));
+            assertEquals(0, executor.queued());
+            release.countDown();
+            assertTrue(blocking.get(5, TimeUnit.SECONDS));
+            // the next call only runs after the slot the cancelled one held is free again
+            assertFalse(executor.submit(ran::get).get(5, TimeUnit.SECONDS));
+        }
+    }
+}
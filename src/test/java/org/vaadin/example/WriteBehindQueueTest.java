@@ -0,0 +1,119 @@
+package org.vaadin.example;
+
+import org.junit.jupiter.api.Test;
+import org.vaadin.example.utility.WriteBehindConfig;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindQueueTest {
+
+    @Test
+    public void testUpdatesToSameIdAreCoalesced() throws Exception {
+        List<Person> written = new ArrayList<>();
+        WriteBehindConfig config = new WriteBehindConfig();
+        config.setMaxDelayMillis(200);
+
+        try (WriteBehindQueue queue = new WriteBehindQueue(config, (inserts, updates, deletes) -> {
+            synchronized (written) {
+                written.addAll(updates);
+            }
+        })) {
+            Person person = new Person();
+            person.setId(7);
+            person.setFirstName("First");
+            CompletableFuture<Person> first = queue.upsert(person);
+            person.setFirstName("Second");
+            CompletableFuture<Person> second = queue.upsert(person);
+
+            CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+            // both callers get the state that was written, not their own bean
+            assertEquals("Second", first.get().getFirstName());
+            assertNotSame(person, second.get());
+        }
+
+        assertEquals(1, written.size());
+        assertEquals("Second", written.get(0).getFirstName());
+    }
+
+    @Test
+    public void testFailedBatchFailsEveryWrite() throws Exception {
+        WriteBehindConfig config = new WriteBehindConfig();
+        config.setBatchSize(2);
+
+        try (WriteBehindQueue queue = new WriteBehindQueue(config, (inserts, updates, deletes) -> {
+            throw new SQLException("boom");
+        })) {
+            CompletableFuture<Person> insert = queue.upsert(new Person());
+            CompletableFuture<Void> delete = queue.delete(3);
+
+            assertThrows(ExecutionException.class, () -> insert.get(5, TimeUnit.SECONDS));
+            assertThrows(ExecutionException.class, () -> delete.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testDeleteIsFinalAndOrderIsKept() throws Exception {
+        List<String> written = new ArrayList<>();
+        WriteBehindConfig config = new WriteBehindConfig();
+        config.setMaxDelayMillis(200);
+
+        try (WriteBehindQueue queue = new WriteBehindQueue(config, (inserts, updates, deletes) -> {
+            synchronized (written) {
+                inserts.forEach(person -> written.add("insert " + person.getPhoneNumber()));
+                deletes.forEach(id -> written.add("delete " + id));
+            }
+        })) {
+            CompletableFuture<Void> delete = queue.delete(7);
+            Person revived = new Person();
+            revived.setId(7);
+            revived.setVersion(3);
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> queue.upsert(revived).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(OptimisticLockException.class, failure.getCause());
+
+            // takes over the number of the deleted contact, so it must land after the delete
+            Person replacement = new Person();
+            replacement.setPhoneNumber("5551234");
+            CompletableFuture.allOf(delete, queue.upsert(replacement)).get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of("delete 7", "insert 5551234"), written);
+    }
+
+    @Test
+    public void testConcurrentVersionedSavesAreNotMerged() throws Exception {
+        List<Person> written = new ArrayList<>();
+        WriteBehindConfig config = new WriteBehindConfig();
+        config.setMaxDelayMillis(200);
+
+        try (WriteBehindQueue queue = new WriteBehindQueue(config, (inserts, updates, deletes) -> {
+            synchronized (written) {
+                written.addAll(updates);
+            }
+        })) {
+            // two editors opened the contact at version 4
+            Person first = new Person();
+            first.setId(7);
+            first.setVersion(4);
+            first.setFirstName("First");
+            Person second = new Person(first);
+            second.setFirstName("Second");
+
+            CompletableFuture<Person> firstAck = queue.upsert(first);
+            ExecutionException failure = assertThrows(ExecutionException.class,
+                    () -> queue.upsert(second).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(OptimisticLockException.class, failure.getCause());
+            firstAck.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(1, written.size());
+        assertEquals("First", written.get(0).getFirstName());
+    }
+}
@@ -0,0 +1,121 @@
+package org.vaadin.example.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.vaadin.example.Person;
+import org.vaadin.example.PersonChangeBus;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersonSearchEngineTest {
+
+    private static Person person(int id, String firstName, String lastName, String city, String phoneNumber) {
+        Person person = new Person();
+        person.setId(id);
+        person.setVersion(0);
+        person.setFirstName(firstName);
+        person.setLastName(lastName);
+        person.setCity(city);
+        person.setStreet("1 Main St");
+        person.setCountry("Finland");
+        person.setPhoneNumber(phoneNumber);
+        person.setEmail(firstName.toLowerCase() + "." + lastName.toLowerCase() + "@example.com");
+        return person;
+    }
+
+    private static List<Integer> ids(PersonSearchEngine engine, String query) {
+        return engine.search(query, 10).stream().map(SearchHit::id).toList();
+    }
+
+    private static PersonSearchEngine sample() {
+        PersonSearchEngine engine = PersonSearchEngine.inMemory();
+        engine.index(person(1, "Maria", "Virtanen", "Helsinki", "040 1234567"));
+        engine.index(person(2, "Mario", "Rossi", "Turku", "050 7654321"));
+        engine.index(person(3, "Jean-Luc", "Martin", "Helsinki", "044 5550000"));
+        return engine;
+    }
+
+    @Test
+    public void testExactPrefixAndTypoMatches() {
+        PersonSearchEngine engine = sample();
+
+        assertEquals(List.of(1), ids(engine, "virtanen"));
+        assertEquals(List.of(1), ids(engine, "Virt"));
+        assertEquals(List.of(1), ids(engine, "virtnaen"));
+        assertEquals(List.of(3), ids(engine, "jean luc helsinki"));
+        // "maria" matches Maria exactly and Mario by one typo, so Maria ranks first
+        assertEquals(List.of(1, 2), ids(engine, "maria"));
+    }
+
+    @Test
+    public void testPhoneFragmentsMatch() {
+        PersonSearchEngine engine = sample();
+
+        assertEquals(List.of(2), ids(engine, "7654"));
+        assertEquals(List.of(1), ids(engine, "040 123"));
+    }
+
+    @Test
+    public void testUpdatesAndRemovalsAreSearchable() {
+        PersonSearchEngine engine = sample();
+
+        Person moved = person(1, "Maria", "Virtanen", "Oulu", "040 1234567");
+        moved.setVersion(1);
+        engine.index(moved);
+        assertEquals(List.of(3), ids(engine, "helsinki"));
+        assertEquals(List.of(1), ids(engine, "oulu"));
+
+        engine.remove(1);
+        assertEquals(List.of(), ids(engine, "oulu"));
+    }
+
+    @Test
+    public void testIndexSurvivesRestartWithoutRebuild(@TempDir Path directory) throws Exception {
+        PersonChangeBus bus = new PersonChangeBus();
+        List<Person> people = List.of(
+                person(1, "Maria", "Virtanen", "Helsinki", "040 1234567"),
+                person(2, "Mario", "Rossi", "Turku", "050 7654321"));
+
+        PersonSearchEngine first = PersonSearchEngine.open(directory, bus, people::stream);
+        while (!first.isReady()) {
+            Thread.sleep(10);
+        }
+        first.index(person(3, "Jean-Luc", "Martin", "Helsinki", "044 5550000"));
+        first.remove(2);
+        first.close();
+
+        PersonSearchEngine second = PersonSearchEngine.open(directory, new PersonChangeBus(),
+                () -> Stream.generate(() -> {
+                    throw new AssertionError("index should load from disk");
+                }));
+        assertTrue(second.isReady());
+        assertEquals(2, second.size());
+        assertEquals(List.of(1, 3), ids(second, "helsinki").stream().sorted().toList());
+        second.close();
+    }
+
+    @Test
+    public void testFailedBuildIsRetriedBeforeReady() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        PersonSearchEngine engine = PersonSearchEngine.inMemory(new PersonChangeBus(), () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("database unavailable");
+            }
+            return Stream.of(person(1, "Maria", "Virtanen", "Helsinki", "040 1234567"));
+        });
+        engine.setRetryDelayMillis(10);
+
+        for (int i = 0; i < 500 && !engine.isReady(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(engine.isReady());
+        assertEquals(2, attempts.get());
+        assertEquals(List.of(1), ids(engine, "virtanen"));
+        engine.close();
+    }
+}
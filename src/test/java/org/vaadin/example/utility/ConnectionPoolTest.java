@@ -0,0 +1,144 @@
+package org.vaadin.example.utility;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setup() {
+        PoolConfig config = new PoolConfig();
+        config.setMinSize(0);
+        config.setMaxSize(2);
+        config.setAcquireTimeoutMillis(200);
+        pool = new ConnectionPool("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1", "sa", "sa", config);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testConnectionIsReused() throws SQLException {
+        String first;
+        try (Connection connection = pool.getConnection()) {
+            first = connection.unwrap(Connection.class).toString();
+            assertEquals(1, pool.getActiveConnections());
+        }
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+
+        try (Connection connection = pool.getConnection()) {
+            assertEquals(first, connection.unwrap(Connection.class).toString());
+        }
+        assertEquals(2, pool.getAcquisitionCount());
+    }
+
+    @Test
+    public void testAcquisitionTimesOutWhenExhausted() throws SQLException {
+        try (Connection first = pool.getConnection(); Connection second = pool.getConnection()) {
+            assertThrows(SQLTimeoutException.class, pool::getConnection);
+            assertEquals(1, pool.getAcquisitionTimeouts());
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertFalse(connection.isClosed());
+        }
+    }
+
+    @Test
+    public void testClosedHandleCannotBeUsed() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, connection::createStatement);
+        assertEquals(1, pool.getIdleConnections());
+    }
+
+    @Test
+    public void testInvalidConnectionIsReplacedOnBorrow() throws SQLException {
+        Connection physical;
+        try (Connection connection = pool.getConnection()) {
+            physical = connection.unwrap(Connection.class);
+        }
+        physical.close();
+
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            assertTrue(statement.execute("SELECT 1"));
+        }
+    }
+
+    @Test
+    public void testPreparedStatementIsReusedAcrossBorrows() throws SQLException {
+        for (int i = 1; i <= 3; i++) {
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement statement = connection.prepareStatement("SELECT ?")) {
+                statement.setInt(1, i);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    assertTrue(resultSet.next());
+                    assertEquals(i, resultSet.getInt(1));
+                }
+                assertSame(connection, statement.getConnection());
+            }
+        }
+        assertEquals(1, pool.getStatementCacheMisses());
+        assertEquals(2, pool.getStatementCacheHits());
+    }
+
+    @Test
+    public void testStatementInUseIsNotShared() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement first = connection.prepareStatement("SELECT 1");
+             PreparedStatement second = connection.prepareStatement("SELECT 1")) {
+            assertNotEquals(first.unwrap(PreparedStatement.class), second.unwrap(PreparedStatement.class));
+        }
+        assertEquals(2, pool.getStatementCacheMisses());
+    }
+
+    @Test
+    public void testUncachedStatementsBelongToTheHandle() throws SQLException {
+        Connection connection = pool.getConnection();
+        Statement statement = connection.createStatement();
+        assertSame(connection, statement.getConnection());
+        try (ResultSet resultSet = statement.executeQuery("SELECT 1")) {
+            assertTrue(resultSet.next());
+        }
+
+        connection.close();
+        assertTrue(statement.isClosed());
+        assertThrows(SQLException.class, () -> statement.executeQuery("SELECT 1"));
+    }
+
+    @Test
+    public void testCachedStatementsLeftOpenGoBackWithTheHandle() throws SQLException {
+        Connection connection = pool.getConnection();
+        PreparedStatement statement = connection.prepareStatement("SELECT 1");
+        ResultSet resultSet = statement.executeQuery();
+
+        connection.close();
+        assertTrue(statement.isClosed());
+        assertTrue(resultSet.isClosed());
+        assertThrows(SQLException.class, statement::executeQuery);
+
+        try (Connection again = pool.getConnection();
+             PreparedStatement reused = again.prepareStatement("SELECT 1")) {
+            assertEquals(1, pool.getStatementCacheHits());
+            assertThrows(SQLException.class, statement::executeQuery);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.vaadin.example.utility;
+
+import org.junit.jupiter.api.Test;
+import org.vaadin.example.PersonDataProvider;
+import org.vaadin.example.PersonDataProviderInMemory;
+import org.vaadin.example.PersonStore;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersonDataProviderFactoryTest {
+
+    @Test
+    public void testStoresAreDiscovered() {
+        assertTrue(PersonDataProviderFactory.available().containsAll(List.of("db", "inmemory")));
+    }
+
+    @Test
+    public void testStoreIsPickedByName() {
+        PersonDataProvider provider = PersonDataProviderFactory.createDataProvider("InMemory", new AppConfig());
+        assertInstanceOf(PersonDataProviderInMemory.class, provider);
+        assertFalse(provider.capabilities().contains(PersonStore.Capability.DURABLE));
+        assertTrue(provider.isIndexed("lastName"));
+    }
+}
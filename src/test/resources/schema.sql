@@ -1,10 +1,14 @@
 CREATE TABLE Person (
                         id INT AUTO_INCREMENT PRIMARY KEY,
                         name VARCHAR(255),
+                        lname VARCHAR(255),
                         street VARCHAR(255),
                         city VARCHAR(255),
                         country VARCHAR(255),
                         phoneNumber VARCHAR(255),
+                        phoneNormalized VARCHAR(64),
                         email VARCHAR(255),
-                        flag BOOLEAN
-);
\ No newline at end of file
+                        flag BOOLEAN,
+                        version INT DEFAULT 0 NOT NULL
+);
+CREATE UNIQUE INDEX ux_person_phone_normalized ON Person (phoneNormalized);